@@ -40,6 +40,10 @@ public class ConnectionStatus implements Cloneable {
     private long outputBytes;
     private int maxQueuedCount;
     private long maxQueuedBytes;
+    private long swapOutCount;
+    private long swapInCount;
+    private long swapNanos;
+    private long swapBlockedNanos;
 
     public String getId() {
         return id;
@@ -186,6 +190,51 @@ public class ConnectionStatus implements Cloneable {
         this.backPressureBytesThreshold = backPressureBytesThreshold;
     }
 
+    /**
+     * @return the number of Swap Files that have been written for the connection's queue since it was created
+     */
+    public long getSwapOutCount() {
+        return swapOutCount;
+    }
+
+    public void setSwapOutCount(long swapOutCount) {
+        this.swapOutCount = swapOutCount;
+    }
+
+    /**
+     * @return the number of Swap Files that have been read back into the connection's queue since it was created
+     */
+    public long getSwapInCount() {
+        return swapInCount;
+    }
+
+    public void setSwapInCount(long swapInCount) {
+        this.swapInCount = swapInCount;
+    }
+
+    /**
+     * @return the total number of nanoseconds spent writing and reading Swap Files for the connection's queue since it was created
+     */
+    public long getSwapNanos() {
+        return swapNanos;
+    }
+
+    public void setSwapNanos(long swapNanos) {
+        this.swapNanos = swapNanos;
+    }
+
+    /**
+     * @return the total number of nanoseconds that producers or consumers of the connection's queue were
+     *         unable to make progress because of swapping, since the queue was created
+     */
+    public long getSwapBlockedNanos() {
+        return swapBlockedNanos;
+    }
+
+    public void setSwapBlockedNanos(long swapBlockedNanos) {
+        this.swapBlockedNanos = swapBlockedNanos;
+    }
+
     @Override
     public ConnectionStatus clone() {
         final ConnectionStatus clonedObj = new ConnectionStatus();
@@ -206,6 +255,10 @@ public class ConnectionStatus implements Cloneable {
         clonedObj.backPressureObjectThreshold = backPressureObjectThreshold;
         clonedObj.maxQueuedBytes = maxQueuedBytes;
         clonedObj.maxQueuedCount = maxQueuedCount;
+        clonedObj.swapOutCount = swapOutCount;
+        clonedObj.swapInCount = swapInCount;
+        clonedObj.swapNanos = swapNanos;
+        clonedObj.swapBlockedNanos = swapBlockedNanos;
         return clonedObj;
     }
 
@@ -246,6 +299,14 @@ public class ConnectionStatus implements Cloneable {
         builder.append(maxQueuedCount);
         builder.append(", maxQueueBytes=");
         builder.append(maxQueuedBytes);
+        builder.append(", swapOutCount=");
+        builder.append(swapOutCount);
+        builder.append(", swapInCount=");
+        builder.append(swapInCount);
+        builder.append(", swapNanos=");
+        builder.append(swapNanos);
+        builder.append(", swapBlockedNanos=");
+        builder.append(swapBlockedNanos);
         builder.append("]");
         return builder.toString();
     }
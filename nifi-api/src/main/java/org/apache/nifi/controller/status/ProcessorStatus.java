@@ -42,6 +42,13 @@ public class ProcessorStatus implements Cloneable {
     private long bytesReceived;
     private int flowFilesSent;
     private long bytesSent;
+    private long runDurationNanos;
+    private long cpuNanos;
+    private long bytesAllocated;
+    private long blockedNanos;
+    private long waitedNanos;
+    private long queueWaitNanos;
+    private int steals;
 
     public String getId() {
         return id;
@@ -211,6 +218,87 @@ public class ProcessorStatus implements Cloneable {
         this.bytesSent = bytesSent;
     }
 
+    /**
+     * @return the CPU time that the Processor's threads consumed, in nanoseconds
+     */
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public void setCpuNanos(final long cpuNanos) {
+        this.cpuNanos = cpuNanos;
+    }
+
+    /**
+     * @return the number of bytes that the Processor's threads allocated on the heap, estimated from a sample of its tasks
+     */
+    public long getBytesAllocated() {
+        return bytesAllocated;
+    }
+
+    public void setBytesAllocated(final long bytesAllocated) {
+        this.bytesAllocated = bytesAllocated;
+    }
+
+    /**
+     * @return the time that the Processor's threads spent blocked waiting to enter a monitor, in nanoseconds, estimated from a sample of its tasks
+     */
+    public long getBlockedNanos() {
+        return blockedNanos;
+    }
+
+    public void setBlockedNanos(final long blockedNanos) {
+        this.blockedNanos = blockedNanos;
+    }
+
+    /**
+     * @return the time that the Processor's threads spent waiting on a lock or condition, in nanoseconds, estimated from a sample of its tasks
+     */
+    public long getWaitedNanos() {
+        return waitedNanos;
+    }
+
+    public void setWaitedNanos(final long waitedNanos) {
+        this.waitedNanos = waitedNanos;
+    }
+
+    /**
+     * @return the time that the Processor's tasks waited for a thread once they were due to run, in nanoseconds, or 0 if the
+     *         engine that runs them does not measure it
+     */
+    public long getQueueWaitNanos() {
+        return queueWaitNanos;
+    }
+
+    public void setQueueWaitNanos(final long queueWaitNanos) {
+        this.queueWaitNanos = queueWaitNanos;
+    }
+
+    /**
+     * @return the number of times that a task of the Processor was run by a thread other than the one that queued it, or 0
+     *         if the engine that runs them does not steal tasks
+     */
+    public int getSteals() {
+        return steals;
+    }
+
+    public void setSteals(final int steals) {
+        this.steals = steals;
+    }
+
+    /**
+     * @param timeUnit the unit of the value to return
+     * @return the amount of time for which the Processor is run before the work that it has done is committed;
+     *         if the run duration is chosen adaptively, this is the duration that is currently in use
+     */
+    public long getRunDuration(final TimeUnit timeUnit) {
+        return timeUnit.convert(runDurationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void setRunDuration(final long duration, final TimeUnit timeUnit) {
+        this.runDurationNanos = timeUnit.toNanos(duration);
+    }
+
     @Override
     public ProcessorStatus clone() {
         final ProcessorStatus clonedObj = new ProcessorStatus();
@@ -234,6 +322,13 @@ public class ProcessorStatus implements Cloneable {
         clonedObj.flowFilesRemoved = flowFilesRemoved;
         clonedObj.runStatus = runStatus;
         clonedObj.type = type;
+        clonedObj.runDurationNanos = runDurationNanos;
+        clonedObj.cpuNanos = cpuNanos;
+        clonedObj.bytesAllocated = bytesAllocated;
+        clonedObj.blockedNanos = blockedNanos;
+        clonedObj.waitedNanos = waitedNanos;
+        clonedObj.queueWaitNanos = queueWaitNanos;
+        clonedObj.steals = steals;
         return clonedObj;
     }
 
@@ -266,8 +361,22 @@ public class ProcessorStatus implements Cloneable {
         builder.append(invocations);
         builder.append(", processingNanos=");
         builder.append(processingNanos);
+        builder.append(", cpuNanos=");
+        builder.append(cpuNanos);
+        builder.append(", bytesAllocated=");
+        builder.append(bytesAllocated);
+        builder.append(", blockedNanos=");
+        builder.append(blockedNanos);
+        builder.append(", waitedNanos=");
+        builder.append(waitedNanos);
+        builder.append(", queueWaitNanos=");
+        builder.append(queueWaitNanos);
+        builder.append(", steals=");
+        builder.append(steals);
         builder.append(", activeThreadCount=");
         builder.append(activeThreadCount);
+        builder.append(", runDurationNanos=");
+        builder.append(runDurationNanos);
         builder.append("]");
         return builder.toString();
     }
@@ -0,0 +1,271 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Predicate;
+
+import org.apache.nifi.provenance.rollup.ProvenanceEventRollup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maintains the number of events and the number of bytes of FlowFile content, per event type per component
+ * per minute, for the events that are registered with a Provenance Repository. Updating the rollups for an event
+ * does not block and, once a component has emitted an event of a given type in a given minute, does not allocate.
+ *
+ * Counters are kept only for the event types that a component has emitted, as most components emit only a few types.
+ * Buckets that are older than the retention period are discarded, as are events whose time falls into such a bucket.
+ * The number of components tracked in a single bucket is limited; events of any further components in that bucket are
+ * not included in the rollups, and a warning is logged.
+ */
+public class EventRollupAggregator {
+    private static final Logger logger = LoggerFactory.getLogger(EventRollupAggregator.class);
+
+    public static final long BUCKET_MILLIS = TimeUnit.MINUTES.toMillis(1L);
+    public static final long DEFAULT_RETENTION_MILLIS = TimeUnit.HOURS.toMillis(1L);
+    public static final int DEFAULT_MAX_COMPONENTS_PER_BUCKET = 10000;
+
+    private final long retentionMillis;
+    private final int maxComponentsPerBucket;
+
+    // bucket start time -> bucket
+    private final ConcurrentSkipListMap<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+
+    public EventRollupAggregator() {
+        this(DEFAULT_RETENTION_MILLIS);
+    }
+
+    public EventRollupAggregator(final long retentionMillis) {
+        this(retentionMillis, DEFAULT_MAX_COMPONENTS_PER_BUCKET);
+    }
+
+    public EventRollupAggregator(final long retentionMillis, final int maxComponentsPerBucket) {
+        this.retentionMillis = retentionMillis;
+        this.maxComponentsPerBucket = maxComponentsPerBucket;
+    }
+
+    /**
+     * Adds the given event to the rollup of the bucket that its event time falls into
+     *
+     * @param event the event to add
+     */
+    public void update(final ProvenanceEventRecord event) {
+        final String componentId = event.getComponentId();
+        final ProvenanceEventType eventType = event.getEventType();
+        if (componentId == null || eventType == null) {
+            return;
+        }
+
+        final long bucketStart = getBucketStart(event.getEventTime());
+        Bucket bucket = buckets.get(bucketStart);
+        if (bucket == null) {
+            final long cutoff = System.currentTimeMillis() - retentionMillis;
+            if (bucketStart < getBucketStart(cutoff)) {
+                return;
+            }
+
+            final Bucket newBucket = new Bucket();
+            bucket = buckets.putIfAbsent(bucketStart, newBucket);
+            if (bucket == null) {
+                bucket = newBucket;
+
+                // A new bucket is created at most once per minute in the normal case, so this is a good time to discard expired ones.
+                buckets.headMap(getBucketStart(cutoff)).clear();
+            }
+        }
+
+        final ComponentCounters componentCounters = bucket.getComponentCounters(componentId, bucketStart);
+        if (componentCounters != null) {
+            componentCounters.getTypeCounters(eventType).add(event.getFileSize());
+        }
+    }
+
+    /**
+     * @param startTime the earliest time to include; the bucket containing this time is included
+     * @param endTime the latest time to include; the bucket containing this time is included
+     * @param componentId the identifier of the component to return rollups for, or <code>null</code> for all components
+     * @param componentFilter determines whether or not the rollups for a given component identifier are returned. It is
+     *            evaluated at most once per component identifier
+     * @return the rollups, ordered by bucket start time, then component identifier, then event type
+     */
+    public List<ProvenanceEventRollup> getRollups(final long startTime, final long endTime, final String componentId, final Predicate<String> componentFilter) {
+        if (endTime < startTime) {
+            return Collections.emptyList();
+        }
+
+        final List<ProvenanceEventRollup> rollups = new ArrayList<>();
+        final Map<String, Boolean> included = new HashMap<>();
+
+        final SortedMap<Long, Bucket> range = buckets.subMap(getBucketStart(startTime), true, getBucketStart(endTime), true);
+        for (final Map.Entry<Long, Bucket> entry : range.entrySet()) {
+            final long bucketStart = entry.getKey();
+            final ConcurrentMap<String, ComponentCounters> components = entry.getValue().components;
+
+            final SortedMap<String, ComponentCounters> componentCounters = new TreeMap<>();
+            if (componentId == null) {
+                componentCounters.putAll(components);
+            } else {
+                final ComponentCounters counters = components.get(componentId);
+                if (counters != null) {
+                    componentCounters.put(componentId, counters);
+                }
+            }
+
+            for (final Map.Entry<String, ComponentCounters> componentEntry : componentCounters.entrySet()) {
+                final String id = componentEntry.getKey();
+                if (!included.computeIfAbsent(id, componentFilter::test)) {
+                    continue;
+                }
+
+                final TypeCounters[] typeCounters = componentEntry.getValue().typeCounters.clone();
+                Arrays.sort(typeCounters, (a, b) -> a.eventType.compareTo(b.eventType));
+                for (final TypeCounters counters : typeCounters) {
+                    final long eventCount = counters.eventCount;
+                    if (eventCount > 0) {
+                        rollups.add(new ProvenanceEventRollup(bucketStart, BUCKET_MILLIS, id, counters.eventType, eventCount, counters.byteCount));
+                    }
+                }
+            }
+        }
+
+        return rollups;
+    }
+
+    /**
+     * @return the number of events that were not included in the rollups because their bucket already tracked the maximum
+     *         number of components
+     */
+    public long getUntrackedEventCount() {
+        long count = 0L;
+        for (final Bucket bucket : buckets.values()) {
+            count += bucket.untrackedEvents.get();
+        }
+        return count;
+    }
+
+    private static long getBucketStart(final long timestamp) {
+        return timestamp - Math.floorMod(timestamp, BUCKET_MILLIS);
+    }
+
+    @Override
+    public String toString() {
+        return "EventRollupAggregator[buckets=" + buckets.size() + "]";
+    }
+
+    private class Bucket {
+        private final ConcurrentMap<String, ComponentCounters> components = new ConcurrentHashMap<>();
+        private final AtomicInteger componentCount = new AtomicInteger(0);
+        private final AtomicLong untrackedEvents = new AtomicLong(0L);
+        private final AtomicBoolean limitLogged = new AtomicBoolean(false);
+
+        /**
+         * @return the counters of the given component, or <code>null</code> if the component is not tracked because
+         *         this bucket already tracks the maximum number of components
+         */
+        private ComponentCounters getComponentCounters(final String componentId, final long bucketStart) {
+            final ComponentCounters counters = components.get(componentId);
+            if (counters != null) {
+                return counters;
+            }
+
+            if (componentCount.incrementAndGet() > maxComponentsPerBucket) {
+                componentCount.decrementAndGet();
+                untrackedEvents.incrementAndGet();
+                if (limitLogged.compareAndSet(false, true)) {
+                    logger.warn("Provenance Event rollups for the minute beginning at {} already track {} components, which is the maximum; "
+                        + "events of other components in this minute will not be included in the rollups", bucketStart, maxComponentsPerBucket);
+                }
+                return null;
+            }
+
+            final ComponentCounters newCounters = new ComponentCounters();
+            final ComponentCounters existing = components.putIfAbsent(componentId, newCounters);
+            if (existing != null) {
+                componentCount.decrementAndGet();
+                return existing;
+            }
+            return newCounters;
+        }
+    }
+
+    /**
+     * The counters of a single component in a single bucket, holding counters only for the event types that it has emitted
+     */
+    private static class ComponentCounters {
+        private static final TypeCounters[] EMPTY = new TypeCounters[0];
+
+        // copied on write, as a new event type is seen rarely
+        private volatile TypeCounters[] typeCounters = EMPTY;
+
+        private TypeCounters getTypeCounters(final ProvenanceEventType eventType) {
+            for (final TypeCounters counters : typeCounters) {
+                if (counters.eventType == eventType) {
+                    return counters;
+                }
+            }
+
+            synchronized (this) {
+                final TypeCounters[] current = typeCounters;
+                for (final TypeCounters counters : current) {
+                    if (counters.eventType == eventType) {
+                        return counters;
+                    }
+                }
+
+                final TypeCounters counters = new TypeCounters(eventType);
+                final TypeCounters[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = counters;
+                typeCounters = updated;
+                return counters;
+            }
+        }
+    }
+
+    private static class TypeCounters {
+        private static final AtomicLongFieldUpdater<TypeCounters> EVENT_COUNT = AtomicLongFieldUpdater.newUpdater(TypeCounters.class, "eventCount");
+        private static final AtomicLongFieldUpdater<TypeCounters> BYTE_COUNT = AtomicLongFieldUpdater.newUpdater(TypeCounters.class, "byteCount");
+
+        private final ProvenanceEventType eventType;
+        private volatile long eventCount;
+        private volatile long byteCount;
+
+        private TypeCounters(final ProvenanceEventType eventType) {
+            this.eventType = eventType;
+        }
+
+        private void add(final long bytes) {
+            EVENT_COUNT.incrementAndGet(this);
+            BYTE_COUNT.addAndGet(this, bytes);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.provenance.rollup.ProvenanceEventRollup;
+import org.junit.Test;
+
+public class TestEventRollupAggregator {
+
+    @Test
+    public void testRollupsOrderedByEventType() {
+        final EventRollupAggregator aggregator = new EventRollupAggregator();
+        final long now = System.currentTimeMillis();
+
+        // the event types are emitted out of order, but the rollups are ordered by event type
+        aggregator.update(createEvent("1", ProvenanceEventType.SEND, now, 10L));
+        aggregator.update(createEvent("1", ProvenanceEventType.RECEIVE, now, 20L));
+        aggregator.update(createEvent("1", ProvenanceEventType.SEND, now, 30L));
+
+        final List<ProvenanceEventRollup> rollups = aggregator.getRollups(now, now, null, id -> true);
+        assertEquals(2, rollups.size());
+        assertEquals(ProvenanceEventType.RECEIVE, rollups.get(0).getEventType());
+        assertEquals(1L, rollups.get(0).getEventCount());
+        assertEquals(20L, rollups.get(0).getTotalBytes());
+        assertEquals(ProvenanceEventType.SEND, rollups.get(1).getEventType());
+        assertEquals(2L, rollups.get(1).getEventCount());
+        assertEquals(40L, rollups.get(1).getTotalBytes());
+    }
+
+    @Test
+    public void testEventsOlderThanRetentionIgnored() {
+        final EventRollupAggregator aggregator = new EventRollupAggregator(TimeUnit.MINUTES.toMillis(5L));
+        final long now = System.currentTimeMillis();
+        final long old = now - TimeUnit.MINUTES.toMillis(10L);
+
+        aggregator.update(createEvent("1", ProvenanceEventType.SEND, old, 10L));
+        aggregator.update(createEvent("1", ProvenanceEventType.SEND, now, 10L));
+
+        assertTrue(aggregator.getRollups(old, old, null, id -> true).isEmpty());
+        assertEquals(1, aggregator.getRollups(now, now, null, id -> true).size());
+    }
+
+    @Test
+    public void testComponentsPerBucketLimited() {
+        final EventRollupAggregator aggregator = new EventRollupAggregator(EventRollupAggregator.DEFAULT_RETENTION_MILLIS, 3);
+        final long now = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1L);
+
+        for (int i = 0; i < 5; i++) {
+            aggregator.update(createEvent(String.valueOf(i), ProvenanceEventType.CREATE, now, 1L));
+        }
+
+        // the components that are already tracked continue to be counted
+        aggregator.update(createEvent("0", ProvenanceEventType.DROP, now, 1L));
+
+        final List<ProvenanceEventRollup> rollups = aggregator.getRollups(now, now, null, id -> true);
+        assertEquals(4, rollups.size());
+        for (final ProvenanceEventRollup rollup : rollups) {
+            assertTrue(Integer.parseInt(rollup.getComponentId()) < 3);
+        }
+        assertEquals(2L, aggregator.getUntrackedEventCount());
+    }
+
+    private ProvenanceEventRecord createEvent(final String componentId, final ProvenanceEventType eventType, final long eventTime, final long fileSize) {
+        return new StandardProvenanceEventRecord.Builder()
+            .setEventType(eventType)
+            .setEventTime(eventTime)
+            .setComponentId(componentId)
+            .setComponentType("Unit Test")
+            .setTransitUri("nifi://unit-test")
+            .setFlowFileUUID("00000000-0000-0000-0000-000000000000")
+            .setAttributes(Collections.<String, String> emptyMap(), Collections.<String, String> emptyMap())
+            .setCurrentContentClaim("container", "section", "identifier", 0L, fileSize)
+            .build();
+    }
+}
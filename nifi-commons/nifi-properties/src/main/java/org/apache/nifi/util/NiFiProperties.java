@@ -75,6 +75,12 @@ public abstract class NiFiProperties {
     public static final String ADMINISTRATIVE_YIELD_DURATION = "nifi.administrative.yield.duration";
     public static final String PERSISTENT_STATE_DIRECTORY = "nifi.persistent.state.directory";
     public static final String BORED_YIELD_DURATION = "nifi.bored.yield.duration";
+    public static final String WORK_AWARE_SCHEDULING = "nifi.scheduling.work.aware";
+    public static final String WORK_STEALING_ENGINE = "nifi.scheduling.work.stealing";
+    public static final String ADAPTIVE_RUN_DURATION = "nifi.processor.run.duration.adaptive";
+    public static final String ADAPTIVE_RUN_DURATION_MIN = "nifi.processor.run.duration.adaptive.min";
+    public static final String ADAPTIVE_RUN_DURATION_MAX = "nifi.processor.run.duration.adaptive.max";
+    public static final String LOCK_WAIT_ACCOUNTING = "nifi.processor.lock.wait.accounting";
     public static final String PROCESSOR_SCHEDULING_TIMEOUT = "nifi.processor.scheduling.timeout";
 
     // content repository properties
@@ -82,6 +88,9 @@ public abstract class NiFiProperties {
     public static final String CONTENT_REPOSITORY_IMPLEMENTATION = "nifi.content.repository.implementation";
     public static final String MAX_APPENDABLE_CLAIM_SIZE = "nifi.content.claim.max.appendable.size";
     public static final String MAX_FLOWFILES_PER_CLAIM = "nifi.content.claim.max.flow.files";
+    public static final String MIN_APPENDABLE_CLAIM_SIZE = "nifi.content.claim.min.appendable.size";
+    public static final String MIN_WRITABLE_CLAIMS = "nifi.content.claim.min.writable.claims";
+    public static final String MAX_WRITABLE_CLAIMS = "nifi.content.claim.max.writable.claims";
     public static final String CONTENT_ARCHIVE_MAX_RETENTION_PERIOD = "nifi.content.repository.archive.max.retention.period";
     public static final String CONTENT_ARCHIVE_MAX_USAGE_PERCENTAGE = "nifi.content.repository.archive.max.usage.percentage";
     public static final String CONTENT_ARCHIVE_BACK_PRESSURE_PERCENTAGE = "nifi.content.repository.archive.backpressure.percentage";
@@ -95,12 +104,17 @@ public abstract class NiFiProperties {
     public static final String FLOWFILE_REPOSITORY_DIRECTORY = "nifi.flowfile.repository.directory";
     public static final String FLOWFILE_REPOSITORY_PARTITIONS = "nifi.flowfile.repository.partitions";
     public static final String FLOWFILE_REPOSITORY_CHECKPOINT_INTERVAL = "nifi.flowfile.repository.checkpoint.interval";
+    public static final String FLOWFILE_REPOSITORY_CHECKPOINT_PARTITIONS = "nifi.flowfile.repository.checkpoint.partitions";
+    public static final String FLOWFILE_REPOSITORY_GROUP_COMMIT_ENABLED = "nifi.flowfile.repository.group.commit.enabled";
+    public static final String FLOWFILE_REPOSITORY_GROUP_COMMIT_WINDOW = "nifi.flowfile.repository.group.commit.window";
     public static final String FLOWFILE_SWAP_MANAGER_IMPLEMENTATION = "nifi.swap.manager.implementation";
     public static final String QUEUE_SWAP_THRESHOLD = "nifi.queue.swap.threshold";
+    public static final String QUEUE_STRIPE_COUNT = "nifi.queue.stripe.count";
     public static final String SWAP_IN_THREADS = "nifi.swap.in.threads";
     public static final String SWAP_IN_PERIOD = "nifi.swap.in.period";
     public static final String SWAP_OUT_THREADS = "nifi.swap.out.threads";
     public static final String SWAP_OUT_PERIOD = "nifi.swap.out.period";
+    public static final String SWAP_COMPRESSION_ENABLED = "nifi.swap.compression.enabled";
 
     // provenance properties
     public static final String PROVENANCE_REPO_IMPLEMENTATION_CLASS = "nifi.provenance.repository.implementation";
@@ -111,11 +125,19 @@ public abstract class NiFiProperties {
     public static final String PROVENANCE_ROLLOVER_SIZE = "nifi.provenance.repository.rollover.size";
     public static final String PROVENANCE_QUERY_THREAD_POOL_SIZE = "nifi.provenance.repository.query.threads";
     public static final String PROVENANCE_INDEX_THREAD_POOL_SIZE = "nifi.provenance.repository.index.threads";
+    public static final String PROVENANCE_INDEX_SEARCH_THREAD_POOL_SIZE = "nifi.provenance.repository.index.search.threads";
     public static final String PROVENANCE_COMPRESS_ON_ROLLOVER = "nifi.provenance.repository.compress.on.rollover";
+    public static final String PROVENANCE_DICTIONARY_ENCODING = "nifi.provenance.repository.dictionary.encoding";
     public static final String PROVENANCE_INDEXED_FIELDS = "nifi.provenance.repository.indexed.fields";
     public static final String PROVENANCE_INDEXED_ATTRIBUTES = "nifi.provenance.repository.indexed.attributes";
     public static final String PROVENANCE_INDEX_SHARD_SIZE = "nifi.provenance.repository.index.shard.size";
     public static final String PROVENANCE_JOURNAL_COUNT = "nifi.provenance.repository.journal.count";
+    public static final String PROVENANCE_ASYNC_QUEUE_SIZE = "nifi.provenance.repository.async.queue.size";
+    public static final String PROVENANCE_ASYNC_OVERLOAD_POLICY = "nifi.provenance.repository.async.overload.policy";
+    public static final String PROVENANCE_ASYNC_OVERFLOW_DIRECTORY = "nifi.provenance.repository.async.overflow.directory";
+    public static final String PROVENANCE_ROLLUP_RETENTION = "nifi.provenance.repository.rollup.retention";
+    public static final String PROVENANCE_COLD_STORAGE_DIRECTORY = "nifi.provenance.repository.cold.storage.directory";
+    public static final String PROVENANCE_COLD_STORAGE_AGE = "nifi.provenance.repository.cold.storage.age";
 
     // component status repository properties
     public static final String COMPONENT_STATUS_REPOSITORY_IMPLEMENTATION = "nifi.components.status.repository.implementation";
@@ -213,17 +235,36 @@ public abstract class NiFiProperties {
     public static final String DEFAULT_NAR_LIBRARY_DIR = "./lib";
     public static final String DEFAULT_FLOWFILE_REPO_PARTITIONS = "256";
     public static final String DEFAULT_FLOWFILE_CHECKPOINT_INTERVAL = "2 min";
+    public static final int DEFAULT_FLOWFILE_CHECKPOINT_PARTITIONS = 1;
+    public static final String DEFAULT_FLOWFILE_REPO_GROUP_COMMIT_ENABLED = "false";
+    public static final String DEFAULT_FLOWFILE_REPO_GROUP_COMMIT_WINDOW = "1 millis";
     public static final int DEFAULT_MAX_FLOWFILES_PER_CLAIM = 100;
+    public static final String DEFAULT_MAX_APPENDABLE_CLAIM_SIZE = "10 MB";
+    public static final String DEFAULT_MIN_APPENDABLE_CLAIM_SIZE = "1 MB";
+    public static final int DEFAULT_MIN_WRITABLE_CLAIMS = 10;
+    public static final int DEFAULT_MAX_WRITABLE_CLAIMS = 100;
     public static final int DEFAULT_QUEUE_SWAP_THRESHOLD = 20000;
+    public static final int DEFAULT_QUEUE_STRIPE_COUNT = 1;
     public static final String DEFAULT_SWAP_STORAGE_LOCATION = "./flowfile_repository/swap";
     public static final String DEFAULT_SWAP_IN_PERIOD = "1 sec";
     public static final String DEFAULT_SWAP_OUT_PERIOD = "5 sec";
     public static final int DEFAULT_SWAP_IN_THREADS = 4;
     public static final int DEFAULT_SWAP_OUT_THREADS = 4;
+    public static final String DEFAULT_SWAP_COMPRESSION_ENABLED = "false";
+    public static final int DEFAULT_PROVENANCE_ASYNC_QUEUE_SIZE = 0;
+    public static final String DEFAULT_PROVENANCE_ASYNC_OVERLOAD_POLICY = "BLOCK";
+    public static final String DEFAULT_PROVENANCE_ASYNC_OVERFLOW_DIRECTORY = "./provenance_overflow";
+    public static final String DEFAULT_PROVENANCE_ROLLUP_RETENTION = "1 hour";
     public static final String DEFAULT_ADMINISTRATIVE_YIELD_DURATION = "30 sec";
     public static final String DEFAULT_PERSISTENT_STATE_DIRECTORY = "./conf/state";
     public static final String DEFAULT_COMPONENT_STATUS_SNAPSHOT_FREQUENCY = "5 mins";
     public static final String DEFAULT_BORED_YIELD_DURATION = "10 millis";
+    public static final String DEFAULT_WORK_AWARE_SCHEDULING = "false";
+    public static final String DEFAULT_WORK_STEALING_ENGINE = "false";
+    public static final String DEFAULT_ADAPTIVE_RUN_DURATION = "false";
+    public static final String DEFAULT_ADAPTIVE_RUN_DURATION_MIN = "0 millis";
+    public static final String DEFAULT_ADAPTIVE_RUN_DURATION_MAX = "100 millis";
+    public static final String DEFAULT_LOCK_WAIT_ACCOUNTING = "false";
     public static final String DEFAULT_ZOOKEEPER_CONNECT_TIMEOUT = "3 secs";
     public static final String DEFAULT_ZOOKEEPER_SESSION_TIMEOUT = "3 secs";
     public static final String DEFAULT_ZOOKEEPER_ROOT_NODE = "/nifi";
@@ -312,6 +353,25 @@ public abstract class NiFiProperties {
         }
     }
 
+    /**
+     * Returns the number of stripes that each Connection's queue is partitioned into. A value of 1
+     * indicates that each queue is guarded by a single lock.
+     *
+     * @return the number of stripes to use for each FlowFile Queue
+     */
+    public int getQueueStripeCount() {
+        final String stripeCount = getProperty(QUEUE_STRIPE_COUNT);
+        if (stripeCount == null) {
+            return DEFAULT_QUEUE_STRIPE_COUNT;
+        }
+
+        try {
+            return Math.max(1, Integer.parseInt(stripeCount.trim()));
+        } catch (final NumberFormatException e) {
+            return DEFAULT_QUEUE_STRIPE_COUNT;
+        }
+    }
+
     public Integer getIntegerProperty(final String propertyName, final Integer defaultValue) {
         final String value = getProperty(propertyName);
         if (value == null || value.trim().isEmpty()) {
@@ -350,6 +410,13 @@ public abstract class NiFiProperties {
         return getProperty(SWAP_OUT_PERIOD, DEFAULT_SWAP_OUT_PERIOD);
     }
 
+    /**
+     * @return whether or not the FlowFiles that are written to swap files should be compressed
+     */
+    public boolean isSwapCompressionEnabled() {
+        return Boolean.parseBoolean(getProperty(SWAP_COMPRESSION_ENABLED, DEFAULT_SWAP_COMPRESSION_ENABLED));
+    }
+
     public String getAdministrativeYieldDuration() {
         return getProperty(ADMINISTRATIVE_YIELD_DURATION, DEFAULT_ADMINISTRATIVE_YIELD_DURATION);
     }
@@ -482,6 +549,40 @@ public abstract class NiFiProperties {
                 DEFAULT_FLOWFILE_CHECKPOINT_INTERVAL);
     }
 
+    /**
+     * Returns the number of files that a FlowFile Repository checkpoint is
+     * split across. The files are written in parallel.
+     *
+     * @return the number of checkpoint partitions
+     */
+    public int getFlowFileRepositoryCheckpointPartitions() {
+        return getIntegerProperty(FLOWFILE_REPOSITORY_CHECKPOINT_PARTITIONS, DEFAULT_FLOWFILE_CHECKPOINT_PARTITIONS);
+    }
+
+    /**
+     * Returns whether or not updates to the FlowFile Repository that must be
+     * synced to disk are coalesced, so that concurrent updates are written and
+     * synced together
+     *
+     * @return <code>true</code> if group commit is enabled
+     */
+    public boolean isFlowFileRepositoryGroupCommitEnabled() {
+        return Boolean.parseBoolean(getProperty(FLOWFILE_REPOSITORY_GROUP_COMMIT_ENABLED,
+                DEFAULT_FLOWFILE_REPO_GROUP_COMMIT_ENABLED));
+    }
+
+    /**
+     * Returns the amount of time that an update to the FlowFile Repository
+     * that must be synced to disk waits for other updates to join its group
+     * commit batch
+     *
+     * @return the group commit window
+     */
+    public String getFlowFileRepositoryGroupCommitWindow() {
+        return getProperty(FLOWFILE_REPOSITORY_GROUP_COMMIT_WINDOW,
+                DEFAULT_FLOWFILE_REPO_GROUP_COMMIT_WINDOW);
+    }
+
     /**
      * @return the restore directory or null if not configured
      */
@@ -913,7 +1014,39 @@ public abstract class NiFiProperties {
     }
 
     public String getMaxAppendableClaimSize() {
-        return getProperty(MAX_APPENDABLE_CLAIM_SIZE);
+        return getProperty(MAX_APPENDABLE_CLAIM_SIZE, DEFAULT_MAX_APPENDABLE_CLAIM_SIZE);
+    }
+
+    /**
+     * Returns the smallest size that the content repository will allow a
+     * resource claim to reach before it stops appending content to it. The
+     * repository adjusts the size between this value and the max appendable
+     * claim size based on the rate at which content is written.
+     *
+     * @return the min appendable claim size
+     */
+    public String getMinAppendableClaimSize() {
+        return getProperty(MIN_APPENDABLE_CLAIM_SIZE, DEFAULT_MIN_APPENDABLE_CLAIM_SIZE);
+    }
+
+    /**
+     * Returns the fewest resource claims per container that the content
+     * repository will keep open for appending content.
+     *
+     * @return the min number of writable claims per container
+     */
+    public int getMinWritableClaims() {
+        return getIntegerProperty(MIN_WRITABLE_CLAIMS, DEFAULT_MIN_WRITABLE_CLAIMS);
+    }
+
+    /**
+     * Returns the most resource claims per container that the content
+     * repository will keep open for appending content.
+     *
+     * @return the max number of writable claims per container
+     */
+    public int getMaxWritableClaims() {
+        return getIntegerProperty(MAX_WRITABLE_CLAIMS, DEFAULT_MAX_WRITABLE_CLAIMS);
     }
 
     public String getProperty(final String key, final String defaultValue) {
@@ -925,6 +1058,49 @@ public abstract class NiFiProperties {
         return getProperty(BORED_YIELD_DURATION, DEFAULT_BORED_YIELD_DURATION);
     }
 
+    /**
+     * @return whether Timer-Driven components should be parked while they have no FlowFiles to process and resumed when
+     *         FlowFiles are queued for them, rather than checking for new work every bored yield duration
+     */
+    public boolean isWorkAwareSchedulingEnabled() {
+        return Boolean.parseBoolean(getProperty(WORK_AWARE_SCHEDULING, DEFAULT_WORK_AWARE_SCHEDULING));
+    }
+
+    /**
+     * @return whether Timer-Driven components should be run by a work-stealing thread pool with a timer wheel rather than
+     *         by a scheduled thread pool with a single delay queue
+     */
+    public boolean isWorkStealingEngineEnabled() {
+        return Boolean.parseBoolean(getProperty(WORK_STEALING_ENGINE, DEFAULT_WORK_STEALING_ENGINE));
+    }
+
+    /**
+     * @return whether the framework should choose the run duration of Processors that support batching, rather than
+     *         using the run duration that is configured for each Processor
+     */
+    public boolean isAdaptiveRunDurationEnabled() {
+        return Boolean.parseBoolean(getProperty(ADAPTIVE_RUN_DURATION, DEFAULT_ADAPTIVE_RUN_DURATION));
+    }
+
+    public String getAdaptiveRunDurationMin() {
+        return getProperty(ADAPTIVE_RUN_DURATION_MIN, DEFAULT_ADAPTIVE_RUN_DURATION_MIN);
+    }
+
+    /**
+     * @return the longest run duration that the framework may choose, which is also the most latency that batching may add
+     */
+    public String getAdaptiveRunDurationMax() {
+        return getProperty(ADAPTIVE_RUN_DURATION_MAX, DEFAULT_ADAPTIVE_RUN_DURATION_MAX);
+    }
+
+    /**
+     * @return whether the time that Processors spend blocked on monitors and waiting on locks should be measured, which
+     *         requires thread contention monitoring to be enabled for the JVM
+     */
+    public boolean isLockWaitAccountingEnabled() {
+        return Boolean.parseBoolean(getProperty(LOCK_WAIT_ACCOUNTING, DEFAULT_LOCK_WAIT_ACCOUNTING));
+    }
+
     public File getStateManagementConfigFile() {
         return new File(getProperty(STATE_MANAGEMENT_CONFIG_FILE, DEFAULT_STATE_MANAGEMENT_CONFIG_FILE));
     }
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wali;
+
+/**
+ * <p>
+ * Cumulative statistics about the checkpoints performed by a Write-Ahead Log. A checkpoint
+ * blocks updates to the repository (the "stall") while the journals are rolled over, and again
+ * briefly while the updates made during the copy of the records are folded back in. Neither
+ * takes time in proportion to the number of records; the records are copied and the snapshot
+ * is written while updates continue.
+ * </p>
+ */
+public class CheckpointStatistics {
+
+    private final long checkpointCount;
+    private final long totalCheckpointNanos;
+    private final long lastCheckpointNanos;
+    private final long totalStallNanos;
+    private final long lastStallNanos;
+    private final long maxStallNanos;
+
+    public CheckpointStatistics(final long checkpointCount, final long totalCheckpointNanos, final long lastCheckpointNanos,
+        final long totalStallNanos, final long lastStallNanos, final long maxStallNanos) {
+        this.checkpointCount = checkpointCount;
+        this.totalCheckpointNanos = totalCheckpointNanos;
+        this.lastCheckpointNanos = lastCheckpointNanos;
+        this.totalStallNanos = totalStallNanos;
+        this.lastStallNanos = lastStallNanos;
+        this.maxStallNanos = maxStallNanos;
+    }
+
+    /**
+     * @return the number of checkpoints that have completed
+     */
+    public long getCheckpointCount() {
+        return checkpointCount;
+    }
+
+    /**
+     * @return the total number of nanoseconds spent performing checkpoints
+     */
+    public long getTotalCheckpointNanos() {
+        return totalCheckpointNanos;
+    }
+
+    /**
+     * @return the number of nanoseconds taken by the most recent checkpoint
+     */
+    public long getLastCheckpointNanos() {
+        return lastCheckpointNanos;
+    }
+
+    /**
+     * @return the total number of nanoseconds during which updates were blocked by checkpoints
+     */
+    public long getTotalStallNanos() {
+        return totalStallNanos;
+    }
+
+    /**
+     * @return the number of nanoseconds during which updates were blocked by the most recent checkpoint, including
+     * the time spent waiting for updates in progress to complete
+     */
+    public long getLastStallNanos() {
+        return lastStallNanos;
+    }
+
+    /**
+     * @return the largest number of nanoseconds during which updates were blocked by a single checkpoint
+     */
+    public long getMaxStallNanos() {
+        return maxStallNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "CheckpointStatistics[checkpointCount=" + checkpointCount + ", totalCheckpointNanos=" + totalCheckpointNanos
+            + ", lastCheckpointNanos=" + lastCheckpointNanos + ", totalStallNanos=" + totalStallNanos
+            + ", lastStallNanos=" + lastStallNanos + ", maxStallNanos=" + maxStallNanos + "]";
+    }
+}
@@ -31,6 +31,7 @@ import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -46,14 +47,22 @@ import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -72,14 +81,41 @@ import org.slf4j.LoggerFactory;
  * updates for a given Record at any one time.
  * </p>
  *
+ * <p>
+ * If a group commit window is configured, calls to
+ * {@link #update(Collection, boolean)} that request that the update be synced
+ * to disk are coalesced: the updates of all callers that arrive while another
+ * batch is being written, or within the window, are written to a single
+ * journal as one transaction and synced to disk once. Each caller returns only
+ * after the batch containing its update is durable.
+ * </p>
+ *
+ * <p>
+ * A checkpoint blocks updates only while it rolls over the journals. Rather
+ * than copying the records while holding the write lock, it freezes the
+ * current set of records and directs subsequent updates to a separate map of
+ * pending changes. Once the frozen records have been copied, the pending
+ * changes are folded back in, holding the write lock only for the changes
+ * that arrive while that is done.
+ * </p>
+ *
  * @param <T> type of record this WAL is for
  */
 public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepository<T> {
 
+    private static final int SNAPSHOT_VERSION_PARTITIONED = 2;
+    private static final String SNAPSHOT_PART_PREFIX = "snapshot-part-";
+    private static final Pattern SNAPSHOT_PART_PATTERN = Pattern.compile(SNAPSHOT_PART_PREFIX + "\\d+-\\d+");
+
     private final Path basePath;
     private final Path partialPath;
     private final Path snapshotPath;
+    private final List<Path> snapshotPartPaths;
+    private final int snapshotPartitionCount;
+    private final ExecutorService snapshotExecutor;
+    private long lastCheckpointId = 0L;
 
+    private final SerDeFactory<T> serdeFactory;
     private final SerDe<T> serde;
     private final SyncListener syncListener;
     private final FileChannel lockChannel;
@@ -88,7 +124,11 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
     private final Partition<T>[] partitions;
     private final AtomicLong partitionIndex = new AtomicLong(0L);
     private final ConcurrentMap<Object, T> recordMap = new ConcurrentHashMap<>();
-    private final Map<Object, T> unmodifiableRecordMap = Collections.unmodifiableMap(recordMap);
+    // While a checkpoint is copying recordMap, updates are recorded here instead of in recordMap, with
+    // REMOVED_RECORD standing for a record that has been removed. This field is set only while holding the write lock.
+    private volatile ConcurrentMap<Object, Object> pendingRecordChanges = null;
+    private static final Object REMOVED_RECORD = new Object();
+    private final Map<Object, T> unmodifiableRecordMap = new CurrentRecordMap();
     private final Set<String> externalLocations = new CopyOnWriteArraySet<>();
 
     private final Set<String> recoveredExternalLocations = new CopyOnWriteArraySet<>();
@@ -104,10 +144,45 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
     private volatile boolean updated = false;
     private volatile boolean recovered = false;
 
+    // group commit
+    private final long groupCommitWindowNanos;
+    private final Lock groupCommitLock = new ReentrantLock();
+    private final Queue<PendingUpdate<T>> pendingUpdates = new ConcurrentLinkedQueue<>();
+
+    // sync statistics
+    private final AtomicLong syncCount = new AtomicLong(0L);
+    private final AtomicLong syncNanos = new AtomicLong(0L);
+    private final AtomicLong batchCount = new AtomicLong(0L);
+    private final AtomicLong batchedUpdateCount = new AtomicLong(0L);
+    private final AtomicInteger maxBatchSize = new AtomicInteger(0);
+
+    // checkpoint statistics
+    private final AtomicLong checkpointCount = new AtomicLong(0L);
+    private final AtomicLong totalCheckpointNanos = new AtomicLong(0L);
+    private final AtomicLong totalCheckpointStallNanos = new AtomicLong(0L);
+    private volatile long lastCheckpointNanos = 0L;
+    private volatile long lastCheckpointStallNanos = 0L;
+    private volatile long maxCheckpointStallNanos = 0L;
+
     public MinimalLockingWriteAheadLog(final Path path, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener) throws IOException {
         this(new TreeSet<>(Collections.singleton(path)), partitionCount, serde, syncListener);
     }
 
+    /**
+     * @param path the path to use for the partitions/journals and the snapshot
+     * @param partitionCount the number of partitions/journals to use
+     * @param serde the serializer/deserializer for records
+     * @param syncListener the listener
+     * @param groupCommitWindow the amount of time that an update that must be synced to disk will wait for other
+     *            updates to join its batch, or a negative value to sync each update individually
+     * @param timeUnit the unit of the group commit window
+     * @throws IOException if unable to initialize due to IO issue
+     */
+    public MinimalLockingWriteAheadLog(final Path path, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener,
+        final long groupCommitWindow, final TimeUnit timeUnit) throws IOException {
+        this(new TreeSet<>(Collections.singleton(path)), partitionCount, serde, syncListener, groupCommitWindow, timeUnit);
+    }
+
     /**
      *
      * @param paths a sorted set of Paths to use for the partitions/journals and
@@ -120,12 +195,89 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
      * @param syncListener the listener
      * @throws IOException if unable to initialize due to IO issue
      */
-    @SuppressWarnings("unchecked")
     public MinimalLockingWriteAheadLog(final SortedSet<Path> paths, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener) throws IOException {
+        this(paths, partitionCount, serde, syncListener, -1L, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     *
+     * @param paths a sorted set of Paths to use for the partitions/journals and
+     * the snapshot. The snapshot will always be written to the first path
+     * specified.
+     * @param partitionCount the number of partitions/journals to use. For best
+     * performance, this should be close to the number of threads that are
+     * expected to update the repository simultaneously
+     * @param serde the serializer/deserializer for records
+     * @param syncListener the listener
+     * @param groupCommitWindow the amount of time that an update that must be
+     * synced to disk will wait for other updates to join its batch. A value of
+     * 0 coalesces only those updates that arrive while another batch is being
+     * written. A negative value disables group commit, so that each update is
+     * synced individually
+     * @param timeUnit the unit of the group commit window
+     * @throws IOException if unable to initialize due to IO issue
+     */
+    public MinimalLockingWriteAheadLog(final SortedSet<Path> paths, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener,
+        final long groupCommitWindow, final TimeUnit timeUnit) throws IOException {
+        this(paths, partitionCount, serde, syncListener, groupCommitWindow, timeUnit, 1);
+    }
+
+    /**
+     *
+     * @param paths a sorted set of Paths to use for the partitions/journals and
+     * the snapshot. The snapshot will always be written to the first path
+     * specified.
+     * @param partitionCount the number of partitions/journals to use. For best
+     * performance, this should be close to the number of threads that are
+     * expected to update the repository simultaneously
+     * @param serde the serializer/deserializer for records
+     * @param syncListener the listener
+     * @param groupCommitWindow the amount of time that an update that must be
+     * synced to disk will wait for other updates to join its batch, or a
+     * negative value to disable group commit
+     * @param timeUnit the unit of the group commit window
+     * @param snapshotPartitionCount the number of files that the records of a
+     * checkpoint are split across. The files are written in parallel and
+     * spread across the given paths. A value of 1 writes all records to the
+     * single snapshot file
+     * @throws IOException if unable to initialize due to IO issue
+     */
+    public MinimalLockingWriteAheadLog(final SortedSet<Path> paths, final int partitionCount, final SerDe<T> serde, final SyncListener syncListener,
+        final long groupCommitWindow, final TimeUnit timeUnit, final int snapshotPartitionCount) throws IOException {
+        this(paths, partitionCount, new SingletonSerDeFactory<>(requireNonNull(serde)), syncListener, groupCommitWindow, timeUnit, snapshotPartitionCount);
+    }
+
+    /**
+     *
+     * @param paths a sorted set of Paths to use for the partitions/journals and
+     * the snapshot. The snapshot will always be written to the first path
+     * specified.
+     * @param partitionCount the number of partitions/journals to use. For best
+     * performance, this should be close to the number of threads that are
+     * expected to update the repository simultaneously
+     * @param serdeFactory the factory that creates the serializer/deserializer
+     * for each journal and snapshot file
+     * @param syncListener the listener
+     * @param groupCommitWindow the amount of time that an update that must be
+     * synced to disk will wait for other updates to join its batch, or a
+     * negative value to disable group commit
+     * @param timeUnit the unit of the group commit window
+     * @param snapshotPartitionCount the number of files that the records of a
+     * checkpoint are split across. The files are written in parallel and
+     * spread across the given paths. A value of 1 writes all records to the
+     * single snapshot file
+     * @throws IOException if unable to initialize due to IO issue
+     */
+    @SuppressWarnings("unchecked")
+    public MinimalLockingWriteAheadLog(final SortedSet<Path> paths, final int partitionCount, final SerDeFactory<T> serdeFactory, final SyncListener syncListener,
+        final long groupCommitWindow, final TimeUnit timeUnit, final int snapshotPartitionCount) throws IOException {
         this.syncListener = syncListener;
+        this.snapshotPartitionCount = Math.max(1, snapshotPartitionCount);
+        this.snapshotPartPaths = new ArrayList<>(paths);
+        this.groupCommitWindowNanos = groupCommitWindow < 0 ? -1L : timeUnit.toNanos(groupCommitWindow);
 
         requireNonNull(paths);
-        requireNonNull(serde);
+        requireNonNull(serdeFactory);
 
         if (paths.isEmpty()) {
             throw new IllegalArgumentException("Paths must be non-empty");
@@ -159,20 +311,22 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                         existingPartitions++;
                     }
                 }
-
-                if (existingPartitions != 0 && existingPartitions != partitionCount) {
-                    logger.warn("Constructing MinimalLockingWriteAheadLog with partitionCount={}, but the repository currently has "
-                            + "{} partitions; ignoring argument and proceeding with {} partitions",
-                            new Object[]{partitionCount, existingPartitions, existingPartitions});
-                    resolvedPartitionCount = existingPartitions;
-                }
             }
         }
 
+        // the partitions are spread across all of the paths, so only compare once all paths have been examined
+        if (existingPartitions != 0 && existingPartitions != partitionCount) {
+            logger.warn("Constructing MinimalLockingWriteAheadLog with partitionCount={}, but the repository currently has "
+                    + "{} partitions; ignoring argument and proceeding with {} partitions",
+                    new Object[]{partitionCount, existingPartitions, existingPartitions});
+            resolvedPartitionCount = existingPartitions;
+        }
+
         this.basePath = paths.iterator().next();
         this.partialPath = basePath.resolve("snapshot.partial");
         this.snapshotPath = basePath.resolve("snapshot");
-        this.serde = serde;
+        this.serdeFactory = serdeFactory;
+        this.serde = serdeFactory.createSerDe();
 
         final Path lockPath = basePath.resolve("wali.lock");
         lockChannel = new FileOutputStream(lockPath.toFile()).getChannel();
@@ -189,7 +343,22 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
 
             final Path partitionBasePath = pathIterator.next();
 
-            partitions[i] = new Partition<>(partitionBasePath.resolve("partition-" + i), serde, i, getVersion());
+            partitions[i] = new Partition<>(partitionBasePath.resolve("partition-" + i), serdeFactory, i, getVersion());
+        }
+
+        if (this.snapshotPartitionCount > 1) {
+            snapshotExecutor = Executors.newFixedThreadPool(this.snapshotPartitionCount, new ThreadFactory() {
+                private final AtomicInteger threadCounter = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread thread = new Thread(r, "Write-Ahead Log Checkpoint Thread-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        } else {
+            snapshotExecutor = null;
         }
     }
 
@@ -204,6 +373,120 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         }
 
         updated = true;
+        if (forceSync && groupCommitWindowNanos >= 0) {
+            return groupCommit(records);
+        }
+
+        return write(records, forceSync);
+    }
+
+    /**
+     * Adds the given records to the next group commit batch and waits until that batch has been written and synced.
+     * The first caller to obtain the group commit lock becomes responsible for writing every update that is pending
+     * at that time; callers whose update was written by another thread simply return once they obtain the lock.
+     */
+    private int groupCommit(final Collection<T> records) throws IOException {
+        final PendingUpdate<T> pendingUpdate = new PendingUpdate<>(records);
+        pendingUpdates.offer(pendingUpdate);
+
+        groupCommitLock.lock();
+        try {
+            if (!pendingUpdate.isComplete()) {
+                if (groupCommitWindowNanos > 0) {
+                    // give other threads the opportunity to join this batch
+                    LockSupport.parkNanos(groupCommitWindowNanos);
+                }
+
+                final List<PendingUpdate<T>> batch = new ArrayList<>();
+                final List<T> batchRecords = new ArrayList<>();
+                PendingUpdate<T> pending;
+                while ((pending = pendingUpdates.poll()) != null) {
+                    batch.add(pending);
+                    batchRecords.addAll(pending.getRecords());
+                }
+
+                try {
+                    final int partitionIndex = write(batchRecords, true);
+
+                    batchCount.incrementAndGet();
+                    batchedUpdateCount.addAndGet(batch.size());
+                    int currentMax;
+                    while ((currentMax = maxBatchSize.get()) < batch.size()) {
+                        if (maxBatchSize.compareAndSet(currentMax, batch.size())) {
+                            break;
+                        }
+                    }
+
+                    for (final PendingUpdate<T> completed : batch) {
+                        completed.complete(partitionIndex, null);
+                    }
+                } catch (final Throwable t) {
+                    for (final PendingUpdate<T> failed : batch) {
+                        failed.complete(-1, t);
+                    }
+                }
+            }
+        } finally {
+            groupCommitLock.unlock();
+        }
+
+        return pendingUpdate.getPartitionIndex();
+    }
+
+    private void putRecord(final Object recordIdentifier, final T record) {
+        final ConcurrentMap<Object, Object> changes = pendingRecordChanges;
+        if (changes == null) {
+            recordMap.put(recordIdentifier, record);
+        } else {
+            changes.put(recordIdentifier, record);
+        }
+    }
+
+    private void removeRecord(final Object recordIdentifier) {
+        final ConcurrentMap<Object, Object> changes = pendingRecordChanges;
+        if (changes == null) {
+            recordMap.remove(recordIdentifier);
+        } else {
+            changes.put(recordIdentifier, REMOVED_RECORD);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T getRecord(final Object recordIdentifier) {
+        final ConcurrentMap<Object, Object> changes = pendingRecordChanges;
+        if (changes != null) {
+            final Object change = changes.get(recordIdentifier);
+            if (change != null) {
+                return change == REMOVED_RECORD ? null : (T) change;
+            }
+        }
+
+        // a pending change is applied to recordMap before it is removed from the pending changes, so it cannot be missed here
+        return recordMap.get(recordIdentifier);
+    }
+
+    /**
+     * Applies the given pending changes to the record map. Each change is removed once it has been applied,
+     * unless it has been replaced by a newer change in the meantime.
+     *
+     * @param changes the changes to apply
+     */
+    @SuppressWarnings("unchecked")
+    private void applyRecordChanges(final ConcurrentMap<Object, Object> changes) {
+        for (final Map.Entry<Object, Object> entry : changes.entrySet()) {
+            final Object recordIdentifier = entry.getKey();
+            final Object change = entry.getValue();
+            if (change == REMOVED_RECORD) {
+                recordMap.remove(recordIdentifier);
+            } else {
+                recordMap.put(recordIdentifier, (T) change);
+            }
+
+            changes.remove(recordIdentifier, change);
+        }
+    }
+
+    private int write(final Collection<T> records, final boolean forceSync) throws IOException {
         readLock.lock();
         try {
             while (true) {
@@ -227,7 +510,11 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                         }
 
                         try {
-                            partition.update(records, transactionId, unmodifiableRecordMap, forceSync);
+                            final long nanosSyncing = partition.update(records, transactionId, unmodifiableRecordMap, forceSync);
+                            if (forceSync) {
+                                syncCount.incrementAndGet();
+                                syncNanos.addAndGet(nanosSyncing);
+                            }
                         } catch (final Throwable t) {
                             partition.blackList();
                             numberBlackListedPartitions.incrementAndGet();
@@ -246,7 +533,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                         final Object recordIdentifier = serde.getRecordIdentifier(record);
 
                         if (updateType == UpdateType.DELETE) {
-                            recordMap.remove(recordIdentifier);
+                            removeRecord(recordIdentifier);
                         } else if (updateType == UpdateType.SWAP_OUT) {
                             final String newLocation = serde.getLocation(record);
                             if (newLocation == null) {
@@ -254,7 +541,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                                         + "no indicator of where the Record is to be Swapped Out to; these records may be "
                                         + "lost when the repository is restored!");
                             } else {
-                                recordMap.remove(recordIdentifier);
+                                removeRecord(recordIdentifier);
                                 this.externalLocations.add(newLocation);
                             }
                         } else if (updateType == UpdateType.SWAP_IN) {
@@ -266,9 +553,9 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                             } else {
                                 externalLocations.remove(newLocation);
                             }
-                            recordMap.put(recordIdentifier, record);
+                            putRecord(recordIdentifier, record);
                         } else {
-                            recordMap.put(recordIdentifier, record);
+                            putRecord(recordIdentifier, record);
                         }
                     }
 
@@ -355,7 +642,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                         + waliImplementationClass + " class; cannot restore using " + getClass().getName());
             }
 
-            if (waliImplementationVersion > getVersion()) {
+            if (waliImplementationVersion > SNAPSHOT_VERSION_PARTITIONED) {
                 throw new IOException("Write-Ahead Log located at " + snapshotPath + " was written using version "
                         + waliImplementationVersion + " of the " + waliImplementationClass + " class; cannot restore using Version " + getVersion());
             }
@@ -363,22 +650,21 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             dataIn.readUTF(); // ignore serde class name for now
             final int serdeVersion = dataIn.readInt();
             final long maxTransactionId = dataIn.readLong();
-            final int numRecords = dataIn.readInt();
 
-            for (int i = 0; i < numRecords; i++) {
-                final T record = serde.deserializeRecord(dataIn, serdeVersion);
-                if (record == null) {
-                    throw new EOFException();
-                }
-
-                final UpdateType updateType = serde.getUpdateType(record);
-                if (updateType == UpdateType.DELETE) {
-                    logger.warn("While recovering from snapshot, found record with type 'DELETE'; this record will not be restored");
-                    continue;
+            final int numRecords;
+            if (waliImplementationVersion >= SNAPSHOT_VERSION_PARTITIONED) {
+                // records are split across the snapshot part files that are named in the snapshot
+                final int numParts = dataIn.readInt();
+                int recordCount = 0;
+                for (int i = 0; i < numParts; i++) {
+                    final Path partPath = findSnapshotPart(dataIn.readUTF());
+                    try (final DataInputStream partIn = new DataInputStream(new BufferedInputStream(Files.newInputStream(partPath, StandardOpenOption.READ)))) {
+                        recordCount += recoverSnapshotRecords(partIn, serdeFactory.createSerDe(), serdeVersion, recordMap);
+                    }
                 }
-
-                logger.trace("Recovered from snapshot: {}", record);
-                recordMap.put(serde.getRecordIdentifier(record), record);
+                numRecords = recordCount;
+            } else {
+                numRecords = recoverSnapshotRecords(dataIn, serdeFactory.createSerDe(), serdeVersion, recordMap);
             }
 
             final int numSwapRecords = dataIn.readInt();
@@ -394,6 +680,40 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         }
     }
 
+    private int recoverSnapshotRecords(final DataInputStream dataIn, final SerDe<T> snapshotSerde, final int serdeVersion, final Map<Object, T> recordMap) throws IOException {
+        final int numRecords = dataIn.readInt();
+
+        for (int i = 0; i < numRecords; i++) {
+            final T record = snapshotSerde.deserializeRecord(dataIn, serdeVersion);
+            if (record == null) {
+                throw new EOFException();
+            }
+
+            final UpdateType updateType = serde.getUpdateType(record);
+            if (updateType == UpdateType.DELETE) {
+                logger.warn("While recovering from snapshot, found record with type 'DELETE'; this record will not be restored");
+                continue;
+            }
+
+            logger.trace("Recovered from snapshot: {}", record);
+            recordMap.put(serde.getRecordIdentifier(record), record);
+        }
+
+        return numRecords;
+    }
+
+    private Path findSnapshotPart(final String filename) throws IOException {
+        for (final Path path : snapshotPartPaths) {
+            final Path partPath = path.resolve(filename);
+            if (Files.exists(partPath)) {
+                return partPath;
+            }
+        }
+
+        throw new IOException("Snapshot " + snapshotPath + " references snapshot file " + filename + " but that file could not be found in any of "
+                + snapshotPartPaths + "; cannot restore the Write-Ahead Log");
+    }
+
     /**
      * Recovers records from the edit logs via the Partitions. Returns a boolean
      * if recovery of a Partition requires the Write-Ahead Log be checkpointed
@@ -479,7 +799,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
 
     @Override
     public synchronized int checkpoint() throws IOException {
-        final Set<T> records;
+        final List<T> records;
         final Set<String> swapLocations;
         final long maxTransactionId;
 
@@ -488,25 +808,33 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         FileOutputStream fileOut = null;
         DataOutputStream dataOut = null;
 
+        final Set<String> snapshotPartFilenames = new HashSet<>();
         long stopTheWorldNanos = -1L;
         long stopTheWorldStart = -1L;
+        long stallNanos = -1L;
+        ConcurrentMap<Object, Object> changes = null;
         try {
+            // Once we request the write lock, no further updates can obtain the read lock, so updates are
+            // stalled from this point until the write lock is released.
+            final long stallStart = System.nanoTime();
             writeLock.lock();
             try {
                 stopTheWorldStart = System.nanoTime();
-                // stop the world while we make a copy of the records that must
+                // stop the world while we freeze the records that must
                 // be checkpointed and rollover the partitions.
-                // We copy the records because serializing them is potentially
-                // very expensive, especially when we have hundreds
-                // of thousands or even millions of them. We don't want to
+                // Rather than copying the records here, which takes time in
+                // proportion to the number of records, we direct updates to
+                // a separate map of pending changes, so that the record map
+                // does not change until we have copied it. Serializing the
+                // records is potentially very expensive, and we don't want to
                 // prevent WALI from being used during this time.
 
-                // So the design is to copy all of the records, determine the
+                // So the design is to freeze the records, determine the
                 // last transaction ID that the records represent,
                 // and roll over the partitions to new write-ahead logs.
-                // Then, outside of the write lock, we will serialize the data
+                // Then, outside of the write lock, we will copy the records,
+                // fold the pending changes back in, serialize the data
                 // to disk, and then remove the old Partition data.
-                records = new HashSet<>(recordMap.values());
                 maxTransactionId = transactionIdGenerator.get() - 1;
 
                 swapLocations = new HashSet<>(externalLocations);
@@ -525,25 +853,48 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                 if (syncListener != null) {
                     syncListener.onGlobalSync();
                 }
+
+                changes = new ConcurrentHashMap<>();
+                pendingRecordChanges = changes;
             } finally {
                 writeLock.unlock();
+                stallNanos = System.nanoTime() - stallStart;
             }
 
             stopTheWorldNanos = System.nanoTime() - stopTheWorldStart;
 
+            try {
+                records = new ArrayList<>(recordMap.values());
+            } finally {
+                stallNanos += resumeRecordUpdates(changes);
+            }
+
+            // if configured to do so, split the records across multiple files that are written in parallel
+            if (snapshotPartitionCount > 1) {
+                snapshotPartFilenames.addAll(writeSnapshotParts(records));
+            }
+
             // perform checkpoint, writing to .partial file
             fileOut = new FileOutputStream(partialPath.toFile());
-            dataOut = new DataOutputStream(fileOut);
+            dataOut = new DataOutputStream(new BufferedOutputStream(fileOut));
             dataOut.writeUTF(MinimalLockingWriteAheadLog.class.getName());
-            dataOut.writeInt(getVersion());
-            dataOut.writeUTF(serde.getClass().getName());
-            dataOut.writeInt(serde.getVersion());
+            dataOut.writeInt(snapshotPartitionCount > 1 ? SNAPSHOT_VERSION_PARTITIONED : getVersion());
+            final SerDe<T> snapshotSerde = serdeFactory.createSerDe();
+            dataOut.writeUTF(snapshotSerde.getClass().getName());
+            dataOut.writeInt(snapshotSerde.getVersion());
             dataOut.writeLong(maxTransactionId);
-            dataOut.writeInt(records.size());
 
-            for (final T record : records) {
-                logger.trace("Checkpointing {}", record);
-                serde.serializeRecord(record, dataOut);
+            if (snapshotPartitionCount > 1) {
+                dataOut.writeInt(snapshotPartFilenames.size());
+                for (final String partFilename : snapshotPartFilenames) {
+                    dataOut.writeUTF(partFilename);
+                }
+            } else {
+                dataOut.writeInt(records.size());
+                for (final T record : records) {
+                    logger.trace("Checkpointing {}", record);
+                    snapshotSerde.serializeRecord(record, dataOut);
+                }
             }
 
             dataOut.writeInt(swapLocations.size());
@@ -567,6 +918,9 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         Files.deleteIfExists(snapshotPath);
         Files.move(partialPath, snapshotPath);
 
+        // remove any snapshot part files that are no longer referenced by the snapshot
+        deleteSnapshotPartsExcept(snapshotPartFilenames);
+
         // clear all of the edit logs
         final long partitionStart = System.nanoTime();
         for (final Partition<T> partition : partitions) {
@@ -588,13 +942,137 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         final long partitionMillis = TimeUnit.MILLISECONDS.convert(partitionEnd - partitionStart, TimeUnit.NANOSECONDS);
         final long stopTheWorldMillis = TimeUnit.NANOSECONDS.toMillis(stopTheWorldNanos);
 
+        checkpointCount.incrementAndGet();
+        totalCheckpointNanos.addAndGet(endNanos - startNanos);
+        totalCheckpointStallNanos.addAndGet(stallNanos);
+        lastCheckpointNanos = endNanos - startNanos;
+        lastCheckpointStallNanos = stallNanos;
+        maxCheckpointStallNanos = Math.max(maxCheckpointStallNanos, stallNanos);
+
         logger.info("{} checkpointed with {} Records and {} Swap Files in {} milliseconds (Stop-the-world "
-                + "time = {} milliseconds, Clear Edit Logs time = {} millis), max Transaction ID {}",
-                new Object[]{this, records.size(), swapLocations.size(), millis, stopTheWorldMillis, partitionMillis, maxTransactionId});
+                + "time = {} milliseconds, Updates stalled for {} milliseconds, Clear Edit Logs time = {} millis), max Transaction ID {}",
+                new Object[]{this, records.size(), swapLocations.size(), millis, stopTheWorldMillis, TimeUnit.NANOSECONDS.toMillis(stallNanos),
+                    partitionMillis, maxTransactionId});
 
         return records.size();
     }
 
+    /**
+     * Folds the given pending changes, which were made while a checkpoint copied the records, back into the
+     * record map, so that updates are once again made to the record map directly. Most of the changes are
+     * applied while updates continue; the write lock is held only to apply those that arrive in the meantime.
+     *
+     * @param changes the pending changes
+     * @return the number of nanoseconds during which updates were blocked
+     */
+    private long resumeRecordUpdates(final ConcurrentMap<Object, Object> changes) {
+        applyRecordChanges(changes);
+
+        final long stallStart = System.nanoTime();
+        writeLock.lock();
+        try {
+            applyRecordChanges(changes);
+            pendingRecordChanges = null;
+        } finally {
+            writeLock.unlock();
+        }
+
+        return System.nanoTime() - stallStart;
+    }
+
+    /**
+     * Splits the given records into {@link #snapshotPartitionCount} files, spread across the paths of this
+     * Write-Ahead Log, and writes the files in parallel. Each file is synced to disk before this method returns.
+     *
+     * @param records the records to write
+     * @return the names of the files that were written
+     * @throws IOException if unable to write any of the files
+     */
+    private List<String> writeSnapshotParts(final List<T> records) throws IOException {
+        final long checkpointId = Math.max(System.currentTimeMillis(), lastCheckpointId + 1);
+        lastCheckpointId = checkpointId;
+
+        final int recordsPerPart = (records.size() + snapshotPartitionCount - 1) / snapshotPartitionCount;
+        final List<String> filenames = new ArrayList<>(snapshotPartitionCount);
+        final List<Future<?>> futures = new ArrayList<>(snapshotPartitionCount);
+
+        try {
+            for (int i = 0; i < snapshotPartitionCount; i++) {
+                final String filename = SNAPSHOT_PART_PREFIX + checkpointId + "-" + i;
+                final Path partPath = snapshotPartPaths.get(i % snapshotPartPaths.size()).resolve(filename);
+                final List<T> partRecords = records.subList(Math.min(records.size(), i * recordsPerPart), Math.min(records.size(), (i + 1) * recordsPerPart));
+                filenames.add(filename);
+
+                futures.add(snapshotExecutor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        final SerDe<T> partSerde = serdeFactory.createSerDe();
+                        try (final FileOutputStream partOut = new FileOutputStream(partPath.toFile())) {
+                            final DataOutputStream partDataOut = new DataOutputStream(new BufferedOutputStream(partOut));
+                            partDataOut.writeInt(partRecords.size());
+                            for (final T record : partRecords) {
+                                logger.trace("Checkpointing {}", record);
+                                partSerde.serializeRecord(record, partDataOut);
+                            }
+
+                            partDataOut.flush();
+                            partOut.getFD().sync();
+                        }
+
+                        return null;
+                    }
+                }));
+            }
+
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for snapshot files to be written", ie);
+                } catch (final ExecutionException ee) {
+                    final Throwable cause = ee.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException("Failed to write snapshot file", cause);
+                }
+            }
+        } finally {
+            // do not leave a part file being written if another part failed
+            for (final Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        return filenames;
+    }
+
+    private void deleteSnapshotPartsExcept(final Set<String> filenamesToKeep) {
+        for (final Path path : snapshotPartPaths) {
+            final File[] files = path.toFile().listFiles();
+            if (files == null) {
+                continue;
+            }
+
+            for (final File file : files) {
+                if (SNAPSHOT_PART_PATTERN.matcher(file.getName()).matches() && !filenamesToKeep.contains(file.getName())) {
+                    if (!file.delete()) {
+                        logger.warn("Failed to delete unused snapshot file {}", file);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return statistics about the checkpoints that have been performed since this Write-Ahead Log was created
+     */
+    public CheckpointStatistics getCheckpointStatistics() {
+        return new CheckpointStatistics(checkpointCount.get(), totalCheckpointNanos.get(), lastCheckpointNanos,
+                totalCheckpointStallNanos.get(), lastCheckpointStallNanos, maxCheckpointStallNanos);
+    }
+
     @Override
     public void shutdown() throws IOException {
         writeLock.lock();
@@ -604,6 +1082,9 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             }
         } finally {
             writeLock.unlock();
+            if (snapshotExecutor != null) {
+                snapshotExecutor.shutdownNow();
+            }
             lockChannel.close();
         }
     }
@@ -612,6 +1093,115 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         return 1;
     }
 
+    /**
+     * @return statistics about the updates that have been synced to disk since this Write-Ahead Log was created
+     */
+    public SyncStatistics getSyncStatistics() {
+        return new SyncStatistics(syncCount.get(), syncNanos.get(), batchCount.get(), batchedUpdateCount.get(), maxBatchSize.get());
+    }
+
+    /**
+     * A read-only view of the current records, including any changes that are pending while a checkpoint is
+     * copying the records. This is what the partitions use to look up the previous state of an updated record.
+     */
+    private class CurrentRecordMap extends AbstractMap<Object, T> {
+        @Override
+        public T get(final Object key) {
+            return getRecord(key);
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return getRecord(key) != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<Map.Entry<Object, T>> entrySet() {
+            final ConcurrentMap<Object, Object> changes = pendingRecordChanges;
+            if (changes == null) {
+                return Collections.unmodifiableMap(recordMap).entrySet();
+            }
+
+            final Map<Object, T> records = new HashMap<>(recordMap);
+            for (final Map.Entry<Object, Object> entry : changes.entrySet()) {
+                if (entry.getValue() == REMOVED_RECORD) {
+                    records.remove(entry.getKey());
+                } else {
+                    records.put(entry.getKey(), (T) entry.getValue());
+                }
+            }
+            return Collections.unmodifiableMap(records).entrySet();
+        }
+    }
+
+    /**
+     * A SerDeFactory that always provides the same SerDe. This is used when a single SerDe is given to the
+     * Write-Ahead Log, in which case the SerDe must not maintain any state that is specific to a single file.
+     *
+     * @param <S> type of record
+     */
+    private static class SingletonSerDeFactory<S> implements SerDeFactory<S> {
+        private final SerDe<S> serde;
+
+        public SingletonSerDeFactory(final SerDe<S> serde) {
+            this.serde = serde;
+        }
+
+        @Override
+        public SerDe<S> createSerDe() {
+            return serde;
+        }
+    }
+
+    /**
+     * An update that is waiting to be written as part of a group commit batch
+     *
+     * @param <S> type of record being updated
+     */
+    private static class PendingUpdate<S> {
+        private final Collection<S> records;
+        private volatile boolean complete = false;
+        private volatile int partitionIndex = -1;
+        private volatile Throwable failure;
+
+        public PendingUpdate(final Collection<S> records) {
+            this.records = records;
+        }
+
+        public Collection<S> getRecords() {
+            return records;
+        }
+
+        public boolean isComplete() {
+            return complete;
+        }
+
+        public void complete(final int partitionIndex, final Throwable failure) {
+            this.partitionIndex = partitionIndex;
+            this.failure = failure;
+            this.complete = true;
+        }
+
+        public int getPartitionIndex() throws IOException {
+            final Throwable t = failure;
+            if (t == null) {
+                return partitionIndex;
+            }
+
+            if (t instanceof IOException) {
+                throw new IOException("Failed to write batch of updates to Write-Ahead Log", t);
+            }
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            }
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw new IOException(t);
+        }
+    }
+
     /**
      * Represents a partition of this repository, which maps directly to a
      * .journal file.
@@ -627,7 +1217,9 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
         public static final String JOURNAL_EXTENSION = ".journal";
         private static final Pattern JOURNAL_FILENAME_PATTERN = Pattern.compile("\\d+\\.journal");
 
-        private final SerDe<S> serde;
+        private final SerDeFactory<S> serdeFactory;
+        private SerDe<S> serde;
+        private SerDe<S> recoverySerde;
 
         private final Path editDirectory;
         private final int writeAheadLogVersion;
@@ -650,9 +1242,10 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
 
         private final Queue<Path> recoveryFiles;
 
-        public Partition(final Path path, final SerDe<S> serde, final int partitionIndex, final int writeAheadLogVersion) throws IOException {
+        public Partition(final Path path, final SerDeFactory<S> serdeFactory, final int partitionIndex, final int writeAheadLogVersion) throws IOException {
             this.editDirectory = path;
-            this.serde = serde;
+            this.serdeFactory = serdeFactory;
+            this.serde = serdeFactory.createSerDe();
 
             final File file = path.toFile();
             if (!file.exists() && !file.mkdirs()) {
@@ -765,6 +1358,8 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                 final Path editPath = getNewEditPath();
                 final FileOutputStream fos = new FileOutputStream(editPath.toFile());
                 try {
+                    // each journal gets its own SerDe so that any state kept by the SerDe is scoped to that journal
+                    serde = serdeFactory.createSerDe();
                     final DataOutputStream outStream = new DataOutputStream(new BufferedOutputStream(fos));
                     outStream.writeUTF(MinimalLockingWriteAheadLog.class.getName());
                     outStream.writeInt(writeAheadLogVersion);
@@ -900,7 +1495,10 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             return true;
         }
 
-        public void update(final Collection<S> records, final long transactionId, final Map<Object, S> recordMap, final boolean forceSync)
+        /**
+         * @return the number of nanoseconds spent syncing the journal to disk, or 0 if the journal was not synced
+         */
+        public long update(final Collection<S> records, final long transactionId, final Map<Object, S> recordMap, final boolean forceSync)
                 throws IOException {
             if (this.closed) {
                 throw new IllegalStateException("Partition is closed");
@@ -926,8 +1524,12 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             out.flush();
 
             if (forceSync) {
+                final long syncStart = System.nanoTime();
                 fileOut.getFD().sync();
+                return System.nanoTime() - syncStart;
             }
+
+            return 0L;
         }
 
         private DataInputStream createDataInputStream(final Path path) throws IOException {
@@ -962,6 +1564,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
                     @SuppressWarnings("unused")
                     final String serdeClassName = recoveryIn.readUTF();
                     this.recoveryVersion = recoveryIn.readInt();
+                    this.recoverySerde = serdeFactory.createSerDe();
 
                     break;
                 }
@@ -1010,6 +1613,8 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
             final Path newEditPath = getNewEditPath();
 
             final FileOutputStream fos = new FileOutputStream(newEditPath.toFile());
+            serde = serdeFactory.createSerDe();
+            recoverySerde = null;
             final DataOutputStream outStream = new DataOutputStream(new BufferedOutputStream(fos));
             outStream.writeUTF(MinimalLockingWriteAheadLog.class.getName());
             outStream.writeInt(writeAheadLogVersion);
@@ -1025,7 +1630,7 @@ public final class MinimalLockingWriteAheadLog<T> implements WriteAheadRepositor
 
             int transactionFlag;
             do {
-                final S record = serde.deserializeEdit(recoveryIn, currentRecordMap, recoveryVersion);
+                final S record = recoverySerde.deserializeEdit(recoveryIn, currentRecordMap, recoveryVersion);
                 if (logger.isDebugEnabled()) {
                     logger.debug("{} Recovering Transaction {}: {}", new Object[] { this, maxTransactionId.get(), record });
                 }
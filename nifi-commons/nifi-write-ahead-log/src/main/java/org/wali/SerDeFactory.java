@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wali;
+
+/**
+ * <p>
+ * Creates the {@link SerDe} instances that are used by a Write-Ahead Log.
+ * </p>
+ *
+ * <p>
+ * A new SerDe is created for each journal and for each snapshot file that is
+ * written or read, and a SerDe is never used by more than one thread at a time
+ * to read or write records. This allows a SerDe to maintain state that is
+ * scoped to a single file, such as a table of strings that have already been
+ * written to that file, so that repeated values need to be written only once.
+ * The SerDe used to obtain record identifiers, update types, and locations,
+ * however, may be called concurrently.
+ * </p>
+ *
+ * @param <T> the type of record
+ */
+public interface SerDeFactory<T> {
+
+    /**
+     * @return a new SerDe
+     */
+    SerDe<T> createSerDe();
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wali;
+
+/**
+ * <p>
+ * Cumulative statistics about the updates of a Write-Ahead Log that were synchronized to disk.
+ * When group commit is enabled, the updates of many concurrent callers are written as a single
+ * batch and synchronized to disk once; the batch counts reflect how effective that coalescing is.
+ * </p>
+ */
+public class SyncStatistics {
+
+    private final long syncCount;
+    private final long syncNanos;
+    private final long batchCount;
+    private final long batchedUpdateCount;
+    private final int maxBatchSize;
+
+    public SyncStatistics(final long syncCount, final long syncNanos, final long batchCount, final long batchedUpdateCount, final int maxBatchSize) {
+        this.syncCount = syncCount;
+        this.syncNanos = syncNanos;
+        this.batchCount = batchCount;
+        this.batchedUpdateCount = batchedUpdateCount;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @return the number of times that a journal has been synchronized to disk
+     */
+    public long getSyncCount() {
+        return syncCount;
+    }
+
+    /**
+     * @return the total number of nanoseconds spent synchronizing journals to disk
+     */
+    public long getSyncNanos() {
+        return syncNanos;
+    }
+
+    /**
+     * @return the average number of nanoseconds taken to synchronize a journal to disk, or 0 if no sync has occurred
+     */
+    public long getAverageSyncNanos() {
+        return syncCount == 0 ? 0L : syncNanos / syncCount;
+    }
+
+    /**
+     * @return the number of group commit batches that have been written
+     */
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * @return the total number of calls to update that were written as part of a group commit batch
+     */
+    public long getBatchedUpdateCount() {
+        return batchedUpdateCount;
+    }
+
+    /**
+     * @return the average number of calls to update that were coalesced into a single group commit batch, or 0 if no batch has been written
+     */
+    public double getAverageBatchSize() {
+        return batchCount == 0 ? 0D : (double) batchedUpdateCount / batchCount;
+    }
+
+    /**
+     * @return the largest number of calls to update that have been coalesced into a single group commit batch
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    @Override
+    public String toString() {
+        return "SyncStatistics[syncCount=" + syncCount + ", syncNanos=" + syncNanos + ", batchCount=" + batchCount
+            + ", batchedUpdateCount=" + batchedUpdateCount + ", maxBatchSize=" + maxBatchSize + "]";
+    }
+}
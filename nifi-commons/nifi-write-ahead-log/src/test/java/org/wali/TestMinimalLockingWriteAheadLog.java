@@ -34,6 +34,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -612,6 +613,211 @@ public class TestMinimalLockingWriteAheadLog {
     }
 
 
+    @Test
+    public void testGroupCommit() throws IOException, InterruptedException {
+        final Path path = Paths.get("target/minimal-locking-repo-group-commit");
+        deleteRecursively(path.toFile());
+        Files.createDirectories(path);
+
+        final DummyRecordSerde serde = new DummyRecordSerde();
+        final MinimalLockingWriteAheadLog<DummyRecord> repo = new MinimalLockingWriteAheadLog<>(path, 4, serde, null, 1L, TimeUnit.MILLISECONDS);
+        assertTrue(repo.recoverRecords().isEmpty());
+
+        final int numThreads = 8;
+        final int updatesPerThread = 50;
+        final List<Thread> threads = new ArrayList<>();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int i = 0; i < numThreads; i++) {
+            final int threadIndex = i;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < updatesPerThread; j++) {
+                            final DummyRecord record = new DummyRecord(threadIndex + "-" + j, UpdateType.CREATE);
+                            record.setProperty("A", "B");
+                            repo.update(Collections.singleton(record), true);
+                        }
+                    } catch (final Throwable t) {
+                        failure.set(t);
+                    }
+                }
+            }));
+        }
+
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError("Failed to update repository", failure.get());
+        }
+
+        final SyncStatistics stats = repo.getSyncStatistics();
+        assertEquals(numThreads * updatesPerThread, stats.getBatchedUpdateCount());
+        assertEquals(stats.getBatchCount(), stats.getSyncCount());
+        assertTrue(stats.getBatchCount() <= numThreads * updatesPerThread);
+        assertTrue(stats.getMaxBatchSize() >= 1);
+        repo.shutdown();
+
+        final WriteAheadRepository<DummyRecord> recoverRepo = new MinimalLockingWriteAheadLog<>(path, 4, serde, null);
+        final Collection<DummyRecord> recoveredRecords = recoverRepo.recoverRecords();
+        assertEquals(numThreads * updatesPerThread, recoveredRecords.size());
+        for (final DummyRecord record : recoveredRecords) {
+            assertEquals("B", record.getProperty("A"));
+        }
+        recoverRepo.shutdown();
+    }
+
+    @Test
+    public void testPartitionedCheckpoint() throws IOException {
+        final Path path1 = Paths.get("target/minimal-locking-repo-partitioned-checkpoint-1");
+        final Path path2 = Paths.get("target/minimal-locking-repo-partitioned-checkpoint-2");
+        deleteRecursively(path1.toFile());
+        deleteRecursively(path2.toFile());
+
+        final SortedSet<Path> paths = new TreeSet<>();
+        paths.add(path1);
+        paths.add(path2);
+
+        final DummyRecordSerde serde = new DummyRecordSerde();
+        final MinimalLockingWriteAheadLog<DummyRecord> writeRepo = new MinimalLockingWriteAheadLog<>(paths, 4, serde, null, -1L, TimeUnit.MILLISECONDS, 3);
+        assertTrue(writeRepo.recoverRecords().isEmpty());
+
+        for (int i = 0; i < 100; i++) {
+            final DummyRecord record = new DummyRecord(String.valueOf(i), UpdateType.CREATE);
+            record.setProperty("i", String.valueOf(i));
+            writeRepo.update(Collections.singleton(record), false);
+        }
+
+        assertEquals(100, writeRepo.checkpoint());
+        assertEquals(3, countSnapshotParts(path1) + countSnapshotParts(path2));
+
+        // update records after the checkpoint so that recovery requires both the snapshot and the journals
+        for (int i = 0; i < 10; i++) {
+            writeRepo.update(Collections.singleton(new DummyRecord(String.valueOf(i), UpdateType.DELETE)), false);
+        }
+
+        // a second checkpoint must replace the snapshot parts of the first
+        assertEquals(90, writeRepo.checkpoint());
+        assertEquals(3, countSnapshotParts(path1) + countSnapshotParts(path2));
+
+        final DummyRecord added = new DummyRecord("added", UpdateType.CREATE);
+        writeRepo.update(Collections.singleton(added), false);
+
+        final CheckpointStatistics stats = writeRepo.getCheckpointStatistics();
+        // one checkpoint is performed on recovery, in addition to the two above
+        assertEquals(3, stats.getCheckpointCount());
+        assertTrue(stats.getLastStallNanos() <= stats.getLastCheckpointNanos());
+        assertTrue(stats.getMaxStallNanos() <= stats.getTotalStallNanos());
+        writeRepo.shutdown();
+
+        final MinimalLockingWriteAheadLog<DummyRecord> recoverRepo = new MinimalLockingWriteAheadLog<>(paths, 4, serde, null);
+        final Collection<DummyRecord> recovered = recoverRepo.recoverRecords();
+        assertEquals(91, recovered.size());
+        for (final DummyRecord record : recovered) {
+            if (record.getId().equals("added")) {
+                continue;
+            }
+
+            final int i = Integer.parseInt(record.getId());
+            assertTrue(i >= 10);
+            assertEquals(record.getId(), record.getProperty("i"));
+        }
+
+        // recovery checkpoints without partitioning, so the snapshot parts are no longer needed
+        assertEquals(0, countSnapshotParts(path1) + countSnapshotParts(path2));
+        recoverRepo.shutdown();
+    }
+
+    @Test
+    public void testUpdatesDuringCheckpointAreRetained() throws IOException, InterruptedException {
+        final Path path = Paths.get("target/minimal-locking-repo-updates-during-checkpoint");
+        deleteRecursively(path.toFile());
+        Files.createDirectories(path);
+
+        final DummyRecordSerde serde = new DummyRecordSerde();
+        final MinimalLockingWriteAheadLog<DummyRecord> repo = new MinimalLockingWriteAheadLog<>(new TreeSet<>(Collections.singleton(path)), 4,
+            serde, null, -1L, TimeUnit.MILLISECONDS, 2);
+        assertTrue(repo.recoverRecords().isEmpty());
+
+        // updates that are made while a checkpoint is copying the records must be neither lost nor undone
+        final Map<String, String> expected = new HashMap<>();
+        final AtomicBoolean stop = new AtomicBoolean(false);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread updateThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // every record is created once and some are later deleted, so that no change is hidden by a later one
+                    for (int i = 0; i < 200000 && !stop.get(); i++) {
+                        final DummyRecord record;
+                        if (i % 7 == 6) {
+                            final String id = String.valueOf(i - 3);
+                            record = new DummyRecord(id, UpdateType.DELETE);
+                            expected.remove(id);
+                        } else {
+                            final String id = String.valueOf(i);
+                            record = new DummyRecord(id, UpdateType.CREATE);
+                            record.setProperty("i", id);
+                            expected.put(id, id);
+                        }
+                        repo.update(Collections.singleton(record), false);
+                    }
+                } catch (final Throwable t) {
+                    failure.set(t);
+                }
+            }
+        });
+        updateThread.start();
+
+        for (int i = 0; i < 20; i++) {
+            repo.checkpoint();
+        }
+        stop.set(true);
+        updateThread.join();
+
+        if (failure.get() != null) {
+            throw new AssertionError("Failed to update repository", failure.get());
+        }
+
+        // the snapshot parts are written by the same threads for every checkpoint
+        int checkpointThreads = 0;
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("Write-Ahead Log Checkpoint Thread-")) {
+                checkpointThreads++;
+            }
+        }
+        assertTrue(checkpointThreads <= 2);
+
+        assertEquals(expected.size(), repo.checkpoint());
+        repo.shutdown();
+
+        final WriteAheadRepository<DummyRecord> recoverRepo = new MinimalLockingWriteAheadLog<>(path, 4, serde, null);
+        final Collection<DummyRecord> recovered = recoverRepo.recoverRecords();
+        assertEquals(expected.size(), recovered.size());
+        for (final DummyRecord record : recovered) {
+            assertEquals(expected.get(record.getId()), record.getProperty("i"));
+        }
+        recoverRepo.shutdown();
+    }
+
+    private int countSnapshotParts(final Path path) {
+        final File[] files = path.toFile().listFiles();
+        int count = 0;
+        if (files != null) {
+            for (final File file : files) {
+                if (file.getName().startsWith("snapshot-part-")) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
     private static class InsertThread extends Thread {
 
         private final List<List<DummyRecord>> records;
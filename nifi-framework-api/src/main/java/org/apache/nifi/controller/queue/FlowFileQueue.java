@@ -59,6 +59,11 @@ public interface FlowFileQueue {
      */
     void purgeSwapFiles();
 
+    /**
+     * @return statistics about the FlowFiles that have been swapped out of and back into this queue
+     */
+    SwapStatistics getSwapStatistics();
+
     /**
      * Resets the comparator used by this queue to maintain order.
      *
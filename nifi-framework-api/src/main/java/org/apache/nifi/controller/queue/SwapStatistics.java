@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.queue;
+
+/**
+ * Cumulative statistics about the swapping of FlowFiles between a FlowFile Queue and disk,
+ * since the queue was created.
+ */
+public class SwapStatistics {
+
+    public static final SwapStatistics EMPTY = new SwapStatistics(0L, 0L, 0L, 0L, 0L);
+
+    private final long swapOutCount;
+    private final long swapOutNanos;
+    private final long swapInCount;
+    private final long swapInNanos;
+    private final long blockedNanos;
+
+    public SwapStatistics(final long swapOutCount, final long swapOutNanos, final long swapInCount, final long swapInNanos, final long blockedNanos) {
+        this.swapOutCount = swapOutCount;
+        this.swapOutNanos = swapOutNanos;
+        this.swapInCount = swapInCount;
+        this.swapInNanos = swapInNanos;
+        this.blockedNanos = blockedNanos;
+    }
+
+    /**
+     * @return the number of Swap Files that have been written
+     */
+    public long getSwapOutCount() {
+        return swapOutCount;
+    }
+
+    /**
+     * @return the total number of nanoseconds spent writing Swap Files
+     */
+    public long getSwapOutNanos() {
+        return swapOutNanos;
+    }
+
+    /**
+     * @return the number of Swap Files that have been read back into the queue
+     */
+    public long getSwapInCount() {
+        return swapInCount;
+    }
+
+    /**
+     * @return the total number of nanoseconds spent reading Swap Files
+     */
+    public long getSwapInNanos() {
+        return swapInNanos;
+    }
+
+    /**
+     * @return the total number of nanoseconds during which producers or consumers of the queue were
+     *         unable to make progress because of swapping. When swapping is performed while the queue
+     *         is locked, this is the time spent performing the swap. When swapping is performed in the
+     *         background, this is the time during which FlowFiles were queued but none were available
+     *         to be polled because they were still being swapped.
+     */
+    public long getBlockedNanos() {
+        return blockedNanos;
+    }
+
+    /**
+     * @param other the statistics to add to this one
+     * @return a new SwapStatistics whose values are the sum of this and the given statistics
+     */
+    public SwapStatistics add(final SwapStatistics other) {
+        if (other == null) {
+            return this;
+        }
+
+        return new SwapStatistics(swapOutCount + other.swapOutCount, swapOutNanos + other.swapOutNanos,
+            swapInCount + other.swapInCount, swapInNanos + other.swapInNanos, blockedNanos + other.blockedNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "SwapStatistics[swapOutCount=" + swapOutCount + ", swapOutNanos=" + swapOutNanos + ", swapInCount=" + swapInCount
+            + ", swapInNanos=" + swapInNanos + ", blockedNanos=" + blockedNanos + "]";
+    }
+}
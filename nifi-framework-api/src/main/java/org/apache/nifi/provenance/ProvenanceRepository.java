@@ -21,11 +21,13 @@ import org.apache.nifi.authorization.Authorizer;
 import org.apache.nifi.authorization.user.NiFiUser;
 import org.apache.nifi.events.EventReporter;
 import org.apache.nifi.provenance.lineage.ComputeLineageSubmission;
+import org.apache.nifi.provenance.rollup.ProvenanceEventRollup;
 import org.apache.nifi.provenance.search.Query;
 import org.apache.nifi.provenance.search.QuerySubmission;
 import org.apache.nifi.provenance.search.SearchableField;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 
 public interface ProvenanceRepository extends ProvenanceEventRepository {
@@ -169,6 +171,26 @@ public interface ProvenanceRepository extends ProvenanceEventRepository {
      */
     ComputeLineageSubmission submitExpandChildren(long eventId, NiFiUser user);
 
+    /**
+     * Returns the number of events and the number of bytes of FlowFile content that they referred to, per event
+     * type per component per minute, for the events that have been registered with the repository since it was
+     * started. Rollups are maintained as events are registered, so no events need to be read to answer this.
+     * Rollups for components whose data the given user is not authorized to view are not returned.
+     *
+     * The default implementation returns an empty list, so that implementations that do not maintain rollups
+     * continue to work.
+     *
+     * @param startTime the earliest time to include, in milliseconds since the epoch. The bucket containing this time is included
+     * @param endTime the latest time to include, in milliseconds since the epoch. The bucket containing this time is included
+     * @param componentId the identifier of the component to return rollups for, or <code>null</code> to return rollups for all components
+     * @param user the NiFi user to authorize the components against
+     *
+     * @return the rollups for the given time range, ordered by bucket start time, then component identifier, then event type
+     */
+    default List<ProvenanceEventRollup> getEventRollups(long startTime, long endTime, String componentId, NiFiUser user) {
+        return Collections.emptyList();
+    }
+
     /**
      * @return a list of all fields that can be searched via the
      * {@link ProvenanceRepository#submitQuery(Query, NiFiUser)} method
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.rollup;
+
+import java.util.Objects;
+
+import org.apache.nifi.provenance.ProvenanceEventType;
+
+/**
+ * The number of Provenance Events of a given type that a given component emitted during a
+ * given time bucket, along with the total size of the FlowFile content that those events referred to.
+ */
+public class ProvenanceEventRollup {
+
+    private final long bucketStartTime;
+    private final long bucketDurationMillis;
+    private final String componentId;
+    private final ProvenanceEventType eventType;
+    private final long eventCount;
+    private final long totalBytes;
+
+    public ProvenanceEventRollup(final long bucketStartTime, final long bucketDurationMillis, final String componentId, final ProvenanceEventType eventType,
+        final long eventCount, final long totalBytes) {
+        this.bucketStartTime = bucketStartTime;
+        this.bucketDurationMillis = bucketDurationMillis;
+        this.componentId = Objects.requireNonNull(componentId);
+        this.eventType = Objects.requireNonNull(eventType);
+        this.eventCount = eventCount;
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * @return the time at which the bucket starts, in milliseconds since the epoch
+     */
+    public long getBucketStartTime() {
+        return bucketStartTime;
+    }
+
+    /**
+     * @return the number of milliseconds that the bucket spans
+     */
+    public long getBucketDurationMillis() {
+        return bucketDurationMillis;
+    }
+
+    /**
+     * @return the identifier of the component that emitted the events
+     */
+    public String getComponentId() {
+        return componentId;
+    }
+
+    /**
+     * @return the type of the events
+     */
+    public ProvenanceEventType getEventType() {
+        return eventType;
+    }
+
+    /**
+     * @return the number of events
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return the sum of the sizes of the FlowFile content that the events referred to
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "ProvenanceEventRollup[bucketStart=" + bucketStartTime + ", component=" + componentId + ", type=" + eventType
+            + ", count=" + eventCount + ", bytes=" + totalBytes + "]";
+    }
+}
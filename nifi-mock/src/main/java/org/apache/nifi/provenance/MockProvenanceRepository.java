@@ -26,6 +26,7 @@ import org.apache.nifi.authorization.Authorizer;
 import org.apache.nifi.authorization.user.NiFiUser;
 import org.apache.nifi.events.EventReporter;
 import org.apache.nifi.provenance.lineage.ComputeLineageSubmission;
+import org.apache.nifi.provenance.rollup.ProvenanceEventRollup;
 import org.apache.nifi.provenance.search.Query;
 import org.apache.nifi.provenance.search.QuerySubmission;
 import org.apache.nifi.provenance.search.SearchableField;
@@ -34,6 +35,7 @@ public class MockProvenanceRepository implements ProvenanceRepository {
 
     private final List<ProvenanceEventRecord> records = new ArrayList<>();
     private final AtomicLong idGenerator = new AtomicLong(0L);
+    private final EventRollupAggregator eventRollups = new EventRollupAggregator();
 
     @Override
     public void registerEvents(final Iterable<ProvenanceEventRecord> events) {
@@ -53,6 +55,7 @@ public class MockProvenanceRepository implements ProvenanceRepository {
         newRecord.setEventId(idGenerator.getAndIncrement());
 
         records.add(newRecord);
+        eventRollups.update(newRecord);
     }
 
     @Override
@@ -137,6 +140,11 @@ public class MockProvenanceRepository implements ProvenanceRepository {
         return Collections.emptyList();
     }
 
+    @Override
+    public List<ProvenanceEventRollup> getEventRollups(long startTime, long endTime, String componentId, NiFiUser user) {
+        return eventRollups.getRollups(startTime, endTime, componentId, id -> true);
+    }
+
     @Override
     public List<SearchableField> getSearchableAttributes() {
         return Collections.emptyList();
@@ -63,6 +63,12 @@ public class SystemDiagnosticsSnapshotDTO implements Cloneable {
     private Set<StorageUsageDTO> contentRepositoryStorageUsage;
     private Set<GarbageCollectionDTO> garbageCollection;
 
+    private Integer provenanceQueueDepth;
+    private Long provenanceEventsBlocked;
+    private Long provenanceEventsSpilled;
+    private Long provenanceEventsDropped;
+    private Long provenanceEventsFailed;
+
     private Date statsLastRefreshed;
 
 
@@ -219,6 +225,51 @@ public class SystemDiagnosticsSnapshotDTO implements Cloneable {
         this.garbageCollection = garbageCollection;
     }
 
+    @ApiModelProperty("The number of provenance events that are queued for the Provenance Repository, if events are handed off to it asynchronously.")
+    public Integer getProvenanceQueueDepth() {
+        return provenanceQueueDepth;
+    }
+
+    public void setProvenanceQueueDepth(Integer provenanceQueueDepth) {
+        this.provenanceQueueDepth = provenanceQueueDepth;
+    }
+
+    @ApiModelProperty("The number of provenance events that waited for room in the asynchronous handoff queue since NiFi started.")
+    public Long getProvenanceEventsBlocked() {
+        return provenanceEventsBlocked;
+    }
+
+    public void setProvenanceEventsBlocked(Long provenanceEventsBlocked) {
+        this.provenanceEventsBlocked = provenanceEventsBlocked;
+    }
+
+    @ApiModelProperty("The number of provenance events that were written to the overflow journal since NiFi started.")
+    public Long getProvenanceEventsSpilled() {
+        return provenanceEventsSpilled;
+    }
+
+    public void setProvenanceEventsSpilled(Long provenanceEventsSpilled) {
+        this.provenanceEventsSpilled = provenanceEventsSpilled;
+    }
+
+    @ApiModelProperty("The number of provenance events that were dropped by sampling since NiFi started.")
+    public Long getProvenanceEventsDropped() {
+        return provenanceEventsDropped;
+    }
+
+    public void setProvenanceEventsDropped(Long provenanceEventsDropped) {
+        this.provenanceEventsDropped = provenanceEventsDropped;
+    }
+
+    @ApiModelProperty("The number of queued provenance events that the Provenance Repository failed to register since NiFi started.")
+    public Long getProvenanceEventsFailed() {
+        return provenanceEventsFailed;
+    }
+
+    public void setProvenanceEventsFailed(Long provenanceEventsFailed) {
+        this.provenanceEventsFailed = provenanceEventsFailed;
+    }
+
     @XmlJavaTypeAdapter(TimeAdapter.class)
     @ApiModelProperty(
             value = "When the diagnostics were generated.",
@@ -332,6 +383,11 @@ public class SystemDiagnosticsSnapshotDTO implements Cloneable {
         other.setUsedHeapBytes(getUsedHeapBytes());
         other.setUsedNonHeap(getUsedNonHeap());
         other.setUsedNonHeapBytes(getUsedNonHeapBytes());
+        other.setProvenanceQueueDepth(getProvenanceQueueDepth());
+        other.setProvenanceEventsBlocked(getProvenanceEventsBlocked());
+        other.setProvenanceEventsSpilled(getProvenanceEventsSpilled());
+        other.setProvenanceEventsDropped(getProvenanceEventsDropped());
+        other.setProvenanceEventsFailed(getProvenanceEventsFailed());
 
         other.setFlowFileRepositoryStorageUsage(getFlowFileRepositoryStorageUsage().clone());
 
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.web.api.dto.provenance;
+
+import com.wordnik.swagger.annotations.ApiModelProperty;
+import org.apache.nifi.web.api.dto.util.DateTimeAdapter;
+
+import javax.xml.bind.annotation.XmlType;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import java.util.Date;
+
+/**
+ * The number of provenance events of a given type that a component emitted during a time bucket.
+ */
+@XmlType(name = "provenanceRollup")
+public class ProvenanceRollupDTO {
+
+    private Date timestamp;
+    private String componentId;
+    private String eventType;
+    private Long eventCount;
+    private Long byteCount;
+
+    /**
+     * @return the time at which the bucket starts
+     */
+    @XmlJavaTypeAdapter(DateTimeAdapter.class)
+    @ApiModelProperty(
+            value = "The time at which the bucket starts.",
+            dataType = "string"
+    )
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(Date timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @return id of the component that emitted the events
+     */
+    @ApiModelProperty(
+            value = "The id of the component that emitted the events."
+    )
+    public String getComponentId() {
+        return componentId;
+    }
+
+    public void setComponentId(String componentId) {
+        this.componentId = componentId;
+    }
+
+    /**
+     * @return type of the events
+     */
+    @ApiModelProperty(
+            value = "The type of the events."
+    )
+    public String getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    /**
+     * @return number of events
+     */
+    @ApiModelProperty(
+            value = "The number of events."
+    )
+    public Long getEventCount() {
+        return eventCount;
+    }
+
+    public void setEventCount(Long eventCount) {
+        this.eventCount = eventCount;
+    }
+
+    /**
+     * @return total size of the flowfile content that the events referred to
+     */
+    @ApiModelProperty(
+            value = "The total size of the flowfile content that the events referred to, in bytes."
+    )
+    public Long getByteCount() {
+        return byteCount;
+    }
+
+    public void setByteCount(Long byteCount) {
+        this.byteCount = byteCount;
+    }
+}
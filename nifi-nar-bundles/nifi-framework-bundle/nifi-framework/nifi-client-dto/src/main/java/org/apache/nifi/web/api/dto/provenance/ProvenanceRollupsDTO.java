@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.web.api.dto.provenance;
+
+import com.wordnik.swagger.annotations.ApiModelProperty;
+import org.apache.nifi.web.api.dto.util.DateTimeAdapter;
+
+import javax.xml.bind.annotation.XmlType;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The per component, per event type rollups of the provenance events in a time range.
+ */
+@XmlType(name = "provenanceRollups")
+public class ProvenanceRollupsDTO {
+
+    private Date startDate;
+    private Date endDate;
+    private Long bucketDurationMillis;
+    private List<ProvenanceRollupDTO> rollups;
+
+    /**
+     * @return earliest time included in the rollups
+     */
+    @XmlJavaTypeAdapter(DateTimeAdapter.class)
+    @ApiModelProperty(
+            value = "The earliest time included in the rollups.",
+            dataType = "string"
+    )
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(Date startDate) {
+        this.startDate = startDate;
+    }
+
+    /**
+     * @return latest time included in the rollups
+     */
+    @XmlJavaTypeAdapter(DateTimeAdapter.class)
+    @ApiModelProperty(
+            value = "The latest time included in the rollups.",
+            dataType = "string"
+    )
+    public Date getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(Date endDate) {
+        this.endDate = endDate;
+    }
+
+    /**
+     * @return duration of each bucket in milliseconds
+     */
+    @ApiModelProperty(
+            value = "The duration of each bucket in milliseconds."
+    )
+    public Long getBucketDurationMillis() {
+        return bucketDurationMillis;
+    }
+
+    public void setBucketDurationMillis(Long bucketDurationMillis) {
+        this.bucketDurationMillis = bucketDurationMillis;
+    }
+
+    /**
+     * @return the rollups, ordered by bucket, component and event type
+     */
+    @ApiModelProperty(
+            value = "The rollups, ordered by bucket, component and event type."
+    )
+    public List<ProvenanceRollupDTO> getRollups() {
+        return rollups;
+    }
+
+    public void setRollups(List<ProvenanceRollupDTO> rollups) {
+        this.rollups = rollups;
+    }
+}
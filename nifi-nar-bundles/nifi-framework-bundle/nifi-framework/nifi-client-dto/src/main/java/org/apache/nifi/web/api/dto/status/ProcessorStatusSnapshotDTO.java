@@ -50,6 +50,14 @@ public class ProcessorStatusSnapshotDTO implements Cloneable {
     private String tasks;
     private String tasksDuration;
     private Integer activeThreadCount = 0;
+    private Long runDurationMillis = 0L;
+
+    private Long cpuDurationNanos = 0L;
+    private Long bytesAllocated = 0L;
+    private Long blockedDurationNanos = 0L;
+    private Long waitedDurationNanos = 0L;
+    private Long queueWaitDurationNanos = 0L;
+    private Integer steals = 0;
 
     /* getters / setters */
     /**
@@ -175,6 +183,91 @@ public class ProcessorStatusSnapshotDTO implements Cloneable {
         this.activeThreadCount = threadCount;
     }
 
+    /**
+     * @return the run duration that the processor is currently using, in milliseconds
+     */
+    @ApiModelProperty("The run duration that the processor is currently using, in milliseconds. If the run duration is chosen adaptively, "
+            + "this is the duration that has most recently been chosen.")
+    public Long getRunDurationMillis() {
+        return runDurationMillis;
+    }
+
+    public void setRunDurationMillis(Long runDurationMillis) {
+        this.runDurationMillis = runDurationMillis;
+    }
+
+    /**
+     * @return the CPU time consumed by this processor over the last 5 minutes, in nanoseconds
+     */
+    @ApiModelProperty("The CPU time that the processor's threads have consumed in the last 5 minutes, in nanoseconds.")
+    public Long getCpuDurationNanos() {
+        return cpuDurationNanos;
+    }
+
+    public void setCpuDurationNanos(Long cpuDurationNanos) {
+        this.cpuDurationNanos = cpuDurationNanos;
+    }
+
+    /**
+     * @return the number of bytes allocated by this processor over the last 5 minutes
+     */
+    @ApiModelProperty("The number of bytes that the processor's threads have allocated on the heap in the last 5 minutes, estimated from a sample of its tasks.")
+    public Long getBytesAllocated() {
+        return bytesAllocated;
+    }
+
+    public void setBytesAllocated(Long bytesAllocated) {
+        this.bytesAllocated = bytesAllocated;
+    }
+
+    /**
+     * @return the time this processor spent blocked over the last 5 minutes, in nanoseconds
+     */
+    @ApiModelProperty("The time that the processor's threads have spent blocked waiting to enter a monitor in the last 5 minutes, in nanoseconds, estimated from a sample of its tasks.")
+    public Long getBlockedDurationNanos() {
+        return blockedDurationNanos;
+    }
+
+    public void setBlockedDurationNanos(Long blockedDurationNanos) {
+        this.blockedDurationNanos = blockedDurationNanos;
+    }
+
+    /**
+     * @return the time this processor spent waiting over the last 5 minutes, in nanoseconds
+     */
+    @ApiModelProperty("The time that the processor's threads have spent waiting on a lock or condition in the last 5 minutes, in nanoseconds, estimated from a sample of its tasks.")
+    public Long getWaitedDurationNanos() {
+        return waitedDurationNanos;
+    }
+
+    public void setWaitedDurationNanos(Long waitedDurationNanos) {
+        this.waitedDurationNanos = waitedDurationNanos;
+    }
+
+    /**
+     * @return the time this processor's tasks waited for a thread over the last 5 minutes, in nanoseconds
+     */
+    @ApiModelProperty("The time that the processor's tasks have waited for a thread once they were due to run in the last 5 minutes, in nanoseconds.")
+    public Long getQueueWaitDurationNanos() {
+        return queueWaitDurationNanos;
+    }
+
+    public void setQueueWaitDurationNanos(Long queueWaitDurationNanos) {
+        this.queueWaitDurationNanos = queueWaitDurationNanos;
+    }
+
+    /**
+     * @return the number of this processor's tasks that were stolen over the last 5 minutes
+     */
+    @ApiModelProperty("The number of times in the last 5 minutes that a task of the processor was run by a thread other than the one that queued it.")
+    public Integer getSteals() {
+        return steals;
+    }
+
+    public void setSteals(Integer steals) {
+        this.steals = steals;
+    }
+
     /**
      * @return number of task this connectable has had over the last 5 minutes
      */
@@ -290,6 +383,13 @@ public class ProcessorStatusSnapshotDTO implements Cloneable {
         other.setTasksDuration(getTasksDuration());
         other.setTasksDurationNanos(getTasksDurationNanos());
         other.setActiveThreadCount(getActiveThreadCount());
+        other.setRunDurationMillis(getRunDurationMillis());
+        other.setCpuDurationNanos(getCpuDurationNanos());
+        other.setBytesAllocated(getBytesAllocated());
+        other.setBlockedDurationNanos(getBlockedDurationNanos());
+        other.setWaitedDurationNanos(getWaitedDurationNanos());
+        other.setQueueWaitDurationNanos(getQueueWaitDurationNanos());
+        other.setSteals(getSteals());
         other.setInput(getInput());
         other.setOutput(getOutput());
         other.setRead(getRead());
@@ -51,6 +51,7 @@ import org.apache.nifi.cluster.coordination.http.endpoints.ProcessorStatusEndpoi
 import org.apache.nifi.cluster.coordination.http.endpoints.ProcessorsEndpointMerger;
 import org.apache.nifi.cluster.coordination.http.endpoints.ProvenanceEventEndpointMerger;
 import org.apache.nifi.cluster.coordination.http.endpoints.ProvenanceQueryEndpointMerger;
+import org.apache.nifi.cluster.coordination.http.endpoints.ProvenanceRollupsEndpointMerger;
 import org.apache.nifi.cluster.coordination.http.endpoints.RemoteProcessGroupEndpointMerger;
 import org.apache.nifi.cluster.coordination.http.endpoints.RemoteProcessGroupStatusEndpointMerger;
 import org.apache.nifi.cluster.coordination.http.endpoints.RemoteProcessGroupsEndpointMerger;
@@ -111,6 +112,7 @@ public class StandardHttpResponseMapper implements HttpResponseMapper {
         endpointMergers.add(new FlowSnippetEndpointMerger());
         endpointMergers.add(new ProvenanceQueryEndpointMerger());
         endpointMergers.add(new ProvenanceEventEndpointMerger());
+        endpointMergers.add(new ProvenanceRollupsEndpointMerger());
         endpointMergers.add(new ControllerServiceEndpointMerger());
         endpointMergers.add(new ControllerServicesEndpointMerger());
         endpointMergers.add(new ControllerServiceReferenceEndpointMerger());
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.cluster.coordination.http.endpoints;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.apache.nifi.cluster.manager.NodeResponse;
+import org.apache.nifi.cluster.protocol.NodeIdentifier;
+import org.apache.nifi.web.api.dto.provenance.ProvenanceRollupDTO;
+import org.apache.nifi.web.api.dto.provenance.ProvenanceRollupsDTO;
+import org.apache.nifi.web.api.entity.ProvenanceRollupsEntity;
+
+public class ProvenanceRollupsEndpointMerger extends AbstractSingleDTOEndpoint<ProvenanceRollupsEntity, ProvenanceRollupsDTO> {
+    public static final Pattern PROVENANCE_ROLLUPS_URI = Pattern.compile("/nifi-api/provenance/rollups");
+
+    @Override
+    public boolean canHandle(URI uri, String method) {
+        return "GET".equalsIgnoreCase(method) && PROVENANCE_ROLLUPS_URI.matcher(uri.getPath()).matches();
+    }
+
+    @Override
+    protected Class<ProvenanceRollupsEntity> getEntityClass() {
+        return ProvenanceRollupsEntity.class;
+    }
+
+    @Override
+    protected ProvenanceRollupsDTO getDto(ProvenanceRollupsEntity entity) {
+        return entity.getProvenanceRollups();
+    }
+
+    @Override
+    protected void mergeResponses(ProvenanceRollupsDTO clientDto, Map<NodeIdentifier, ProvenanceRollupsDTO> dtoMap, Set<NodeResponse> successfulResponses,
+        Set<NodeResponse> problematicResponses) {
+
+        // Each node maintains rollups for the events that it registered, so the rollups of the cluster are the sums of those of the nodes.
+        // Ordered by bucket, component and event type, as are the rollups of each node.
+        final Map<ProvenanceRollupDTO, ProvenanceRollupDTO> merged = new TreeMap<>(Comparator.comparing(ProvenanceRollupDTO::getTimestamp)
+            .thenComparing(ProvenanceRollupDTO::getComponentId)
+            .thenComparing(ProvenanceRollupDTO::getEventType));
+
+        for (final ProvenanceRollupsDTO nodeDto : dtoMap.values()) {
+            if (nodeDto.getRollups() == null) {
+                continue;
+            }
+
+            for (final ProvenanceRollupDTO rollup : nodeDto.getRollups()) {
+                final ProvenanceRollupDTO existing = merged.get(rollup);
+                if (existing == null) {
+                    final ProvenanceRollupDTO copy = new ProvenanceRollupDTO();
+                    copy.setTimestamp(rollup.getTimestamp());
+                    copy.setComponentId(rollup.getComponentId());
+                    copy.setEventType(rollup.getEventType());
+                    copy.setEventCount(rollup.getEventCount());
+                    copy.setByteCount(rollup.getByteCount());
+                    merged.put(copy, copy);
+                } else {
+                    existing.setEventCount(existing.getEventCount() + rollup.getEventCount());
+                    existing.setByteCount(existing.getByteCount() + rollup.getByteCount());
+                }
+            }
+        }
+
+        clientDto.setRollups(new ArrayList<>(merged.values()));
+    }
+}
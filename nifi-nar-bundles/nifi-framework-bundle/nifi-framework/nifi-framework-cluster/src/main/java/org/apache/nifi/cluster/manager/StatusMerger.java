@@ -404,6 +404,17 @@ public class StatusMerger {
         target.setTaskCount(target.getTaskCount() + toMerge.getTaskCount());
         target.setTasksDurationNanos(target.getTasksDurationNanos() + toMerge.getTasksDurationNanos());
         target.setActiveThreadCount(target.getActiveThreadCount() + toMerge.getActiveThreadCount());
+        target.setCpuDurationNanos(target.getCpuDurationNanos() + toMerge.getCpuDurationNanos());
+        target.setBytesAllocated(target.getBytesAllocated() + toMerge.getBytesAllocated());
+        target.setBlockedDurationNanos(target.getBlockedDurationNanos() + toMerge.getBlockedDurationNanos());
+        target.setWaitedDurationNanos(target.getWaitedDurationNanos() + toMerge.getWaitedDurationNanos());
+        target.setQueueWaitDurationNanos(target.getQueueWaitDurationNanos() + toMerge.getQueueWaitDurationNanos());
+        target.setSteals(target.getSteals() + toMerge.getSteals());
+
+        // each node chooses its own run duration when it is chosen adaptively, so report the longest
+        if (target.getRunDurationMillis() == null || (toMerge.getRunDurationMillis() != null && toMerge.getRunDurationMillis() > target.getRunDurationMillis())) {
+            target.setRunDurationMillis(toMerge.getRunDurationMillis());
+        }
         updatePrettyPrintedFields(target);
     }
 
@@ -599,6 +610,13 @@ public class StatusMerger {
         target.setUsedHeapBytes(target.getUsedHeapBytes() + toMerge.getUsedHeapBytes());
         target.setUsedNonHeapBytes(target.getUsedNonHeapBytes() + toMerge.getUsedNonHeapBytes());
 
+        // the provenance handoff counts are absent from nodes that register events with the Provenance Repository directly
+        target.setProvenanceQueueDepth(add(target.getProvenanceQueueDepth(), toMerge.getProvenanceQueueDepth()));
+        target.setProvenanceEventsBlocked(add(target.getProvenanceEventsBlocked(), toMerge.getProvenanceEventsBlocked()));
+        target.setProvenanceEventsSpilled(add(target.getProvenanceEventsSpilled(), toMerge.getProvenanceEventsSpilled()));
+        target.setProvenanceEventsDropped(add(target.getProvenanceEventsDropped(), toMerge.getProvenanceEventsDropped()));
+        target.setProvenanceEventsFailed(add(target.getProvenanceEventsFailed(), toMerge.getProvenanceEventsFailed()));
+
         merge(target.getContentRepositoryStorageUsage(), toMerge.getContentRepositoryStorageUsage());
         merge(target.getFlowFileRepositoryStorageUsage(), toMerge.getFlowFileRepositoryStorageUsage());
         mergeGarbageCollection(target.getGarbageCollection(), toMerge.getGarbageCollection());
@@ -736,6 +754,20 @@ public class StatusMerger {
     }
 
 
+    private static Integer add(final Integer a, final Integer b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null ? a : a + b;
+    }
+
+    private static Long add(final Long a, final Long b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null ? a : a + b;
+    }
+
     public static int getUtilization(final double used, final double total) {
         return (int) Math.round((used / total) * 100);
     }
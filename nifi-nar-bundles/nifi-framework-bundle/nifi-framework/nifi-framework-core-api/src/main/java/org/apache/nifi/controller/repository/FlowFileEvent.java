@@ -51,4 +51,34 @@ public interface FlowFileEvent {
     long getBytesSent();
 
     int getInvocations();
+
+    /**
+     * @return the CPU time that the component's threads consumed, in nanoseconds
+     */
+    long getCpuNanoseconds();
+
+    /**
+     * @return the number of bytes that the component's threads allocated on the heap, estimated from a sample of its tasks
+     */
+    long getBytesAllocated();
+
+    /**
+     * @return the time that the component's threads spent blocked waiting to enter a monitor, in nanoseconds, estimated from a sample of its tasks
+     */
+    long getBlockedNanoseconds();
+
+    /**
+     * @return the time that the component's threads spent waiting on a lock or condition, in nanoseconds, estimated from a sample of its tasks
+     */
+    long getWaitedNanoseconds();
+
+    /**
+     * @return the time that the component's tasks waited for a thread once they were due to run, in nanoseconds
+     */
+    long getQueueWaitNanoseconds();
+
+    /**
+     * @return the number of times that a task of the component was run by a thread other than the one that queued it
+     */
+    int getSteals();
 }
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the run duration of a Processor that supports batching, based on what is observed while it runs.
+ *
+ * The FlowFiles that a Processor handles during a batch are not transferred until the batch is committed, so a long run
+ * duration adds latency, while a short one means that the cost of committing the session is paid more often. The run
+ * duration is therefore chosen to be just long enough that committing takes no more than a small fraction of each batch.
+ * When more FlowFiles are queued for the Processor than it handled in the last batch, there is a backlog and throughput
+ * is favored instead: the run duration is extended so that the backlog can be worked off in as few batches as possible.
+ * Either way, the run duration stays within the given bounds; the maximum is the most latency that batching may add.
+ */
+public class AdaptiveRunDuration {
+
+    // the fraction of a batch that committing the session may take
+    static final double COMMIT_OVERHEAD_TARGET = 0.1D;
+
+    // the weight of the newest observation in the moving averages of the invocation and commit times
+    private static final double SMOOTHING_FACTOR = 0.2D;
+
+    private final long minNanos;
+    private final long maxNanos;
+    private volatile long runDurationNanos;
+
+    // guarded by synchronizing on this
+    private double averageInvocationNanos = -1D;
+    private double averageCommitNanos = -1D;
+
+    public AdaptiveRunDuration(final long minDuration, final long maxDuration, final long initialDuration, final TimeUnit timeUnit) {
+        if (minDuration < 0L || maxDuration < minDuration) {
+            throw new IllegalArgumentException("Invalid bounds for the run duration: minimum is " + minDuration + " " + timeUnit
+                + " and maximum is " + maxDuration + " " + timeUnit);
+        }
+
+        this.minNanos = timeUnit.toNanos(minDuration);
+        this.maxNanos = timeUnit.toNanos(maxDuration);
+        this.runDurationNanos = bound(timeUnit.toNanos(initialDuration));
+    }
+
+    /**
+     * @param timeUnit the unit of the value to return
+     * @return the run duration to use for the next batch
+     */
+    public long getRunDuration(final TimeUnit timeUnit) {
+        return timeUnit.convert(runDurationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the outcome of a batch and chooses the run duration for subsequent batches
+     *
+     * @param invocations the number of times that the Processor was triggered during the batch
+     * @param processingNanos the amount of time spent triggering the Processor, not including the commit
+     * @param commitNanos the amount of time taken to commit the batch
+     * @param queuedCount the number of FlowFiles that remain queued for the Processor after the batch
+     */
+    public synchronized void update(final int invocations, final long processingNanos, final long commitNanos, final long queuedCount) {
+        if (invocations < 1) {
+            return;
+        }
+
+        averageInvocationNanos = average(averageInvocationNanos, (double) processingNanos / invocations);
+        averageCommitNanos = average(averageCommitNanos, commitNanos);
+
+        // the shortest batch for which committing takes no more than the target fraction of the batch
+        final double amortizedNanos = averageCommitNanos * (1D - COMMIT_OVERHEAD_TARGET) / COMMIT_OVERHEAD_TARGET;
+        if (amortizedNanos <= averageInvocationNanos) {
+            // a single invocation already outweighs the commit, so there is nothing to gain from batching
+            runDurationNanos = minNanos;
+            return;
+        }
+
+        double targetNanos = amortizedNanos;
+        if (queuedCount > invocations) {
+            targetNanos = Math.max(targetNanos, queuedCount * averageInvocationNanos);
+        }
+
+        runDurationNanos = bound((long) Math.min(targetNanos, Long.MAX_VALUE));
+    }
+
+    private static double average(final double average, final double value) {
+        return average < 0D ? value : average + SMOOTHING_FACTOR * (value - average);
+    }
+
+    private long bound(final long nanos) {
+        return Math.max(minNanos, Math.min(maxNanos, nanos));
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveRunDuration[runDuration=" + getRunDuration(TimeUnit.MICROSECONDS) + " micros, bounds=[" + TimeUnit.NANOSECONDS.toMicros(minNanos)
+            + ", " + TimeUnit.NANOSECONDS.toMicros(maxNanos) + "] micros]";
+    }
+}
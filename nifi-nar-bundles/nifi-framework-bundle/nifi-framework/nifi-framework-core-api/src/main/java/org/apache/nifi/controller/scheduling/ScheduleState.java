@@ -33,6 +33,7 @@ public class ScheduleState {
     private final Set<ScheduledFuture<?>> futures = new HashSet<>();
     private final AtomicBoolean mustCallOnStoppedMethods = new AtomicBoolean(false);
     private volatile long lastStopTime = -1;
+    private volatile AdaptiveRunDuration adaptiveRunDuration;
 
     public int incrementActiveThreadCount() {
         return activeThreadCount.incrementAndGet();
@@ -63,6 +64,18 @@ public class ScheduleState {
         return lastStopTime;
     }
 
+    /**
+     * @return the means by which the run duration of the Processor is chosen, or <code>null</code> if the
+     *         configured run duration of the Processor is to be used
+     */
+    public AdaptiveRunDuration getAdaptiveRunDuration() {
+        return adaptiveRunDuration;
+    }
+
+    void setAdaptiveRunDuration(final AdaptiveRunDuration adaptiveRunDuration) {
+        this.adaptiveRunDuration = adaptiveRunDuration;
+    }
+
     @Override
     public String toString() {
         return new StringBuilder().append("activeThreads:").append(activeThreadCount.get()).append("; ")
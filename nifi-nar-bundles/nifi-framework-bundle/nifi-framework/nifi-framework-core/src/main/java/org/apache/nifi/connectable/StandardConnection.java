@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -40,7 +41,9 @@ import org.apache.nifi.authorization.Resource;
 import org.apache.nifi.authorization.resource.Authorizable;
 import org.apache.nifi.authorization.user.NiFiUser;
 import org.apache.nifi.controller.ProcessScheduler;
+import org.apache.nifi.controller.LockableFlowFileQueue;
 import org.apache.nifi.controller.StandardFlowFileQueue;
+import org.apache.nifi.controller.StripedFlowFileQueue;
 import org.apache.nifi.controller.queue.FlowFileQueue;
 import org.apache.nifi.controller.repository.FlowFileRecord;
 import org.apache.nifi.controller.repository.FlowFileRepository;
@@ -66,7 +69,7 @@ public final class StandardConnection implements Connection {
     private final Connectable source;
     private final AtomicReference<Connectable> destination;
     private final AtomicReference<Collection<Relationship>> relationships;
-    private final StandardFlowFileQueue flowFileQueue;
+    private final LockableFlowFileQueue flowFileQueue;
     private final AtomicInteger labelIndex = new AtomicInteger(1);
     private final AtomicLong zIndex = new AtomicLong(0L);
     private final ProcessScheduler scheduler;
@@ -81,8 +84,13 @@ public final class StandardConnection implements Connection {
         destination = new AtomicReference<>(builder.destination);
         relationships = new AtomicReference<>(Collections.unmodifiableCollection(builder.relationships));
         scheduler = builder.scheduler;
-        flowFileQueue = new StandardFlowFileQueue(id, this, builder.flowFileRepository, builder.provenanceRepository, builder.resourceClaimManager,
-                scheduler, builder.swapManager, builder.eventReporter, builder.queueSwapThreshold);
+        if (builder.queueStripeCount > 1) {
+            flowFileQueue = new StripedFlowFileQueue(id, this, builder.flowFileRepository, builder.provenanceRepository, builder.resourceClaimManager,
+                    scheduler, builder.swapManager, builder.eventReporter, builder.queueSwapThreshold, builder.queueStripeCount, builder.swapOutExecutor, builder.swapInExecutor);
+        } else {
+            flowFileQueue = new StandardFlowFileQueue(id, this, builder.flowFileRepository, builder.provenanceRepository, builder.resourceClaimManager,
+                    scheduler, builder.swapManager, builder.eventReporter, builder.queueSwapThreshold, builder.swapOutExecutor, builder.swapInExecutor);
+        }
         hashCode = new HashCodeBuilder(7, 67).append(id).toHashCode();
     }
 
@@ -341,6 +349,9 @@ public final class StandardConnection implements Connection {
         private ProvenanceEventRepository provenanceRepository;
         private ResourceClaimManager resourceClaimManager;
         private int queueSwapThreshold;
+        private int queueStripeCount = 1;
+        private ExecutorService swapOutExecutor;
+        private ExecutorService swapInExecutor;
 
         public Builder(final ProcessScheduler scheduler) {
             this.scheduler = scheduler;
@@ -417,6 +428,21 @@ public final class StandardConnection implements Connection {
             return this;
         }
 
+        public Builder queueStripeCount(final int queueStripeCount) {
+            this.queueStripeCount = queueStripeCount;
+            return this;
+        }
+
+        public Builder swapOutExecutor(final ExecutorService swapOutExecutor) {
+            this.swapOutExecutor = swapOutExecutor;
+            return this;
+        }
+
+        public Builder swapInExecutor(final ExecutorService swapInExecutor) {
+            this.swapInExecutor = swapInExecutor;
+            return this;
+        }
+
         public StandardConnection build() {
             if (source == null) {
                 throw new IllegalStateException("Cannot build a Connection without a Source");
@@ -18,25 +18,42 @@ package org.apache.nifi.controller;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.nifi.connectable.Connectable;
 import org.apache.nifi.connectable.Connection;
 import org.apache.nifi.processor.Relationship;
 import org.apache.nifi.util.Connectables;
 
+/**
+ * Hands out the Event-Driven components that have work to do to the threads of the Event-Driven thread pool.
+ *
+ * None of the operations obtain a lock, so that the threads do not contend on a single monitor. Workers that have work to
+ * do are held in a lock-free FIFO queue, and each worker is in that queue at most once. A worker that is handed out and
+ * still has events left goes to the back of the queue, so every component that has work to do is handed out once per
+ * pass through the queue, no matter how many more events other components receive. Workers for components that are to
+ * run only on the Primary Node are held aside while this node is not the Primary Node, rather than being passed over on
+ * every poll, and are queued again when this node becomes the Primary Node.
+ */
 public class EventDrivenWorkerQueue implements WorkerQueue {
 
-    private final Object workMonitor = new Object();
-
-    private final Map<Connectable, Worker> workerMap = new HashMap<>();   // protected by synchronizing on workMonitor
+    private final ConcurrentMap<Connectable, Worker> workerMap = new ConcurrentHashMap<>();
     private final WorkerReadyQueue workerQueue;
 
+    // threads that are waiting for work, and a count of the signals that have been sent to them
+    private final Queue<Thread> waitingThreads = new ConcurrentLinkedQueue<>();
+    private final AtomicLong signalCount = new AtomicLong(0L);
+
     public EventDrivenWorkerQueue(final boolean clustered, final boolean primary, final ProcessScheduler scheduler) {
         workerQueue = new WorkerReadyQueue(scheduler);
         workerQueue.setClustered(clustered);
@@ -45,66 +62,83 @@ public class EventDrivenWorkerQueue implements WorkerQueue {
 
     @Override
     public void setClustered(final boolean clustered) {
-        workerQueue.setClustered(clustered);
+        if (workerQueue.setClustered(clustered)) {
+            signalWork();
+        }
     }
 
     @Override
     public void setPrimary(final boolean primary) {
-        workerQueue.setPrimary(primary);
+        if (workerQueue.setPrimary(primary)) {
+            signalWork();
+        }
     }
 
     @Override
     public Worker poll(final long timeout, final TimeUnit timeUnit) {
-        final long maxTime = System.currentTimeMillis() + TimeUnit.MILLISECONDS.convert(timeout, timeUnit);
-        while (System.currentTimeMillis() < maxTime) {
-            synchronized (workMonitor) {
-                final Worker worker = workerQueue.poll();
-                if (worker == null) {
-                    // nothing to do. wait until we have something to do.
-                    final long timeLeft = maxTime - System.currentTimeMillis();
-                    if (timeLeft <= 0) {
-                        return null;
-                    }
+        final long maxTime = System.nanoTime() + timeUnit.toNanos(timeout);
+        while (true) {
+            // Any signal sent after this point causes the thread to look for work again rather than waiting.
+            final long signalsBefore = signalCount.get();
+
+            final Worker worker = workerQueue.poll(workerMap);
+            if (worker != null) {
+                // Decrement the amount of work there is to do for this worker.
+                final int workLeft = worker.decrementEventCount();
+                if (workLeft > 0) {
+                    workerQueue.offer(worker);
+                    signalWork();
+                }
 
-                    try {
-                        workMonitor.wait(timeLeft);
-                    } catch (final InterruptedException ignored) {
-                    }
-                } else {
-                    // Decrement the amount of work there is to do for this worker.
-                    final int workLeft = worker.decrementEventCount();
-                    if (workLeft > 0) {
-                        workerQueue.offer(worker);
-                    }
+                return worker;
+            }
+
+            // nothing to do. wait until we have something to do.
+            final long timeLeft = maxTime - System.nanoTime();
+            if (timeLeft <= 0) {
+                return null;
+            }
 
-                    return worker;
+            final Thread thread = Thread.currentThread();
+            waitingThreads.offer(thread);
+            try {
+                if (signalCount.get() == signalsBefore) {
+                    LockSupport.parkNanos(this, timeLeft);
+
+                    // interrupts are ignored while waiting for work, as they always have been
+                    Thread.interrupted();
                 }
+            } finally {
+                waitingThreads.remove(thread);
             }
         }
+    }
+
+    private void signalWork() {
+        signalCount.incrementAndGet();
 
-        return null;
+        final Thread waitingThread = waitingThreads.poll();
+        if (waitingThread != null) {
+            LockSupport.unpark(waitingThread);
+        }
     }
 
     @Override
     public void offer(final Connectable connectable) {
-        synchronized (workMonitor) {
-            Worker worker = workerMap.get(connectable);
-            if (worker == null) {
-                // if worker is null, then it has not been scheduled to run; ignore the event.
-                return;
-            }
-
-            final int countBefore = worker.incrementEventCount();
-            if (countBefore < 0) {
-                worker.setWorkCount(1);
-            }
-            if (countBefore <= 0) {
-                // If countBefore > 0 then it's already on the queue, so just incrementing its counter is sufficient.
-                workerQueue.offer(worker);
-            }
+        final Worker worker = workerMap.get(connectable);
+        if (worker == null) {
+            // if worker is null, then it has not been scheduled to run; ignore the event.
+            return;
+        }
 
-            workMonitor.notify();
+        final int countBefore = worker.incrementEventCount();
+        if (countBefore < 0) {
+            worker.setWorkCount(1);
         }
+
+        // If the worker is already queued, incrementing its counter is sufficient.
+        workerQueue.offer(worker);
+        signalWork();
     }
 
     private int getWorkCount(final Connectable connectable) {
@@ -117,30 +151,29 @@ public class EventDrivenWorkerQueue implements WorkerQueue {
 
     @Override
     public void resumeWork(final Connectable connectable) {
-        synchronized (workMonitor) {
-            final int workCount = getWorkCount(connectable);
-            final Worker worker = new Worker(connectable);
-            workerMap.put(connectable, worker);
-
-            if (workCount > 0) {
-                worker.setWorkCount(workCount);
-                workerQueue.offer(worker);
-                workMonitor.notify();
-            }
+        final int workCount = getWorkCount(connectable);
+        final Worker worker = new Worker(connectable);
+        final Worker replaced = workerMap.put(connectable, worker);
+        if (replaced != null) {
+            workerQueue.remove(replaced);
+        }
+
+        if (workCount > 0) {
+            worker.setWorkCount(workCount);
+            workerQueue.offer(worker);
+            signalWork();
         }
     }
 
     @Override
     public void suspendWork(final Connectable connectable) {
-        synchronized (workMonitor) {
-            final Worker worker = this.workerMap.remove(connectable);
-            if (worker == null) {
-                return;
-            }
-
-            worker.resetWorkCount();
-            workerQueue.remove(worker);
+        final Worker worker = this.workerMap.remove(connectable);
+        if (worker == null) {
+            return;
         }
+
+        worker.resetWorkCount();
+        workerQueue.remove(worker);
     }
 
     public static class Worker implements EventBasedWorker {
@@ -148,6 +181,9 @@ public class EventDrivenWorkerQueue implements WorkerQueue {
         private final Connectable connectable;
         private final AtomicInteger workCount = new AtomicInteger(0);
 
+        // whether the worker is in the ready queue or held aside as isolated
+        private final AtomicBoolean queued = new AtomicBoolean(false);
+
         public Worker(final Connectable connectable) {
             this.connectable = connectable;
         }
@@ -176,11 +212,14 @@ public class EventDrivenWorkerQueue implements WorkerQueue {
         }
     }
 
-    @SuppressWarnings("serial")
-    private static class WorkerReadyQueue extends LinkedList<Worker> {
+    private static class WorkerReadyQueue {
 
         private final ProcessScheduler scheduler;
 
+        private final Queue<Worker> readyQueue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger readyCount = new AtomicInteger(0);
+        private final Set<Worker> isolatedWorkers = ConcurrentHashMap.newKeySet();
+
         private volatile boolean clustered = false;
         private volatile boolean primary = false;
 
@@ -188,29 +227,101 @@ public class EventDrivenWorkerQueue implements WorkerQueue {
             this.scheduler = scheduler;
         }
 
-        public void setClustered(final boolean clustered) {
+        /**
+         * @return <code>true</code> if any workers that were held aside have been queued
+         */
+        public boolean setClustered(final boolean clustered) {
             this.clustered = clustered;
+            return releaseIsolatedWorkers();
         }
 
-        public void setPrimary(final boolean primary) {
+        /**
+         * @return <code>true</code> if any workers that were held aside have been queued
+         */
+        public boolean setPrimary(final boolean primary) {
             this.primary = primary;
+            return releaseIsolatedWorkers();
         }
 
-        @Override
-        public Worker poll() {
+        private boolean isIsolating() {
+            return clustered && !primary;
+        }
+
+        private boolean releaseIsolatedWorkers() {
+            if (isIsolating()) {
+                return false;
+            }
+
+            boolean released = false;
+            for (final Worker worker : isolatedWorkers) {
+                if (isolatedWorkers.remove(worker)) {
+                    enqueue(worker);
+                    released = true;
+                }
+            }
+
+            return released;
+        }
+
+        public void offer(final Worker worker) {
+            if (worker.queued.compareAndSet(false, true)) {
+                enqueue(worker);
+            }
+        }
+
+        private void enqueue(final Worker worker) {
+            readyQueue.offer(worker);
+            readyCount.incrementAndGet();
+        }
+
+        public void remove(final Worker worker) {
+            if (readyQueue.remove(worker)) {
+                readyCount.decrementAndGet();
+            }
+            isolatedWorkers.remove(worker);
+        }
+
+        /**
+         * Looks through the workers that are currently queued, in order, and removes the first that is ready to run.
+         *
+         * @param workerMap the workers of the components that are scheduled to run
+         * @return the first worker that is ready to run, or <code>null</code> if none of the queued workers is ready
+         */
+        public Worker poll(final ConcurrentMap<Connectable, Worker> workerMap) {
             final List<Worker> putBack = new ArrayList<>();
 
-            Worker worker;
             try {
-                while ((worker = super.poll()) != null) {
+                // Only look at the workers that are queued now, as other threads may be putting workers back concurrently.
+                final int maxWorkers = readyCount.get();
+                for (int i = 0; i < maxWorkers; i++) {
+                    final Worker worker = readyQueue.poll();
+                    if (worker == null) {
+                        return null;
+                    }
+                    readyCount.decrementAndGet();
+
+                    if (workerMap.get(worker.getConnectable()) != worker) {
+                        // the component's work has been suspended since the worker was queued
+                        worker.queued.set(false);
+                        continue;
+                    }
+
                     final DelayProcessingReason reason = getDelayReason(worker);
                     if (reason == null) {
+                        worker.queued.set(false);
                         return worker;
                     } else {
                         // Worker is not ready. We may want to add him back to the queue, depending on the reason that he is unready.
                         switch (reason) {
-                            case YIELDED:
                             case ISOLATED:
+                                // There will be no need to check this worker again until this node becomes the Primary Node
+                                // or is disconnected from the cluster, so it is held aside until then.
+                                isolatedWorkers.add(worker);
+                                if (!isIsolating() && isolatedWorkers.remove(worker)) {
+                                    putBack.add(worker);
+                                }
+                                break;
+                            case YIELDED:
                             case DESTINATION_FULL:
                             case ALL_WORK_PENALIZED:
                             case NO_WORK:
@@ -223,13 +334,14 @@ public class EventDrivenWorkerQueue implements WorkerQueue {
                                 // There's no need to check if this worker is available again until a another event
                                 // occurs. Therefore, we keep him off of the queue and reset his work count
                                 worker.resetWorkCount();
+                                worker.queued.set(false);
                                 break;
                         }
                     }
                 }
             } finally {
-                if (!putBack.isEmpty()) {
-                    super.addAll(putBack);
+                for (final Worker worker : putBack) {
+                    enqueue(worker);
                 }
             }
 
@@ -243,6 +355,11 @@ public class EventDrivenWorkerQueue implements WorkerQueue {
                 return DelayProcessingReason.NOT_RUNNING;
             }
 
+            // checked first, as isolated workers are held aside rather than being checked again on every poll
+            if (connectable instanceof ProcessorNode && ((ProcessorNode) connectable).isIsolated() && isIsolating()) {
+                return DelayProcessingReason.ISOLATED;
+            }
+
             if (connectable.getYieldExpiration() > System.currentTimeMillis()) {
                 return DelayProcessingReason.YIELDED;
             }
@@ -269,10 +386,6 @@ public class EventDrivenWorkerQueue implements WorkerQueue {
 
             if (connectable instanceof ProcessorNode) {
                 final ProcessorNode procNode = (ProcessorNode) connectable;
-                if (procNode.isIsolated() && clustered && !primary) {
-                    return DelayProcessingReason.ISOLATED;
-                }
-
                 final boolean triggerWhenAnyAvailable = procNode.isTriggerWhenAnyDestinationAvailable();
                 final boolean allDestinationsAvailable = availableRelationshipCount == procNode.getRelationships().size();
                 if (!triggerWhenAnyAvailable && !allDestinationsAvailable) {
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.apache.nifi.controller.repository.FlowFileRecord;
+
+/**
+ * <p>
+ * The active queue that is used by a {@link StandardFlowFileQueue} when no prioritizers are configured. FlowFiles
+ * that are not penalized are kept in an array-backed ring, so that adding and polling are constant-time operations
+ * rather than requiring the heap to be re-sorted for each FlowFile.
+ * </p>
+ *
+ * <p>
+ * In order to preserve the semantics of the prioritized queue, penalized FlowFiles are kept separately, ordered by
+ * the time at which their penalty expires. A penalized FlowFile is never returned ahead of a FlowFile that is not penalized,
+ * and a FlowFile whose penalty has expired is returned ahead of any FlowFile in the ring, since it was queued earlier.
+ * </p>
+ *
+ * <p>
+ * This class is not thread-safe. It is expected that all access is guarded by the lock of the owning queue.
+ * </p>
+ */
+final class FifoActiveQueue extends AbstractQueue<FlowFileRecord> {
+
+    private static final Comparator<FlowFileRecord> PENALTY_COMPARATOR = new Comparator<FlowFileRecord>() {
+        @Override
+        public int compare(final FlowFileRecord f1, final FlowFileRecord f2) {
+            final int penaltyComparison = Long.compare(f1.getPenaltyExpirationMillis(), f2.getPenaltyExpirationMillis());
+            if (penaltyComparison != 0) {
+                return penaltyComparison;
+            }
+
+            return Long.compare(f1.getId(), f2.getId());
+        }
+    };
+
+    private final ArrayDeque<FlowFileRecord> ready;
+    private final PriorityQueue<FlowFileRecord> penalized = new PriorityQueue<>(20, PENALTY_COMPARATOR);
+
+    FifoActiveQueue(final int initialCapacity) {
+        ready = new ArrayDeque<>(Math.max(16, initialCapacity));
+    }
+
+    @Override
+    public boolean offer(final FlowFileRecord flowFile) {
+        if (flowFile.isPenalized()) {
+            penalized.offer(flowFile);
+        } else {
+            ready.offer(flowFile);
+        }
+
+        return true;
+    }
+
+    @Override
+    public FlowFileRecord poll() {
+        final FlowFileRecord penalizedHead = penalized.peek();
+        if (penalizedHead != null && (ready.isEmpty() || !penalizedHead.isPenalized())) {
+            return penalized.poll();
+        }
+
+        return ready.poll();
+    }
+
+    @Override
+    public FlowFileRecord peek() {
+        final FlowFileRecord penalizedHead = penalized.peek();
+        if (penalizedHead != null && (ready.isEmpty() || !penalizedHead.isPenalized())) {
+            return penalizedHead;
+        }
+
+        return ready.peek();
+    }
+
+    @Override
+    public int size() {
+        return ready.size() + penalized.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return ready.isEmpty() && penalized.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        ready.clear();
+        penalized.clear();
+    }
+
+    /**
+     * @return an Iterator over all FlowFiles in the queue. The FlowFiles that are not penalized are returned
+     *         first, in the order that they will be polled, followed by the penalized FlowFiles in no particular order.
+     *         The Iterator does not support removal.
+     */
+    @Override
+    public Iterator<FlowFileRecord> iterator() {
+        final Iterator<FlowFileRecord> readyItr = ready.iterator();
+        final Iterator<FlowFileRecord> penalizedItr = penalized.iterator();
+
+        return new Iterator<FlowFileRecord>() {
+            @Override
+            public boolean hasNext() {
+                return readyItr.hasNext() || penalizedItr.hasNext();
+            }
+
+            @Override
+            public FlowFileRecord next() {
+                if (readyItr.hasNext()) {
+                    return readyItr.next();
+                }
+                if (penalizedItr.hasNext()) {
+                    return penalizedItr.next();
+                }
+                throw new NoSuchElementException();
+            }
+        };
+    }
+}
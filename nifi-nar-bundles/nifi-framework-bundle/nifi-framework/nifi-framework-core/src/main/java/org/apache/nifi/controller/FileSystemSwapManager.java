@@ -33,10 +33,16 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
 import org.apache.nifi.controller.queue.FlowFileQueue;
 import org.apache.nifi.controller.queue.QueueSize;
 import org.apache.nifi.controller.repository.FlowFileRecord;
@@ -72,11 +78,15 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
     private static final Pattern SWAP_FILE_PATTERN = Pattern.compile("\\d+-.+\\.swap");
     private static final Pattern TEMP_SWAP_FILE_PATTERN = Pattern.compile("\\d+-.+\\.swap\\.part");
 
-    public static final int SWAP_ENCODING_VERSION = 10;
+    public static final int SWAP_ENCODING_VERSION = 11;
+
+    // Version 11 introduced the compact encoding, which uses dictionaries for Resource Claims and for attribute keys and values.
+    private static final int COMPACT_ENCODING_VERSION = 11;
     public static final String EVENT_CATEGORY = "Swap FlowFiles";
     private static final Logger logger = LoggerFactory.getLogger(FileSystemSwapManager.class);
 
     private final File storageDirectory;
+    private final boolean compressSwapFiles;
 
     // effectively final
     private FlowFileRepository flowFileRepository;
@@ -88,6 +98,7 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
      */
     public FileSystemSwapManager() {
         storageDirectory = null;
+        compressSwapFiles = false;
     }
 
     public FileSystemSwapManager(final NiFiProperties nifiProperties) {
@@ -97,6 +108,8 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
         if (!storageDirectory.exists() && !storageDirectory.mkdirs()) {
             throw new RuntimeException("Cannot create Swap Storage directory " + storageDirectory.getAbsolutePath());
         }
+
+        this.compressSwapFiles = nifiProperties.isSwapCompressionEnabled();
     }
 
     @Override
@@ -117,7 +130,7 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
         final String swapLocation = swapFile.getAbsolutePath();
 
         try (final FileOutputStream fos = new FileOutputStream(swapTempFile)) {
-            serializeFlowFiles(toSwap, flowFileQueue, swapLocation, fos);
+            serializeFlowFiles(toSwap, flowFileQueue, swapLocation, fos, compressSwapFiles);
             fos.getFD().sync();
         } catch (final IOException ioe) {
             // we failed to write out the entire swap file. Delete the temporary file, if we can.
@@ -281,19 +294,84 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
             }
 
             final QueueSize queueSize = new QueueSize(numRecords, contentSize);
+            if (swapEncodingVersion >= COMPACT_ENCODING_VERSION) {
+                // The compact encoding stores everything that is needed for the summary in the header, so there is no need to read the FlowFiles.
+                final List<ResourceClaimReference> claimReferences;
+                try {
+                    claimReferences = readResourceClaimDictionary(in, claimManager);
+                } catch (final EOFException eof) {
+                    logger.warn("Found premature End-of-File when reading Swap File {}. EOF occurred before any FlowFiles were encountered", swapLocation);
+                    return StandardSwapSummary.EMPTY_SUMMARY;
+                }
+
+                final List<ResourceClaim> resourceClaims = new ArrayList<>(numRecords);
+                for (final ResourceClaimReference claimReference : claimReferences) {
+                    for (int i = 0; i < claimReference.getReferenceCount(); i++) {
+                        claimManager.incrementClaimantCount(claimReference.getResourceClaim());
+                        resourceClaims.add(claimReference.getResourceClaim());
+                    }
+                }
+
+                return new StandardSwapSummary(queueSize, maxRecordId, resourceClaims);
+            }
+
             final SwapContents swapContents = deserializeFlowFiles(in, queueSize, maxRecordId, swapEncodingVersion, true, claimManager, swapLocation);
             return swapContents.getSummary();
         }
     }
 
     public static int serializeFlowFiles(final List<FlowFileRecord> toSwap, final FlowFileQueue queue, final String swapLocation, final OutputStream destination) throws IOException {
+        return serializeFlowFiles(toSwap, queue, swapLocation, destination, false);
+    }
+
+    /**
+     * <p>
+     * Serializes the given FlowFiles to the given OutputStream. The header of the swap file contains the number of FlowFiles,
+     * their total content size, the maximum FlowFile ID, and a dictionary of the Resource Claims that the FlowFiles reference,
+     * along with the number of FlowFiles that reference each. This allows a Swap Summary to be created without reading the FlowFiles.
+     * </p>
+     *
+     * <p>
+     * The FlowFiles then follow, optionally compressed. Resource Claims are written as an index into the dictionary, and attribute
+     * keys and values are written only the first time that they are encountered, with any subsequent occurrence written as an index.
+     * </p>
+     *
+     * @param toSwap the FlowFiles to serialize
+     * @param queue the queue that the FlowFiles belong to
+     * @param swapLocation the location of the swap file, used only for logging
+     * @param destination the stream to write to
+     * @param compress whether or not the FlowFiles should be compressed
+     * @return the number of FlowFiles that were serialized
+     * @throws IOException if unable to write to the given stream
+     */
+    public static int serializeFlowFiles(final List<FlowFileRecord> toSwap, final FlowFileQueue queue, final String swapLocation, final OutputStream destination,
+            final boolean compress) throws IOException {
         if (toSwap == null || toSwap.isEmpty()) {
             return 0;
         }
 
         long contentSize = 0L;
-        for (final FlowFileRecord record : toSwap) {
-            contentSize += record.getSize();
+        long maxRecordId = 0L;
+        final Map<ResourceClaim, Integer> claimIndices = new LinkedHashMap<>();
+        final Map<ResourceClaim, Integer> claimReferenceCounts = new HashMap<>();
+        for (final FlowFileRecord flowFile : toSwap) {
+            contentSize += flowFile.getSize();
+
+            // get the max record id and write that out so that we know it quickly for restoration
+            if (flowFile.getId() > maxRecordId) {
+                maxRecordId = flowFile.getId();
+            }
+
+            final ContentClaim claim = flowFile.getContentClaim();
+            if (claim != null) {
+                final ResourceClaim resourceClaim = claim.getResourceClaim();
+                if (!claimIndices.containsKey(resourceClaim)) {
+                    claimIndices.put(resourceClaim, claimIndices.size());
+                }
+
+                final Integer referenceCount = claimReferenceCounts.get(resourceClaim);
+                claimReferenceCounts.put(resourceClaim, referenceCount == null ? 1 : referenceCount + 1);
+            }
         }
 
         // persist record to disk via the swap file
@@ -304,50 +382,65 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
             out.writeUTF(queue.getIdentifier());
             out.writeInt(toSwap.size());
             out.writeLong(contentSize);
+            out.writeLong(maxRecordId);
 
-            // get the max record id and write that out so that we know it quickly for restoration
-            long maxRecordId = 0L;
-            for (final FlowFileRecord flowFile : toSwap) {
-                if (flowFile.getId() > maxRecordId) {
-                    maxRecordId = flowFile.getId();
-                }
+            out.writeInt(claimIndices.size());
+            for (final ResourceClaim resourceClaim : claimIndices.keySet()) {
+                out.writeUTF(resourceClaim.getId());
+                out.writeUTF(resourceClaim.getContainer());
+                out.writeUTF(resourceClaim.getSection());
+                out.writeBoolean(resourceClaim.isLossTolerant());
+                out.writeInt(claimReferenceCounts.get(resourceClaim));
             }
 
-            out.writeLong(maxRecordId);
+            out.writeBoolean(compress);
+        } finally {
+            out.flush();
+        }
+
+        final Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        final DeflaterOutputStream deflaterOut = compress ? new DeflaterOutputStream(bufferedOut, deflater, 8192) : null;
+        final DataOutputStream recordOut = new DataOutputStream(compress ? deflaterOut : bufferedOut);
+        try {
+            final Map<String, Integer> keyDictionary = new HashMap<>();
+            final Map<String, Integer> valueDictionary = new HashMap<>();
 
             for (final FlowFileRecord flowFile : toSwap) {
-                out.writeLong(flowFile.getId());
-                out.writeLong(flowFile.getEntryDate());
-                out.writeLong(flowFile.getLineageStartDate());
-                out.writeLong(flowFile.getLineageStartIndex());
-                out.writeLong(flowFile.getLastQueueDate());
-                out.writeLong(flowFile.getQueueDateIndex());
-                out.writeLong(flowFile.getSize());
+                recordOut.writeLong(flowFile.getId());
+                recordOut.writeLong(flowFile.getEntryDate());
+                recordOut.writeLong(flowFile.getLineageStartDate());
+                recordOut.writeLong(flowFile.getLineageStartIndex());
+                recordOut.writeLong(flowFile.getLastQueueDate());
+                recordOut.writeLong(flowFile.getQueueDateIndex());
+                recordOut.writeLong(flowFile.getSize());
 
                 final ContentClaim claim = flowFile.getContentClaim();
                 if (claim == null) {
-                    out.writeBoolean(false);
+                    recordOut.writeInt(-1);
                 } else {
-                    out.writeBoolean(true);
-                    final ResourceClaim resourceClaim = claim.getResourceClaim();
-                    out.writeUTF(resourceClaim.getId());
-                    out.writeUTF(resourceClaim.getContainer());
-                    out.writeUTF(resourceClaim.getSection());
-                    out.writeLong(claim.getOffset());
-                    out.writeLong(claim.getLength());
-                    out.writeLong(flowFile.getContentClaimOffset());
-                    out.writeBoolean(resourceClaim.isLossTolerant());
+                    recordOut.writeInt(claimIndices.get(claim.getResourceClaim()));
+                    recordOut.writeLong(claim.getOffset());
+                    recordOut.writeLong(claim.getLength());
+                    recordOut.writeLong(flowFile.getContentClaimOffset());
                 }
 
                 final Map<String, String> attributes = flowFile.getAttributes();
-                out.writeInt(attributes.size());
+                recordOut.writeInt(attributes.size());
                 for (final Map.Entry<String, String> entry : attributes.entrySet()) {
-                    writeString(entry.getKey(), out);
-                    writeString(entry.getValue(), out);
+                    writeDictionaryString(entry.getKey(), keyDictionary, recordOut);
+                    writeDictionaryString(entry.getValue(), valueDictionary, recordOut);
                 }
             }
+
+            if (compress) {
+                recordOut.flush();
+                deflaterOut.finish();
+            }
         } finally {
-            out.flush();
+            recordOut.flush();
+            if (deflater != null) {
+                deflater.end();
+            }
         }
 
         logger.info("Successfully swapped out {} FlowFiles from {} to Swap File {}", toSwap.size(), queue, swapLocation);
@@ -355,6 +448,32 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
         return toSwap.size();
     }
 
+    private static void writeDictionaryString(final String toWrite, final Map<String, Integer> dictionary, final DataOutputStream out) throws IOException {
+        final Integer index = dictionary.get(toWrite);
+        if (index == null) {
+            out.writeInt(-1);
+            writeString(toWrite, out);
+            dictionary.put(toWrite, dictionary.size());
+        } else {
+            out.writeInt(index);
+        }
+    }
+
+    private static String readDictionaryString(final DataInputStream in, final List<String> dictionary) throws IOException {
+        final int index = in.readInt();
+        if (index < 0) {
+            final String value = readString(in);
+            dictionary.add(value);
+            return value;
+        }
+
+        if (index >= dictionary.size()) {
+            throw new IOException("Swap File references String at index " + index + " but only " + dictionary.size() + " Strings have been encountered");
+        }
+
+        return dictionary.get(index);
+    }
+
     private static void writeString(final String toWrite, final OutputStream out) throws IOException {
         final byte[] bytes = toWrite.getBytes(StandardCharsets.UTF_8);
         final int utflen = bytes.length;
@@ -404,9 +523,112 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
         }
 
         final QueueSize queueSize = new QueueSize(numRecords, contentSize);
+        if (swapEncodingVersion >= COMPACT_ENCODING_VERSION) {
+            return deserializeCompactFlowFiles(in, queueSize, maxRecordId, claimManager, swapLocation);
+        }
+
         return deserializeFlowFiles(in, queueSize, maxRecordId, swapEncodingVersion, false, claimManager, swapLocation);
     }
 
+    private static List<ResourceClaimReference> readResourceClaimDictionary(final DataInputStream in, final ResourceClaimManager claimManager) throws IOException {
+        final int numClaims = in.readInt();
+        final List<ResourceClaimReference> claimReferences = new ArrayList<>(numClaims);
+        for (int i = 0; i < numClaims; i++) {
+            final String claimId = in.readUTF();
+            final String container = in.readUTF();
+            final String section = in.readUTF();
+            final boolean lossTolerant = in.readBoolean();
+            final int referenceCount = in.readInt();
+
+            ResourceClaim resourceClaim = claimManager.getResourceClaim(container, section, claimId);
+            if (resourceClaim == null) {
+                logger.error("Swap file indicates that FlowFile was referencing Resource Claim at container={}, section={}, claimId={}, "
+                    + "but this Resource Claim cannot be found! Will create a temporary Resource Claim, but this may affect the framework's "
+                    + "ability to properly clean up this resource", container, section, claimId);
+                resourceClaim = claimManager.newResourceClaim(container, section, claimId, lossTolerant, true);
+            }
+
+            claimReferences.add(new ResourceClaimReference(resourceClaim, referenceCount));
+        }
+
+        return claimReferences;
+    }
+
+    private static SwapContents deserializeCompactFlowFiles(final DataInputStream in, final QueueSize queueSize, final Long maxRecordId,
+            final ResourceClaimManager claimManager, final String location) throws IOException {
+        final List<FlowFileRecord> flowFiles = new ArrayList<>(queueSize.getObjectCount());
+        final List<ResourceClaim> resourceClaims = new ArrayList<>(queueSize.getObjectCount());
+
+        final List<ResourceClaimReference> claimReferences;
+        final boolean compressed;
+        try {
+            claimReferences = readResourceClaimDictionary(in, claimManager);
+            compressed = in.readBoolean();
+        } catch (final EOFException eof) {
+            final SwapSummary swapSummary = new StandardSwapSummary(queueSize, maxRecordId, resourceClaims);
+            throw new IncompleteSwapFileException(location, new StandardSwapContents(swapSummary, flowFiles));
+        }
+
+        final DataInputStream recordIn = compressed ? new DataInputStream(new InflaterInputStream(in)) : in;
+        final List<String> keyDictionary = new ArrayList<>();
+        final List<String> valueDictionary = new ArrayList<>();
+
+        for (int i = 0; i < queueSize.getObjectCount(); i++) {
+            try {
+                final StandardFlowFileRecord.Builder ffBuilder = new StandardFlowFileRecord.Builder();
+                ffBuilder.id(recordIn.readLong());
+                ffBuilder.entryDate(recordIn.readLong());
+
+                final long lineageStartDate = recordIn.readLong();
+                final long lineageStartIndex = recordIn.readLong();
+                ffBuilder.lineageStart(lineageStartDate, lineageStartIndex);
+
+                final long lastQueueDate = recordIn.readLong();
+                final long queueDateIndex = recordIn.readLong();
+                ffBuilder.lastQueued(lastQueueDate, queueDateIndex);
+
+                ffBuilder.size(recordIn.readLong());
+
+                final int claimIndex = recordIn.readInt();
+                ResourceClaim resourceClaim = null;
+                if (claimIndex >= 0) {
+                    if (claimIndex >= claimReferences.size()) {
+                        throw new IOException("Swap File " + location + " references Resource Claim at index " + claimIndex + " but only "
+                            + claimReferences.size() + " Resource Claims exist in the Swap File");
+                    }
+
+                    resourceClaim = claimReferences.get(claimIndex).getResourceClaim();
+                    final StandardContentClaim claim = new StandardContentClaim(resourceClaim, recordIn.readLong());
+                    claim.setLength(recordIn.readLong());
+
+                    ffBuilder.contentClaim(claim);
+                    ffBuilder.contentClaimOffset(recordIn.readLong());
+                }
+
+                final int numAttributes = recordIn.readInt();
+                for (int j = 0; j < numAttributes; j++) {
+                    final String key = readDictionaryString(recordIn, keyDictionary);
+                    final String value = readDictionaryString(recordIn, valueDictionary);
+                    ffBuilder.addAttribute(key, value);
+                }
+
+                final FlowFileRecord record = ffBuilder.build();
+                if (resourceClaim != null) {
+                    resourceClaims.add(resourceClaim);
+                }
+
+                flowFiles.add(record);
+            } catch (final EOFException eof) {
+                final SwapSummary swapSummary = new StandardSwapSummary(queueSize, maxRecordId, resourceClaims);
+                final SwapContents partialContents = new StandardSwapContents(swapSummary, flowFiles);
+                throw new IncompleteSwapFileException(location, partialContents);
+            }
+        }
+
+        final SwapSummary swapSummary = new StandardSwapSummary(queueSize, maxRecordId, resourceClaims);
+        return new StandardSwapContents(swapSummary, flowFiles);
+    }
+
     private static SwapContents deserializeFlowFiles(final DataInputStream in, final QueueSize queueSize, final Long maxRecordId,
             final int serializationVersion, final boolean incrementContentClaims, final ResourceClaimManager claimManager, final String location) throws IOException {
         final List<FlowFileRecord> flowFiles = new ArrayList<>(queueSize.getObjectCount());
@@ -613,6 +835,24 @@ public class FileSystemSwapManager implements FlowFileSwapManager {
         }
     }
 
+    private static class ResourceClaimReference {
+        private final ResourceClaim resourceClaim;
+        private final int referenceCount;
+
+        public ResourceClaimReference(final ResourceClaim resourceClaim, final int referenceCount) {
+            this.resourceClaim = resourceClaim;
+            this.referenceCount = referenceCount;
+        }
+
+        public ResourceClaim getResourceClaim() {
+            return resourceClaim;
+        }
+
+        public int getReferenceCount() {
+            return referenceCount;
+        }
+    }
+
     private static class SwapFileComparator implements Comparator<String> {
 
         @Override
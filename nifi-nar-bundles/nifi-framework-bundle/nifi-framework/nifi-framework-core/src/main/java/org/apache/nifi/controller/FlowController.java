@@ -19,10 +19,12 @@ package org.apache.nifi.controller;
 import static java.util.Objects.requireNonNull;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -97,10 +99,13 @@ import org.apache.nifi.controller.leader.election.LeaderElectionManager;
 import org.apache.nifi.controller.leader.election.LeaderElectionStateChangeListener;
 import org.apache.nifi.controller.queue.FlowFileQueue;
 import org.apache.nifi.controller.queue.QueueSize;
+import org.apache.nifi.controller.queue.SwapStatistics;
 import org.apache.nifi.controller.reporting.ReportingTaskInstantiationException;
 import org.apache.nifi.controller.reporting.ReportingTaskProvider;
 import org.apache.nifi.controller.reporting.StandardReportingInitializationContext;
 import org.apache.nifi.controller.reporting.StandardReportingTaskNode;
+import org.apache.nifi.controller.repository.AsyncProvenanceEventRepository;
+import org.apache.nifi.controller.repository.AsyncProvenanceEventRepository.OverloadPolicy;
 import org.apache.nifi.controller.repository.ContentRepository;
 import org.apache.nifi.controller.repository.CounterRepository;
 import org.apache.nifi.controller.repository.FlowFileEvent;
@@ -126,8 +131,10 @@ import org.apache.nifi.controller.repository.io.LimitedInputStream;
 import org.apache.nifi.controller.scheduling.EventDrivenSchedulingAgent;
 import org.apache.nifi.controller.scheduling.ProcessContextFactory;
 import org.apache.nifi.controller.scheduling.QuartzSchedulingAgent;
+import org.apache.nifi.controller.scheduling.SchedulingAgent;
 import org.apache.nifi.controller.scheduling.StandardProcessScheduler;
 import org.apache.nifi.controller.scheduling.TimerDrivenSchedulingAgent;
+import org.apache.nifi.controller.scheduling.WorkAwareSchedulingAgent;
 import org.apache.nifi.controller.serialization.FlowSerializationException;
 import org.apache.nifi.controller.serialization.FlowSerializer;
 import org.apache.nifi.controller.serialization.FlowSynchronizationException;
@@ -148,10 +155,13 @@ import org.apache.nifi.controller.status.TransmissionStatus;
 import org.apache.nifi.controller.status.history.ComponentStatusRepository;
 import org.apache.nifi.controller.status.history.StatusHistoryUtil;
 import org.apache.nifi.controller.tasks.ExpireFlowFiles;
+import org.apache.nifi.controller.tasks.ThreadResourceUsage;
 import org.apache.nifi.diagnostics.SystemDiagnostics;
 import org.apache.nifi.diagnostics.SystemDiagnosticsFactory;
 import org.apache.nifi.encrypt.StringEncryptor;
 import org.apache.nifi.engine.FlowEngine;
+import org.apache.nifi.engine.SchedulingEngine;
+import org.apache.nifi.engine.WorkStealingFlowEngine;
 import org.apache.nifi.events.BulletinFactory;
 import org.apache.nifi.events.EventReporter;
 import org.apache.nifi.flowfile.FlowFilePrioritizer;
@@ -181,6 +191,7 @@ import org.apache.nifi.processor.StandardProcessorInitializationContext;
 import org.apache.nifi.processor.StandardValidationContextFactory;
 import org.apache.nifi.provenance.ProvenanceAuthorizableFactory;
 import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventRepository;
 import org.apache.nifi.provenance.ProvenanceEventType;
 import org.apache.nifi.provenance.ProvenanceRepository;
 import org.apache.nifi.provenance.StandardProvenanceEventRecord;
@@ -259,13 +270,14 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
 
     private final AtomicInteger maxTimerDrivenThreads;
     private final AtomicInteger maxEventDrivenThreads;
-    private final AtomicReference<FlowEngine> timerDrivenEngineRef;
+    private final AtomicReference<SchedulingEngine> timerDrivenEngineRef;
     private final AtomicReference<FlowEngine> eventDrivenEngineRef;
 
     private final ContentRepository contentRepository;
     private final FlowFileRepository flowFileRepository;
     private final FlowFileEventRepository flowFileEventRepository;
     private final ProvenanceRepository provenanceRepository;
+    private final AsyncProvenanceEventRepository asyncProvenanceRepository;
     private final BulletinRepository bulletinRepository;
     private final StandardProcessScheduler processScheduler;
     private final SnippetManager snippetManager;
@@ -321,6 +333,10 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
     private final StringEncryptor encryptor;
 
     private final ScheduledExecutorService clusterTaskExecutor = new FlowEngine(3, "Clustering Tasks", true);
+
+    // Engines used by FlowFile Queues to write and read Swap Files in the background, or null if swapping is performed synchronously
+    private final FlowEngine swapOutEngine;
+    private final FlowEngine swapInEngine;
     private final ResourceClaimManager resourceClaimManager = new StandardResourceClaimManager();
 
     // guarded by rwLock
@@ -441,9 +457,22 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
         extensionManager = new ExtensionManager();
         this.clusterCoordinator = clusterCoordinator;
 
-        timerDrivenEngineRef = new AtomicReference<>(new FlowEngine(maxTimerDrivenThreads.get(), "Timer-Driven Process"));
+        if (nifiProperties.isWorkStealingEngineEnabled()) {
+            timerDrivenEngineRef = new AtomicReference<>(new WorkStealingFlowEngine(maxTimerDrivenThreads.get(), "Timer-Driven Process"));
+        } else {
+            timerDrivenEngineRef = new AtomicReference<>(new FlowEngine(maxTimerDrivenThreads.get(), "Timer-Driven Process"));
+        }
         eventDrivenEngineRef = new AtomicReference<>(new FlowEngine(maxEventDrivenThreads.get(), "Event-Driven Process"));
 
+        if (nifiProperties.isLockWaitAccountingEnabled() && !ThreadResourceUsage.enableContentionMonitoring()) {
+            LOG.warn("Thread contention monitoring is not supported by this JVM; the time that Processors spend blocked and waiting will not be reported");
+        }
+
+        final int swapOutThreads = nifiProperties.getSwapOutThreads();
+        swapOutEngine = swapOutThreads > 0 ? new FlowEngine(swapOutThreads, "Swap Out", true) : null;
+        final int swapInThreads = nifiProperties.getSwapInThreads();
+        swapInEngine = swapInThreads > 0 ? new FlowEngine(swapInThreads, "Swap In", true) : null;
+
         final FlowFileRepository flowFileRepo = createFlowFileRepository(nifiProperties, resourceClaimManager);
         flowFileRepository = flowFileRepo;
         flowFileEventRepository = flowFileEventRepo;
@@ -459,6 +488,12 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
             throw new RuntimeException("Unable to create Provenance Repository", e);
         }
 
+        try {
+            this.asyncProvenanceRepository = createAsyncProvenanceRepository(nifiProperties, provenanceRepository);
+        } catch (final Exception e) {
+            throw new RuntimeException("Unable to create asynchronous handoff to Provenance Repository", e);
+        }
+
         try {
             this.contentRepository = createContentRepository(nifiProperties);
         } catch (final Exception e) {
@@ -474,12 +509,20 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
         processScheduler = new StandardProcessScheduler(this, encryptor, stateManagerProvider, this.variableRegistry, this.nifiProperties);
         eventDrivenWorkerQueue = new EventDrivenWorkerQueue(false, false, processScheduler);
 
-        final ProcessContextFactory contextFactory = new ProcessContextFactory(contentRepository, flowFileRepository, flowFileEventRepository, counterRepositoryRef.get(), provenanceRepository);
+        // Sessions register their events by way of the asynchronous handoff, if one is configured
+        final ProvenanceEventRepository sessionProvenanceRepository = asyncProvenanceRepository == null ? provenanceRepository : asyncProvenanceRepository;
+        final ProcessContextFactory contextFactory = new ProcessContextFactory(contentRepository, flowFileRepository, flowFileEventRepository, counterRepositoryRef.get(),
+            sessionProvenanceRepository);
         processScheduler.setSchedulingAgent(SchedulingStrategy.EVENT_DRIVEN, new EventDrivenSchedulingAgent(
                 eventDrivenEngineRef.get(), this, stateManagerProvider, eventDrivenWorkerQueue, contextFactory, maxEventDrivenThreads.get(), encryptor, this.variableRegistry));
 
         final QuartzSchedulingAgent quartzSchedulingAgent = new QuartzSchedulingAgent(this, timerDrivenEngineRef.get(), contextFactory, encryptor, this.variableRegistry);
-        final TimerDrivenSchedulingAgent timerDrivenAgent = new TimerDrivenSchedulingAgent(this, timerDrivenEngineRef.get(), contextFactory, encryptor, this.variableRegistry, this.nifiProperties);
+        final SchedulingAgent timerDrivenAgent;
+        if (nifiProperties.isWorkAwareSchedulingEnabled()) {
+            timerDrivenAgent = new WorkAwareSchedulingAgent(this, timerDrivenEngineRef.get(), contextFactory, encryptor, this.variableRegistry, this.nifiProperties);
+        } else {
+            timerDrivenAgent = new TimerDrivenSchedulingAgent(this, timerDrivenEngineRef.get(), contextFactory, encryptor, this.variableRegistry, this.nifiProperties);
+        }
         processScheduler.setSchedulingAgent(SchedulingStrategy.TIMER_DRIVEN, timerDrivenAgent);
         processScheduler.setSchedulingAgent(SchedulingStrategy.PRIMARY_NODE_ONLY, timerDrivenAgent);
         processScheduler.setSchedulingAgent(SchedulingStrategy.CRON_DRIVEN, quartzSchedulingAgent);
@@ -852,6 +895,30 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
         }
     }
 
+    private AsyncProvenanceEventRepository createAsyncProvenanceRepository(final NiFiProperties properties, final ProvenanceRepository repository) throws IOException {
+        final int queueSize = properties.getIntegerProperty(NiFiProperties.PROVENANCE_ASYNC_QUEUE_SIZE, NiFiProperties.DEFAULT_PROVENANCE_ASYNC_QUEUE_SIZE);
+        final File overflowDirectory = new File(properties.getProperty(NiFiProperties.PROVENANCE_ASYNC_OVERFLOW_DIRECTORY, NiFiProperties.DEFAULT_PROVENANCE_ASYNC_OVERFLOW_DIRECTORY));
+        if (queueSize < 1) {
+            // events may have been spilled while the handoff was enabled; they must not be lost
+            if (overflowDirectory.exists()) {
+                AsyncProvenanceEventRepository.registerOverflowEvents(repository, overflowDirectory);
+            }
+            return null;
+        }
+
+        final String policyName = properties.getProperty(NiFiProperties.PROVENANCE_ASYNC_OVERLOAD_POLICY, NiFiProperties.DEFAULT_PROVENANCE_ASYNC_OVERLOAD_POLICY);
+        final OverloadPolicy overloadPolicy;
+        try {
+            overloadPolicy = OverloadPolicy.valueOf(policyName.trim().toUpperCase());
+        } catch (final IllegalArgumentException iae) {
+            throw new IllegalArgumentException("Invalid value for " + NiFiProperties.PROVENANCE_ASYNC_OVERLOAD_POLICY + ": " + policyName
+                + "; must be one of " + Arrays.toString(OverloadPolicy.values()));
+        }
+
+        LOG.info("Provenance Events will be handed off to the Provenance Repository asynchronously with a queue of {} events and an overload policy of {}", queueSize, overloadPolicy);
+        return new AsyncProvenanceEventRepository(repository, queueSize, overloadPolicy, overflowDirectory);
+    }
+
     private ComponentStatusRepository createComponentStatusRepository() {
         final String implementationClassName = nifiProperties.getProperty(NiFiProperties.COMPONENT_STATUS_REPOSITORY_IMPLEMENTATION, DEFAULT_COMPONENT_STATUS_REPO_IMPLEMENTATION);
         if (implementationClassName == null) {
@@ -922,6 +989,9 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
                 .destination(destination)
                 .swapManager(swapManager)
                 .queueSwapThreshold(nifiProperties.getQueueSwapThreshold())
+                .queueStripeCount(nifiProperties.getQueueStripeCount())
+                .swapOutExecutor(swapOutEngine)
+                .swapInExecutor(swapInEngine)
                 .eventReporter(eventReporter)
                 .resourceClaimManager(resourceClaimManager)
                 .flowFileRepository(flowFileRepository)
@@ -1317,6 +1387,14 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
 
             clusterTaskExecutor.shutdownNow();
 
+            // Allow any Swap Files that are being written to finish. If they do not, the FlowFiles are still in the FlowFile Repository.
+            if (swapOutEngine != null) {
+                swapOutEngine.shutdown();
+            }
+            if (swapInEngine != null) {
+                swapInEngine.shutdown();
+            }
+
             if (zooKeeperStateServer != null) {
                 zooKeeperStateServer.shutdown();
             }
@@ -1374,6 +1452,15 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
                 contentRepository.shutdown();
             }
 
+            if (asyncProvenanceRepository != null) {
+                try {
+                    asyncProvenanceRepository.close();
+                    LOG.info("Closed asynchronous handoff to Provenance Repository: {}", asyncProvenanceRepository);
+                } catch (final IOException ioe) {
+                    LOG.warn("There was a problem closing the asynchronous handoff to the Provenance Repository: " + ioe.toString());
+                }
+            }
+
             if (provenanceRepository != null) {
                 try {
                     provenanceRepository.close();
@@ -1475,7 +1562,7 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
      * @param maxThreadCount This method must be called while holding the write
      * lock!
      */
-    private void setMaxThreadCount(final int maxThreadCount, final FlowEngine engine, final AtomicInteger maxThreads) {
+    private void setMaxThreadCount(final int maxThreadCount, final SchedulingEngine engine, final AtomicInteger maxThreads) {
         if (maxThreadCount < 1) {
             throw new IllegalArgumentException();
         }
@@ -1523,7 +1610,17 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
 
     public SystemDiagnostics getSystemDiagnostics() {
         final SystemDiagnosticsFactory factory = new SystemDiagnosticsFactory();
-        return factory.create(flowFileRepository, contentRepository);
+        final SystemDiagnostics systemDiagnostics = factory.create(flowFileRepository, contentRepository);
+
+        if (asyncProvenanceRepository != null) {
+            systemDiagnostics.setProvenanceQueueDepth(asyncProvenanceRepository.getQueueDepth());
+            systemDiagnostics.setProvenanceEventsBlocked(asyncProvenanceRepository.getBlockedEventCount());
+            systemDiagnostics.setProvenanceEventsSpilled(asyncProvenanceRepository.getSpilledEventCount());
+            systemDiagnostics.setProvenanceEventsDropped(asyncProvenanceRepository.getDroppedEventCount());
+            systemDiagnostics.setProvenanceEventsFailed(asyncProvenanceRepository.getFailedEventCount());
+        }
+
+        return systemDiagnostics;
     }
 
     //
@@ -2399,6 +2496,12 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
                 connStatus.setName(conn.getIdentifier());
             }
 
+            final SwapStatistics swapStatistics = conn.getFlowFileQueue().getSwapStatistics();
+            connStatus.setSwapOutCount(swapStatistics.getSwapOutCount());
+            connStatus.setSwapInCount(swapStatistics.getSwapInCount());
+            connStatus.setSwapNanos(swapStatistics.getSwapOutNanos() + swapStatistics.getSwapInNanos());
+            connStatus.setSwapBlockedNanos(swapStatistics.getBlockedNanos());
+
             final QueueSize queueSize = conn.getFlowFileQueue().size();
             final int connectionQueuedCount = queueSize.getObjectCount();
             final long connectionQueuedBytes = queueSize.getByteCount();
@@ -2670,6 +2773,12 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
             status.setInvocations(0);
             status.setAverageLineageDuration(0L);
             status.setFlowFilesRemoved(0);
+            status.setCpuNanos(0L);
+            status.setBytesAllocated(0L);
+            status.setBlockedNanos(0L);
+            status.setWaitedNanos(0L);
+            status.setQueueWaitNanos(0L);
+            status.setSteals(0);
         } else {
             final int processedCount = entry.getFlowFilesOut();
             final long numProcessedBytes = entry.getContentSizeOut();
@@ -2697,6 +2806,13 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
             status.setFlowFilesSent(entry.getFlowFilesSent());
             status.setBytesSent(entry.getBytesSent());
             status.setFlowFilesRemoved(entry.getFlowFilesRemoved());
+
+            status.setCpuNanos(entry.getCpuNanoseconds());
+            status.setBytesAllocated(entry.getBytesAllocated());
+            status.setBlockedNanos(entry.getBlockedNanoseconds());
+            status.setWaitedNanos(entry.getWaitedNanoseconds());
+            status.setQueueWaitNanos(entry.getQueueWaitNanoseconds());
+            status.setSteals(entry.getSteals());
         }
 
         // determine the run status and get any validation errors... must check
@@ -2714,6 +2830,7 @@ public class FlowController implements EventAccess, ControllerServiceProvider, R
         }
 
         status.setActiveThreadCount(processScheduler.getActiveThreadCount(procNode));
+        status.setRunDuration(processScheduler.getRunDuration(procNode, TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
 
         return status;
     }
@@ -16,6 +16,7 @@
  */
 package org.apache.nifi.controller;
 
+import org.apache.nifi.connectable.Connectable;
 import org.apache.nifi.connectable.Connection;
 import org.apache.nifi.controller.queue.DropFlowFileState;
 import org.apache.nifi.controller.queue.DropFlowFileStatus;
@@ -25,6 +26,7 @@ import org.apache.nifi.controller.queue.ListFlowFileRequest;
 import org.apache.nifi.controller.queue.ListFlowFileState;
 import org.apache.nifi.controller.queue.ListFlowFileStatus;
 import org.apache.nifi.controller.queue.QueueSize;
+import org.apache.nifi.controller.queue.SwapStatistics;
 import org.apache.nifi.controller.repository.FlowFileRecord;
 import org.apache.nifi.controller.repository.FlowFileRepository;
 import org.apache.nifi.controller.repository.FlowFileSwapManager;
@@ -68,9 +70,15 @@ import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -79,14 +87,15 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * processing. Must be thread safe.
  *
  */
-public class StandardFlowFileQueue implements FlowFileQueue {
+public class StandardFlowFileQueue implements LockableFlowFileQueue {
 
     public static final int MAX_EXPIRED_RECORDS_PER_ITERATION = 100000;
     public static final int SWAP_RECORD_POLL_SIZE = 10000;
 
     private static final Logger logger = LoggerFactory.getLogger(StandardFlowFileQueue.class);
 
-    private PriorityQueue<FlowFileRecord> activeQueue = null;
+    // guarded by lock; a PriorityQueue when prioritizers are configured, a FifoActiveQueue otherwise
+    private Queue<FlowFileRecord> activeQueue = null;
 
     // guarded by lock
     private ArrayList<FlowFileRecord> swapQueue = null;
@@ -115,6 +124,21 @@ public class StandardFlowFileQueue implements FlowFileQueue {
     private final ProvenanceEventRepository provRepository;
     private final ResourceClaimManager resourceClaimManager;
 
+    // Executors that are used to write and read Swap Files in the background. If null, swapping is performed while the write lock is held.
+    private final ExecutorService swapOutExecutor;
+    private final ExecutorService swapInExecutor;
+
+    // guarded by lock. At most one background swap-out and one background swap-in are in progress at any time.
+    private Future<SwapOutResult> pendingSwapOut = null;
+    private Future<SwapInResult> pendingSwapIn = null;
+    private long swapStallStart = -1L;
+
+    private final AtomicLong swapOutCount = new AtomicLong(0L);
+    private final AtomicLong swapOutNanos = new AtomicLong(0L);
+    private final AtomicLong swapInCount = new AtomicLong(0L);
+    private final AtomicLong swapInNanos = new AtomicLong(0L);
+    private final AtomicLong swapBlockedNanos = new AtomicLong(0L);
+
     private final ConcurrentMap<String, DropFlowFileRequest> dropRequestMap = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, ListFlowFileRequest> listRequestMap = new ConcurrentHashMap<>();
 
@@ -123,8 +147,24 @@ public class StandardFlowFileQueue implements FlowFileQueue {
 
     public StandardFlowFileQueue(final String identifier, final Connection connection, final FlowFileRepository flowFileRepo, final ProvenanceEventRepository provRepo,
         final ResourceClaimManager resourceClaimManager, final ProcessScheduler scheduler, final FlowFileSwapManager swapManager, final EventReporter eventReporter, final int swapThreshold) {
-        activeQueue = new PriorityQueue<>(20, new Prioritizer(new ArrayList<FlowFilePrioritizer>()));
+        this(identifier, connection, flowFileRepo, provRepo, resourceClaimManager, scheduler, swapManager, eventReporter, swapThreshold, null, null);
+    }
+
+    /**
+     * Creates a FlowFile Queue that writes and reads Swap Files using the given executors. When the queue needs to swap FlowFiles out,
+     * the lowest-priority FlowFiles are handed off to the swap-out executor, and the queue does not wait for them to be written.
+     * When the active queue has room for another Swap File's worth of FlowFiles, the next Swap File is read by the swap-in executor,
+     * and its FlowFiles are added to the active queue once they are available. As a result, the write lock is held only while choosing
+     * which FlowFiles to swap and while adding swapped-in FlowFiles to the active queue, rather than while performing disk I/O.
+     *
+     * @param swapOutExecutor the executor used to write Swap Files, or <code>null</code> to write them while the queue is locked
+     * @param swapInExecutor the executor used to read Swap Files, or <code>null</code> to read them while the queue is locked
+     */
+    public StandardFlowFileQueue(final String identifier, final Connection connection, final FlowFileRepository flowFileRepo, final ProvenanceEventRepository provRepo,
+        final ResourceClaimManager resourceClaimManager, final ProcessScheduler scheduler, final FlowFileSwapManager swapManager, final EventReporter eventReporter, final int swapThreshold,
+        final ExecutorService swapOutExecutor, final ExecutorService swapInExecutor) {
         priorities = new ArrayList<>();
+        activeQueue = createActiveQueue(priorities, 20);
         swapQueue = new ArrayList<>();
         this.eventReporter = eventReporter;
         this.swapManager = swapManager;
@@ -136,6 +176,8 @@ public class StandardFlowFileQueue implements FlowFileQueue {
         this.swapThreshold = swapThreshold;
         this.scheduler = scheduler;
         this.connection = connection;
+        this.swapOutExecutor = swapOutExecutor;
+        this.swapInExecutor = swapInExecutor;
 
         readLock = new TimedLock(this.lock.readLock(), identifier + " Read Lock", 100);
         writeLock = new TimedLock(this.lock.writeLock(), identifier + " Write Lock", 100);
@@ -155,8 +197,13 @@ public class StandardFlowFileQueue implements FlowFileQueue {
     public void setPriorities(final List<FlowFilePrioritizer> newPriorities) {
         writeLock.lock();
         try {
-            final PriorityQueue<FlowFileRecord> newQueue = new PriorityQueue<>(Math.max(20, activeQueue.size()), new Prioritizer(newPriorities));
-            newQueue.addAll(activeQueue);
+            // Drain the existing queue in order, rather than iterating over it, so that the FlowFiles retain their
+            // relative ordering when switching between a prioritized queue and a FIFO queue.
+            final Queue<FlowFileRecord> newQueue = createActiveQueue(newPriorities, activeQueue.size());
+            FlowFileRecord flowFile;
+            while ((flowFile = activeQueue.poll()) != null) {
+                newQueue.offer(flowFile);
+            }
             activeQueue = newQueue;
             priorities.clear();
             priorities.addAll(newPriorities);
@@ -165,6 +212,23 @@ public class StandardFlowFileQueue implements FlowFileQueue {
         }
     }
 
+    /**
+     * Creates the data structure that holds the active queue. If no prioritizers are configured, there is no
+     * need to maintain a heap, so an array-backed FIFO queue is used, which allows FlowFiles to be added and
+     * polled in constant time.
+     *
+     * @param prioritizers the prioritizers that are configured for the queue
+     * @param initialCapacity the initial capacity of the queue
+     * @return the Queue to use for holding the active FlowFiles
+     */
+    private static Queue<FlowFileRecord> createActiveQueue(final List<FlowFilePrioritizer> prioritizers, final int initialCapacity) {
+        if (prioritizers.isEmpty()) {
+            return new FifoActiveQueue(initialCapacity);
+        }
+
+        return new PriorityQueue<>(Math.max(20, initialCapacity), new Prioritizer(prioritizers));
+    }
+
     @Override
     public void setBackPressureObjectThreshold(final long threshold) {
         boolean updated = false;
@@ -249,6 +313,18 @@ public class StandardFlowFileQueue implements FlowFileQueue {
         }
     }
 
+    /**
+     * Removes the given number of FlowFiles and bytes from this queue's unacknowledged counts without notifying
+     * the source of the Connection. This is used when this queue is a partition of a larger queue that keeps track
+     * of its unacknowledged FlowFiles itself.
+     *
+     * @param count the number of FlowFiles to remove from the unacknowledged count
+     * @param bytes the number of bytes to remove from the unacknowledged count
+     */
+    void releaseUnacknowledged(final int count, final long bytes) {
+        incrementUnacknowledgedQueueSize(-count, -bytes);
+    }
+
     @Override
     public boolean isFull() {
         final MaxQueueSize maxSize = maxQueueSize.get();
@@ -288,7 +364,7 @@ public class StandardFlowFileQueue implements FlowFileQueue {
             writeLock.unlock("put(FlowFileRecord)");
         }
 
-        if (connection.getDestination().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN) {
+        if (isTriggeredByEvents(connection.getDestination())) {
             scheduler.registerEvent(connection.getDestination());
         }
     }
@@ -316,12 +392,22 @@ public class StandardFlowFileQueue implements FlowFileQueue {
             writeLock.unlock("putAll");
         }
 
-        if (connection.getDestination().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN) {
+        if (isTriggeredByEvents(connection.getDestination())) {
             scheduler.registerEvent(connection.getDestination());
         }
     }
 
 
+    /**
+     * Event-Driven components are triggered by the events that are registered when FlowFiles are queued for them, and a
+     * Timer-Driven component's scheduling agent may be waiting for such an event in order to resume the component.
+     */
+    private static boolean isTriggeredByEvents(final Connectable connectable) {
+        final SchedulingStrategy schedulingStrategy = connectable.getSchedulingStrategy();
+        return schedulingStrategy == SchedulingStrategy.EVENT_DRIVEN || schedulingStrategy == SchedulingStrategy.TIMER_DRIVEN
+            || schedulingStrategy == SchedulingStrategy.PRIMARY_NODE_ONLY;
+    }
+
     private boolean isLaterThan(final Long maxAge) {
         if (maxAge == null) {
             return false;
@@ -435,6 +521,12 @@ public class StandardFlowFileQueue implements FlowFileQueue {
      * This method MUST be called with the writeLock held.
      */
     private void migrateSwapToActive() {
+        completeBackgroundSwapOut(false);
+        transferSwappedToActive();
+        updateSwapStall();
+    }
+
+    private void transferSwappedToActive() {
         // Migrate as many FlowFiles as we can from the Swap Queue to the Active Queue, so that we don't
         // have to swap them out & then swap them back in.
         // If we don't do this, we could get into a situation where we have potentially thousands of FlowFiles
@@ -448,6 +540,13 @@ public class StandardFlowFileQueue implements FlowFileQueue {
         // Swap Queue to the Active Queue. However, we don't do this if there are FlowFiles already swapped out
         // to disk, because we want them to be swapped back in in the same order that they were swapped out.
 
+        // If a Swap File has been read in the background, add its FlowFiles to the active queue. There was room for them
+        // when the read was started, and the active queue cannot have grown since then because we are still in swap mode.
+        if (pendingSwapIn != null) {
+            completeBackgroundSwapIn(false);
+            return;
+        }
+
         if (activeQueue.size() > swapThreshold - SWAP_RECORD_POLL_SIZE) {
             return;
         }
@@ -459,51 +558,15 @@ public class StandardFlowFileQueue implements FlowFileQueue {
         // first.
         if (!swapLocations.isEmpty()) {
             final String swapLocation = swapLocations.remove(0);
-            boolean partialContents = false;
-            SwapContents swapContents = null;
-            try {
-                swapContents = swapManager.swapIn(swapLocation, this);
-            } catch (final IncompleteSwapFileException isfe) {
-                logger.error("Failed to swap in all FlowFiles from Swap File {}; Swap File ended prematurely. The records that were present will still be swapped in", swapLocation);
-                logger.error("", isfe);
-                swapContents = isfe.getPartialContents();
-                partialContents = true;
-            } catch (final FileNotFoundException fnfe) {
-                logger.error("Failed to swap in FlowFiles from Swap File {} because the Swap File can no longer be found", swapLocation);
-                if (eventReporter != null) {
-                    eventReporter.reportEvent(Severity.ERROR, "Swap File", "Failed to swap in FlowFiles from Swap File " + swapLocation + " because the Swap File can no longer be found");
-                }
-                return;
-            } catch (final IOException ioe) {
-                logger.error("Failed to swap in FlowFiles from Swap File {}; Swap File appears to be corrupt!", swapLocation);
-                logger.error("", ioe);
-                if (eventReporter != null) {
-                    eventReporter.reportEvent(Severity.ERROR, "Swap File", "Failed to swap in FlowFiles from Swap File " +
-                        swapLocation + "; Swap File appears to be corrupt! Some FlowFiles in the queue may not be accessible. See logs for more information.");
-                }
-                return;
-            }
 
-            final QueueSize swapSize = swapContents.getSummary().getQueueSize();
-            final long contentSize = swapSize.getByteCount();
-            final int flowFileCount = swapSize.getObjectCount();
-            incrementSwapQueueSize(-flowFileCount, -contentSize, -1);
-
-            if (partialContents) {
-                // if we have partial results, we need to calculate the content size of the flowfiles
-                // actually swapped back in.
-                long contentSizeSwappedIn = 0L;
-                for (final FlowFileRecord swappedIn : swapContents.getFlowFiles()) {
-                    contentSizeSwappedIn += swappedIn.getSize();
-                }
-
-                incrementActiveQueueSize(swapContents.getFlowFiles().size(), contentSizeSwappedIn);
-            } else {
-                // we swapped in the whole swap file. We can just use the info that we got from the summary.
-                incrementActiveQueueSize(flowFileCount, contentSize);
+            // Read the Swap File in the background while the FlowFiles already in the active queue are processed.
+            pendingSwapIn = submitSwapIn(swapLocation);
+            if (pendingSwapIn == null) {
+                final long start = System.nanoTime();
+                applySwapIn(swapIn(swapLocation));
+                swapBlockedNanos.addAndGet(System.nanoTime() - start);
             }
 
-            activeQueue.addAll(swapContents.getFlowFiles());
             return;
         }
 
@@ -540,6 +603,148 @@ public class StandardFlowFileQueue implements FlowFileQueue {
         }
     }
 
+    /**
+     * Keeps track of how long the active queue has been empty while FlowFiles are being swapped in the background,
+     * as this is time during which consumers of the queue are unable to make progress.
+     *
+     * This method MUST be called with the write lock held
+     */
+    private void updateSwapStall() {
+        final boolean waitingOnSwap = activeQueue.isEmpty() && (pendingSwapIn != null || pendingSwapOut != null);
+        if (waitingOnSwap) {
+            if (swapStallStart < 0L) {
+                swapStallStart = System.nanoTime();
+            }
+        } else if (swapStallStart >= 0L) {
+            swapBlockedNanos.addAndGet(System.nanoTime() - swapStallStart);
+            swapStallStart = -1L;
+        }
+    }
+
+    /**
+     * Reads the FlowFiles from the given Swap File. This method does not require the lock, so that it can be called in the background.
+     */
+    private SwapInResult swapIn(final String swapLocation) {
+        final long start = System.nanoTime();
+        try {
+            return new SwapInResult(swapLocation, swapManager.swapIn(swapLocation, this), null);
+        } catch (final IncompleteSwapFileException isfe) {
+            return new SwapInResult(swapLocation, isfe.getPartialContents(), isfe);
+        } catch (final IOException ioe) {
+            return new SwapInResult(swapLocation, null, ioe);
+        } finally {
+            swapInCount.incrementAndGet();
+            swapInNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return a Future that will provide the contents of the given Swap File, or <code>null</code> if Swap Files are not read in the background
+     */
+    private Future<SwapInResult> submitSwapIn(final String swapLocation) {
+        if (swapInExecutor == null) {
+            return null;
+        }
+
+        try {
+            return swapInExecutor.submit(new Callable<SwapInResult>() {
+                @Override
+                public SwapInResult call() {
+                    try {
+                        return swapIn(swapLocation);
+                    } catch (final RuntimeException e) {
+                        return new SwapInResult(swapLocation, null, new IOException(e));
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException ree) {
+            logger.debug("{} Unable to swap in FlowFiles in the background because the executor rejected the task; will swap in FlowFiles synchronously", this);
+            return null;
+        }
+    }
+
+    /**
+     * Adds the FlowFiles from a background swap-in to the active queue, if the swap-in has completed.
+     *
+     * This method MUST be called with the write lock held
+     *
+     * @param wait whether or not to wait for the swap-in to complete if it is still in progress
+     */
+    private void completeBackgroundSwapIn(final boolean wait) {
+        if (pendingSwapIn == null || (!wait && !pendingSwapIn.isDone())) {
+            return;
+        }
+
+        final Future<SwapInResult> completed = pendingSwapIn;
+        final SwapInResult result;
+        try {
+            result = completed.get();
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (final ExecutionException ee) {
+            pendingSwapIn = null;
+            logger.error("Failed to swap in FlowFiles for {}", this, ee.getCause());
+            return;
+        }
+
+        pendingSwapIn = null;
+        applySwapIn(result);
+    }
+
+    /**
+     * Adds the FlowFiles that were read from a Swap File to the active queue and updates the size of the queue.
+     *
+     * This method MUST be called with the write lock held
+     */
+    private void applySwapIn(final SwapInResult result) {
+        final String swapLocation = result.getSwapLocation();
+        final IOException failure = result.getFailure();
+
+        boolean partialContents = false;
+        if (failure instanceof IncompleteSwapFileException) {
+            logger.error("Failed to swap in all FlowFiles from Swap File {}; Swap File ended prematurely. The records that were present will still be swapped in", swapLocation);
+            logger.error("", failure);
+            partialContents = true;
+        } else if (failure instanceof FileNotFoundException) {
+            logger.error("Failed to swap in FlowFiles from Swap File {} because the Swap File can no longer be found", swapLocation);
+            if (eventReporter != null) {
+                eventReporter.reportEvent(Severity.ERROR, "Swap File", "Failed to swap in FlowFiles from Swap File " + swapLocation + " because the Swap File can no longer be found");
+            }
+            return;
+        } else if (failure != null) {
+            logger.error("Failed to swap in FlowFiles from Swap File {}; Swap File appears to be corrupt!", swapLocation);
+            logger.error("", failure);
+            if (eventReporter != null) {
+                eventReporter.reportEvent(Severity.ERROR, "Swap File", "Failed to swap in FlowFiles from Swap File " +
+                    swapLocation + "; Swap File appears to be corrupt! Some FlowFiles in the queue may not be accessible. See logs for more information.");
+            }
+            return;
+        }
+
+        final SwapContents swapContents = result.getContents();
+        final QueueSize swapSize = swapContents.getSummary().getQueueSize();
+        final long contentSize = swapSize.getByteCount();
+        final int flowFileCount = swapSize.getObjectCount();
+        incrementSwapQueueSize(-flowFileCount, -contentSize, -1);
+
+        if (partialContents) {
+            // if we have partial results, we need to calculate the content size of the flowfiles
+            // actually swapped back in.
+            long contentSizeSwappedIn = 0L;
+            for (final FlowFileRecord swappedIn : swapContents.getFlowFiles()) {
+                contentSizeSwappedIn += swappedIn.getSize();
+            }
+
+            incrementActiveQueueSize(swapContents.getFlowFiles().size(), contentSizeSwappedIn);
+        } else {
+            // we swapped in the whole swap file. We can just use the info that we got from the summary.
+            incrementActiveQueueSize(flowFileCount, contentSize);
+        }
+
+        activeQueue.addAll(swapContents.getFlowFiles());
+    }
+
     /**
      * This method MUST be called with the write lock held
      */
@@ -550,6 +755,12 @@ public class StandardFlowFileQueue implements FlowFileQueue {
 
         migrateSwapToActive();
 
+        if (pendingSwapOut != null) {
+            // Only a single background swap-out is performed at a time so that Swap Files are swapped back in
+            // in the order that they were written. Until it completes, FlowFiles remain on the swap queue.
+            return;
+        }
+
         final int numSwapFiles = swapQueue.size() / SWAP_RECORD_POLL_SIZE;
 
         int originalSwapQueueCount = swapQueue.size();
@@ -564,38 +775,51 @@ public class StandardFlowFileQueue implements FlowFileQueue {
         tempQueue.addAll(activeQueue);
         tempQueue.addAll(swapQueue);
 
-        long bytesSwappedOut = 0L;
-        int flowFilesSwappedOut = 0;
-        final List<String> swapLocations = new ArrayList<>(numSwapFiles);
+        final List<List<FlowFileRecord>> toSwapBatches = new ArrayList<>(numSwapFiles);
         for (int i = 0; i < numSwapFiles; i++) {
             // Create a new swap file for the next SWAP_RECORD_POLL_SIZE records
             final List<FlowFileRecord> toSwap = new ArrayList<>(SWAP_RECORD_POLL_SIZE);
             for (int j = 0; j < SWAP_RECORD_POLL_SIZE; j++) {
-                final FlowFileRecord flowFile = tempQueue.poll();
-                toSwap.add(flowFile);
-                bytesSwappedOut += flowFile.getSize();
-                flowFilesSwappedOut++;
+                toSwap.add(tempQueue.poll());
             }
 
-            try {
-                Collections.reverse(toSwap); // currently ordered in reverse priority order based on the ordering of the temp queue.
-                final String swapLocation = swapManager.swapOut(toSwap, this);
-                swapLocations.add(swapLocation);
-            } catch (final IOException ioe) {
-                tempQueue.addAll(toSwap); // if we failed, we must add the FlowFiles back to the queue.
-                logger.error("FlowFile Queue with identifier {} has {} FlowFiles queued up. Attempted to spill FlowFile information over to disk in order to avoid exhausting "
-                    + "the Java heap space but failed to write information to disk due to {}", getIdentifier(), getQueueSize().getObjectCount(), ioe.toString());
-                logger.error("", ioe);
-                if (eventReporter != null) {
-                    eventReporter.reportEvent(Severity.ERROR, "Failed to Overflow to Disk", "Flowfile Queue with identifier " + getIdentifier() + " has " + getQueueSize().getObjectCount() +
-                        " queued up. Attempted to spill FlowFile information over to disk in order to avoid exhausting the Java heap space but failed to write information to disk. "
-                        + "See logs for more information.");
-                }
+            Collections.reverse(toSwap); // currently ordered in reverse priority order based on the ordering of the temp queue.
+            toSwapBatches.add(toSwap);
+        }
 
-                break;
+        final List<String> swapLocations = new ArrayList<>(numSwapFiles);
+        final List<FlowFileRecord> swappedOut = new ArrayList<>(numSwapFiles * SWAP_RECORD_POLL_SIZE);
+        final int swapFilesCreated;
+
+        pendingSwapOut = submitSwapOut(toSwapBatches);
+        if (pendingSwapOut == null) {
+            final long start = System.nanoTime();
+            final SwapOutResult result = swapOut(toSwapBatches);
+            swapBlockedNanos.addAndGet(System.nanoTime() - start);
+
+            swapLocations.addAll(result.getSwapLocations());
+            for (int i = 0; i < result.getSwapLocations().size(); i++) {
+                swappedOut.addAll(toSwapBatches.get(i));
             }
+
+            tempQueue.addAll(result.getUnwrittenFlowFiles()); // if we failed, we must add the FlowFiles back to the queue.
+            swapFilesCreated = swapLocations.size();
+        } else {
+            // The FlowFiles are considered swapped out as soon as they are handed off. If they cannot be written,
+            // they will be placed back onto the swap queue when the swap-out completes.
+            for (final List<FlowFileRecord> toSwap : toSwapBatches) {
+                swappedOut.addAll(toSwap);
+            }
+
+            swapFilesCreated = toSwapBatches.size();
         }
 
+        long bytesSwappedOut = 0L;
+        for (final FlowFileRecord flowFile : swappedOut) {
+            bytesSwappedOut += flowFile.getSize();
+        }
+        final int flowFilesSwappedOut = swappedOut.size();
+
         // Pull any records off of the temp queue that won't fit back on the active queue, and add those to the
         // swap queue. Then add the records back to the active queue.
         swapQueue.clear();
@@ -627,7 +851,7 @@ public class StandardFlowFileQueue implements FlowFileQueue {
             final FlowFileQueueSize newSize = new FlowFileQueueSize(activeQueue.size(), activeQueueBytes,
                 originalSize.swappedCount + addedSwapRecords + flowFilesSwappedOut,
                 originalSize.swappedBytes + addedSwapBytes + bytesSwappedOut,
-                originalSize.swapFiles + numSwapFiles,
+                originalSize.swapFiles + swapFilesCreated,
                 originalSize.unacknowledgedCount, originalSize.unacknowledgedBytes);
             updated = size.compareAndSet(originalSize, newSize);
         }
@@ -635,6 +859,103 @@ public class StandardFlowFileQueue implements FlowFileQueue {
         this.swapLocations.addAll(swapLocations);
     }
 
+    /**
+     * Writes each of the given lists of FlowFiles to its own Swap File, in order. If a Swap File cannot be written,
+     * no further Swap Files are written. This method does not require the lock, so that it can be called in the background.
+     */
+    private SwapOutResult swapOut(final List<List<FlowFileRecord>> toSwapBatches) {
+        final List<String> swapLocations = new ArrayList<>(toSwapBatches.size());
+        final List<FlowFileRecord> unwritten = new ArrayList<>();
+
+        for (int i = 0; i < toSwapBatches.size(); i++) {
+            final List<FlowFileRecord> toSwap = toSwapBatches.get(i);
+            final long start = System.nanoTime();
+            try {
+                final String swapLocation = swapManager.swapOut(toSwap, this);
+                swapLocations.add(swapLocation);
+
+                swapOutCount.incrementAndGet();
+                swapOutNanos.addAndGet(System.nanoTime() - start);
+            } catch (final Exception e) {
+                logger.error("FlowFile Queue with identifier {} has {} FlowFiles queued up. Attempted to spill FlowFile information over to disk in order to avoid exhausting "
+                    + "the Java heap space but failed to write information to disk due to {}", getIdentifier(), getQueueSize().getObjectCount(), e.toString());
+                logger.error("", e);
+                if (eventReporter != null) {
+                    eventReporter.reportEvent(Severity.ERROR, "Failed to Overflow to Disk", "Flowfile Queue with identifier " + getIdentifier() + " has " + getQueueSize().getObjectCount() +
+                        " queued up. Attempted to spill FlowFile information over to disk in order to avoid exhausting the Java heap space but failed to write information to disk. "
+                        + "See logs for more information.");
+                }
+
+                for (int j = i; j < toSwapBatches.size(); j++) {
+                    unwritten.addAll(toSwapBatches.get(j));
+                }
+
+                break;
+            }
+        }
+
+        return new SwapOutResult(swapLocations, unwritten, toSwapBatches.size() - swapLocations.size());
+    }
+
+    /**
+     * @return a Future that will provide the result of writing the given FlowFiles to Swap Files, or <code>null</code> if Swap Files are not written in the background
+     */
+    private Future<SwapOutResult> submitSwapOut(final List<List<FlowFileRecord>> toSwapBatches) {
+        if (swapOutExecutor == null || toSwapBatches.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return swapOutExecutor.submit(new Callable<SwapOutResult>() {
+                @Override
+                public SwapOutResult call() {
+                    return swapOut(toSwapBatches);
+                }
+            });
+        } catch (final RejectedExecutionException ree) {
+            logger.debug("{} Unable to swap out FlowFiles in the background because the executor rejected the task; will swap out FlowFiles synchronously", this);
+            return null;
+        }
+    }
+
+    /**
+     * Records the Swap Files that were written by a background swap-out, if the swap-out has completed. Any FlowFiles
+     * that could not be written are placed back onto the swap queue.
+     *
+     * This method MUST be called with the write lock held
+     *
+     * @param wait whether or not to wait for the swap-out to complete if it is still in progress
+     */
+    private void completeBackgroundSwapOut(final boolean wait) {
+        if (pendingSwapOut == null || (!wait && !pendingSwapOut.isDone())) {
+            return;
+        }
+
+        final Future<SwapOutResult> completed = pendingSwapOut;
+        final SwapOutResult result;
+        try {
+            result = completed.get();
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (final ExecutionException ee) {
+            pendingSwapOut = null;
+            logger.error("Failed to swap out FlowFiles for {}", this, ee.getCause());
+            return;
+        }
+
+        pendingSwapOut = null;
+        swapLocations.addAll(result.getSwapLocations());
+
+        final List<FlowFileRecord> unwritten = result.getUnwrittenFlowFiles();
+        if (!unwritten.isEmpty()) {
+            // These FlowFiles are already counted as swapped out, as are the FlowFiles on the swap queue,
+            // so only the number of swap files needs to be updated.
+            swapQueue.addAll(unwritten);
+            incrementSwapQueueSize(0, 0L, -result.getFailedSwapFileCount());
+        }
+    }
+
 
     @Override
     public long drainQueue(final Queue<FlowFileRecord> sourceQueue, final List<FlowFileRecord> destination, int maxResults, final Set<FlowFileRecord> expiredRecords) {
@@ -724,12 +1045,12 @@ public class StandardFlowFileQueue implements FlowFileQueue {
 
 
 
-    private static final class Prioritizer implements Comparator<FlowFileRecord>, Serializable {
+    static final class Prioritizer implements Comparator<FlowFileRecord>, Serializable {
 
         private static final long serialVersionUID = 1L;
         private final transient List<FlowFilePrioritizer> prioritizers = new ArrayList<>();
 
-        private Prioritizer(final List<FlowFilePrioritizer> priorities) {
+        Prioritizer(final List<FlowFilePrioritizer> priorities) {
             if (null != priorities) {
                 prioritizers.addAll(priorities);
             }
@@ -814,6 +1135,11 @@ public class StandardFlowFileQueue implements FlowFileQueue {
         swapManager.purge();
     }
 
+    @Override
+    public SwapStatistics getSwapStatistics() {
+        return new SwapStatistics(swapOutCount.get(), swapOutNanos.get(), swapInCount.get(), swapInNanos.get(), swapBlockedNanos.get());
+    }
+
     @Override
     public SwapSummary recoverSwappedFlowFiles() {
         int swapFlowFileCount = 0;
@@ -948,7 +1274,7 @@ public class StandardFlowFileQueue implements FlowFileQueue {
         return listRequest;
     }
 
-    private FlowFileSummary summarize(final FlowFile flowFile, final int position) {
+    static FlowFileSummary summarize(final FlowFile flowFile, final int position) {
         // extract all of the information that we care about into new variables rather than just
         // wrapping the FlowFile object with a FlowFileSummary object. We do this because we want to
         // be able to hold many FlowFileSummary objects in memory and if we just wrap the FlowFile object,
@@ -1038,6 +1364,18 @@ public class StandardFlowFileQueue implements FlowFileQueue {
     }
 
 
+    /**
+     * @return a copy of the FlowFiles that are currently in the active queue, in no particular order
+     */
+    List<FlowFileRecord> getActiveFlowFiles() {
+        readLock.lock();
+        try {
+            return new ArrayList<>(activeQueue);
+        } finally {
+            readLock.unlock("getActiveFlowFiles");
+        }
+    }
+
     @Override
     public void verifyCanList() throws IllegalStateException {
     }
@@ -1077,129 +1415,153 @@ public class StandardFlowFileQueue implements FlowFileQueue {
         final Thread t = new Thread(new Runnable() {
             @Override
             public void run() {
-                writeLock.lock();
+                if (dropQueuedFlowFiles(dropRequest, requestor)) {
+                    logger.info("Successfully dropped {} FlowFiles ({} bytes) from Connection with ID {} on behalf of {}",
+                        dropRequest.getDroppedSize().getObjectCount(), dropRequest.getDroppedSize().getByteCount(), StandardFlowFileQueue.this.getIdentifier(), requestor);
+                    dropRequest.setState(DropFlowFileState.COMPLETE);
+                }
+            }
+        }, "Drop FlowFiles for Connection " + getIdentifier());
+        t.setDaemon(true);
+        t.start();
+
+        dropRequestMap.put(requestIdentifier, dropRequest);
+
+        return dropRequest;
+    }
+
+    /**
+     * Drops all FlowFiles that are currently queued, including those that are swapped out, updating the
+     * given request as progress is made. This method does not mark the request as complete, so that the
+     * caller is able to aggregate multiple queues into a single request.
+     *
+     * @param dropRequest the request to update
+     * @param requestor the entity that is requesting that the FlowFiles be dropped
+     * @return <code>true</code> if all FlowFiles were dropped, <code>false</code> if the request was canceled or failed,
+     *         in which case the state of the request has already been updated
+     */
+    boolean dropQueuedFlowFiles(final DropFlowFileRequest dropRequest, final String requestor) {
+        final String requestIdentifier = dropRequest.getRequestIdentifier();
+
+        writeLock.lock();
+        try {
+            dropRequest.setState(DropFlowFileState.DROPPING_FLOWFILES);
+
+            // Wait for any background swapping to complete so that all of the FlowFiles are either in memory or in a Swap File.
+            completeBackgroundSwapOut(true);
+            completeBackgroundSwapIn(true);
+            updateSwapStall();
+            logger.debug("For DropFlowFileRequest {}, original size is {}", requestIdentifier, getQueueSize());
+
+            try {
+                final List<FlowFileRecord> activeQueueRecords = new ArrayList<>(activeQueue);
+
+                QueueSize droppedSize;
                 try {
-                    dropRequest.setState(DropFlowFileState.DROPPING_FLOWFILES);
-                    logger.debug("For DropFlowFileRequest {}, original size is {}", requestIdentifier, getQueueSize());
+                    if (dropRequest.getState() == DropFlowFileState.CANCELED) {
+                        logger.info("Cancel requested for DropFlowFileRequest {}", requestIdentifier);
+                        return false;
+                    }
 
-                    try {
-                        final List<FlowFileRecord> activeQueueRecords = new ArrayList<>(activeQueue);
-
-                        QueueSize droppedSize;
-                        try {
-                            if (dropRequest.getState() == DropFlowFileState.CANCELED) {
-                                logger.info("Cancel requested for DropFlowFileRequest {}", requestIdentifier);
-                                return;
-                            }
-
-                            droppedSize = drop(activeQueueRecords, requestor);
-                            logger.debug("For DropFlowFileRequest {}, Dropped {} from active queue", requestIdentifier, droppedSize);
-                        } catch (final IOException ioe) {
-                            logger.error("Failed to drop the FlowFiles from queue {} due to {}", StandardFlowFileQueue.this.getIdentifier(), ioe.toString());
-                            logger.error("", ioe);
-
-                            dropRequest.setState(DropFlowFileState.FAILURE, "Failed to drop FlowFiles due to " + ioe.toString());
-                            return;
-                        }
+                    droppedSize = drop(activeQueueRecords, requestor);
+                    logger.debug("For DropFlowFileRequest {}, Dropped {} from active queue", requestIdentifier, droppedSize);
+                } catch (final IOException ioe) {
+                    logger.error("Failed to drop the FlowFiles from queue {} due to {}", getIdentifier(), ioe.toString());
+                    logger.error("", ioe);
 
-                        activeQueue.clear();
-                        incrementActiveQueueSize(-droppedSize.getObjectCount(), -droppedSize.getByteCount());
-                        dropRequest.setCurrentSize(getQueueSize());
-                        dropRequest.setDroppedSize(dropRequest.getDroppedSize().add(droppedSize));
+                    dropRequest.setState(DropFlowFileState.FAILURE, "Failed to drop FlowFiles due to " + ioe.toString());
+                    return false;
+                }
 
-                        final QueueSize swapSize = size.get().swapQueueSize();
-                        logger.debug("For DropFlowFileRequest {}, Swap Queue has {} elements, Swapped Record Count = {}, Swapped Content Size = {}",
-                            requestIdentifier, swapQueue.size(), swapSize.getObjectCount(), swapSize.getByteCount());
+                activeQueue.clear();
+                incrementActiveQueueSize(-droppedSize.getObjectCount(), -droppedSize.getByteCount());
+                dropRequest.setCurrentSize(getQueueSize());
+                dropRequest.setDroppedSize(dropRequest.getDroppedSize().add(droppedSize));
+
+                final QueueSize swapSize = size.get().swapQueueSize();
+                logger.debug("For DropFlowFileRequest {}, Swap Queue has {} elements, Swapped Record Count = {}, Swapped Content Size = {}",
+                    requestIdentifier, swapQueue.size(), swapSize.getObjectCount(), swapSize.getByteCount());
+                if (dropRequest.getState() == DropFlowFileState.CANCELED) {
+                    logger.info("Cancel requested for DropFlowFileRequest {}", requestIdentifier);
+                    return false;
+                }
+
+                try {
+                    droppedSize = drop(swapQueue, requestor);
+                } catch (final IOException ioe) {
+                    logger.error("Failed to drop the FlowFiles from queue {} due to {}", getIdentifier(), ioe.toString());
+                    logger.error("", ioe);
+
+                    dropRequest.setState(DropFlowFileState.FAILURE, "Failed to drop FlowFiles due to " + ioe.toString());
+                    return false;
+                }
+
+                swapQueue.clear();
+                dropRequest.setCurrentSize(getQueueSize());
+                dropRequest.setDroppedSize(dropRequest.getDroppedSize().add(droppedSize));
+                swapMode = false;
+                incrementSwapQueueSize(-droppedSize.getObjectCount(), -droppedSize.getByteCount(), 0);
+                logger.debug("For DropFlowFileRequest {}, dropped {} from Swap Queue", requestIdentifier, droppedSize);
+
+                final int swapFileCount = swapLocations.size();
+                final Iterator<String> swapLocationItr = swapLocations.iterator();
+                while (swapLocationItr.hasNext()) {
+                    final String swapLocation = swapLocationItr.next();
+
+                    SwapContents swapContents = null;
+                    try {
                         if (dropRequest.getState() == DropFlowFileState.CANCELED) {
                             logger.info("Cancel requested for DropFlowFileRequest {}", requestIdentifier);
-                            return;
+                            return false;
                         }
 
-                        try {
-                            droppedSize = drop(swapQueue, requestor);
-                        } catch (final IOException ioe) {
-                            logger.error("Failed to drop the FlowFiles from queue {} due to {}", StandardFlowFileQueue.this.getIdentifier(), ioe.toString());
-                            logger.error("", ioe);
+                        swapContents = swapManager.swapIn(swapLocation, this);
+                        droppedSize = drop(swapContents.getFlowFiles(), requestor);
+                    } catch (final IncompleteSwapFileException isfe) {
+                        swapContents = isfe.getPartialContents();
+                        final String warnMsg = "Failed to swap in FlowFiles from Swap File " + swapLocation + " because the file was corrupt. "
+                            + "Some FlowFiles may not be dropped from the queue until NiFi is restarted.";
 
-                            dropRequest.setState(DropFlowFileState.FAILURE, "Failed to drop FlowFiles due to " + ioe.toString());
-                            return;
+                        logger.warn(warnMsg);
+                        if (eventReporter != null) {
+                            eventReporter.reportEvent(Severity.WARNING, "Drop FlowFiles", warnMsg);
+                        }
+                    } catch (final IOException ioe) {
+                        logger.error("Failed to swap in FlowFiles from Swap File {} in order to drop the FlowFiles for Connection {} due to {}",
+                            swapLocation, getIdentifier(), ioe.toString());
+                        logger.error("", ioe);
+                        if (eventReporter != null) {
+                            eventReporter.reportEvent(Severity.ERROR, "Drop FlowFiles", "Failed to swap in FlowFiles from Swap File " + swapLocation
+                                + ". The FlowFiles contained in this Swap File will not be dropped from the queue");
                         }
 
-                        swapQueue.clear();
-                        dropRequest.setCurrentSize(getQueueSize());
-                        dropRequest.setDroppedSize(dropRequest.getDroppedSize().add(droppedSize));
-                        swapMode = false;
-                        incrementSwapQueueSize(-droppedSize.getObjectCount(), -droppedSize.getByteCount(), 0);
-                        logger.debug("For DropFlowFileRequest {}, dropped {} from Swap Queue", requestIdentifier, droppedSize);
-
-                        final int swapFileCount = swapLocations.size();
-                        final Iterator<String> swapLocationItr = swapLocations.iterator();
-                        while (swapLocationItr.hasNext()) {
-                            final String swapLocation = swapLocationItr.next();
-
-                            SwapContents swapContents = null;
-                            try {
-                                if (dropRequest.getState() == DropFlowFileState.CANCELED) {
-                                    logger.info("Cancel requested for DropFlowFileRequest {}", requestIdentifier);
-                                    return;
-                                }
-
-                                swapContents = swapManager.swapIn(swapLocation, StandardFlowFileQueue.this);
-                                droppedSize = drop(swapContents.getFlowFiles(), requestor);
-                            } catch (final IncompleteSwapFileException isfe) {
-                                swapContents = isfe.getPartialContents();
-                                final String warnMsg = "Failed to swap in FlowFiles from Swap File " + swapLocation + " because the file was corrupt. "
-                                    + "Some FlowFiles may not be dropped from the queue until NiFi is restarted.";
-
-                                logger.warn(warnMsg);
-                                if (eventReporter != null) {
-                                    eventReporter.reportEvent(Severity.WARNING, "Drop FlowFiles", warnMsg);
-                                }
-                            } catch (final IOException ioe) {
-                                logger.error("Failed to swap in FlowFiles from Swap File {} in order to drop the FlowFiles for Connection {} due to {}",
-                                    swapLocation, StandardFlowFileQueue.this.getIdentifier(), ioe.toString());
-                                logger.error("", ioe);
-                                if (eventReporter != null) {
-                                    eventReporter.reportEvent(Severity.ERROR, "Drop FlowFiles", "Failed to swap in FlowFiles from Swap File " + swapLocation
-                                        + ". The FlowFiles contained in this Swap File will not be dropped from the queue");
-                                }
-
-                                dropRequest.setState(DropFlowFileState.FAILURE, "Failed to swap in FlowFiles from Swap File " + swapLocation + " due to " + ioe.toString());
-                                if (swapContents != null) {
-                                    activeQueue.addAll(swapContents.getFlowFiles()); // ensure that we don't lose the FlowFiles from our queue.
-                                }
-
-                                return;
-                            }
-
-                            dropRequest.setDroppedSize(dropRequest.getDroppedSize().add(droppedSize));
-                            incrementSwapQueueSize(-droppedSize.getObjectCount(), -droppedSize.getByteCount(), -1);
-
-                            dropRequest.setCurrentSize(getQueueSize());
-                            swapLocationItr.remove();
-                            logger.debug("For DropFlowFileRequest {}, dropped {} for Swap File {}", requestIdentifier, droppedSize, swapLocation);
+                        dropRequest.setState(DropFlowFileState.FAILURE, "Failed to swap in FlowFiles from Swap File " + swapLocation + " due to " + ioe.toString());
+                        if (swapContents != null) {
+                            activeQueue.addAll(swapContents.getFlowFiles()); // ensure that we don't lose the FlowFiles from our queue.
                         }
 
-                        logger.debug("Dropped FlowFiles from {} Swap Files", swapFileCount);
-                        logger.info("Successfully dropped {} FlowFiles ({} bytes) from Connection with ID {} on behalf of {}",
-                            dropRequest.getDroppedSize().getObjectCount(), dropRequest.getDroppedSize().getByteCount(), StandardFlowFileQueue.this.getIdentifier(), requestor);
-                        dropRequest.setState(DropFlowFileState.COMPLETE);
-                    } catch (final Exception e) {
-                        logger.error("Failed to drop FlowFiles from Connection with ID {} due to {}", StandardFlowFileQueue.this.getIdentifier(), e.toString());
-                        logger.error("", e);
-                        dropRequest.setState(DropFlowFileState.FAILURE, "Failed to drop FlowFiles due to " + e.toString());
+                        return false;
                     }
-                } finally {
-                    writeLock.unlock("Drop FlowFiles");
-                }
-            }
-        }, "Drop FlowFiles for Connection " + getIdentifier());
-        t.setDaemon(true);
-        t.start();
 
-        dropRequestMap.put(requestIdentifier, dropRequest);
+                    dropRequest.setDroppedSize(dropRequest.getDroppedSize().add(droppedSize));
+                    incrementSwapQueueSize(-droppedSize.getObjectCount(), -droppedSize.getByteCount(), -1);
 
-        return dropRequest;
+                    dropRequest.setCurrentSize(getQueueSize());
+                    swapLocationItr.remove();
+                    logger.debug("For DropFlowFileRequest {}, dropped {} for Swap File {}", requestIdentifier, droppedSize, swapLocation);
+                }
+
+                logger.debug("Dropped FlowFiles from {} Swap Files", swapFileCount);
+                return true;
+            } catch (final Exception e) {
+                logger.error("Failed to drop FlowFiles from Connection with ID {} due to {}", getIdentifier(), e.toString());
+                logger.error("", e);
+                dropRequest.setState(DropFlowFileState.FAILURE, "Failed to drop FlowFiles due to " + e.toString());
+                return false;
+            }
+        } finally {
+            writeLock.unlock("Drop FlowFiles");
+        }
     }
 
     private QueueSize drop(final List<FlowFileRecord> flowFiles, final String requestor) throws IOException {
@@ -1332,6 +1694,7 @@ public class StandardFlowFileQueue implements FlowFileQueue {
      * Lock the queue so that other threads are unable to interact with the
      * queue
      */
+    @Override
     public void lock() {
         writeLock.lock();
     }
@@ -1339,6 +1702,7 @@ public class StandardFlowFileQueue implements FlowFileQueue {
     /**
      * Unlock the queue
      */
+    @Override
     public void unlock() {
         writeLock.unlock("external unlock");
     }
@@ -1450,6 +1814,56 @@ public class StandardFlowFileQueue implements FlowFileQueue {
     }
 
 
+    private static class SwapOutResult {
+        private final List<String> swapLocations;
+        private final List<FlowFileRecord> unwrittenFlowFiles;
+        private final int failedSwapFileCount;
+
+        public SwapOutResult(final List<String> swapLocations, final List<FlowFileRecord> unwrittenFlowFiles, final int failedSwapFileCount) {
+            this.swapLocations = swapLocations;
+            this.unwrittenFlowFiles = unwrittenFlowFiles;
+            this.failedSwapFileCount = failedSwapFileCount;
+        }
+
+        public List<String> getSwapLocations() {
+            return swapLocations;
+        }
+
+        public List<FlowFileRecord> getUnwrittenFlowFiles() {
+            return unwrittenFlowFiles;
+        }
+
+        public int getFailedSwapFileCount() {
+            return failedSwapFileCount;
+        }
+    }
+
+
+    private static class SwapInResult {
+        private final String swapLocation;
+        private final SwapContents contents;
+        private final IOException failure;
+
+        public SwapInResult(final String swapLocation, final SwapContents contents, final IOException failure) {
+            this.swapLocation = swapLocation;
+            this.contents = contents;
+            this.failure = failure;
+        }
+
+        public String getSwapLocation() {
+            return swapLocation;
+        }
+
+        public SwapContents getContents() {
+            return contents;
+        }
+
+        public IOException getFailure() {
+            return failure;
+        }
+    }
+
+
     private static class MaxQueueSize {
         private final String maxSize;
         private final long maxBytes;
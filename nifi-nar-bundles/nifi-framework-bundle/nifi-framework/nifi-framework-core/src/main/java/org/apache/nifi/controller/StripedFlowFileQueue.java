@@ -0,0 +1,681 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.nifi.connectable.Connection;
+import org.apache.nifi.controller.queue.DropFlowFileState;
+import org.apache.nifi.controller.queue.DropFlowFileStatus;
+import org.apache.nifi.controller.queue.FlowFileSummary;
+import org.apache.nifi.controller.queue.ListFlowFileRequest;
+import org.apache.nifi.controller.queue.ListFlowFileState;
+import org.apache.nifi.controller.queue.ListFlowFileStatus;
+import org.apache.nifi.controller.queue.QueueSize;
+import org.apache.nifi.controller.queue.SwapStatistics;
+import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.controller.repository.FlowFileRepository;
+import org.apache.nifi.controller.repository.FlowFileSwapManager;
+import org.apache.nifi.controller.repository.SwapSummary;
+import org.apache.nifi.controller.repository.claim.ResourceClaimManager;
+import org.apache.nifi.events.EventReporter;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.FlowFilePrioritizer;
+import org.apache.nifi.processor.DataUnit;
+import org.apache.nifi.processor.FlowFileFilter;
+import org.apache.nifi.provenance.ProvenanceEventRepository;
+import org.apache.nifi.scheduling.SchedulingStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A FlowFileQueue that partitions its FlowFiles across several {@link StandardFlowFileQueue} stripes, each
+ * of which is guarded by its own lock. Producers add FlowFiles to a stripe that is chosen based on the thread
+ * that is adding them, and consumers start polling from their own stripe, moving on to the other stripes only
+ * when their own stripe has nothing available. As a result, a connection that is fed by and drained by many
+ * concurrent tasks no longer serializes all of those tasks on a single lock.
+ * </p>
+ *
+ * <p>
+ * Back pressure is evaluated against the combined size of all stripes. Expiration, prioritizers and swapping
+ * are handled by each of the stripes, and each stripe is given an equal share of the swap threshold. Because
+ * the stripes are ordered independently, FlowFiles are only approximately First-In-First-Out across the queue
+ * as a whole. When any prioritizer is configured, all FlowFiles are added to and polled from the first stripe
+ * so that the configured ordering is honored; FlowFiles that were already in other stripes are drained after
+ * the first stripe is empty.
+ * </p>
+ */
+public class StripedFlowFileQueue implements LockableFlowFileQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(StripedFlowFileQueue.class);
+
+    private final String identifier;
+    private final Connection connection;
+    private final ProcessScheduler scheduler;
+    private final StandardFlowFileQueue[] stripes;
+
+    private final AtomicReference<UnacknowledgedSize> unacknowledgedSize = new AtomicReference<>(new UnacknowledgedSize(0, 0L));
+    private volatile long maxBytes = DataUnit.parseDataSize(StandardFlowFileQueue.DEFAULT_BACKPRESSURE_SIZE, DataUnit.B).longValue();
+    private volatile boolean prioritized = false;
+
+    private final ConcurrentMap<String, DropFlowFileRequest> dropRequestMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ListFlowFileRequest> listRequestMap = new ConcurrentHashMap<>();
+
+    public StripedFlowFileQueue(final String identifier, final Connection connection, final FlowFileRepository flowFileRepo, final ProvenanceEventRepository provRepo,
+        final ResourceClaimManager resourceClaimManager, final ProcessScheduler scheduler, final FlowFileSwapManager swapManager, final EventReporter eventReporter,
+        final int swapThreshold, final int stripeCount) {
+        this(identifier, connection, flowFileRepo, provRepo, resourceClaimManager, scheduler, swapManager, eventReporter, swapThreshold, stripeCount, null, null);
+    }
+
+    public StripedFlowFileQueue(final String identifier, final Connection connection, final FlowFileRepository flowFileRepo, final ProvenanceEventRepository provRepo,
+        final ResourceClaimManager resourceClaimManager, final ProcessScheduler scheduler, final FlowFileSwapManager swapManager, final EventReporter eventReporter,
+        final int swapThreshold, final int stripeCount, final ExecutorService swapOutExecutor, final ExecutorService swapInExecutor) {
+
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("Stripe Count must be at least 1");
+        }
+
+        this.identifier = identifier;
+        this.connection = connection;
+        this.scheduler = scheduler;
+
+        // Each stripe uses the same identifier as this queue so that swap files and FlowFile Repository
+        // records are associated with the Connection rather than with an individual stripe.
+        final int stripeSwapThreshold = Math.max(1, swapThreshold / stripeCount);
+        stripes = new StandardFlowFileQueue[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new StandardFlowFileQueue(identifier, connection, flowFileRepo, provRepo, resourceClaimManager, scheduler, swapManager, eventReporter, stripeSwapThreshold,
+                swapOutExecutor, swapInExecutor);
+        }
+    }
+
+    @Override
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * @return the number of stripes that the FlowFiles in this queue are partitioned across
+     */
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    @Override
+    public List<FlowFilePrioritizer> getPriorities() {
+        return stripes[0].getPriorities();
+    }
+
+    @Override
+    public void setPriorities(final List<FlowFilePrioritizer> newPriorities) {
+        for (final StandardFlowFileQueue stripe : stripes) {
+            stripe.setPriorities(newPriorities);
+        }
+
+        prioritized = !newPriorities.isEmpty();
+    }
+
+    @Override
+    public SwapSummary recoverSwappedFlowFiles() {
+        // All stripes share the same identifier, so the first stripe recovers all swap files for the queue.
+        return stripes[0].recoverSwappedFlowFiles();
+    }
+
+    @Override
+    public void purgeSwapFiles() {
+        stripes[0].purgeSwapFiles();
+    }
+
+    @Override
+    public SwapStatistics getSwapStatistics() {
+        SwapStatistics statistics = SwapStatistics.EMPTY;
+        for (final StandardFlowFileQueue stripe : stripes) {
+            statistics = statistics.add(stripe.getSwapStatistics());
+        }
+        return statistics;
+    }
+
+    @Override
+    public void setBackPressureObjectThreshold(final long maxQueueSize) {
+        for (final StandardFlowFileQueue stripe : stripes) {
+            stripe.setBackPressureObjectThreshold(maxQueueSize);
+        }
+    }
+
+    @Override
+    public long getBackPressureObjectThreshold() {
+        return stripes[0].getBackPressureObjectThreshold();
+    }
+
+    @Override
+    public void setBackPressureDataSizeThreshold(final String maxDataSize) {
+        final long bytes = DataUnit.parseDataSize(maxDataSize, DataUnit.B).longValue();
+        for (final StandardFlowFileQueue stripe : stripes) {
+            stripe.setBackPressureDataSizeThreshold(maxDataSize);
+        }
+
+        maxBytes = bytes;
+    }
+
+    @Override
+    public String getBackPressureDataSizeThreshold() {
+        return stripes[0].getBackPressureDataSizeThreshold();
+    }
+
+    @Override
+    public QueueSize size() {
+        int count = 0;
+        long bytes = 0L;
+        for (final StandardFlowFileQueue stripe : stripes) {
+            final QueueSize stripeSize = stripe.size();
+            count += stripeSize.getObjectCount();
+            bytes += stripeSize.getByteCount();
+        }
+
+        final UnacknowledgedSize unacknowledged = unacknowledgedSize.get();
+        return new QueueSize(count + unacknowledged.count, bytes + unacknowledged.bytes);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        if (unacknowledgedSize.get().count > 0) {
+            return false;
+        }
+
+        for (final StandardFlowFileQueue stripe : stripes) {
+            if (!stripe.isEmpty()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean isActiveQueueEmpty() {
+        for (final StandardFlowFileQueue stripe : stripes) {
+            if (!stripe.isActiveQueueEmpty()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public QueueSize getActiveQueueSize() {
+        QueueSize activeSize = new QueueSize(0, 0L);
+        for (final StandardFlowFileQueue stripe : stripes) {
+            activeSize = activeSize.add(stripe.getActiveQueueSize());
+        }
+        return activeSize;
+    }
+
+    @Override
+    public QueueSize getUnacknowledgedQueueSize() {
+        final UnacknowledgedSize unacknowledged = unacknowledgedSize.get();
+        return new QueueSize(unacknowledged.count, unacknowledged.bytes);
+    }
+
+    @Override
+    public void acknowledge(final FlowFileRecord flowFile) {
+        incrementUnacknowledgedQueueSize(-1, -flowFile.getSize());
+
+        if (connection.getSource().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN) {
+            // queue was full but no longer is. Notify that the source may now be available to run,
+            // because of back pressure caused by this queue.
+            scheduler.registerEvent(connection.getSource());
+        }
+    }
+
+    @Override
+    public void acknowledge(final Collection<FlowFileRecord> flowFiles) {
+        long totalSize = 0L;
+        for (final FlowFileRecord flowFile : flowFiles) {
+            totalSize += flowFile.getSize();
+        }
+
+        incrementUnacknowledgedQueueSize(-flowFiles.size(), -totalSize);
+
+        if (connection.getSource().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN) {
+            // it's possible that queue was full but no longer is. Notify that the source may now be available to run,
+            // because of back pressure caused by this queue.
+            scheduler.registerEvent(connection.getSource());
+        }
+    }
+
+    @Override
+    public boolean isFull() {
+        final long maxCount = getBackPressureObjectThreshold();
+        final long maxSize = maxBytes;
+
+        // Check if max size is set
+        if (maxSize <= 0 && maxCount <= 0) {
+            return false;
+        }
+
+        final QueueSize queueSize = size();
+        if (maxCount > 0 && queueSize.getObjectCount() >= maxCount) {
+            return true;
+        }
+
+        if (maxSize > 0 && queueSize.getByteCount() >= maxSize) {
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public void put(final FlowFileRecord file) {
+        getPutStripe().put(file);
+    }
+
+    @Override
+    public void putAll(final Collection<FlowFileRecord> files) {
+        getPutStripe().putAll(files);
+    }
+
+    @Override
+    public FlowFileRecord poll(final Set<FlowFileRecord> expiredRecords) {
+        final int startIndex = getPollStartIndex();
+        for (int i = 0; i < stripes.length; i++) {
+            final StandardFlowFileQueue stripe = stripes[(startIndex + i) % stripes.length];
+            if (stripe.isActiveQueueEmpty()) {
+                continue;
+            }
+
+            // Each stripe accounts for the expired records that it is given, so we cannot share the Set across stripes.
+            final Set<FlowFileRecord> stripeExpired = new HashSet<>();
+            final FlowFileRecord flowFile = stripe.poll(stripeExpired);
+            expiredRecords.addAll(stripeExpired);
+
+            if (flowFile != null) {
+                transferUnacknowledged(stripe, 1, flowFile.getSize());
+                return flowFile;
+            }
+
+            if (expiredRecords.size() >= StandardFlowFileQueue.MAX_EXPIRED_RECORDS_PER_ITERATION) {
+                break;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public List<FlowFileRecord> poll(final int maxResults, final Set<FlowFileRecord> expiredRecords) {
+        final List<FlowFileRecord> records = new ArrayList<>(Math.min(1024, maxResults));
+
+        final int startIndex = getPollStartIndex();
+        for (int i = 0; i < stripes.length && records.size() < maxResults; i++) {
+            final StandardFlowFileQueue stripe = stripes[(startIndex + i) % stripes.length];
+            if (stripe.isActiveQueueEmpty()) {
+                continue;
+            }
+
+            final Set<FlowFileRecord> stripeExpired = new HashSet<>();
+            final List<FlowFileRecord> stripeRecords = stripe.poll(maxResults - records.size(), stripeExpired);
+            expiredRecords.addAll(stripeExpired);
+
+            if (!stripeRecords.isEmpty()) {
+                long bytes = 0L;
+                for (final FlowFileRecord record : stripeRecords) {
+                    bytes += record.getSize();
+                }
+
+                transferUnacknowledged(stripe, stripeRecords.size(), bytes);
+                records.addAll(stripeRecords);
+            }
+
+            if (expiredRecords.size() >= StandardFlowFileQueue.MAX_EXPIRED_RECORDS_PER_ITERATION) {
+                break;
+            }
+        }
+
+        return records;
+    }
+
+    @Override
+    public List<FlowFileRecord> poll(final FlowFileFilter filter, final Set<FlowFileRecord> expiredRecords) {
+        final TrackingFlowFileFilter trackingFilter = new TrackingFlowFileFilter(filter);
+        final List<FlowFileRecord> selected = new ArrayList<>();
+
+        final int startIndex = getPollStartIndex();
+        for (int i = 0; i < stripes.length; i++) {
+            final StandardFlowFileQueue stripe = stripes[(startIndex + i) % stripes.length];
+            if (stripe.isActiveQueueEmpty()) {
+                continue;
+            }
+
+            final Set<FlowFileRecord> stripeExpired = new HashSet<>();
+            final List<FlowFileRecord> stripeSelected = stripe.poll(trackingFilter, stripeExpired);
+            expiredRecords.addAll(stripeExpired);
+
+            if (!stripeSelected.isEmpty()) {
+                long bytes = 0L;
+                for (final FlowFileRecord record : stripeSelected) {
+                    bytes += record.getSize();
+                }
+
+                transferUnacknowledged(stripe, stripeSelected.size(), bytes);
+                selected.addAll(stripeSelected);
+            }
+
+            if (trackingFilter.isFinished() || expiredRecords.size() >= StandardFlowFileQueue.MAX_EXPIRED_RECORDS_PER_ITERATION) {
+                break;
+            }
+        }
+
+        return selected;
+    }
+
+    @Override
+    public long drainQueue(final Queue<FlowFileRecord> sourceQueue, final List<FlowFileRecord> destination, final int maxResults, final Set<FlowFileRecord> expiredRecords) {
+        return stripes[0].drainQueue(sourceQueue, destination, maxResults, expiredRecords);
+    }
+
+    @Override
+    public String getFlowFileExpiration() {
+        return stripes[0].getFlowFileExpiration();
+    }
+
+    @Override
+    public int getFlowFileExpiration(final TimeUnit timeUnit) {
+        return stripes[0].getFlowFileExpiration(timeUnit);
+    }
+
+    @Override
+    public void setFlowFileExpiration(final String flowExpirationPeriod) {
+        for (final StandardFlowFileQueue stripe : stripes) {
+            stripe.setFlowFileExpiration(flowExpirationPeriod);
+        }
+    }
+
+    @Override
+    public DropFlowFileStatus dropFlowFiles(final String requestIdentifier, final String requestor) {
+        logger.info("Initiating drop of FlowFiles from {} on behalf of {} (request identifier={})", this, requestor, requestIdentifier);
+
+        // purge any old requests from the map just to keep it clean. But if there are very requests, which is usually the case, then don't bother
+        if (dropRequestMap.size() > 10) {
+            final List<String> toDrop = new ArrayList<>();
+            for (final Map.Entry<String, DropFlowFileRequest> entry : dropRequestMap.entrySet()) {
+                final DropFlowFileRequest request = entry.getValue();
+                final boolean completed = request.getState() == DropFlowFileState.COMPLETE || request.getState() == DropFlowFileState.FAILURE;
+
+                if (completed && System.currentTimeMillis() - request.getLastUpdated() > TimeUnit.MINUTES.toMillis(5L)) {
+                    toDrop.add(entry.getKey());
+                }
+            }
+
+            for (final String requestId : toDrop) {
+                dropRequestMap.remove(requestId);
+            }
+        }
+
+        final DropFlowFileRequest dropRequest = new DropFlowFileRequest(requestIdentifier);
+        final QueueSize originalSize = size();
+        dropRequest.setCurrentSize(originalSize);
+        dropRequest.setOriginalSize(originalSize);
+        if (originalSize.getObjectCount() == 0) {
+            dropRequest.setDroppedSize(originalSize);
+            dropRequest.setState(DropFlowFileState.COMPLETE);
+            dropRequestMap.put(requestIdentifier, dropRequest);
+            return dropRequest;
+        }
+
+        final Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (final StandardFlowFileQueue stripe : stripes) {
+                    if (!stripe.dropQueuedFlowFiles(dropRequest, requestor)) {
+                        return;
+                    }
+
+                    dropRequest.setCurrentSize(size());
+                }
+
+                logger.info("Successfully dropped {} FlowFiles ({} bytes) from Connection with ID {} on behalf of {}",
+                    dropRequest.getDroppedSize().getObjectCount(), dropRequest.getDroppedSize().getByteCount(), getIdentifier(), requestor);
+                dropRequest.setState(DropFlowFileState.COMPLETE);
+            }
+        }, "Drop FlowFiles for Connection " + getIdentifier());
+        t.setDaemon(true);
+        t.start();
+
+        dropRequestMap.put(requestIdentifier, dropRequest);
+
+        return dropRequest;
+    }
+
+    @Override
+    public DropFlowFileStatus getDropFlowFileStatus(final String requestIdentifier) {
+        return dropRequestMap.get(requestIdentifier);
+    }
+
+    @Override
+    public DropFlowFileStatus cancelDropFlowFileRequest(final String requestIdentifier) {
+        final DropFlowFileRequest request = dropRequestMap.remove(requestIdentifier);
+        if (request == null) {
+            return null;
+        }
+
+        request.cancel();
+        return request;
+    }
+
+    @Override
+    public ListFlowFileStatus listFlowFiles(final String requestIdentifier, final int maxResults) {
+        // purge any old requests from the map just to keep it clean. But if there are very few requests, which is usually the case, then don't bother
+        if (listRequestMap.size() > 10) {
+            final List<String> toDrop = new ArrayList<>();
+            for (final Map.Entry<String, ListFlowFileRequest> entry : listRequestMap.entrySet()) {
+                final ListFlowFileRequest request = entry.getValue();
+                final boolean completed = request.getState() == ListFlowFileState.COMPLETE || request.getState() == ListFlowFileState.FAILURE;
+
+                if (completed && System.currentTimeMillis() - request.getLastUpdated() > TimeUnit.MINUTES.toMillis(5L)) {
+                    toDrop.add(entry.getKey());
+                }
+            }
+
+            for (final String requestId : toDrop) {
+                listRequestMap.remove(requestId);
+            }
+        }
+
+        final ListFlowFileRequest listRequest = new ListFlowFileRequest(requestIdentifier, maxResults, size());
+
+        final Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // Take a shallow copy of each stripe's active queue, holding each stripe's lock only while it is copied,
+                // and then sort the combined listing using the configured prioritizers.
+                final List<FlowFileRecord> allFlowFiles = new ArrayList<>();
+                for (final StandardFlowFileQueue stripe : stripes) {
+                    allFlowFiles.addAll(stripe.getActiveFlowFiles());
+                }
+
+                listRequest.setState(ListFlowFileState.CALCULATING_LIST);
+                Collections.sort(allFlowFiles, new StandardFlowFileQueue.Prioritizer(getPriorities()));
+
+                int position = 0;
+                final List<FlowFileSummary> summaries = new ArrayList<>();
+                for (final FlowFileRecord flowFile : allFlowFiles) {
+                    summaries.add(StandardFlowFileQueue.summarize(flowFile, ++position));
+                    if (summaries.size() >= maxResults) {
+                        break;
+                    }
+                }
+
+                logger.debug("{} Finished listing FlowFiles for active queue with a total of {} results", StripedFlowFileQueue.this, summaries.size());
+                listRequest.setFlowFileSummaries(summaries);
+                listRequest.setState(ListFlowFileState.COMPLETE);
+            }
+        }, "List FlowFiles for Connection " + getIdentifier());
+        t.setDaemon(true);
+        t.start();
+
+        listRequestMap.put(requestIdentifier, listRequest);
+        return listRequest;
+    }
+
+    @Override
+    public ListFlowFileStatus getListFlowFileStatus(final String requestIdentifier) {
+        return listRequestMap.get(requestIdentifier);
+    }
+
+    @Override
+    public ListFlowFileStatus cancelListFlowFileRequest(final String requestIdentifier) {
+        logger.info("Canceling ListFlowFile Request with ID {}", requestIdentifier);
+        final ListFlowFileRequest request = listRequestMap.remove(requestIdentifier);
+        if (request != null) {
+            request.cancel();
+        }
+
+        return request;
+    }
+
+    @Override
+    public FlowFileRecord getFlowFile(final String flowFileUuid) throws IOException {
+        for (final StandardFlowFileQueue stripe : stripes) {
+            final FlowFileRecord flowFile = stripe.getFlowFile(flowFileUuid);
+            if (flowFile != null) {
+                return flowFile;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public void verifyCanList() throws IllegalStateException {
+    }
+
+    /**
+     * Locks all stripes, always in the same order, so that other threads are unable to interact with the queue
+     */
+    @Override
+    public void lock() {
+        for (final StandardFlowFileQueue stripe : stripes) {
+            stripe.lock();
+        }
+    }
+
+    /**
+     * Unlocks all stripes, in the reverse order in which they were locked
+     */
+    @Override
+    public void unlock() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FlowFileQueue[id=" + identifier + "]";
+    }
+
+    private int getHomeIndex() {
+        return (int) (Thread.currentThread().getId() % stripes.length);
+    }
+
+    private StandardFlowFileQueue getPutStripe() {
+        return prioritized ? stripes[0] : stripes[getHomeIndex()];
+    }
+
+    private int getPollStartIndex() {
+        return prioritized ? 0 : getHomeIndex();
+    }
+
+    /**
+     * Moves responsibility for tracking the given number of unacknowledged FlowFiles from the given stripe to
+     * this queue. This allows the FlowFiles to be acknowledged without having to know which stripe they came from.
+     */
+    private void transferUnacknowledged(final StandardFlowFileQueue stripe, final int count, final long bytes) {
+        incrementUnacknowledgedQueueSize(count, bytes);
+        stripe.releaseUnacknowledged(count, bytes);
+    }
+
+    private void incrementUnacknowledgedQueueSize(final int count, final long bytes) {
+        boolean updated = false;
+        while (!updated) {
+            final UnacknowledgedSize original = unacknowledgedSize.get();
+            final UnacknowledgedSize newSize = new UnacknowledgedSize(original.count + count, original.bytes + bytes);
+            updated = unacknowledgedSize.compareAndSet(original, newSize);
+
+            if (updated && (newSize.count < 0 || newSize.bytes < 0)) {
+                logger.error("Updated Size of Queue Unacknowledged from " + original + " to " + newSize, new RuntimeException("Cannot create negative queue size"));
+            }
+        }
+    }
+
+
+    /**
+     * A FlowFileFilter that records whether or not the wrapped filter has indicated that no more
+     * FlowFiles should be considered, so that we know not to continue on to the next stripe.
+     */
+    private static class TrackingFlowFileFilter implements FlowFileFilter {
+        private final FlowFileFilter filter;
+        private boolean finished = false;
+
+        public TrackingFlowFileFilter(final FlowFileFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public FlowFileFilterResult filter(final FlowFile flowFile) {
+            final FlowFileFilterResult result = filter.filter(flowFile);
+            if (!result.isContinue()) {
+                finished = true;
+            }
+            return result;
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+    }
+
+    private static class UnacknowledgedSize {
+        private final int count;
+        private final long bytes;
+
+        public UnacknowledgedSize(final int count, final long bytes) {
+            this.count = count;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Unacknowledged=[" + count + ", " + bytes + " Bytes]";
+        }
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.apache.nifi.provenance.ProvenanceEventBuilder;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link ProvenanceEventRepository} that hands the events that are registered with it to another repository on a
+ * background thread, by way of a bounded queue, so that the threads that register events do not wait for the repository
+ * to accept them. What happens when the queue is full is determined by the {@link OverloadPolicy}.
+ *
+ * The underlying repository assigns Event IDs in the order in which events are handed to it. Events that are spilled to the
+ * overflow journal are handed to it only once the queue has drained, so they are given Event IDs after events that were
+ * registered later. Their event times are kept, so they are still found by queries for the time at which they occurred.
+ *
+ * Closing this repository registers the events that remain in the queue, but does not close the underlying repository.
+ * Events that are registered after it has been closed are registered with the underlying repository directly.
+ */
+public class AsyncProvenanceEventRepository implements ProvenanceEventRepository {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncProvenanceEventRepository.class);
+
+    static final int MAX_BATCH_SIZE = 1000;
+    static final int SAMPLE_INTERVAL = 10;
+    private static final long METRICS_LOG_MILLIS = TimeUnit.MINUTES.toMillis(1L);
+
+    public enum OverloadPolicy {
+        /**
+         * Wait for space in the queue
+         */
+        BLOCK,
+
+        /**
+         * Write the events to a local overflow journal, from which they are registered once the queue has drained, or upon
+         * restart. Because of this, they are given Event IDs after the events that were queued while they were in the journal.
+         */
+        SPILL,
+
+        /**
+         * Wait for room in the queue for one of every ten events that do not fit, dropping the rest
+         */
+        SAMPLE;
+    }
+
+    private final ProvenanceEventRepository repository;
+    private final BlockingQueue<ProvenanceEventRecord> queue;
+    private final int capacity;
+    private final OverloadPolicy overloadPolicy;
+    private final ProvenanceOverflowJournal overflowJournal;
+    private final Thread registrationThread;
+    private volatile boolean stopped = false;
+    // the number of threads that are registering events, which close() waits for once it has stopped the repository
+    private final AtomicInteger activeRegistrations = new AtomicInteger(0);
+
+    private final AtomicLong sampleCounter = new AtomicLong(0L);
+    private final AtomicLong blockedCount = new AtomicLong(0L);
+    private final AtomicLong spilledCount = new AtomicLong(0L);
+    private final AtomicLong droppedCount = new AtomicLong(0L);
+    private final AtomicLong failedCount = new AtomicLong(0L);
+
+    public AsyncProvenanceEventRepository(final ProvenanceEventRepository repository, final int capacity, final OverloadPolicy overloadPolicy,
+        final File overflowDirectory) throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1");
+        }
+
+        this.repository = repository;
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overloadPolicy = overloadPolicy;
+
+        // Journal files may remain from a previous run even if events are no longer spilled, so always check for them if a directory is given
+        this.overflowJournal = overflowDirectory == null ? null : new ProvenanceOverflowJournal(overflowDirectory);
+        if (overloadPolicy == OverloadPolicy.SPILL && overflowJournal == null) {
+            throw new IllegalArgumentException("An overflow directory must be given in order to spill events");
+        }
+
+        registrationThread = new Thread(this::registerQueuedEvents, "Provenance Registration Thread");
+        registrationThread.setDaemon(true);
+        registrationThread.start();
+    }
+
+    @Override
+    public ProvenanceEventBuilder eventBuilder() {
+        return repository.eventBuilder();
+    }
+
+    @Override
+    public void registerEvent(final ProvenanceEventRecord event) {
+        registerEvents(Collections.singletonList(event));
+    }
+
+    @Override
+    public void registerEvents(final Iterable<ProvenanceEventRecord> events) {
+        // The registration is counted before checking whether the repository is stopped, so that close() either sees it
+        // and waits for it, or it sees that the repository is stopped.
+        activeRegistrations.incrementAndGet();
+        try {
+            if (stopped) {
+                repository.registerEvents(events);
+                return;
+            }
+
+            List<ProvenanceEventRecord> overflow = null;
+            for (final ProvenanceEventRecord event : events) {
+                if (queue.offer(event)) {
+                    continue;
+                }
+
+                switch (overloadPolicy) {
+                    case SPILL:
+                        if (overflow == null) {
+                            overflow = new ArrayList<>();
+                        }
+                        overflow.add(event);
+                        break;
+                    case SAMPLE:
+                        // the queue is full, so the sampled event must wait for room in it or it would be dropped as well
+                        if (sampleCounter.incrementAndGet() % SAMPLE_INTERVAL == 0) {
+                            put(event);
+                        } else {
+                            droppedCount.incrementAndGet();
+                        }
+                        break;
+                    case BLOCK:
+                    default:
+                        put(event);
+                        break;
+                }
+            }
+
+            if (overflow != null) {
+                spill(overflow);
+            }
+        } finally {
+            activeRegistrations.decrementAndGet();
+        }
+    }
+
+    private void spill(final List<ProvenanceEventRecord> events) {
+        try {
+            // the events are synced to disk before returning, so that they are not lost if NiFi crashes before they are registered
+            overflowJournal.write(events);
+            spilledCount.addAndGet(events.size());
+        } catch (final IOException ioe) {
+            logger.warn("Failed to write {} Provenance Events to overflow journal due to {}; will wait for the Provenance Repository instead", events.size(), ioe.toString());
+            for (final ProvenanceEventRecord event : events) {
+                put(event);
+            }
+        }
+    }
+
+    private void put(final ProvenanceEventRecord event) {
+        blockedCount.incrementAndGet();
+        try {
+            queue.put(event);
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            repository.registerEvent(event);
+        }
+    }
+
+    private void registerQueuedEvents() {
+        final List<ProvenanceEventRecord> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        long nextMetricsLog = System.currentTimeMillis() + METRICS_LOG_MILLIS;
+        long lastSpilled = 0L;
+        long lastDropped = 0L;
+        long lastBlocked = 0L;
+
+        while (!stopped || !queue.isEmpty()) {
+            try {
+                final ProvenanceEventRecord first = queue.poll(100L, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                    register(batch);
+                    batch.clear();
+                }
+
+                // register the events that were spilled once the queue has room again, so that they do not compete with new events
+                if (overflowJournal != null && !stopped && queue.size() < capacity / 2 && !overflowJournal.isEmpty()) {
+                    registerJournaledEvents(overflowJournal, this::register);
+                }
+
+                final long now = System.currentTimeMillis();
+                if (now >= nextMetricsLog) {
+                    final long spilled = spilledCount.get();
+                    final long dropped = droppedCount.get();
+                    final long blocked = blockedCount.get();
+                    if (spilled != lastSpilled || dropped != lastDropped || blocked != lastBlocked) {
+                        logger.warn("Provenance Repository did not keep up with the rate of Provenance Events: in the last minute, {} events waited for room in the queue, "
+                            + "{} were spilled to the overflow journal and {} were dropped by sampling; {} events are queued",
+                            blocked - lastBlocked, spilled - lastSpilled, dropped - lastDropped, queue.size());
+                    }
+
+                    lastSpilled = spilled;
+                    lastDropped = dropped;
+                    lastBlocked = blocked;
+                    nextMetricsLog = now + METRICS_LOG_MILLIS;
+                }
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (final Throwable t) {
+                logger.error("Failed to register Provenance Events", t);
+            }
+        }
+    }
+
+    private void register(final List<ProvenanceEventRecord> events) {
+        try {
+            repository.registerEvents(events);
+        } catch (final Throwable t) {
+            failedCount.addAndGet(events.size());
+            logger.error("Failed to register {} Provenance Events with the Provenance Repository; these events will not be available", events.size(), t);
+        }
+    }
+
+    /**
+     * Registers the events in the overflow journal files that remain in the given directory, such as after the handoff has been disabled,
+     * with the given repository and deletes the files
+     *
+     * @param repository the repository to register the events with
+     * @param overflowDirectory the overflow directory
+     * @throws IOException if unable to access the overflow directory
+     */
+    public static void registerOverflowEvents(final ProvenanceEventRepository repository, final File overflowDirectory) throws IOException {
+        final ProvenanceOverflowJournal journal = new ProvenanceOverflowJournal(overflowDirectory);
+        try {
+            registerJournaledEvents(journal, events -> {
+                try {
+                    repository.registerEvents(events);
+                } catch (final Throwable t) {
+                    logger.error("Failed to register {} Provenance Events with the Provenance Repository; these events will not be available", events.size(), t);
+                }
+            });
+        } finally {
+            journal.close();
+        }
+    }
+
+    private static void registerJournaledEvents(final ProvenanceOverflowJournal journal, final Consumer<List<ProvenanceEventRecord>> register) throws IOException {
+        for (final File journalFile : journal.rollover()) {
+            try {
+                final long eventCount = ProvenanceOverflowJournal.read(journalFile, MAX_BATCH_SIZE, register);
+                logger.info("Registered {} Provenance Events from overflow journal {}", eventCount, journalFile);
+            } catch (final IOException ioe) {
+                logger.error("Failed to read Provenance Events from overflow journal {}; any events that were not read will not be available", journalFile, ioe);
+            }
+
+            if (!journalFile.delete()) {
+                logger.warn("Failed to delete overflow journal {}; its events may be registered again after restart", journalFile);
+            }
+        }
+    }
+
+    @Override
+    public List<ProvenanceEventRecord> getEvents(final long firstRecordId, final int maxRecords) throws IOException {
+        return repository.getEvents(firstRecordId, maxRecords);
+    }
+
+    @Override
+    public Long getMaxEventId() {
+        return repository.getMaxEventId();
+    }
+
+    @Override
+    public ProvenanceEventRecord getEvent(final long id) throws IOException {
+        return repository.getEvent(id);
+    }
+
+    /**
+     * @return the number of events that are waiting to be registered
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of events that had to wait for room in the queue
+     */
+    public long getBlockedEventCount() {
+        return blockedCount.get();
+    }
+
+    /**
+     * @return the number of events that were written to the overflow journal
+     */
+    public long getSpilledEventCount() {
+        return spilledCount.get();
+    }
+
+    /**
+     * @return the number of events that were dropped by sampling
+     */
+    public long getDroppedEventCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return the number of events that the underlying repository failed to register
+     */
+    public long getFailedEventCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Registers the events that remain in the queue and stops the background thread. Events that remain in the
+     * overflow journal are registered when the next instance for the same directory is created.
+     */
+    @Override
+    public void close() throws IOException {
+        stopped = true;
+        try {
+            registrationThread.join();
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Threads that began registering events before the repository was stopped may still be adding them to the queue, or
+        // waiting for room in it. Once none of them remain, no more events can be queued, so one last drain registers the rest.
+        final List<ProvenanceEventRecord> remaining = new ArrayList<>();
+        while (true) {
+            final boolean registrationsActive = activeRegistrations.get() > 0;
+
+            queue.drainTo(remaining);
+            if (!remaining.isEmpty()) {
+                register(remaining);
+                remaining.clear();
+            } else if (registrationsActive) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1L));
+            }
+
+            if (!registrationsActive) {
+                break;
+            }
+        }
+
+        if (overflowJournal != null) {
+            overflowJournal.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncProvenanceEventRepository[queued=" + getQueueDepth() + ", blocked=" + getBlockedEventCount() + ", spilled=" + getSpilledEventCount()
+            + ", dropped=" + getDroppedEventCount() + ", failed=" + getFailedEventCount() + "]";
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+/**
+ * Statistics about how the {@link FileSystemRepository} packs the content of FlowFiles into Resource Claims, along with
+ * the limits that the repository has currently chosen based on the rate at which content is written.
+ */
+public class ClaimPackingStatistics {
+
+    private final long resourceClaimsCreated;
+    private final long resourceClaimsRecycled;
+    private final long resourceClaimsClosedEarly;
+    private final double resourceClaimsCreatedPerSecond;
+    private final long appendableClaimLength;
+    private final int writableClaimLimit;
+
+    public ClaimPackingStatistics(final long resourceClaimsCreated, final long resourceClaimsRecycled, final long resourceClaimsClosedEarly,
+        final double resourceClaimsCreatedPerSecond, final long appendableClaimLength, final int writableClaimLimit) {
+        this.resourceClaimsCreated = resourceClaimsCreated;
+        this.resourceClaimsRecycled = resourceClaimsRecycled;
+        this.resourceClaimsClosedEarly = resourceClaimsClosedEarly;
+        this.resourceClaimsCreatedPerSecond = resourceClaimsCreatedPerSecond;
+        this.appendableClaimLength = appendableClaimLength;
+        this.writableClaimLimit = writableClaimLimit;
+    }
+
+    /**
+     * @return the number of Resource Claims, and therefore files, that have been created
+     */
+    public long getResourceClaimsCreated() {
+        return resourceClaimsCreated;
+    }
+
+    /**
+     * @return the number of times that a Resource Claim was made available again for appending content after a FlowFile's content was written to it
+     */
+    public long getResourceClaimsRecycled() {
+        return resourceClaimsRecycled;
+    }
+
+    /**
+     * @return the number of Resource Claims that were closed before reaching the appendable claim length because the limit on writable claims had been reached
+     */
+    public long getResourceClaimsClosedEarly() {
+        return resourceClaimsClosedEarly;
+    }
+
+    /**
+     * @return the number of Resource Claims created per second, as of the last time that the claim packing was adjusted
+     */
+    public double getResourceClaimsCreatedPerSecond() {
+        return resourceClaimsCreatedPerSecond;
+    }
+
+    /**
+     * @return the length that a Resource Claim may currently reach before content is no longer appended to it
+     */
+    public long getAppendableClaimLength() {
+        return appendableClaimLength;
+    }
+
+    /**
+     * @return the number of Resource Claims per container that may currently be kept open for appending content
+     */
+    public int getWritableClaimLimit() {
+        return writableClaimLimit;
+    }
+
+    @Override
+    public String toString() {
+        return "ClaimPackingStatistics[resourceClaimsCreated=" + resourceClaimsCreated + ", resourceClaimsRecycled=" + resourceClaimsRecycled
+            + ", resourceClaimsClosedEarly=" + resourceClaimsClosedEarly + ", resourceClaimsCreatedPerSecond=" + resourceClaimsCreatedPerSecond
+            + ", appendableClaimLength=" + appendableClaimLength + ", writableClaimLimit=" + writableClaimLimit + "]";
+    }
+}
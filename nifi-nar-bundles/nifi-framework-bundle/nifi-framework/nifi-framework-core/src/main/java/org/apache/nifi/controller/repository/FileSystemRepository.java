@@ -23,6 +23,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
@@ -52,6 +54,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -66,9 +69,9 @@ import org.apache.nifi.controller.repository.claim.ResourceClaimManager;
 import org.apache.nifi.controller.repository.claim.StandardContentClaim;
 import org.apache.nifi.controller.repository.io.LimitedInputStream;
 import org.apache.nifi.engine.FlowEngine;
+import org.apache.nifi.processor.DataUnit;
 import org.apache.nifi.stream.io.ByteCountingOutputStream;
 import org.apache.nifi.stream.io.StreamUtils;
-import org.apache.nifi.stream.io.SynchronizedByteCountingOutputStream;
 import org.apache.nifi.util.FormatUtils;
 import org.apache.nifi.util.NiFiProperties;
 import org.apache.nifi.util.StopWatch;
@@ -97,20 +100,57 @@ public class FileSystemRepository implements ContentRepository {
     private final ScheduledExecutorService executor = new FlowEngine(4, "FileSystemRepository Workers", true);
     private final ConcurrentMap<String, BlockingQueue<ResourceClaim>> reclaimable = new ConcurrentHashMap<>();
     private final Map<String, ContainerState> containerStateMap = new HashMap<>();
-    // 1 MB. This could be adjusted but 1 MB seems reasonable, as it means that we won't continually write to one
-    // file that keeps growing but gives us a chance to bunch together a lot of small files. Before, we had issues
-    // with creating and deleting too many files, as we had to delete 100's of thousands of files every 2 minutes
-    // in order to avoid backpressure on session commits. With 1 MB as the target file size, 100's of thousands of
-    // files would mean that we are writing gigabytes per second - quite a bit faster than any disks can handle now.
-    static final int MAX_APPENDABLE_CLAIM_LENGTH = 1024 * 1024;
-
-    // Queue for claims that are kept open for writing. Size of 100 is pretty arbitrary. Ideally, this will be at
-    // least as large as the number of threads that will be updating the repository simultaneously but we don't want
-    // to get too large because it will hold open up to this many FileOutputStreams.
+    // The content of many FlowFiles is appended to the same file until the file reaches the 'appendable claim length'. We don't
+    // want to continually write to one file that keeps growing, because the file cannot be destroyed until all of the FlowFiles
+    // that reference it are gone, but we do want to bunch together a lot of small files. Before, we had issues with creating and
+    // deleting too many files, as we had to delete 100's of thousands of files every 2 minutes in order to avoid backpressure on
+    // session commits. So the length is adjusted periodically, between the configured min and max, so that at the observed rate
+    // of writing, about TARGET_RESOURCE_CLAIMS_PER_SECOND files are created each second.
+    static final int TARGET_RESOURCE_CLAIMS_PER_SECOND = 20;
+    static final long CLAIM_PACKING_ADJUSTMENT_MILLIS = 5000L;
+    private final long minAppendableClaimLength;
+    private final long maxAppendableClaimLength;
+    private volatile long appendableClaimLength;
+
+    // Content is written to a Resource Claim's FileChannel through direct ByteBuffers of this size, so that small writes are
+    // coalesced and the data does not have to be copied into a temporary native buffer for each write. A stream fills up to
+    // GATHERING_WRITE_BUFFER_COUNT buffers before writing them all to the channel with a single gathering write.
+    static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    static final int GATHERING_WRITE_BUFFER_COUNT = 4;
+
+    // Direct buffers are expensive to allocate, so they are returned to this pool when a stream is closed. The pool is bounded
+    // so that a burst of concurrent writers does not permanently hold on to more than this many buffers.
+    private static final int MAX_POOLED_WRITE_BUFFERS = 256;
+    private final BlockingQueue<ByteBuffer> writeBufferPool = new LinkedBlockingQueue<>(MAX_POOLED_WRITE_BUFFERS);
+
+    // Queue for claims that are kept open for writing. Ideally, this will be at least as large as the number of threads that
+    // will be updating the repository simultaneously but we don't want to get too large because it will hold open up to this
+    // many FileChannels. So the number of claims per container that may be held is adjusted periodically, between the
+    // configured min and max, based on the number of streams that have been open concurrently.
     // The queue is used to determine which claim to write to and then the corresponding Map can be used to obtain
-    // the OutputStream that we can use for writing to the claim.
-    private final BlockingQueue<ClaimLengthPair> writableClaimQueue = new LinkedBlockingQueue<>(100);
-    private final ConcurrentMap<ResourceClaim, ByteCountingOutputStream> writableClaimStreams = new ConcurrentHashMap<>(100);
+    // the FileChannel that we can use for writing to the claim.
+    private final int minWritableClaims;
+    private final int maxWritableClaims;
+    private volatile int writableClaimLimit;
+    private final BlockingQueue<ClaimLengthPair> writableClaimQueue;
+    private final ConcurrentMap<ResourceClaim, FileChannel> writableClaimChannels = new ConcurrentHashMap<>(100);
+
+    // counters that are used to adjust the packing of content into resource claims
+    private final AtomicLong resourceClaimsCreated = new AtomicLong(0L);
+    private final AtomicLong resourceClaimsRecycled = new AtomicLong(0L);
+    private final AtomicLong resourceClaimsClosedEarly = new AtomicLong(0L);
+    private final AtomicLong contentClaimsWritten = new AtomicLong(0L);
+    private final AtomicLong contentBytesWritten = new AtomicLong(0L);
+    private final AtomicInteger activeStreams = new AtomicInteger(0);
+    private final AtomicInteger peakActiveStreams = new AtomicInteger(0);
+    private volatile double resourceClaimsCreatedPerSecond = 0D;
+
+    // guarded by synchronizing on this; the values of the counters as of the last adjustment
+    private long lastAdjustmentNanos = System.nanoTime();
+    private long lastResourceClaimsCreated = 0L;
+    private long lastResourceClaimsClosedEarly = 0L;
+    private long lastContentClaimsWritten = 0L;
+    private long lastContentBytesWritten = 0L;
 
     private final boolean archiveData;
     private final long maxArchiveMillis;
@@ -140,6 +180,11 @@ public class FileSystemRepository implements ContentRepository {
         alwaysSync = false;
         containerCleanupExecutor = null;
         nifiProperties = null;
+        minAppendableClaimLength = 0L;
+        maxAppendableClaimLength = 0L;
+        minWritableClaims = 0;
+        maxWritableClaims = 0;
+        writableClaimQueue = null;
     }
 
     public FileSystemRepository(final NiFiProperties nifiProperties) throws IOException {
@@ -223,6 +268,23 @@ public class FileSystemRepository implements ContentRepository {
 
         this.alwaysSync = Boolean.parseBoolean(nifiProperties.getProperty("nifi.content.repository.always.sync"));
         LOG.info("Initializing FileSystemRepository with 'Always Sync' set to {}", alwaysSync);
+
+        final long maxAppendableLength = DataUnit.parseDataSize(nifiProperties.getMaxAppendableClaimSize(), DataUnit.B).longValue();
+        final long minAppendableLength = DataUnit.parseDataSize(nifiProperties.getMinAppendableClaimSize(), DataUnit.B).longValue();
+        if (minAppendableLength > maxAppendableLength) {
+            LOG.warn("The value of the '{}' property is larger than the value of the '{}' property; will use {} bytes for both",
+                new Object[] {NiFiProperties.MIN_APPENDABLE_CLAIM_SIZE, NiFiProperties.MAX_APPENDABLE_CLAIM_SIZE, maxAppendableLength});
+        }
+        this.maxAppendableClaimLength = maxAppendableLength;
+        this.minAppendableClaimLength = Math.min(minAppendableLength, maxAppendableLength);
+        this.appendableClaimLength = minAppendableClaimLength;
+
+        this.maxWritableClaims = Math.max(1, nifiProperties.getMaxWritableClaims());
+        this.minWritableClaims = Math.max(1, Math.min(nifiProperties.getMinWritableClaims(), maxWritableClaims));
+        this.writableClaimLimit = maxWritableClaims;
+        this.writableClaimQueue = new LinkedBlockingQueue<>(maxWritableClaims * containers.size());
+        LOG.info("Initializing FileSystemRepository with appendable claim length between {} and {} bytes and between {} and {} writable claims per container",
+            new Object[] {minAppendableClaimLength, maxAppendableClaimLength, minWritableClaims, maxWritableClaims});
         initializeRepository();
 
         containerCleanupExecutor = new FlowEngine(containers.size(), "Cleanup FileSystemRepository Container", true);
@@ -235,6 +297,7 @@ public class FileSystemRepository implements ContentRepository {
         final Map<String, Path> fileRespositoryPaths = nifiProperties.getContentRepositoryPaths();
 
         executor.scheduleWithFixedDelay(new BinDestructableClaims(), 1, 1, TimeUnit.SECONDS);
+        executor.scheduleWithFixedDelay(new AdjustClaimPacking(), CLAIM_PACKING_ADJUSTMENT_MILLIS, CLAIM_PACKING_ADJUSTMENT_MILLIS, TimeUnit.MILLISECONDS);
         for (int i = 0; i < fileRespositoryPaths.size(); i++) {
             executor.scheduleWithFixedDelay(new ArchiveOrDestroyDestructableClaims(), 1, 1, TimeUnit.SECONDS);
         }
@@ -254,16 +317,16 @@ public class FileSystemRepository implements ContentRepository {
         executor.shutdown();
         containerCleanupExecutor.shutdown();
 
-        // Close any of the writable claim streams that are currently open.
-        // Other threads may be writing to these streams, and that's okay.
-        // If that happens, we will simply close the stream, resulting in an
+        // Close any of the writable claim channels that are currently open.
+        // Other threads may be writing to these channels, and that's okay.
+        // If that happens, we will simply close the channel, resulting in an
         // IOException that will roll back the session. Since this is called
         // only on shutdown of the application, we don't have to worry about
         // partially written files - on restart, we will simply start writing
         // to new files and leave those trailing bytes alone.
-        for (final OutputStream out : writableClaimStreams.values()) {
+        for (final FileChannel channel : writableClaimChannels.values()) {
             try {
-                out.close();
+                channel.close();
             } catch (final IOException ioe) {
             }
         }
@@ -546,11 +609,11 @@ public class FileSystemRepository implements ContentRepository {
             // at the same time because we will call create() to get the claim before we write to it,
             // and when we call create(), it will remove it from the Queue, which means that no other
             // thread will get the same Claim until we've finished writing to it.
-            final File file = getPath(resourceClaim).toFile();
-            ByteCountingOutputStream claimStream = new SynchronizedByteCountingOutputStream(new FileOutputStream(file, true), file.length());
-            writableClaimStreams.put(resourceClaim, claimStream);
+            final FileChannel claimChannel = FileChannel.open(getPath(resourceClaim), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            writableClaimChannels.put(resourceClaim, claimChannel);
 
             incrementClaimantCount(resourceClaim, true);
+            resourceClaimsCreated.incrementAndGet();
         } else {
             resourceClaim = pair.getClaim();
             resourceOffset = pair.getLength();
@@ -619,14 +682,14 @@ public class FileSystemRepository implements ContentRepository {
         } catch (final ContentNotFoundException cnfe) {
         }
 
-        // Ensure that we have no writable claim streams for this resource claim
-        final ByteCountingOutputStream bcos = writableClaimStreams.remove(claim);
+        // Ensure that we have no writable claim channels for this resource claim
+        final FileChannel channel = writableClaimChannels.remove(claim);
 
-        if (bcos != null) {
+        if (channel != null) {
             try {
-                bcos.close();
+                channel.close();
             } catch (final IOException e) {
-                LOG.warn("Failed to close Output Stream for {} due to {}", claim, e);
+                LOG.warn("Failed to close File Channel for {} due to {}", claim, e);
             }
         }
 
@@ -849,11 +912,23 @@ public class FileSystemRepository implements ContentRepository {
             throw new IllegalArgumentException("Cannot write to " + claim + " because it has already been written to.");
         }
 
-        ByteCountingOutputStream claimStream = writableClaimStreams.get(scc.getResourceClaim());
+        final FileChannel channel = writableClaimChannels.get(scc.getResourceClaim());
         final int initialLength = append ? (int) Math.max(0, scc.getLength()) : 0;
 
-        final ByteCountingOutputStream bcos = claimStream;
+        final int streamCount = activeStreams.incrementAndGet();
+        int peakStreamCount;
+        while ((peakStreamCount = peakActiveStreams.get()) < streamCount) {
+            if (peakActiveStreams.compareAndSet(peakStreamCount, streamCount)) {
+                break;
+            }
+        }
+
+        // The stream is written to by a single thread at a time, as the claim is not made available to any other
+        // writer until the stream is closed, so no synchronization is needed. If the repository is shut down while
+        // the stream is in use, the channel is closed and the next write fails with an IOException.
         final OutputStream out = new OutputStream() {
+            private final ByteBuffer[] buffers = new ByteBuffer[GATHERING_WRITE_BUFFER_COUNT];
+            private int activeBufferIndex = 0;
             private long bytesWritten = 0L;
             private boolean recycle = true;
             private boolean closed = false;
@@ -863,51 +938,90 @@ public class FileSystemRepository implements ContentRepository {
                 return "FileSystemRepository Stream [" + scc + "]";
             }
 
-            @Override
-            public synchronized void write(final int b) throws IOException {
-                if (closed) {
-                    throw new IOException("Stream is closed");
+            private ByteBuffer getWritableBuffer() throws IOException {
+                ByteBuffer buffer = buffers[activeBufferIndex];
+                if (buffer != null && !buffer.hasRemaining()) {
+                    if (activeBufferIndex < buffers.length - 1) {
+                        activeBufferIndex++;
+                    } else {
+                        writeBuffers();
+                    }
+
+                    buffer = buffers[activeBufferIndex];
                 }
 
+                if (buffer == null) {
+                    buffer = borrowWriteBuffer();
+                    buffers[activeBufferIndex] = buffer;
+                }
+
+                return buffer;
+            }
+
+            private void writeBuffers() throws IOException {
+                if (buffers[0] == null) {
+                    return;
+                }
+
+                final int bufferCount = activeBufferIndex + 1;
+                for (int i = 0; i < bufferCount; i++) {
+                    buffers[i].flip();
+                }
+
+                // A FileChannel is closed if the thread writing to it is interrupted. Because the channel is shared by all
+                // Content Claims that are written to the same Resource Claim, clear the interrupt and restore it afterward.
+                final boolean interrupted = Thread.interrupted();
                 try {
-                    bcos.write(b);
+                    while (buffers[activeBufferIndex].hasRemaining()) {
+                        channel.write(buffers, 0, bufferCount);
+                    }
                 } catch (final IOException ioe) {
                     recycle = false;
                     throw new IOException("Failed to write to " + this, ioe);
+                } finally {
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
                 }
 
-                bytesWritten++;
-                scc.setLength(bytesWritten + initialLength);
+                for (int i = 0; i < bufferCount; i++) {
+                    buffers[i].clear();
+                }
+
+                activeBufferIndex = 0;
             }
 
             @Override
-            public synchronized void write(final byte[] b) throws IOException {
+            public void write(final int b) throws IOException {
                 if (closed) {
                     throw new IOException("Stream is closed");
                 }
 
-                try {
-                    bcos.write(b);
-                } catch (final IOException ioe) {
-                    recycle = false;
-                    throw new IOException("Failed to write to " + this, ioe);
-                }
+                getWritableBuffer().put((byte) b);
 
-                bytesWritten += b.length;
+                bytesWritten++;
                 scc.setLength(bytesWritten + initialLength);
             }
 
             @Override
-            public synchronized void write(final byte[] b, final int off, final int len) throws IOException {
+            public void write(final byte[] b) throws IOException {
+                write(b, 0, b.length);
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
                 if (closed) {
                     throw new IOException("Stream is closed");
                 }
 
-                try {
-                    bcos.write(b, off, len);
-                } catch (final IOException ioe) {
-                    recycle = false;
-                    throw new IOException("Failed to write to " + this, ioe);
+                int offset = off;
+                int remaining = len;
+                while (remaining > 0) {
+                    final ByteBuffer buffer = getWritableBuffer();
+                    final int toCopy = Math.min(remaining, buffer.remaining());
+                    buffer.put(b, offset, toCopy);
+                    offset += toCopy;
+                    remaining -= toCopy;
                 }
 
                 bytesWritten += len;
@@ -915,43 +1029,72 @@ public class FileSystemRepository implements ContentRepository {
             }
 
             @Override
-            public synchronized void flush() throws IOException {
+            public void flush() throws IOException {
                 if (closed) {
                     throw new IOException("Stream is closed");
                 }
 
-                bcos.flush();
+                writeBuffers();
             }
 
             @Override
-            public synchronized void close() throws IOException {
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+
                 closed = true;
+                activeStreams.decrementAndGet();
+
+                try {
+                    // the content must be written to the file before the stream is closed, as it may be read immediately afterward
+                    writeBuffers();
+
+                    if (alwaysSync) {
+                        channel.force(false);
+                    }
+                } catch (final IOException ioe) {
+                    recycle = false;
+                    throw ioe;
+                } finally {
+                    for (int i = 0; i < buffers.length; i++) {
+                        if (buffers[i] != null) {
+                            releaseWriteBuffer(buffers[i]);
+                            buffers[i] = null;
+                        }
+                    }
 
-                if (alwaysSync) {
-                    ((FileOutputStream) bcos.getWrappedStream()).getFD().sync();
+                    releaseClaim();
                 }
+            }
 
+            private void releaseClaim() throws IOException {
                 if (scc.getLength() < 0) {
                     // If claim was not written to, set length to 0
                     scc.setLength(0L);
                 }
 
+                contentClaimsWritten.incrementAndGet();
+                contentBytesWritten.addAndGet(bytesWritten);
+
                 // if we've not yet hit the threshold for appending to a resource claim, add the claim
                 // to the writableClaimQueue so that the Resource Claim can be used again when create()
-                // is called. In this case, we don't have to actually close the file stream. Instead, we
+                // is called. In this case, we don't have to actually close the file channel. Instead, we
                 // can just add it onto the queue and continue to use it for the next content claim.
                 final long resourceClaimLength = scc.getOffset() + scc.getLength();
-                if (recycle && resourceClaimLength < MAX_APPENDABLE_CLAIM_LENGTH) {
+                if (recycle && resourceClaimLength < appendableClaimLength) {
                     final ClaimLengthPair pair = new ClaimLengthPair(scc.getResourceClaim(), resourceClaimLength);
-                    final boolean enqueued = writableClaimQueue.offer(pair);
+                    final boolean enqueued = writableClaimQueue.size() < writableClaimLimit * containers.size() && writableClaimQueue.offer(pair);
 
                     if (enqueued) {
+                        resourceClaimsRecycled.incrementAndGet();
                         LOG.debug("Claim length less than max; Adding {} back to Writable Claim Queue", this);
                     } else {
-                        writableClaimStreams.remove(scc.getResourceClaim());
+                        resourceClaimsClosedEarly.incrementAndGet();
+                        writableClaimChannels.remove(scc.getResourceClaim());
                         resourceClaimManager.freeze(scc.getResourceClaim());
 
-                        bcos.close();
+                        channel.close();
 
                         LOG.debug("Claim length less than max; Closing {} because could not add back to queue", this);
                         if (LOG.isTraceEnabled()) {
@@ -968,7 +1111,7 @@ public class FileSystemRepository implements ContentRepository {
                     // ensure that the claim is no longer on the queue
                     writableClaimQueue.remove(new ClaimLengthPair(scc.getResourceClaim(), resourceClaimLength));
 
-                    bcos.close();
+                    channel.close();
                     LOG.debug("Claim lenth >= max; Closing {}", this);
                     if (LOG.isTraceEnabled()) {
                         LOG.trace("Stack trace: ", new RuntimeException("Stack Trace for closing " + this));
@@ -985,6 +1128,16 @@ public class FileSystemRepository implements ContentRepository {
         return out;
     }
 
+    private ByteBuffer borrowWriteBuffer() {
+        final ByteBuffer buffer = writeBufferPool.poll();
+        return buffer == null ? ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE) : buffer;
+    }
+
+    private void releaseWriteBuffer(final ByteBuffer buffer) {
+        buffer.clear();
+        writeBufferPool.offer(buffer);
+    }
+
     @Override
     public void purge() {
         // delete all content from repositories
@@ -1019,6 +1172,83 @@ public class FileSystemRepository implements ContentRepository {
         resourceClaimManager.purge();
     }
 
+    /**
+     * @return statistics about how content is being packed into Resource Claims
+     */
+    public ClaimPackingStatistics getClaimPackingStatistics() {
+        return new ClaimPackingStatistics(resourceClaimsCreated.get(), resourceClaimsRecycled.get(), resourceClaimsClosedEarly.get(),
+            resourceClaimsCreatedPerSecond, appendableClaimLength, writableClaimLimit);
+    }
+
+    /**
+     * Adjusts the length that a Resource Claim may reach before content is no longer appended to it, and the number of
+     * Resource Claims that are kept open for writing, based on what has been written since the last adjustment.
+     *
+     * @param elapsedNanos the number of nanoseconds since the last adjustment
+     */
+    synchronized void adjustClaimPacking(final long elapsedNanos) {
+        final long created = resourceClaimsCreated.get();
+        final long closedEarly = resourceClaimsClosedEarly.get();
+        final long claimsWritten = contentClaimsWritten.get();
+        final long bytesWritten = contentBytesWritten.get();
+
+        final long createdDelta = created - lastResourceClaimsCreated;
+        final long closedEarlyDelta = closedEarly - lastResourceClaimsClosedEarly;
+        final long claimsWrittenDelta = claimsWritten - lastContentClaimsWritten;
+        final long bytesWrittenDelta = bytesWritten - lastContentBytesWritten;
+
+        lastResourceClaimsCreated = created;
+        lastResourceClaimsClosedEarly = closedEarly;
+        lastContentClaimsWritten = claimsWritten;
+        lastContentBytesWritten = bytesWritten;
+
+        final double seconds = Math.max(1L, elapsedNanos) / (double) TimeUnit.SECONDS.toNanos(1L);
+        resourceClaimsCreatedPerSecond = createdDelta / seconds;
+
+        if (claimsWrittenDelta > 0) {
+            final long averageContentLength = bytesWrittenDelta / claimsWrittenDelta;
+            final long targetLength;
+            if (averageContentLength >= minAppendableClaimLength) {
+                // there is little to gain by packing large FlowFiles together, and doing so delays the destruction of the content
+                targetLength = minAppendableClaimLength;
+            } else {
+                targetLength = (long) (bytesWrittenDelta / seconds / TARGET_RESOURCE_CLAIMS_PER_SECOND);
+            }
+
+            appendableClaimLength = Math.max(minAppendableClaimLength, Math.min(maxAppendableClaimLength, targetLength));
+        }
+
+        // each stream that is open concurrently needs its own claim. If claims had to be closed because there was no room to
+        // keep them open, allow more claims to be kept open.
+        final int peakStreams = peakActiveStreams.getAndSet(activeStreams.get());
+        int targetClaims = (peakStreams + containers.size() - 1) / containers.size();
+        if (closedEarlyDelta > 0) {
+            targetClaims = Math.max(targetClaims, writableClaimLimit * 2);
+        }
+        writableClaimLimit = Math.max(minWritableClaims, Math.min(maxWritableClaims, targetClaims));
+
+        LOG.debug("Adjusted claim packing: {} Resource Claims created per second; appendable claim length is now {} bytes with up to {} writable claims per container",
+            new Object[] {resourceClaimsCreatedPerSecond, appendableClaimLength, writableClaimLimit});
+    }
+
+    private class AdjustClaimPacking implements Runnable {
+        @Override
+        public void run() {
+            try {
+                final long now = System.nanoTime();
+                final long elapsedNanos;
+                synchronized (FileSystemRepository.this) {
+                    elapsedNanos = now - lastAdjustmentNanos;
+                    lastAdjustmentNanos = now;
+                }
+
+                adjustClaimPacking(elapsedNanos);
+            } catch (final Throwable t) {
+                LOG.error("Failed to adjust the packing of content into Resource Claims due to {}", t.toString(), t);
+            }
+        }
+    }
+
     private class BinDestructableClaims implements Runnable {
 
         @Override
@@ -1104,13 +1334,13 @@ public class FileSystemRepository implements ContentRepository {
         // we close the stream if there is one. There may be a stream open if create() is called and then
         // claimant count is removed without writing to the claim (or more specifically, without closing the
         // OutputStream that is returned when calling write() ).
-        final OutputStream out = writableClaimStreams.remove(claim);
+        final FileChannel channel = writableClaimChannels.remove(claim);
 
-        if (out != null) {
+        if (channel != null) {
             try {
-                out.close();
+                channel.close();
             } catch (final IOException ioe) {
-                LOG.warn("Unable to close Output Stream for " + claim, ioe);
+                LOG.warn("Unable to close File Channel for " + claim, ioe);
             }
         }
 
@@ -1125,7 +1355,7 @@ public class FileSystemRepository implements ContentRepository {
     }
 
     protected int getOpenStreamCount() {
-        return writableClaimStreams.size();
+        return writableClaimChannels.size();
     }
 
     // marked protected for visibility and ability to override for unit tests.
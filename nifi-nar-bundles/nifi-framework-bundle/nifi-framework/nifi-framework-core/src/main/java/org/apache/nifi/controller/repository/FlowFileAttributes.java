@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * An immutable, memory-compact Map of FlowFile attributes. The keys and values are held in a single array of
+ * alternating keys and values, rather than in a hash table of entry objects, so that a FlowFile with a handful of
+ * attributes costs a single array rather than a table plus an entry object per attribute. Maps with more than
+ * {@link #LINEAR_SCAN_THRESHOLD} attributes additionally maintain a small open-addressing index so that lookups
+ * remain constant-time.
+ * </p>
+ *
+ * <p>
+ * Attribute keys are interned so that the many FlowFiles that share keys such as <code>filename</code>,
+ * <code>path</code> and <code>uuid</code> reference a single String for each key. Because instances are immutable,
+ * a FlowFile that is updated without changing its attributes shares the attribute map of the FlowFile that it
+ * was derived from, and a FlowFile whose attributes are changed shares all unchanged keys and values with it.
+ * </p>
+ */
+final class FlowFileAttributes extends AbstractMap<String, String> {
+
+    static final FlowFileAttributes EMPTY = new FlowFileAttributes(new String[0], 0);
+
+    /**
+     * Maps with at most this many entries are searched linearly rather than through a hash index
+     */
+    static final int LINEAR_SCAN_THRESHOLD = 8;
+
+    /**
+     * The maximum number of distinct keys that will be interned. Once this many keys have been interned, additional
+     * keys are used as-is, so that flows that generate unbounded numbers of distinct attribute names cannot exhaust the heap.
+     */
+    static final int MAX_INTERNED_KEYS = 10000;
+
+    private static final ConcurrentMap<String, String> INTERNED_KEYS = new ConcurrentHashMap<>();
+
+    private final String[] keysAndValues;
+    private final int size;
+    private final int[] index;
+    private int hashCode;
+
+    private FlowFileAttributes(final String[] keysAndValues, final int size) {
+        this.keysAndValues = keysAndValues;
+        this.size = size;
+        this.index = size > LINEAR_SCAN_THRESHOLD ? createIndex(keysAndValues, size) : null;
+    }
+
+    /**
+     * Returns a FlowFileAttributes containing the same mappings as the given Map. If the given Map is already
+     * a FlowFileAttributes, it is returned as-is. Any entry with a <code>null</code> key or value is ignored.
+     *
+     * @param attributes the attributes to copy
+     * @return an immutable copy of the given attributes
+     */
+    static FlowFileAttributes copyOf(final Map<String, String> attributes) {
+        if (attributes instanceof FlowFileAttributes) {
+            return (FlowFileAttributes) attributes;
+        }
+        if (attributes == null || attributes.isEmpty()) {
+            return EMPTY;
+        }
+
+        final String[] keysAndValues = new String[attributes.size() * 2];
+        int count = 0;
+        for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+            final String key = entry.getKey();
+            final String value = entry.getValue();
+            if (key == null || value == null) {
+                continue;
+            }
+
+            keysAndValues[count * 2] = intern(key);
+            keysAndValues[count * 2 + 1] = value;
+            count++;
+        }
+
+        return create(keysAndValues, count);
+    }
+
+    /**
+     * Returns a FlowFileAttributes that contains the mappings of the given base, with the given updates applied. An
+     * update whose value is <code>null</code> removes the key. Keys and values that are not updated are shared with the base.
+     *
+     * @param base the attributes to update
+     * @param updates the updates to apply; a <code>null</code> value indicates that the key is to be removed
+     * @return a FlowFileAttributes representing the updated attributes, or the base itself if the updates do not change anything
+     */
+    static FlowFileAttributes update(final FlowFileAttributes base, final Map<String, String> updates) {
+        if (updates == null || updates.isEmpty()) {
+            return base;
+        }
+
+        final String[] keysAndValues = new String[(base.size + updates.size()) * 2];
+        int count = 0;
+        boolean changed = false;
+
+        // Copy the entries of the base map, replacing or dropping any that are updated.
+        for (int i = 0; i < base.size; i++) {
+            final String key = base.keysAndValues[i * 2];
+            final String baseValue = base.keysAndValues[i * 2 + 1];
+
+            final String value;
+            if (updates.containsKey(key)) {
+                value = updates.get(key);
+                if (value == null) {
+                    changed = true;
+                    continue;
+                }
+                if (!value.equals(baseValue)) {
+                    changed = true;
+                }
+            } else {
+                value = baseValue;
+            }
+
+            keysAndValues[count * 2] = key;
+            keysAndValues[count * 2 + 1] = value;
+            count++;
+        }
+
+        // Append any keys that were not already present.
+        for (final Map.Entry<String, String> entry : updates.entrySet()) {
+            final String key = entry.getKey();
+            final String value = entry.getValue();
+            if (key == null || value == null || base.containsKey(key)) {
+                continue;
+            }
+
+            keysAndValues[count * 2] = intern(key);
+            keysAndValues[count * 2 + 1] = value;
+            count++;
+            changed = true;
+        }
+
+        return changed ? create(keysAndValues, count) : base;
+    }
+
+    private static FlowFileAttributes create(final String[] keysAndValues, final int size) {
+        if (size == 0) {
+            return EMPTY;
+        }
+
+        if (keysAndValues.length == size * 2) {
+            return new FlowFileAttributes(keysAndValues, size);
+        }
+
+        final String[] trimmed = new String[size * 2];
+        System.arraycopy(keysAndValues, 0, trimmed, 0, size * 2);
+        return new FlowFileAttributes(trimmed, size);
+    }
+
+    static String intern(final String key) {
+        final String interned = INTERNED_KEYS.get(key);
+        if (interned != null) {
+            return interned;
+        }
+
+        if (INTERNED_KEYS.size() >= MAX_INTERNED_KEYS) {
+            return key;
+        }
+
+        final String existing = INTERNED_KEYS.putIfAbsent(key, key);
+        return existing == null ? key : existing;
+    }
+
+    private static int[] createIndex(final String[] keysAndValues, final int size) {
+        // Size the table so that it is at most half full, which keeps probe sequences short.
+        final int capacity = Integer.highestOneBit(size * 2 - 1) << 1;
+        final int[] table = new int[capacity];
+        final int mask = capacity - 1;
+
+        for (int i = 0; i < size; i++) {
+            int slot = spread(keysAndValues[i * 2].hashCode()) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            // store the entry position offset by one so that 0 denotes an empty slot
+            table[slot] = i + 1;
+        }
+
+        return table;
+    }
+
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private int indexOf(final Object key) {
+        if (key == null) {
+            return -1;
+        }
+
+        if (index == null) {
+            for (int i = 0; i < size; i++) {
+                if (key.equals(keysAndValues[i * 2])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        final int mask = index.length - 1;
+        int slot = spread(key.hashCode()) & mask;
+        while (true) {
+            final int position = index[slot];
+            if (position == 0) {
+                return -1;
+            }
+            if (key.equals(keysAndValues[(position - 1) * 2])) {
+                return position - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public String get(final Object key) {
+        final int i = indexOf(key);
+        return i < 0 ? null : keysAndValues[i * 2 + 1];
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = hashCode;
+        if (result == 0 && size > 0) {
+            for (int i = 0; i < size; i++) {
+                result += keysAndValues[i * 2].hashCode() ^ keysAndValues[i * 2 + 1].hashCode();
+            }
+            hashCode = result;
+        }
+        return result;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return new AbstractSet<Map.Entry<String, String>>() {
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                return new Iterator<Map.Entry<String, String>>() {
+                    private int position = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return position < size;
+                    }
+
+                    @Override
+                    public Map.Entry<String, String> next() {
+                        if (position >= size) {
+                            throw new NoSuchElementException();
+                        }
+
+                        final Map.Entry<String, String> entry = new AbstractMap.SimpleImmutableEntry<>(keysAndValues[position * 2], keysAndValues[position * 2 + 1]);
+                        position++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+
+/**
+ * A journal of the Provenance Events that could not be handed off to the Provenance Repository because the
+ * queue in front of it was full. Events are appended to the current journal file, and {@link #rollover()} closes it
+ * so that its events can be read back and registered once the repository catches up. Journal files that are left
+ * over from a previous run are read back as well.
+ *
+ * Each call to {@link #write(Collection)} appends its events in full and syncs them to disk before returning, so that
+ * the events that have been written are replayed after a crash. If the write fails, none of its events are kept.
+ */
+public class ProvenanceOverflowJournal implements Closeable {
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String HEADER = ProvenanceOverflowJournal.class.getName();
+    private static final int SERIALIZATION_VERSION = 1;
+
+    private final File directory;
+    private long nextJournalIndex;
+
+    private File currentFile;
+    private FileOutputStream out;
+    private boolean pending;
+
+    public ProvenanceOverflowJournal(final File directory) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create Provenance Overflow Journal directory " + directory);
+        }
+        this.directory = directory;
+
+        long maxIndex = -1L;
+        for (final File file : listJournalFiles()) {
+            maxIndex = Math.max(maxIndex, getJournalIndex(file));
+        }
+        this.nextJournalIndex = maxIndex + 1;
+        this.pending = maxIndex >= 0;
+    }
+
+    /**
+     * Appends the given event to the current journal file and syncs it to disk
+     *
+     * @param event the event to journal
+     * @throws IOException if unable to write to the journal
+     */
+    public void write(final ProvenanceEventRecord event) throws IOException {
+        write(Collections.singletonList(event));
+    }
+
+    /**
+     * Appends the given events to the current journal file and syncs them to disk
+     *
+     * @param events the events to journal
+     * @throws IOException if unable to write to the journal, in which case none of the events are journaled
+     */
+    public synchronized void write(final Collection<ProvenanceEventRecord> events) throws IOException {
+        // Serialize the events up front, so that either all of them are appended to the file or, if that fails, the file can be truncated
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream dos = new DataOutputStream(baos);
+        if (out == null) {
+            dos.writeUTF(HEADER);
+            dos.writeInt(SERIALIZATION_VERSION);
+        }
+        for (final ProvenanceEventRecord event : events) {
+            writeEvent(event, dos);
+        }
+        dos.flush();
+
+        if (out == null) {
+            currentFile = new File(directory, nextJournalIndex++ + JOURNAL_SUFFIX);
+            out = new FileOutputStream(currentFile);
+        }
+
+        final long startPosition = out.getChannel().position();
+        try {
+            baos.writeTo(out);
+            out.getFD().sync();
+        } catch (final IOException ioe) {
+            // Remove whatever part of the events was written and start a new file for the next events. If the file cannot
+            // be truncated, reading it will stop at the partial event.
+            try {
+                out.getChannel().truncate(startPosition);
+            } catch (final IOException ignored) {
+            }
+
+            closeQuietly();
+            throw ioe;
+        }
+        pending = true;
+    }
+
+    /**
+     * Closes the current journal file, if any
+     *
+     * @return all journal files that are no longer written to, oldest first
+     * @throws IOException if unable to close the current journal file
+     */
+    public synchronized List<File> rollover() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            currentFile = null;
+        }
+
+        pending = false;
+        return listJournalFiles();
+    }
+
+    /**
+     * @return <code>true</code> if no events have been journaled since the last rollover and no journal files were left over from a previous run
+     */
+    public synchronized boolean isEmpty() {
+        return !pending;
+    }
+
+    private void closeQuietly() {
+        try {
+            out.close();
+        } catch (final IOException ignored) {
+        }
+
+        out = null;
+        currentFile = null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private List<File> listJournalFiles() {
+        final File[] files = directory.listFiles((dir, name) -> name.endsWith(JOURNAL_SUFFIX));
+        if (files == null) {
+            return Collections.emptyList();
+        }
+
+        final List<File> journalFiles = new ArrayList<>(Arrays.asList(files));
+        journalFiles.remove(currentFile);
+        journalFiles.removeIf(file -> getJournalIndex(file) < 0);
+        journalFiles.sort((a, b) -> Long.compare(getJournalIndex(a), getJournalIndex(b)));
+        return journalFiles;
+    }
+
+    private static long getJournalIndex(final File file) {
+        final String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - JOURNAL_SUFFIX.length()));
+        } catch (final NumberFormatException nfe) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Reads the events in the given journal file, passing them to the given consumer in batches. A journal file
+     * whose last event was not completely written, such as after a crash, is read up to that event.
+     *
+     * @param journalFile the journal file to read
+     * @param batchSize the maximum number of events to pass to the consumer at once
+     * @param consumer the consumer of the events
+     * @return the number of events read
+     * @throws IOException if unable to read the journal file
+     */
+    public static long read(final File journalFile, final int batchSize, final Consumer<List<ProvenanceEventRecord>> consumer) throws IOException {
+        long eventCount = 0L;
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            final String header;
+            try {
+                header = in.readUTF();
+            } catch (final EOFException eof) {
+                return 0L;
+            }
+
+            final int version = in.readInt();
+            if (!HEADER.equals(header) || version != SERIALIZATION_VERSION) {
+                throw new IOException("Cannot read " + journalFile + " because it is not a Provenance Overflow Journal of a supported version");
+            }
+
+            final List<ProvenanceEventRecord> batch = new ArrayList<>(batchSize);
+            while (true) {
+                final ProvenanceEventRecord event;
+                try {
+                    event = readEvent(in);
+                } catch (final EOFException eof) {
+                    break;
+                }
+
+                batch.add(event);
+                eventCount++;
+                if (batch.size() >= batchSize) {
+                    consumer.accept(new ArrayList<>(batch));
+                    batch.clear();
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                consumer.accept(batch);
+            }
+        }
+
+        return eventCount;
+    }
+
+    private static void writeEvent(final ProvenanceEventRecord event, final DataOutputStream out) throws IOException {
+        out.writeUTF(event.getEventType().name());
+        out.writeLong(event.getEventTime());
+        out.writeLong(event.getFlowFileEntryDate());
+        out.writeLong(event.getEventDuration());
+        out.writeLong(event.getLineageStartDate());
+        writeNullableString(out, event.getComponentId());
+        writeNullableString(out, event.getComponentType());
+        writeNullableString(out, event.getFlowFileUuid());
+        writeNullableString(out, event.getDetails());
+        writeNullableString(out, event.getTransitUri());
+        writeNullableString(out, event.getSourceSystemFlowFileIdentifier());
+        writeNullableString(out, event.getAlternateIdentifierUri());
+        writeNullableString(out, event.getRelationship());
+        writeNullableString(out, event.getSourceQueueIdentifier());
+        writeStrings(out, event.getParentUuids());
+        writeStrings(out, event.getChildUuids());
+        writeAttributes(out, event.getPreviousAttributes());
+        writeAttributes(out, event.getUpdatedAttributes());
+
+        writeNullableString(out, event.getContentClaimContainer());
+        writeNullableString(out, event.getContentClaimSection());
+        writeNullableString(out, event.getContentClaimIdentifier());
+        out.writeLong(event.getContentClaimOffset() == null ? -1L : event.getContentClaimOffset());
+        out.writeLong(event.getFileSize());
+
+        writeNullableString(out, event.getPreviousContentClaimContainer());
+        writeNullableString(out, event.getPreviousContentClaimSection());
+        writeNullableString(out, event.getPreviousContentClaimIdentifier());
+        out.writeLong(event.getPreviousContentClaimOffset() == null ? -1L : event.getPreviousContentClaimOffset());
+        out.writeLong(event.getPreviousFileSize() == null ? -1L : event.getPreviousFileSize());
+    }
+
+    private static ProvenanceEventRecord readEvent(final DataInputStream in) throws IOException {
+        final StandardProvenanceEventRecord.Builder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventType(ProvenanceEventType.valueOf(in.readUTF()));
+        builder.setEventTime(in.readLong());
+        builder.setFlowFileEntryDate(in.readLong());
+        builder.setEventDuration(in.readLong());
+        builder.setLineageStartDate(in.readLong());
+        builder.setComponentId(readNullableString(in));
+        builder.setComponentType(readNullableString(in));
+        builder.setFlowFileUUID(readNullableString(in));
+        builder.setDetails(readNullableString(in));
+        builder.setTransitUri(readNullableString(in));
+        builder.setSourceSystemFlowFileIdentifier(readNullableString(in));
+        builder.setAlternateIdentifierUri(readNullableString(in));
+        builder.setRelationship(readNullableString(in));
+        builder.setSourceQueueIdentifier(readNullableString(in));
+        for (final String parentUuid : readStrings(in)) {
+            builder.addParentUuid(parentUuid);
+        }
+        for (final String childUuid : readStrings(in)) {
+            builder.addChildUuid(childUuid);
+        }
+        final Map<String, String> previousAttributes = readAttributes(in);
+        final Map<String, String> updatedAttributes = readAttributes(in);
+        builder.setAttributes(previousAttributes, updatedAttributes);
+
+        final String container = readNullableString(in);
+        final String section = readNullableString(in);
+        final String identifier = readNullableString(in);
+        final long offset = in.readLong();
+        final long size = in.readLong();
+        builder.setCurrentContentClaim(container, section, identifier, offset < 0 ? null : offset, size);
+
+        final String previousContainer = readNullableString(in);
+        final String previousSection = readNullableString(in);
+        final String previousIdentifier = readNullableString(in);
+        final long previousOffset = in.readLong();
+        final long previousSize = in.readLong();
+        if (previousContainer != null || previousSize >= 0) {
+            builder.setPreviousContentClaim(previousContainer, previousSection, previousIdentifier, previousOffset < 0 ? null : previousOffset, previousSize);
+        }
+
+        return builder.build();
+    }
+
+    private static void writeNullableString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readNullableString(final DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(final DataOutputStream out, final Collection<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(0);
+            return;
+        }
+
+        out.writeInt(values.size());
+        for (final String value : values) {
+            writeNullableString(out, value);
+        }
+    }
+
+    private static List<String> readStrings(final DataInputStream in) throws IOException {
+        final int count = in.readInt();
+        final List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readNullableString(in));
+        }
+        return values;
+    }
+
+    private static void writeAttributes(final DataOutputStream out, final Map<String, String> attributes) throws IOException {
+        if (attributes == null) {
+            out.writeInt(0);
+            return;
+        }
+
+        out.writeInt(attributes.size());
+        for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+            writeNullableString(out, entry.getKey());
+            writeNullableString(out, entry.getValue());
+        }
+    }
+
+    private static Map<String, String> readAttributes(final DataInputStream in) throws IOException {
+        final int count = in.readInt();
+        final Map<String, String> attributes = new HashMap<>(count);
+        for (int i = 0; i < count; i++) {
+            attributes.put(readNullableString(in), readNullableString(in));
+        }
+        return attributes;
+    }
+}
@@ -98,7 +98,9 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
                         event.getBytesRead(), event.getBytesWritten(),
                         event.getFlowFilesReceived(), event.getBytesReceived(),
                         event.getFlowFilesSent(), event.getBytesSent(),
-                        event.getProcessingNanoseconds(), event.getInvocations(), event.getAggregateLineageMillis());
+                        event.getProcessingNanoseconds(), event.getInvocations(), event.getAggregateLineageMillis(),
+                        event.getCpuNanoseconds(), event.getBytesAllocated(), event.getBlockedNanoseconds(), event.getWaitedNanoseconds(),
+                        event.getQueueWaitNanoseconds(), event.getSteals());
             } while (!ref.compareAndSet(value, newValue));
         }
 
@@ -127,6 +129,10 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
         private final long processingNanos;
         private final long aggregateLineageMillis;
         private final int invocations;
+        private final long cpuNanos, bytesAllocated;
+        private final long blockedNanos, waitedNanos;
+        private final long queueWaitNanos;
+        private final int steals;
 
         private final long minuteTimestamp;
         private final long millisecondTimestamp;
@@ -139,6 +145,10 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
             bytesReceived = bytesSent = 0L;
             processingNanos = invocations = 0;
             aggregateLineageMillis = 0L;
+            cpuNanos = bytesAllocated = 0L;
+            blockedNanos = waitedNanos = 0L;
+            queueWaitNanos = 0L;
+            steals = 0;
             this.millisecondTimestamp = System.currentTimeMillis();
             this.minuteTimestamp = millisecondTimestamp / 60000;
         }
@@ -148,7 +158,9 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
                 final long bytesRead, final long bytesWritten,
                 final int flowFilesReceived, final long bytesReceived,
                 final int flowFilesSent, final long bytesSent,
-                final long processingNanos, final int invocations, final long aggregateLineageMillis) {
+                final long processingNanos, final int invocations, final long aggregateLineageMillis,
+                final long cpuNanos, final long bytesAllocated, final long blockedNanos, final long waitedNanos,
+                final long queueWaitNanos, final int steals) {
             this.flowFilesIn = base.flowFilesIn + flowFilesIn;
             this.flowFilesOut = base.flowFilesOut + flowFilesOut;
             this.flowFilesRemoved = base.flowFilesRemoved + flowFilesRemoved;
@@ -164,6 +176,12 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
             this.processingNanos = base.processingNanos + processingNanos;
             this.invocations = base.invocations + invocations;
             this.aggregateLineageMillis = base.aggregateLineageMillis + aggregateLineageMillis;
+            this.cpuNanos = base.cpuNanos + cpuNanos;
+            this.bytesAllocated = base.bytesAllocated + bytesAllocated;
+            this.blockedNanos = base.blockedNanos + blockedNanos;
+            this.waitedNanos = base.waitedNanos + waitedNanos;
+            this.queueWaitNanos = base.queueWaitNanos + queueWaitNanos;
+            this.steals = base.steals + steals;
             this.millisecondTimestamp = System.currentTimeMillis();
             this.minuteTimestamp = millisecondTimestamp / 60000;
         }
@@ -220,6 +238,30 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
             return aggregateLineageMillis;
         }
 
+        public long getCpuNanoseconds() {
+            return cpuNanos;
+        }
+
+        public long getBytesAllocated() {
+            return bytesAllocated;
+        }
+
+        public long getBlockedNanoseconds() {
+            return blockedNanos;
+        }
+
+        public long getWaitedNanoseconds() {
+            return waitedNanos;
+        }
+
+        public long getQueueWaitNanoseconds() {
+            return queueWaitNanos;
+        }
+
+        public int getSteals() {
+            return steals;
+        }
+
         public int getFlowFilesReceived() {
             return flowFilesReceived;
         }
@@ -273,6 +315,10 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
             int invocations = 0;
             long processingNanos = 0L;
             long aggregateLineageMillis = 0L;
+            long cpuNanos = 0L, bytesAllocated = 0L;
+            long blockedNanos = 0L, waitedNanos = 0L;
+            long queueWaitNanos = 0L;
+            int steals = 0;
             int flowFilesReceived = 0, flowFilesSent = 0;
             long bytesReceived = 0L, bytesSent = 0L;
 
@@ -300,13 +346,19 @@ public class RingBufferEventRepository implements FlowFileEventRepository {
                     invocations += sumValue.getInvocations();
                     processingNanos += sumValue.getProcessingNanoseconds();
                     aggregateLineageMillis += sumValue.getAggregateLineageMillis();
+                    cpuNanos += sumValue.getCpuNanoseconds();
+                    bytesAllocated += sumValue.getBytesAllocated();
+                    blockedNanos += sumValue.getBlockedNanoseconds();
+                    waitedNanos += sumValue.getWaitedNanoseconds();
+                    queueWaitNanos += sumValue.getQueueWaitNanoseconds();
+                    steals += sumValue.getSteals();
                 }
             }
 
             return new StandardFlowFileEvent(consumerId, flowFilesIn, contentSizeIn,
                     flowFilesOut, contentSizeOut, flowFilesRemoved, contentSizeRemoved,
                     bytesRead, bytesWritten, flowFilesReceived, bytesReceived, flowFilesSent, bytesSent,
-                    invocations, aggregateLineageMillis, processingNanos);
+                    invocations, aggregateLineageMillis, processingNanos, cpuNanos, bytesAllocated, blockedNanos, waitedNanos, queueWaitNanos, steals);
         }
     }
 }
@@ -35,6 +35,12 @@ public final class StandardFlowFileEvent implements FlowFileEvent, Cloneable {
     private int flowFilesSent;
     private long bytesSent;
     private int invocations;
+    private long cpuNanos;
+    private long bytesAllocated;
+    private long blockedNanos;
+    private long waitedNanos;
+    private long queueWaitNanos;
+    private int steals;
 
     public StandardFlowFileEvent(final String componentId) {
         this.componentId = componentId;
@@ -47,7 +53,9 @@ public final class StandardFlowFileEvent implements FlowFileEvent, Cloneable {
             final long bytesRead, final long bytesWritten,
             final int flowFilesReceived, final long bytesReceived,
             final int flowFilesSent, final long bytesSent,
-            final int invocations, final long averageLineageMillis, final long processingNanos) {
+            final int invocations, final long averageLineageMillis, final long processingNanos,
+            final long cpuNanos, final long bytesAllocated, final long blockedNanos, final long waitedNanos,
+            final long queueWaitNanos, final int steals) {
         this.componentId = componentId;
         this.flowFilesIn = flowFilesIn;
         this.contentSizeIn = contentSizeIn;
@@ -64,6 +72,12 @@ public final class StandardFlowFileEvent implements FlowFileEvent, Cloneable {
         this.bytesSent = bytesSent;
         this.aggregateLineageMillis = averageLineageMillis;
         this.processingNanos = processingNanos;
+        this.cpuNanos = cpuNanos;
+        this.bytesAllocated = bytesAllocated;
+        this.blockedNanos = blockedNanos;
+        this.waitedNanos = waitedNanos;
+        this.queueWaitNanos = queueWaitNanos;
+        this.steals = steals;
     }
 
     public StandardFlowFileEvent(final FlowFileEvent other) {
@@ -83,6 +97,12 @@ public final class StandardFlowFileEvent implements FlowFileEvent, Cloneable {
         this.bytesSent = other.getBytesSent();
         this.aggregateLineageMillis = other.getAggregateLineageMillis();
         this.processingNanos = other.getProcessingNanoseconds();
+        this.cpuNanos = other.getCpuNanoseconds();
+        this.bytesAllocated = other.getBytesAllocated();
+        this.blockedNanos = other.getBlockedNanoseconds();
+        this.waitedNanos = other.getWaitedNanoseconds();
+        this.queueWaitNanos = other.getQueueWaitNanoseconds();
+        this.steals = other.getSteals();
     }
 
     @Override
@@ -180,6 +200,60 @@ public final class StandardFlowFileEvent implements FlowFileEvent, Cloneable {
         this.invocations = invocations;
     }
 
+    @Override
+    public long getCpuNanoseconds() {
+        return cpuNanos;
+    }
+
+    public void setCpuNanos(final long cpuNanos) {
+        this.cpuNanos = cpuNanos;
+    }
+
+    @Override
+    public long getBytesAllocated() {
+        return bytesAllocated;
+    }
+
+    public void setBytesAllocated(final long bytesAllocated) {
+        this.bytesAllocated = bytesAllocated;
+    }
+
+    @Override
+    public long getBlockedNanoseconds() {
+        return blockedNanos;
+    }
+
+    public void setBlockedNanos(final long blockedNanos) {
+        this.blockedNanos = blockedNanos;
+    }
+
+    @Override
+    public long getWaitedNanoseconds() {
+        return waitedNanos;
+    }
+
+    public void setWaitedNanos(final long waitedNanos) {
+        this.waitedNanos = waitedNanos;
+    }
+
+    @Override
+    public long getQueueWaitNanoseconds() {
+        return queueWaitNanos;
+    }
+
+    public void setQueueWaitNanos(final long queueWaitNanos) {
+        this.queueWaitNanos = queueWaitNanos;
+    }
+
+    @Override
+    public int getSteals() {
+        return steals;
+    }
+
+    public void setSteals(final int steals) {
+        this.steals = steals;
+    }
+
     @Override
     public int getFlowFilesReceived() {
         return flowFilesReceived;
@@ -16,10 +16,10 @@
  */
 package org.apache.nifi.controller.repository;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -49,7 +49,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
     private final long lineageStartIndex;
     private final long size;
     private final long penaltyExpirationMs;
-    private final Map<String, String> attributes;
+    private final FlowFileAttributes attributes;
     private final ContentClaim claim;
     private final long claimOffset;
     private final long lastQueueDate;
@@ -57,7 +57,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
     private StandardFlowFileRecord(final Builder builder) {
         this.id = builder.bId;
-        this.attributes = builder.bAttributes;
+        this.attributes = builder.resolveAttributes();
         this.entryDate = builder.bEntryDate;
         this.lineageStartDate = builder.bLineageStartDate;
         this.lineageStartIndex = builder.bLineageStartIndex;
@@ -106,7 +106,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
     @Override
     public Map<String, String> getAttributes() {
-        return Collections.unmodifiableMap(this.attributes);
+        return this.attributes;
     }
 
     @Override
@@ -176,7 +176,9 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
         private final Set<String> bLineageIdentifiers = new HashSet<>();
         private long bPenaltyExpirationMs = -1L;
         private long bSize = 0L;
-        private final Map<String, String> bAttributes = new HashMap<>();
+        private FlowFileAttributes bAttributes = FlowFileAttributes.EMPTY;
+        // attributes that have been added, updated, or removed (null value) since the base attributes were set
+        private Map<String, String> bUpdatedAttributes = null;
         private ContentClaim bClaim = null;
         private long bClaimOffset = 0L;
         private long bLastQueueDate = System.currentTimeMillis();
@@ -212,7 +214,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
         public Builder addAttribute(final String key, final String value) {
             if (key != null && value != null) {
-                bAttributes.put(FlowFile.KeyValidator.validateKey(key), value);
+                updatedAttributes().put(FlowFile.KeyValidator.validateKey(key), value);
             }
             return this;
         }
@@ -226,7 +228,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
                     final String key = entry.getKey();
                     final String value = entry.getValue();
                     if (key != null && value != null) {
-                        bAttributes.put(key, value);
+                        updatedAttributes().put(key, value);
                     }
                 }
             }
@@ -240,7 +242,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
                         continue;
                     }
 
-                    bAttributes.remove(key);
+                    removeAttribute(key);
                 }
             }
             return this;
@@ -253,7 +255,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
                         continue;
                     }
 
-                    bAttributes.remove(key);
+                    removeAttribute(key);
                 }
             }
             return this;
@@ -261,22 +263,55 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
         public Builder removeAttributes(final Pattern keyPattern) {
             if (keyPattern != null) {
-                final Iterator<String> iterator = bAttributes.keySet().iterator();
-                while (iterator.hasNext()) {
-                    final String key = iterator.next();
-
+                final List<String> matchingKeys = new ArrayList<>();
+                for (final String key : resolveAttributes().keySet()) {
                     if (CoreAttributes.UUID.key().equals(key)) {
                         continue;
                     }
 
                     if (keyPattern.matcher(key).matches()) {
-                        iterator.remove();
+                        matchingKeys.add(key);
                     }
                 }
+
+                for (final String key : matchingKeys) {
+                    removeAttribute(key);
+                }
             }
             return this;
         }
 
+        private void removeAttribute(final String key) {
+            if (key == null) {
+                return;
+            }
+
+            if (bAttributes.containsKey(key)) {
+                updatedAttributes().put(key, null);
+            } else if (bUpdatedAttributes != null) {
+                bUpdatedAttributes.remove(key);
+            }
+        }
+
+        private Map<String, String> updatedAttributes() {
+            if (bUpdatedAttributes == null) {
+                bUpdatedAttributes = new LinkedHashMap<>();
+            }
+            return bUpdatedAttributes;
+        }
+
+        /**
+         * Applies any pending attribute changes to the base attributes. If no attributes have changed,
+         * the attribute map of the FlowFile that this Builder was created from is shared rather than copied.
+         */
+        private FlowFileAttributes resolveAttributes() {
+            if (bUpdatedAttributes != null) {
+                bAttributes = FlowFileAttributes.update(bAttributes, bUpdatedAttributes);
+                bUpdatedAttributes = null;
+            }
+            return bAttributes;
+        }
+
         public Builder contentClaim(final ContentClaim claim) {
             this.bClaim = claim;
             return this;
@@ -304,7 +339,11 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
             bLineageIdentifiers.clear();
             bPenaltyExpirationMs = specFlowFile.getPenaltyExpirationMillis();
             bSize = specFlowFile.getSize();
-            bAttributes.putAll(specFlowFile.getAttributes());
+            if (bAttributes.isEmpty() && bUpdatedAttributes == null) {
+                bAttributes = FlowFileAttributes.copyOf(specFlowFile.getAttributes());
+            } else {
+                updatedAttributes().putAll(specFlowFile.getAttributes());
+            }
             bClaim = specFlowFile.getContentClaim();
             bClaimOffset = specFlowFile.getContentClaimOffset();
             bLastQueueDate = specFlowFile.getLastQueueDate();
@@ -26,11 +26,13 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -51,11 +53,13 @@ import org.apache.nifi.util.FormatUtils;
 import org.apache.nifi.util.NiFiProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wali.CheckpointStatistics;
 import org.wali.MinimalLockingWriteAheadLog;
 import org.wali.SerDe;
+import org.wali.SerDeFactory;
 import org.wali.SyncListener;
+import org.wali.SyncStatistics;
 import org.wali.UpdateType;
-import org.wali.WriteAheadRepository;
 
 /**
  * <p>
@@ -84,6 +88,8 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
 
     private final AtomicLong flowFileSequenceGenerator = new AtomicLong(0L);
     private final boolean alwaysSync;
+    private final long groupCommitWindowNanos;
+    private final int checkpointPartitions;
 
     private static final Logger logger = LoggerFactory.getLogger(WriteAheadFlowFileRepository.class);
     private volatile ScheduledFuture<?> checkpointFuture;
@@ -94,7 +100,8 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
     private final ScheduledExecutorService checkpointExecutor;
 
     // effectively final
-    private WriteAheadRepository<RepositoryRecord> wal;
+    private MinimalLockingWriteAheadLog<RepositoryRecord> wal;
+    private WriteAheadRecordSerdeFactory serdeFactory;
     private WriteAheadRecordSerde serde;
     private ResourceClaimManager claimManager;
 
@@ -126,6 +133,8 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
      */
     public WriteAheadFlowFileRepository() {
         alwaysSync = false;
+        groupCommitWindowNanos = -1L;
+        checkpointPartitions = 1;
         checkpointDelayMillis = 0l;
         flowFileRepositoryPath = null;
         numPartitions = 0;
@@ -134,10 +143,16 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
 
     public WriteAheadFlowFileRepository(final NiFiProperties nifiProperties) {
         alwaysSync = Boolean.parseBoolean(nifiProperties.getProperty(NiFiProperties.FLOWFILE_REPOSITORY_ALWAYS_SYNC, "false"));
+        if (nifiProperties.isFlowFileRepositoryGroupCommitEnabled()) {
+            groupCommitWindowNanos = FormatUtils.getTimeDuration(nifiProperties.getFlowFileRepositoryGroupCommitWindow(), TimeUnit.NANOSECONDS);
+        } else {
+            groupCommitWindowNanos = -1L;
+        }
 
         // determine the database file path and ensure it exists
         flowFileRepositoryPath = nifiProperties.getFlowFileRepositoryPath();
         numPartitions = nifiProperties.getFlowFileRepositoryPartitions();
+        checkpointPartitions = nifiProperties.getFlowFileRepositoryCheckpointPartitions();
         checkpointDelayMillis = FormatUtils.getTimeDuration(nifiProperties.getFlowFileRepositoryCheckpointInterval(), TimeUnit.MILLISECONDS);
 
         checkpointExecutor = Executors.newSingleThreadScheduledExecutor();
@@ -153,8 +168,10 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
         // TODO: Allow for backup path that can be used if disk out of space?? Would allow a snapshot to be stored on
         // backup and then the data deleted from the normal location; then can move backup to normal location and
         // delete backup. On restore, if no files exist in partition's directory, would have to check backup directory
-        serde = new WriteAheadRecordSerde(claimManager);
-        wal = new MinimalLockingWriteAheadLog<>(flowFileRepositoryPath, numPartitions, serde, this);
+        serdeFactory = new WriteAheadRecordSerdeFactory(claimManager);
+        serde = serdeFactory.createSerDe();
+        wal = new MinimalLockingWriteAheadLog<>(new TreeSet<>(Collections.singleton(flowFileRepositoryPath)), numPartitions, serdeFactory, this,
+            groupCommitWindowNanos, TimeUnit.NANOSECONDS, checkpointPartitions);
     }
 
     @Override
@@ -347,9 +364,9 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
         for (final FlowFileQueue queue : queueProvider.getAllQueues()) {
             queueMap.put(queue.getIdentifier(), queue);
         }
-        serde.setQueueMap(queueMap);
+        serdeFactory.setQueueMap(queueMap);
         final Collection<RepositoryRecord> recordList = wal.recoverRecords();
-        serde.setQueueMap(null);
+        serdeFactory.setQueueMap(null);
 
         for (final RepositoryRecord record : recordList) {
             final ContentClaim claim = record.getCurrentClaim();
@@ -389,6 +406,14 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
                     final long millis = TimeUnit.MILLISECONDS.convert(end - start, TimeUnit.NANOSECONDS);
                     logger.info("Successfully checkpointed FlowFile Repository with {} records in {} milliseconds",
                             new Object[]{numRecordsCheckpointed, millis});
+
+                    final SyncStatistics syncStats = getSyncStatistics();
+                    if (syncStats.getSyncCount() > 0) {
+                        logger.info("FlowFile Repository has performed {} syncs, averaging {} microseconds each; {} updates were coalesced into {} group commits, "
+                            + "averaging {} updates per commit with a maximum of {}", new Object[] {syncStats.getSyncCount(),
+                            TimeUnit.NANOSECONDS.toMicros(syncStats.getAverageSyncNanos()), syncStats.getBatchedUpdateCount(), syncStats.getBatchCount(),
+                            String.format("%.1f", syncStats.getAverageBatchSize()), syncStats.getMaxBatchSize()});
+                    }
                 } catch (final IOException e) {
                     logger.error("Unable to checkpoint FlowFile Repository due to " + e.toString(), e);
                 }
@@ -411,13 +436,58 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
         return flowFileSequenceGenerator.get() - 1;
     }
 
+    /**
+     * @return statistics about the updates to the repository that have been synced to disk, including the number of
+     *         updates coalesced into each group commit and the time spent syncing
+     */
+    public SyncStatistics getSyncStatistics() {
+        return wal.getSyncStatistics();
+    }
+
+    /**
+     * @return statistics about the checkpoints of the repository, including how long updates were blocked by each checkpoint
+     */
+    public CheckpointStatistics getCheckpointStatistics() {
+        return wal.getCheckpointStatistics();
+    }
+
     public int checkpoint() throws IOException {
         return wal.checkpoint();
     }
 
+    /**
+     * Creates a new {@link WriteAheadRecordSerde} for each journal and snapshot file, so that the table of strings
+     * that each SerDe keeps is scoped to the file that it writes or reads. All SerDes that are created share the
+     * same map of FlowFile Queues that is used to restore records.
+     */
+    private static class WriteAheadRecordSerdeFactory implements SerDeFactory<RepositoryRecord> {
+        private final ResourceClaimManager claimManager;
+        private volatile Map<String, FlowFileQueue> flowFileQueueMap = null;
+
+        public WriteAheadRecordSerdeFactory(final ResourceClaimManager claimManager) {
+            this.claimManager = claimManager;
+        }
+
+        private void setQueueMap(final Map<String, FlowFileQueue> queueMap) {
+            this.flowFileQueueMap = queueMap;
+        }
+
+        private Map<String, FlowFileQueue> getQueueMap() {
+            return flowFileQueueMap;
+        }
+
+        @Override
+        public WriteAheadRecordSerde createSerDe() {
+            return new WriteAheadRecordSerde(claimManager, this);
+        }
+    }
+
     private static class WriteAheadRecordSerde implements SerDe<RepositoryRecord> {
 
-        private static final int CURRENT_ENCODING_VERSION = 9;
+        // Version 10 writes only the attributes that changed for an update and writes Queue Identifiers, Resource Claim
+        // identifiers and attribute names only the first time that they are encountered in a journal, referring back to
+        // them by index afterward.
+        private static final int CURRENT_ENCODING_VERSION = 10;
 
         public static final byte ACTION_CREATE = 0;
         public static final byte ACTION_UPDATE = 1;
@@ -425,16 +495,25 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
         public static final byte ACTION_SWAPPED_OUT = 3;
         public static final byte ACTION_SWAPPED_IN = 4;
 
-        private Map<String, FlowFileQueue> flowFileQueueMap = null;
+        public static final byte ATTRIBUTES_UNCHANGED = 0;
+        public static final byte ATTRIBUTES_FULL = 1;
+        public static final byte ATTRIBUTES_DELTA = 2;
+
+        private static final int STRING_LITERAL_INDEXED = -1;
+        private static final int STRING_LITERAL = -2;
+        private static final int MAX_STRING_TABLE_SIZE = 10000;
+
         private long recordsRestored = 0L;
         private final ResourceClaimManager claimManager;
+        private final WriteAheadRecordSerdeFactory factory;
 
-        public WriteAheadRecordSerde(final ResourceClaimManager claimManager) {
-            this.claimManager = claimManager;
-        }
+        // the strings that have been written to or read from the file that this SerDe is responsible for
+        private final Map<String, Integer> writtenStrings = new HashMap<>();
+        private final List<String> readStrings = new ArrayList<>();
 
-        private void setQueueMap(final Map<String, FlowFileQueue> queueMap) {
-            this.flowFileQueueMap = queueMap;
+        public WriteAheadRecordSerde(final ResourceClaimManager claimManager, final WriteAheadRecordSerdeFactory factory) {
+            this.claimManager = claimManager;
+            this.factory = factory;
         }
 
         @Override
@@ -472,7 +551,7 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
             if (updateType.equals(UpdateType.SWAP_OUT)) {
                 out.write(ACTION_SWAPPED_OUT);
                 out.writeLong(getRecordIdentifier(record));
-                out.writeUTF(associatedQueue.getIdentifier());
+                writeTableString(associatedQueue.getIdentifier(), out);
                 out.writeUTF(getLocation(record));
                 return;
             }
@@ -507,23 +586,29 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
             if (associatedQueue == null) {
                 logger.warn("{} Repository Record {} has no Connection associated with it; it will be destroyed on restart",
                         new Object[]{this, record});
-                writeString("", out);
+                writeTableString("", out);
             } else {
-                writeString(associatedQueue.getIdentifier(), out);
+                writeTableString(associatedQueue.getIdentifier(), out);
             }
 
             serializeContentClaim(claim, record.getCurrentClaimOffset(), out);
 
             if (forceAttributesWritten || record.isAttributesChanged() || updateType == UpdateType.CREATE || updateType == UpdateType.SWAP_IN) {
-                out.write(1);   // indicate attributes changed
                 final Map<String, String> attributes = flowFile.getAttributes();
-                out.writeInt(attributes.size());
-                for (final Map.Entry<String, String> entry : attributes.entrySet()) {
-                    writeString(entry.getKey(), out);
-                    writeString(entry.getValue(), out);
+                final FlowFile previousFlowFile = previousRecordState == null ? null : previousRecordState.getCurrent();
+
+                // the previous state can be used only if it is not the same (mutable) record that is being written
+                if (forceAttributesWritten || updateType != UpdateType.UPDATE || previousFlowFile == null || previousRecordState == record
+                    || !serializeAttributeDelta(previousFlowFile.getAttributes(), attributes, out)) {
+                    out.write(ATTRIBUTES_FULL);
+                    out.writeInt(attributes.size());
+                    for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+                        writeTableString(entry.getKey(), out);
+                        writeString(entry.getValue(), out);
+                    }
                 }
             } else {
-                out.write(0);   // indicate attributes did not change
+                out.write(ATTRIBUTES_UNCHANGED);
             }
 
             if (updateType == UpdateType.SWAP_IN) {
@@ -550,9 +635,9 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
             }
 
             if (action == ACTION_SWAPPED_OUT) {
-                final String queueId = in.readUTF();
+                final String queueId = version > 9 ? readTableString(in) : in.readUTF();
                 final String location = in.readUTF();
-                final FlowFileQueue queue = flowFileQueueMap.get(queueId);
+                final FlowFileQueue queue = factory.getQueueMap().get(queueId);
 
                 final FlowFileRecord flowFileRecord = new StandardFlowFileRecord.Builder()
                         .id(recordId)
@@ -600,7 +685,7 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
             }
 
             ffBuilder.size(in.readLong());
-            final String connectionId = readString(in);
+            final String connectionId = version > 9 ? readTableString(in) : readString(in);
 
             logger.debug("{} -> {}", new Object[]{recordId, connectionId});
 
@@ -610,17 +695,27 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
             final int attributesChanged = in.read();
             if (attributesChanged == -1) {
                 throw new EOFException();
-            } else if (attributesChanged == 1) {
-                final int numAttributes = in.readInt();
-                final Map<String, String> attributes = new HashMap<>();
-                for (int i = 0; i < numAttributes; i++) {
-                    final String key = readString(in);
+            } else if (attributesChanged == ATTRIBUTES_FULL) {
+                ffBuilder.addAttributes(deserializeAttributes(in, version));
+            } else if (attributesChanged == ATTRIBUTES_DELTA && version > 9) {
+                // the delta is relative to the attributes of the previous state of the record, which the builder was populated from
+                final int numUpdated = in.readInt();
+                final Map<String, String> updatedAttributes = new HashMap<>(numUpdated);
+                for (int i = 0; i < numUpdated; i++) {
+                    final String key = readTableString(in);
                     final String value = readString(in);
-                    attributes.put(key, value);
+                    updatedAttributes.put(key, value);
+                }
+
+                final int numRemoved = in.readInt();
+                final Set<String> removedAttributes = new HashSet<>(numRemoved);
+                for (int i = 0; i < numRemoved; i++) {
+                    removedAttributes.add(readTableString(in));
                 }
 
-                ffBuilder.addAttributes(attributes);
-            } else if (attributesChanged != 0) {
+                ffBuilder.removeAttributes(removedAttributes);
+                ffBuilder.addAttributes(updatedAttributes);
+            } else if (attributesChanged != ATTRIBUTES_UNCHANGED) {
                 throw new IOException("Attribute Change Qualifier not found in stream; found value: "
                         + attributesChanged + " after successfully restoring " + recordsRestored + " records. The FlowFile Repository appears to be corrupt!");
             }
@@ -632,6 +727,7 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
             }
 
             final StandardRepositoryRecord standardRepoRecord;
+            final Map<String, FlowFileQueue> flowFileQueueMap = factory.getQueueMap();
 
             if (flowFileQueueMap == null) {
                 standardRepoRecord = new StandardRepositoryRecord(null, flowFile);
@@ -712,7 +808,7 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
             }
 
             final long size = in.readLong();
-            final String connectionId = readString(in);
+            final String connectionId = version > 9 ? readTableString(in) : readString(in);
 
             logger.debug("{} -> {}", new Object[]{recordId, connectionId});
 
@@ -723,19 +819,11 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
             deserializeClaim(in, version, ffBuilder);
 
             final int attributesChanged = in.read();
-            if (attributesChanged == 1) {
-                final int numAttributes = in.readInt();
-                final Map<String, String> attributes = new HashMap<>();
-                for (int i = 0; i < numAttributes; i++) {
-                    final String key = readString(in);
-                    final String value = readString(in);
-                    attributes.put(key, value);
-                }
-
-                ffBuilder.addAttributes(attributes);
+            if (attributesChanged == ATTRIBUTES_FULL) {
+                ffBuilder.addAttributes(deserializeAttributes(in, version));
             } else if (attributesChanged == -1) {
                 throw new EOFException();
-            } else if (attributesChanged != 0) {
+            } else if (attributesChanged != ATTRIBUTES_UNCHANGED) {
                 throw new IOException("Attribute Change Qualifier not found in stream; found value: "
                         + attributesChanged + " after successfully restoring " + recordsRestored + " records");
             }
@@ -747,6 +835,7 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
             }
 
             final StandardRepositoryRecord record;
+            final Map<String, FlowFileQueue> flowFileQueueMap = factory.getQueueMap();
 
             if (flowFileQueueMap == null) {
                 record = new StandardRepositoryRecord(null, flowFile);
@@ -782,9 +871,9 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
                 out.write(1);
 
                 final ResourceClaim resourceClaim = claim.getResourceClaim();
-                writeString(resourceClaim.getId(), out);
-                writeString(resourceClaim.getContainer(), out);
-                writeString(resourceClaim.getSection(), out);
+                writeTableString(resourceClaim.getId(), out);
+                writeTableString(resourceClaim.getContainer(), out);
+                writeTableString(resourceClaim.getSection(), out);
                 out.writeLong(claim.getOffset());
                 out.writeLong(claim.getLength());
 
@@ -800,12 +889,14 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
                 final String claimId;
                 if (serializationVersion < 4) {
                     claimId = String.valueOf(in.readLong());
-                } else {
+                } else if (serializationVersion < 10) {
                     claimId = readString(in);
+                } else {
+                    claimId = readTableString(in);
                 }
 
-                final String container = readString(in);
-                final String section = readString(in);
+                final String container = serializationVersion < 10 ? readString(in) : readTableString(in);
+                final String section = serializationVersion < 10 ? readString(in) : readTableString(in);
 
                 final long resourceOffset;
                 final long resourceLength;
@@ -840,6 +931,100 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
             }
         }
 
+        /**
+         * Writes only those attributes that differ between the previous and the current attributes of a FlowFile, if doing so
+         * is smaller than writing all of the attributes.
+         *
+         * @return <code>true</code> if the delta was written, <code>false</code> if nothing was written and all attributes should be written instead
+         */
+        private boolean serializeAttributeDelta(final Map<String, String> previousAttributes, final Map<String, String> attributes, final DataOutputStream out)
+            throws IOException {
+            final List<Map.Entry<String, String>> updated = new ArrayList<>();
+            for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+                if (!entry.getValue().equals(previousAttributes.get(entry.getKey()))) {
+                    updated.add(entry);
+                }
+            }
+
+            final List<String> removed = new ArrayList<>();
+            if (previousAttributes.size() + updated.size() > attributes.size()) {
+                for (final String key : previousAttributes.keySet()) {
+                    if (!attributes.containsKey(key)) {
+                        removed.add(key);
+                    }
+                }
+            }
+
+            final int changeCount = updated.size() + removed.size();
+            if (changeCount == 0 || changeCount >= attributes.size()) {
+                return false;
+            }
+
+            out.write(ATTRIBUTES_DELTA);
+            out.writeInt(updated.size());
+            for (final Map.Entry<String, String> entry : updated) {
+                writeTableString(entry.getKey(), out);
+                writeString(entry.getValue(), out);
+            }
+
+            out.writeInt(removed.size());
+            for (final String key : removed) {
+                writeTableString(key, out);
+            }
+
+            return true;
+        }
+
+        private Map<String, String> deserializeAttributes(final DataInputStream in, final int version) throws IOException {
+            final int numAttributes = in.readInt();
+            final Map<String, String> attributes = new HashMap<>();
+            for (int i = 0; i < numAttributes; i++) {
+                final String key = version > 9 ? readTableString(in) : readString(in);
+                final String value = readString(in);
+                attributes.put(key, value);
+            }
+
+            return attributes;
+        }
+
+        /**
+         * Writes a String that is expected to be repeated many times within the same file. The first time that the String is
+         * written, it is written in full and assigned the next index of the string table; afterward, only its index is written.
+         * Once the table is full, Strings that are not in the table are always written in full.
+         */
+        private void writeTableString(final String toWrite, final DataOutputStream out) throws IOException {
+            final Integer index = writtenStrings.get(toWrite);
+            if (index != null) {
+                out.writeInt(index);
+                return;
+            }
+
+            if (writtenStrings.size() < MAX_STRING_TABLE_SIZE) {
+                writtenStrings.put(toWrite, writtenStrings.size());
+                out.writeInt(STRING_LITERAL_INDEXED);
+            } else {
+                out.writeInt(STRING_LITERAL);
+            }
+
+            writeString(toWrite, out);
+        }
+
+        private String readTableString(final DataInputStream in) throws IOException {
+            final int index = in.readInt();
+            if (index == STRING_LITERAL_INDEXED) {
+                final String value = readString(in);
+                readStrings.add(value);
+                return value;
+            } else if (index == STRING_LITERAL) {
+                return readString(in);
+            } else if (index < 0 || index >= readStrings.size()) {
+                throw new IOException("Found reference to String at index " + index + " but only " + readStrings.size()
+                    + " Strings have been read after successfully restoring " + recordsRestored + " records. The FlowFile Repository appears to be corrupt!");
+            }
+
+            return readStrings.get(index);
+        }
+
         private void writeString(final String toWrite, final OutputStream out) throws IOException {
             final byte[] bytes = toWrite.getBytes("UTF-8");
             final int utflen = bytes.length;
@@ -18,7 +18,7 @@ package org.apache.nifi.controller.scheduling;
 
 import org.apache.nifi.connectable.Connectable;
 import org.apache.nifi.controller.ReportingTaskNode;
-import org.apache.nifi.engine.FlowEngine;
+import org.apache.nifi.engine.SchedulingEngine;
 
 /**
  * Base implementation of the {@link SchedulingAgent} which encapsulates the
@@ -34,9 +34,9 @@ import org.apache.nifi.engine.FlowEngine;
  */
 abstract class AbstractSchedulingAgent implements SchedulingAgent {
 
-    protected final FlowEngine flowEngine;
+    protected final SchedulingEngine flowEngine;
 
-    protected AbstractSchedulingAgent(FlowEngine flowEngine) {
+    protected AbstractSchedulingAgent(SchedulingEngine flowEngine) {
         this.flowEngine = flowEngine;
     }
 
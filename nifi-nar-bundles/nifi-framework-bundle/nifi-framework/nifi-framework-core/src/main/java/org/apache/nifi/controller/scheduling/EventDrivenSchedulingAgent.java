@@ -37,6 +37,7 @@ import org.apache.nifi.controller.repository.StandardFlowFileEvent;
 import org.apache.nifi.controller.repository.StandardProcessSession;
 import org.apache.nifi.controller.repository.StandardProcessSessionFactory;
 import org.apache.nifi.controller.service.ControllerServiceProvider;
+import org.apache.nifi.controller.tasks.ThreadResourceUsage;
 import org.apache.nifi.encrypt.StringEncryptor;
 import org.apache.nifi.engine.FlowEngine;
 import org.apache.nifi.logging.ComponentLog;
@@ -205,6 +206,7 @@ public class EventDrivenSchedulingAgent extends AbstractSchedulingAgent {
                         batch = false;
                     }
 
+                    final ThreadResourceUsage resourceUsage = ThreadResourceUsage.start();
                     final long startNanos = System.nanoTime();
                     final long finishNanos = startNanos + runNanos;
                     int invocationCount = 0;
@@ -244,6 +246,7 @@ public class EventDrivenSchedulingAgent extends AbstractSchedulingAgent {
                             final StandardFlowFileEvent procEvent = new StandardFlowFileEvent(connectable.getIdentifier());
                             procEvent.setProcessingNanos(processingNanos);
                             procEvent.setInvocations(invocationCount);
+                            resourceUsage.stop(procEvent);
                             context.getFlowFileEventRepository().updateRepository(procEvent);
                         } catch (final IOException e) {
                             logger.error("Unable to update FlowFileEvent Repository for {}; statistics may be inaccurate. Reason for failure: {}", connectable, e.toString());
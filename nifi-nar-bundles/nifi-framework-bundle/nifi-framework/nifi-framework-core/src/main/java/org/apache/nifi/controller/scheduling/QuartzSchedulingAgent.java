@@ -35,7 +35,7 @@ import org.apache.nifi.controller.tasks.ContinuallyRunConnectableTask;
 import org.apache.nifi.controller.tasks.ContinuallyRunProcessorTask;
 import org.apache.nifi.controller.tasks.ReportingTaskWrapper;
 import org.apache.nifi.encrypt.StringEncryptor;
-import org.apache.nifi.engine.FlowEngine;
+import org.apache.nifi.engine.SchedulingEngine;
 import org.apache.nifi.processor.StandardProcessContext;
 import org.apache.nifi.processor.exception.ProcessException;
 import org.apache.nifi.registry.VariableRegistry;
@@ -56,7 +56,7 @@ public class QuartzSchedulingAgent extends AbstractSchedulingAgent {
     private volatile String adminYieldDuration = "1 sec";
     private final Map<Object, List<AtomicBoolean>> canceledTriggers = new HashMap<>();
 
-    public QuartzSchedulingAgent(final FlowController flowController, final FlowEngine flowEngine, final ProcessContextFactory contextFactory, final StringEncryptor enryptor,
+    public QuartzSchedulingAgent(final FlowController flowController, final SchedulingEngine flowEngine, final ProcessContextFactory contextFactory, final StringEncryptor enryptor,
                                  final VariableRegistry variableRegistry) {
         super(flowEngine);
         this.flowController = flowController;
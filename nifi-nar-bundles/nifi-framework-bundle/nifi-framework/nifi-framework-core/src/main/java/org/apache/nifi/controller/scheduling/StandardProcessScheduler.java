@@ -73,6 +73,9 @@ public final class StandardProcessScheduler implements ProcessScheduler {
     private final long administrativeYieldMillis;
     private final String administrativeYieldDuration;
     private final StateManagerProvider stateManagerProvider;
+    private final boolean adaptiveRunDuration;
+    private final long adaptiveRunDurationMinNanos;
+    private final long adaptiveRunDurationMaxNanos;
 
     private final ConcurrentMap<Object, ScheduleState> scheduleStates = new ConcurrentHashMap<>();
     private final ScheduledExecutorService frameworkTaskExecutor;
@@ -100,6 +103,10 @@ public final class StandardProcessScheduler implements ProcessScheduler {
         administrativeYieldDuration = nifiProperties.getAdministrativeYieldDuration();
         administrativeYieldMillis = FormatUtils.getTimeDuration(administrativeYieldDuration, TimeUnit.MILLISECONDS);
 
+        adaptiveRunDuration = nifiProperties.isAdaptiveRunDurationEnabled();
+        adaptiveRunDurationMinNanos = FormatUtils.getTimeDuration(nifiProperties.getAdaptiveRunDurationMin(), TimeUnit.NANOSECONDS);
+        adaptiveRunDurationMaxNanos = FormatUtils.getTimeDuration(nifiProperties.getAdaptiveRunDurationMax(), TimeUnit.NANOSECONDS);
+
         frameworkTaskExecutor = new FlowEngine(4, "Framework Task Thread");
     }
 
@@ -305,6 +312,14 @@ public final class StandardProcessScheduler implements ProcessScheduler {
                 this.encryptor, getStateManager(procNode.getIdentifier()), variableRegistry);
         final ScheduleState scheduleState = getScheduleState(requireNonNull(procNode));
 
+        // each time the processor is started, its run duration is chosen anew, starting from the configured run duration
+        if (adaptiveRunDuration && procNode.isHighThroughputSupported()) {
+            scheduleState.setAdaptiveRunDuration(new AdaptiveRunDuration(adaptiveRunDurationMinNanos, adaptiveRunDurationMaxNanos,
+                procNode.getRunDuration(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS));
+        } else {
+            scheduleState.setAdaptiveRunDuration(null);
+        }
+
         SchedulingAgentCallback callback = new SchedulingAgentCallback() {
             @Override
             public void trigger() {
@@ -373,6 +388,16 @@ public final class StandardProcessScheduler implements ProcessScheduler {
         getSchedulingAgent(worker).onEvent(worker);
     }
 
+    /**
+     * @param procNode the processor
+     * @param timeUnit the unit of the value to return
+     * @return the run duration that the processor is currently using, which is chosen adaptively if so configured
+     */
+    public long getRunDuration(final ProcessorNode procNode, final TimeUnit timeUnit) {
+        final AdaptiveRunDuration adaptive = getScheduleState(procNode).getAdaptiveRunDuration();
+        return adaptive == null ? procNode.getRunDuration(timeUnit) : adaptive.getRunDuration(timeUnit);
+    }
+
     @Override
     public int getActiveThreadCount(final Object scheduled) {
         return getScheduleState(scheduled).getActiveThreadCount();
@@ -33,7 +33,8 @@ import org.apache.nifi.controller.tasks.ContinuallyRunConnectableTask;
 import org.apache.nifi.controller.tasks.ContinuallyRunProcessorTask;
 import org.apache.nifi.controller.tasks.ReportingTaskWrapper;
 import org.apache.nifi.encrypt.StringEncryptor;
-import org.apache.nifi.engine.FlowEngine;
+import org.apache.nifi.engine.ComponentTask;
+import org.apache.nifi.engine.SchedulingEngine;
 import org.apache.nifi.processor.ProcessContext;
 import org.apache.nifi.processor.StandardProcessContext;
 import org.apache.nifi.processor.exception.ProcessException;
@@ -57,7 +58,7 @@ public class TimerDrivenSchedulingAgent extends AbstractSchedulingAgent {
 
     public TimerDrivenSchedulingAgent(
             final FlowController flowController,
-            final FlowEngine flowEngine,
+            final SchedulingEngine flowEngine,
             final ProcessContextFactory contextFactory,
             final StringEncryptor encryptor,
             final VariableRegistry variableRegistry,
@@ -122,7 +123,19 @@ public class TimerDrivenSchedulingAgent extends AbstractSchedulingAgent {
 
             final AtomicReference<ScheduledFuture<?>> futureRef = new AtomicReference<>();
 
-            final Runnable yieldDetectionRunnable = new Runnable() {
+            final ComponentTask yieldDetectionRunnable = new ComponentTask() {
+                @Override
+                public String getComponentIdentifier() {
+                    return connectable.getIdentifier();
+                }
+
+                @Override
+                public void recordQueueWait(final long queueWaitNanos, final boolean stolen) {
+                    if (continuallyRunTask instanceof ContinuallyRunProcessorTask) {
+                        ((ContinuallyRunProcessorTask) continuallyRunTask).recordQueueWait(queueWaitNanos, stolen);
+                    }
+                }
+
                 @Override
                 public void run() {
                     // Call the continually run task. It will return a boolean indicating whether or not we should yield
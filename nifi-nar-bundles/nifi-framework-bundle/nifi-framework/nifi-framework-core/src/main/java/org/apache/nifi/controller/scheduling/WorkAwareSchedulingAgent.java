@@ -0,0 +1,353 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.components.state.StateManager;
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.connectable.ConnectableType;
+import org.apache.nifi.controller.FlowController;
+import org.apache.nifi.controller.ProcessorNode;
+import org.apache.nifi.controller.ReportingTaskNode;
+import org.apache.nifi.controller.tasks.ContinuallyRunConnectableTask;
+import org.apache.nifi.controller.tasks.ContinuallyRunProcessorTask;
+import org.apache.nifi.controller.tasks.ReportingTaskWrapper;
+import org.apache.nifi.encrypt.StringEncryptor;
+import org.apache.nifi.engine.ComponentTask;
+import org.apache.nifi.engine.SchedulingEngine;
+import org.apache.nifi.processor.ProcessContext;
+import org.apache.nifi.processor.StandardProcessContext;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.registry.VariableRegistry;
+import org.apache.nifi.util.Connectables;
+import org.apache.nifi.util.FormatUtils;
+import org.apache.nifi.util.NiFiProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A Scheduling Agent for Timer-Driven components that does not poll a component for work while the component cannot
+ * have any. The {@link TimerDrivenSchedulingAgent} runs each of a component's tasks on a fixed delay and backs off for the
+ * bored yield duration when the component has nothing to do, so an idle component is still checked for work many times
+ * per second and a FlowFile may wait up to the bored yield duration at each hop of the flow before it is picked up.
+ * </p>
+ *
+ * <p>
+ * This agent instead parks a task when the component had no work to do and all of its incoming queues are empty. A
+ * parked task is not scheduled at all until a FlowFile is queued for the component, at which point the queue registers
+ * an event with the Process Scheduler and one of the parked tasks is resumed. A task that finds more FlowFiles queued
+ * after it has done its work resumes another parked task, so that the component's concurrency grows with its backlog.
+ * </p>
+ *
+ * <p>
+ * Run schedules and yields are honored when a task is resumed, and components that are not waiting for incoming
+ * FlowFiles, such as source Processors, Processors that are triggered when empty, and components whose incoming
+ * queues hold FlowFiles that cannot currently be processed because of penalization or back pressure, are scheduled
+ * exactly as the {@link TimerDrivenSchedulingAgent} schedules them.
+ * </p>
+ */
+public class WorkAwareSchedulingAgent extends AbstractSchedulingAgent {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkAwareSchedulingAgent.class);
+    private final long noWorkYieldNanos;
+
+    private final FlowController flowController;
+    private final ProcessContextFactory contextFactory;
+    private final StringEncryptor encryptor;
+    private final VariableRegistry variableRegistry;
+
+    private final ConcurrentMap<Connectable, Queue<WorkAwareTask>> parkedTasks = new ConcurrentHashMap<>();
+
+    private volatile String adminYieldDuration = "1 sec";
+
+    public WorkAwareSchedulingAgent(
+            final FlowController flowController,
+            final SchedulingEngine flowEngine,
+            final ProcessContextFactory contextFactory,
+            final StringEncryptor encryptor,
+            final VariableRegistry variableRegistry,
+            final NiFiProperties nifiProperties) {
+        super(flowEngine);
+        this.flowController = flowController;
+        this.contextFactory = contextFactory;
+        this.encryptor = encryptor;
+        this.variableRegistry = variableRegistry;
+
+        final String boredYieldDuration = nifiProperties.getBoredYieldDuration();
+        try {
+            noWorkYieldNanos = FormatUtils.getTimeDuration(boredYieldDuration, TimeUnit.NANOSECONDS);
+        } catch (final IllegalArgumentException e) {
+            throw new RuntimeException("Failed to create SchedulingAgent because the " + NiFiProperties.BORED_YIELD_DURATION + " property is set to an invalid time duration: " + boredYieldDuration);
+        }
+    }
+
+    private StateManager getStateManager(final String componentId) {
+        return flowController.getStateManagerProvider().getStateManager(componentId);
+    }
+
+    @Override
+    public void shutdown() {
+        flowEngine.shutdown();
+    }
+
+    @Override
+    public void doSchedule(final ReportingTaskNode taskNode, final ScheduleState scheduleState) {
+        final Runnable reportingTaskWrapper = new ReportingTaskWrapper(taskNode, scheduleState);
+        final long schedulingNanos = taskNode.getSchedulingPeriod(TimeUnit.NANOSECONDS);
+
+        final ScheduledFuture<?> future = flowEngine.scheduleWithFixedDelay(reportingTaskWrapper, 0L, schedulingNanos, TimeUnit.NANOSECONDS);
+        final List<ScheduledFuture<?>> futures = new ArrayList<>(1);
+        futures.add(future);
+        scheduleState.setFutures(futures);
+
+        logger.info("{} started.", taskNode.getReportingTask());
+    }
+
+    @Override
+    public void doSchedule(final Connectable connectable, final ScheduleState scheduleState) {
+        final Queue<WorkAwareTask> parked = new ConcurrentLinkedQueue<>();
+        parkedTasks.put(connectable, parked);
+
+        final List<WorkAwareTask> tasks = new ArrayList<>();
+        for (int i = 0; i < connectable.getMaxConcurrentTasks(); i++) {
+            final Callable<Boolean> continuallyRunTask;
+
+            // Determine the task to run and create it.
+            if (connectable.getConnectableType() == ConnectableType.PROCESSOR) {
+                final ProcessorNode procNode = (ProcessorNode) connectable;
+                final StandardProcessContext standardProcContext = new StandardProcessContext(procNode, flowController, encryptor, getStateManager(connectable.getIdentifier()), variableRegistry);
+                continuallyRunTask = new ContinuallyRunProcessorTask(this, procNode, flowController, contextFactory, scheduleState, standardProcContext);
+            } else {
+                final ProcessContext processContext = new ConnectableProcessContext(connectable, encryptor, getStateManager(connectable.getIdentifier()));
+                continuallyRunTask = new ContinuallyRunConnectableTask(contextFactory, connectable, scheduleState, processContext);
+            }
+
+            tasks.add(new WorkAwareTask(connectable, scheduleState, continuallyRunTask, parked));
+        }
+
+        // Hold the ScheduleState's lock while the tasks are submitted so that a task that finishes quickly cannot replace
+        // its future before the futures have been established.
+        synchronized (scheduleState) {
+            final List<ScheduledFuture<?>> futures = new ArrayList<>(tasks.size());
+            for (final WorkAwareTask task : tasks) {
+                futures.add(task.submit(0L));
+            }
+
+            scheduleState.setFutures(futures);
+        }
+
+        logger.info("Scheduled {} to run with {} threads", connectable, connectable.getMaxConcurrentTasks());
+    }
+
+    @Override
+    public void doUnschedule(final Connectable connectable, final ScheduleState scheduleState) {
+        parkedTasks.remove(connectable);
+
+        for (final ScheduledFuture<?> future : scheduleState.getFutures()) {
+            // stop scheduling to run but do not interrupt currently running tasks.
+            future.cancel(false);
+        }
+
+        logger.info("Stopped scheduling {} to run", connectable);
+    }
+
+    @Override
+    public void doUnschedule(final ReportingTaskNode taskNode, final ScheduleState scheduleState) {
+        for (final ScheduledFuture<?> future : scheduleState.getFutures()) {
+            // stop scheduling to run but do not interrupt currently running tasks.
+            future.cancel(false);
+        }
+
+        logger.info("Stopped scheduling {} to run", taskNode.getReportingTask());
+    }
+
+    @Override
+    public void setAdministrativeYieldDuration(final String yieldDuration) {
+        this.adminYieldDuration = yieldDuration;
+    }
+
+    @Override
+    public String getAdministrativeYieldDuration() {
+        return adminYieldDuration;
+    }
+
+    @Override
+    public long getAdministrativeYieldDuration(final TimeUnit timeUnit) {
+        return FormatUtils.getTimeDuration(adminYieldDuration, timeUnit);
+    }
+
+    @Override
+    public void onEvent(final Connectable connectable) {
+        final Queue<WorkAwareTask> parked = parkedTasks.get(connectable);
+        if (parked == null) {
+            return;
+        }
+
+        final WorkAwareTask task = parked.poll();
+        if (task != null) {
+            task.resume();
+        }
+    }
+
+    @Override
+    public void setMaxThreadCount(final int maxThreads) {
+    }
+
+    /**
+     * @param connectable the component
+     * @return the number of the component's tasks that are currently parked, waiting for FlowFiles to be queued for it
+     */
+    int getParkedTaskCount(final Connectable connectable) {
+        final Queue<WorkAwareTask> parked = parkedTasks.get(connectable);
+        return parked == null ? 0 : parked.size();
+    }
+
+    /**
+     * @param connectable the component
+     * @return <code>true</code> if the component can only have work to do once a FlowFile is queued for it
+     */
+    private static boolean isWaitingForInput(final Connectable connectable) {
+        if (connectable.isTriggerWhenEmpty() || !connectable.hasIncomingConnection() || !Connectables.hasNonLoopConnection(connectable)) {
+            return false;
+        }
+
+        return !Connectables.flowFilesQueued(connectable);
+    }
+
+
+    /**
+     * One of a component's concurrent tasks. Each run of the task submits the next one, or parks the task if the
+     * component is waiting for input.
+     */
+    private class WorkAwareTask implements ComponentTask {
+        private final Connectable connectable;
+        private final ScheduleState scheduleState;
+        private final Callable<Boolean> continuallyRunTask;
+        private final Queue<WorkAwareTask> parked;
+
+        private volatile ScheduledFuture<?> future;
+        private volatile long nextRunNanos = System.nanoTime();
+
+        public WorkAwareTask(final Connectable connectable, final ScheduleState scheduleState, final Callable<Boolean> continuallyRunTask, final Queue<WorkAwareTask> parked) {
+            this.connectable = connectable;
+            this.scheduleState = scheduleState;
+            this.continuallyRunTask = continuallyRunTask;
+            this.parked = parked;
+        }
+
+        @Override
+        public String getComponentIdentifier() {
+            return connectable.getIdentifier();
+        }
+
+        @Override
+        public void recordQueueWait(final long queueWaitNanos, final boolean stolen) {
+            if (continuallyRunTask instanceof ContinuallyRunProcessorTask) {
+                ((ContinuallyRunProcessorTask) continuallyRunTask).recordQueueWait(queueWaitNanos, stolen);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!scheduleState.isScheduled()) {
+                return;
+            }
+
+            // Call the continually run task. It will return a boolean indicating whether or not we should yield
+            // based on a lack of work for to do for the component.
+            final boolean shouldYield;
+            try {
+                shouldYield = continuallyRunTask.call();
+            } catch (final RuntimeException re) {
+                throw re;
+            } catch (final Exception e) {
+                throw new ProcessException(e);
+            }
+
+            final long schedulingNanos = connectable.getSchedulingPeriod(TimeUnit.NANOSECONDS);
+            nextRunNanos = System.nanoTime() + schedulingNanos;
+
+            final long yieldMillis = connectable.getYieldExpiration() - System.currentTimeMillis();
+            if (yieldMillis > 0L) {
+                // The component is yielded, so run again after the yield has expired.
+                resubmit(Math.max(TimeUnit.MILLISECONDS.toNanos(yieldMillis), schedulingNanos));
+            } else if (shouldYield && isWaitingForInput(connectable)) {
+                park();
+            } else if (shouldYield && noWorkYieldNanos > 0L) {
+                // There is no work that can be done with the FlowFiles that are queued, because they are penalized or the
+                // destinations are applying back pressure, so the framework will yield the component for a short period of time.
+                resubmit(Math.max(noWorkYieldNanos, schedulingNanos));
+            } else {
+                resubmit(schedulingNanos);
+
+                // If there are more FlowFiles queued than this task alone has worked off, let another task help.
+                if (!shouldYield && Connectables.flowFilesQueued(connectable)) {
+                    final WorkAwareTask sibling = parked.poll();
+                    if (sibling != null) {
+                        sibling.resume();
+                    }
+                }
+            }
+        }
+
+        private void park() {
+            parked.offer(this);
+
+            // A FlowFile may have been queued after the component found no work to do but before this task was parked,
+            // in which case no parked task was resumed for it. If we can take this task back, it can run again right away.
+            if (!isWaitingForInput(connectable) && parked.remove(this)) {
+                resume();
+            }
+        }
+
+        /**
+         * Submits this parked task to run as soon as the component's run schedule and yield allow
+         */
+        void resume() {
+            final long scheduleDelayNanos = nextRunNanos - System.nanoTime();
+            final long yieldDelayNanos = TimeUnit.MILLISECONDS.toNanos(connectable.getYieldExpiration() - System.currentTimeMillis());
+            resubmit(Math.max(0L, Math.max(scheduleDelayNanos, yieldDelayNanos)));
+        }
+
+        ScheduledFuture<?> submit(final long delayNanos) {
+            future = flowEngine.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+            return future;
+        }
+
+        private void resubmit(final long delayNanos) {
+            synchronized (scheduleState) {
+                if (!scheduleState.isScheduled()) {
+                    return;
+                }
+
+                final ScheduledFuture<?> previousFuture = future;
+                final ScheduledFuture<?> newFuture = submit(delayNanos);
+                scheduleState.replaceFuture(previousFuture, newFuture);
+            }
+        }
+    }
+}
@@ -145,7 +145,49 @@ public enum ProcessorStatusDescriptor {
 
                 return procMillis / invocations;
             }
-        }));
+        })),
+
+    CPU_MILLIS(new StandardMetricDescriptor<ProcessorStatus>(
+        "cpuMillis",
+        "CPU Time (5 mins)",
+        "The total amount of CPU time that the Processor's threads have consumed in the past 5 minutes",
+        Formatter.DURATION,
+        s -> TimeUnit.MILLISECONDS.convert(s.getCpuNanos(), TimeUnit.NANOSECONDS))),
+
+    BYTES_ALLOCATED(new StandardMetricDescriptor<ProcessorStatus>(
+        "bytesAllocated",
+        "Bytes Allocated (5 mins)",
+        "The total number of bytes that the Processor's threads have allocated on the heap in the past 5 minutes",
+        Formatter.DATA_SIZE,
+        s -> s.getBytesAllocated())),
+
+    BLOCKED_MILLIS(new StandardMetricDescriptor<ProcessorStatus>(
+        "blockedMillis",
+        "Time Blocked (5 mins)",
+        "The total amount of time that the Processor's threads have spent blocked waiting to enter a monitor in the past 5 minutes",
+        Formatter.DURATION,
+        s -> TimeUnit.MILLISECONDS.convert(s.getBlockedNanos(), TimeUnit.NANOSECONDS))),
+
+    WAITED_MILLIS(new StandardMetricDescriptor<ProcessorStatus>(
+        "waitedMillis",
+        "Time Waiting (5 mins)",
+        "The total amount of time that the Processor's threads have spent waiting on a lock or condition in the past 5 minutes",
+        Formatter.DURATION,
+        s -> TimeUnit.MILLISECONDS.convert(s.getWaitedNanos(), TimeUnit.NANOSECONDS))),
+
+    QUEUE_WAIT_MILLIS(new StandardMetricDescriptor<ProcessorStatus>(
+        "queueWaitMillis",
+        "Time Waiting for a Thread (5 mins)",
+        "The total amount of time that the Processor's tasks have waited for a thread once they were due to run in the past 5 minutes",
+        Formatter.DURATION,
+        s -> TimeUnit.MILLISECONDS.convert(s.getQueueWaitNanos(), TimeUnit.NANOSECONDS))),
+
+    STEALS(new StandardMetricDescriptor<ProcessorStatus>(
+        "steals",
+        "Tasks Stolen (5 mins)",
+        "The number of times in the past 5 minutes that a task of the Processor was run by a thread other than the one that queued it",
+        Formatter.COUNT,
+        s -> Long.valueOf(s.getSteals())));
 
     private MetricDescriptor<ProcessorStatus> descriptor;
 
@@ -28,6 +28,7 @@ import org.apache.nifi.controller.repository.ProcessContext;
 import org.apache.nifi.controller.repository.StandardFlowFileEvent;
 import org.apache.nifi.controller.repository.StandardProcessSession;
 import org.apache.nifi.controller.repository.StandardProcessSessionFactory;
+import org.apache.nifi.controller.scheduling.AdaptiveRunDuration;
 import org.apache.nifi.controller.scheduling.ProcessContextFactory;
 import org.apache.nifi.controller.scheduling.ScheduleState;
 import org.apache.nifi.controller.scheduling.SchedulingAgent;
@@ -56,6 +57,12 @@ public class ContinuallyRunProcessorTask implements Callable<Boolean> {
     private final FlowController flowController;
     private final int numRelationships;
 
+    // The time that this task waited for a thread, and the number of times that it was stolen, in runs that have not yet been
+    // added to the FlowFile Event Repository. Runs of the task do not overlap, and the engine hands the task from one thread to
+    // the next, so these are only accessed by one thread at a time.
+    private long unreportedQueueWaitNanos = 0L;
+    private int unreportedSteals = 0;
+
     public ContinuallyRunProcessorTask(final SchedulingAgent schedulingAgent, final ProcessorNode procNode,
             final FlowController flowController, final ProcessContextFactory contextFactory, final ScheduleState scheduleState,
             final StandardProcessContext processContext) {
@@ -82,6 +89,21 @@ public class ContinuallyRunProcessorTask implements Callable<Boolean> {
         return procNode.isTriggerWhenEmpty() || !procNode.hasIncomingConnection() || !Connectables.hasNonLoopConnection(procNode) || Connectables.flowFilesQueued(procNode);
     }
 
+    /**
+     * Records how long the engine that runs this task kept it waiting for a thread before the run that is about to begin.
+     * This is added to the FlowFile Event Repository with the next run that triggers the processor, since runs that find
+     * no work to do do not update it.
+     *
+     * @param queueWaitNanos the amount of time that the task waited for a thread once it was due to run, in nanoseconds
+     * @param stolen whether the task is run by a thread other than the one that queued it
+     */
+    public void recordQueueWait(final long queueWaitNanos, final boolean stolen) {
+        unreportedQueueWaitNanos += queueWaitNanos;
+        if (stolen) {
+            unreportedSteals++;
+        }
+    }
+
     @Override
     public Boolean call() {
         // make sure processor is not yielded
@@ -110,11 +132,13 @@ public class ContinuallyRunProcessorTask implements Callable<Boolean> {
             }
         }
 
-        final long batchNanos = procNode.getRunDuration(TimeUnit.NANOSECONDS);
+        // If the run duration is chosen adaptively, always batch so that the cost of committing can be observed
+        final AdaptiveRunDuration adaptiveRunDuration = scheduleState.getAdaptiveRunDuration();
+        final long batchNanos = adaptiveRunDuration == null ? procNode.getRunDuration(TimeUnit.NANOSECONDS) : adaptiveRunDuration.getRunDuration(TimeUnit.NANOSECONDS);
         final ProcessSessionFactory sessionFactory;
         final StandardProcessSession rawSession;
         final boolean batch;
-        if (procNode.isHighThroughputSupported() && batchNanos > 0L) {
+        if (procNode.isHighThroughputSupported() && (batchNanos > 0L || adaptiveRunDuration != null)) {
             rawSession = new StandardProcessSession(context);
             sessionFactory = new BatchingSessionFactory(rawSession);
             batch = true;
@@ -126,6 +150,7 @@ public class ContinuallyRunProcessorTask implements Callable<Boolean> {
 
         scheduleState.incrementActiveThreadCount();
 
+        final ThreadResourceUsage resourceUsage = ThreadResourceUsage.start();
         final long startNanos = System.nanoTime();
         final long finishNanos = startNanos + batchNanos;
         int invocationCount = 0;
@@ -171,7 +196,9 @@ public class ContinuallyRunProcessorTask implements Callable<Boolean> {
             }
         } finally {
             try {
+                long commitNanos = 0L;
                 if (batch) {
+                    final long commitStart = System.nanoTime();
                     try {
                         rawSession.commit();
                     } catch (final Exception e) {
@@ -184,14 +211,23 @@ public class ContinuallyRunProcessorTask implements Callable<Boolean> {
                             procLog.error("Failed to roll back session {} due to {}", new Object[] { rawSession, e.toString() }, e);
                         }
                     }
+                    commitNanos = System.nanoTime() - commitStart;
                 }
 
                 final long processingNanos = System.nanoTime() - startNanos;
+                if (batch && adaptiveRunDuration != null) {
+                    adaptiveRunDuration.update(invocationCount, processingNanos - commitNanos, commitNanos, Connectables.getQueuedCount(procNode));
+                }
 
                 try {
                     final StandardFlowFileEvent procEvent = new StandardFlowFileEvent(procNode.getIdentifier());
                     procEvent.setProcessingNanos(processingNanos);
                     procEvent.setInvocations(invocationCount);
+                    procEvent.setQueueWaitNanos(unreportedQueueWaitNanos);
+                    procEvent.setSteals(unreportedSteals);
+                    unreportedQueueWaitNanos = 0L;
+                    unreportedSteals = 0;
+                    resourceUsage.stop(procEvent);
                     context.getFlowFileEventRepository().updateRepository(procEvent);
                 } catch (final IOException e) {
                     logger.error("Unable to update FlowFileEvent Repository for {}; statistics may be inaccurate. Reason for failure: {}", procNode.getProcessor(), e.toString());
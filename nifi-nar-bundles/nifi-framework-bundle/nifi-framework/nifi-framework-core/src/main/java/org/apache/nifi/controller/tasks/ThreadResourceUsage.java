@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.tasks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.controller.repository.StandardFlowFileEvent;
+
+/**
+ * Measures the resources that the current thread uses while it runs a component: the CPU time that it consumes, the number
+ * of bytes that it allocates on the heap, and the time that it spends blocked on monitors or waiting on locks and conditions.
+ * Unlike the wall-clock time of a task, these show whether a slow component is busy or is being held up.
+ *
+ * Any measurement that the JVM does not support, or that is not enabled, is reported as 0. Blocked and waited times are
+ * only measured while thread contention monitoring is enabled; see {@link #enableContentionMonitoring()}.
+ *
+ * The CPU time of the current thread can be read cheaply, so it is measured every time. The allocated bytes and the blocked
+ * and waited times, however, can only be read by looking up the thread by its ID, which takes a lock that is shared by all
+ * threads in the JVM. These are therefore only measured for a random one in every {@link #SAMPLE_INTERVAL} measurements,
+ * and what is measured is multiplied by the interval, so that the sum over many tasks is an estimate of the total. The
+ * measurements are chosen at random rather than in turn so that components whose tasks alternate on the same thread are
+ * each sampled as often as the others.
+ */
+public final class ThreadResourceUsage {
+
+    static final int SAMPLE_INTERVAL = 16;
+
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    private final long threadId;
+    private final int sampleWeight;
+    private final long startCpuNanos;
+    private final long startAllocatedBytes;
+    private final long startBlockedMillis;
+    private final long startWaitedMillis;
+
+    private ThreadResourceUsage(final int sampleWeight) {
+        this.threadId = Thread.currentThread().getId();
+        this.sampleWeight = sampleWeight;
+        startCpuNanos = getCpuNanos();
+
+        if (sampleWeight > 0) {
+            startAllocatedBytes = getAllocatedBytes(threadId);
+
+            final ThreadInfo threadInfo = getThreadInfo(threadId);
+            startBlockedMillis = threadInfo == null ? 0L : threadInfo.getBlockedTime();
+            startWaitedMillis = threadInfo == null ? 0L : threadInfo.getWaitedTime();
+        } else {
+            startAllocatedBytes = 0L;
+            startBlockedMillis = 0L;
+            startWaitedMillis = 0L;
+        }
+    }
+
+    /**
+     * Enables thread contention monitoring for the JVM, if it is supported, so that the time that threads spend blocked
+     * and waiting is measured
+     *
+     * @return <code>true</code> if thread contention monitoring is enabled
+     */
+    public static boolean enableContentionMonitoring() {
+        if (!threadMXBean.isThreadContentionMonitoringSupported()) {
+            return false;
+        }
+
+        threadMXBean.setThreadContentionMonitoringEnabled(true);
+        return true;
+    }
+
+    /**
+     * @return the measurement of the resources that the current thread uses from now until {@link #stop(StandardFlowFileEvent)} is called
+     */
+    public static ThreadResourceUsage start() {
+        final boolean sampled = ThreadLocalRandom.current().nextInt(SAMPLE_INTERVAL) == 0;
+        return new ThreadResourceUsage(sampled ? SAMPLE_INTERVAL : 0);
+    }
+
+    /**
+     * Method is exposed for unit testing.
+     *
+     * @return a measurement of all resources that the current thread uses, which is not scaled
+     */
+    static ThreadResourceUsage startUnsampled() {
+        return new ThreadResourceUsage(1);
+    }
+
+    /**
+     * Adds the resources that the current thread has used since this measurement was started to the given event.
+     * Must be called from the thread that started the measurement.
+     *
+     * @param event the event to update
+     */
+    public void stop(final StandardFlowFileEvent event) {
+        event.setCpuNanos(event.getCpuNanoseconds() + Math.max(0L, getCpuNanos() - startCpuNanos));
+        if (sampleWeight == 0) {
+            return;
+        }
+
+        event.setBytesAllocated(event.getBytesAllocated() + sampleWeight * Math.max(0L, getAllocatedBytes(threadId) - startAllocatedBytes));
+
+        final ThreadInfo threadInfo = getThreadInfo(threadId);
+        if (threadInfo != null) {
+            final long blockedMillis = Math.max(0L, threadInfo.getBlockedTime() - startBlockedMillis);
+            final long waitedMillis = Math.max(0L, threadInfo.getWaitedTime() - startWaitedMillis);
+            event.setBlockedNanos(event.getBlockedNanoseconds() + sampleWeight * TimeUnit.MILLISECONDS.toNanos(blockedMillis));
+            event.setWaitedNanos(event.getWaitedNanoseconds() + sampleWeight * TimeUnit.MILLISECONDS.toNanos(waitedMillis));
+        }
+    }
+
+    private static long getCpuNanos() {
+        if (!threadMXBean.isCurrentThreadCpuTimeSupported() || !threadMXBean.isThreadCpuTimeEnabled()) {
+            return 0L;
+        }
+
+        return Math.max(0L, threadMXBean.getCurrentThreadCpuTime());
+    }
+
+    private static long getAllocatedBytes(final long threadId) {
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return 0L;
+        }
+
+        final com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        if (!allocationMXBean.isThreadAllocatedMemorySupported() || !allocationMXBean.isThreadAllocatedMemoryEnabled()) {
+            return 0L;
+        }
+
+        return Math.max(0L, allocationMXBean.getThreadAllocatedBytes(threadId));
+    }
+
+    private static ThreadInfo getThreadInfo(final long threadId) {
+        // blocked and waited times are -1 unless contention monitoring is enabled, and obtaining them is comparatively expensive
+        if (!threadMXBean.isThreadContentionMonitoringEnabled()) {
+            return null;
+        }
+
+        return threadMXBean.getThreadInfo(threadId);
+    }
+}
@@ -43,6 +43,13 @@ public class SystemDiagnostics implements Cloneable {
     private Map<String, StorageUsage> contentRepositoryStorageUsage;
     private Map<String, GarbageCollection> garbageCollection;
 
+    // null unless provenance events are handed off to the Provenance Repository asynchronously
+    private Integer provenanceQueueDepth;
+    private Long provenanceEventsBlocked;
+    private Long provenanceEventsSpilled;
+    private Long provenanceEventsDropped;
+    private Long provenanceEventsFailed;
+
     private long creationTimestamp;
 
     public void setTotalNonHeap(final long totalNonHeap) {
@@ -173,6 +180,46 @@ public class SystemDiagnostics implements Cloneable {
         this.garbageCollection = garbageCollection;
     }
 
+    public Integer getProvenanceQueueDepth() {
+        return provenanceQueueDepth;
+    }
+
+    public void setProvenanceQueueDepth(final Integer provenanceQueueDepth) {
+        this.provenanceQueueDepth = provenanceQueueDepth;
+    }
+
+    public Long getProvenanceEventsBlocked() {
+        return provenanceEventsBlocked;
+    }
+
+    public void setProvenanceEventsBlocked(final Long provenanceEventsBlocked) {
+        this.provenanceEventsBlocked = provenanceEventsBlocked;
+    }
+
+    public Long getProvenanceEventsSpilled() {
+        return provenanceEventsSpilled;
+    }
+
+    public void setProvenanceEventsSpilled(final Long provenanceEventsSpilled) {
+        this.provenanceEventsSpilled = provenanceEventsSpilled;
+    }
+
+    public Long getProvenanceEventsDropped() {
+        return provenanceEventsDropped;
+    }
+
+    public void setProvenanceEventsDropped(final Long provenanceEventsDropped) {
+        this.provenanceEventsDropped = provenanceEventsDropped;
+    }
+
+    public Long getProvenanceEventsFailed() {
+        return provenanceEventsFailed;
+    }
+
+    public void setProvenanceEventsFailed(final Long provenanceEventsFailed) {
+        this.provenanceEventsFailed = provenanceEventsFailed;
+    }
+
     public long getCreationTimestamp() {
         return creationTimestamp;
     }
@@ -211,6 +258,11 @@ public class SystemDiagnostics implements Cloneable {
         clonedObj.totalThreads = totalThreads;
         clonedObj.usedHeap = usedHeap;
         clonedObj.usedNonHeap = usedNonHeap;
+        clonedObj.provenanceQueueDepth = provenanceQueueDepth;
+        clonedObj.provenanceEventsBlocked = provenanceEventsBlocked;
+        clonedObj.provenanceEventsSpilled = provenanceEventsSpilled;
+        clonedObj.provenanceEventsDropped = provenanceEventsDropped;
+        clonedObj.provenanceEventsFailed = provenanceEventsFailed;
         clonedObj.creationTimestamp = creationTimestamp;
 
         return clonedObj;
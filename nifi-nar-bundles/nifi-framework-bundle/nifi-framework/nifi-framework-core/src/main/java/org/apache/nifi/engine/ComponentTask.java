@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.engine;
+
+/**
+ * A task that runs on behalf of a component, so that an engine can account for the time that the component's tasks
+ * spend waiting to run
+ */
+public interface ComponentTask extends Runnable {
+
+    /**
+     * @return the identifier of the component on whose behalf the task runs
+     */
+    String getComponentIdentifier();
+
+    /**
+     * Called by the engine, on the thread that is about to run the task, each time that it runs the task
+     *
+     * @param queueWaitNanos the amount of time that the task waited for a thread once it was due to run, in nanoseconds
+     * @param stolen whether the task is run by a thread other than the one that queued it
+     */
+    default void recordQueueWait(final long queueWaitNanos, final boolean stolen) {
+    }
+}
@@ -27,7 +27,7 @@ import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
-public final class FlowEngine extends ScheduledThreadPoolExecutor {
+public final class FlowEngine extends ScheduledThreadPoolExecutor implements SchedulingEngine {
 
     private static final Logger logger = LoggerFactory.getLogger(FlowEngine.class);
 
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.engine;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * The operations of an engine that runs the tasks of components, beyond those of a {@link ScheduledExecutorService}
+ */
+public interface SchedulingEngine extends ScheduledExecutorService {
+
+    /**
+     * @return the number of threads that the engine keeps available to run tasks
+     */
+    int getCorePoolSize();
+
+    /**
+     * Sets the number of threads that the engine keeps available to run tasks
+     *
+     * @param corePoolSize the number of threads
+     */
+    void setCorePoolSize(int corePoolSize);
+
+    /**
+     * @return <code>true</code> if the engine has been shut down but has not yet terminated
+     */
+    boolean isTerminating();
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.engine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics about how the tasks of a component have been run by an engine
+ */
+public class TaskStatistics {
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder steals = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong(0L);
+
+    // the number of the component's tasks that are scheduled in the engine; only accessed while the engine updates its map of statistics
+    int scheduledTasks = 0;
+
+    void record(final long waitNanos, final boolean stolen) {
+        invocations.increment();
+        if (stolen) {
+            steals.increment();
+        }
+
+        if (waitNanos > 0L) {
+            queueWaitNanos.add(waitNanos);
+
+            long max = maxQueueWaitNanos.get();
+            while (waitNanos > max && !maxQueueWaitNanos.compareAndSet(max, waitNanos)) {
+                max = maxQueueWaitNanos.get();
+            }
+        }
+    }
+
+    /**
+     * @return the number of times that the component's tasks have been run
+     */
+    public long getInvocations() {
+        return invocations.sum();
+    }
+
+    /**
+     * @return the number of times that a task of the component that one of the engine's threads queued to run again
+     *         was stolen, that is, run by another of the engine's threads
+     */
+    public long getSteals() {
+        return steals.sum();
+    }
+
+    /**
+     * @param timeUnit the unit of the result
+     * @return the total amount of time that the component's tasks waited for a thread once they were due to run
+     */
+    public long getQueueWaitTime(final TimeUnit timeUnit) {
+        return timeUnit.convert(queueWaitNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param timeUnit the unit of the result
+     * @return the longest amount of time that any of the component's tasks waited for a thread once it was due to run
+     */
+    public long getMaxQueueWaitTime(final TimeUnit timeUnit) {
+        return timeUnit.convert(maxQueueWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "TaskStatistics[invocations=" + getInvocations() + ", steals=" + getSteals() + ", queueWaitMillis=" + getQueueWaitTime(TimeUnit.MILLISECONDS)
+            + ", maxQueueWaitMillis=" + getMaxQueueWaitTime(TimeUnit.MILLISECONDS) + "]";
+    }
+}
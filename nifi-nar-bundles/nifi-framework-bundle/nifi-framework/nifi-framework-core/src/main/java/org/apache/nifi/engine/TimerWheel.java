@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * A hierarchical timing wheel, in the manner of the Linux kernel's timer wheel. Time is divided into ticks, and items
+ * that are due within the next 256 ticks are held in the slot of the root wheel for their tick. Items that are due later
+ * are held in one of four coarser wheels of 64 slots each, with each slot of a wheel spanning a full rotation of the
+ * wheel beneath it. Whenever the root wheel completes a rotation, the items in the next slot of the coarser wheel are
+ * redistributed among the finer wheels. Adding an item and expiring an item therefore take constant time, regardless of
+ * how many items are held, unlike a priority queue.
+ * </p>
+ *
+ * <p>
+ * Items never expire before they are due, but may expire up to one tick later than they are due. Items that are due
+ * further in the future than the wheels span are held in the last slot of the coarsest wheel and placed again when it
+ * is reached.
+ * </p>
+ *
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @param <T> the type of item held by the wheel
+ */
+final class TimerWheel<T> {
+    private static final int ROOT_BITS = 8;
+    private static final int LEVEL_BITS = 6;
+    private static final int LEVELS = 5;
+    private static final int ROOT_MASK = (1 << ROOT_BITS) - 1;
+    private static final int LEVEL_MASK = (1 << LEVEL_BITS) - 1;
+    private static final long MAX_TICKS = (1L << (ROOT_BITS + (LEVELS - 1) * LEVEL_BITS)) - 1;
+
+    private final long startNanos;
+    private final long tickNanos;
+    private final ArrayDeque<Node<T>>[][] wheels;
+    // items that were already due when they were added
+    private final List<T> overdue = new ArrayList<>();
+
+    // the next tick to be expired; every item that is due before this tick has been expired
+    private long currentTick = 0L;
+    private int size = 0;
+    private int rootSize = 0;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(final long startNanos, final long tickNanos) {
+        if (tickNanos < 1L) {
+            throw new IllegalArgumentException("Tick duration must be positive");
+        }
+
+        this.startNanos = startNanos;
+        this.tickNanos = tickNanos;
+
+        wheels = new ArrayDeque[LEVELS][];
+        wheels[0] = new ArrayDeque[1 << ROOT_BITS];
+        for (int level = 1; level < LEVELS; level++) {
+            wheels[level] = new ArrayDeque[1 << LEVEL_BITS];
+        }
+    }
+
+    /**
+     * Adds the given item to the wheel
+     *
+     * @param item the item
+     * @param dueNanos the value of {@link System#nanoTime()} at which the item is due
+     */
+    void add(final T item, final long dueNanos) {
+        final long elapsedNanos = dueNanos - startNanos;
+        final long dueTick = elapsedNanos <= 0L ? 0L : (elapsedNanos + tickNanos - 1) / tickNanos;
+        if (dueTick < currentTick) {
+            overdue.add(item);
+        } else {
+            place(new Node<>(item, dueTick));
+        }
+        size++;
+    }
+
+    /**
+     * Expires all items that are due as of the given time, in the order in which they are due
+     *
+     * @param nowNanos the current value of {@link System#nanoTime()}
+     * @return the items that have expired, which are no longer held by the wheel
+     */
+    List<T> expire(final long nowNanos) {
+        final long nowTick = (nowNanos - startNanos) / tickNanos;
+        if (size == 0) {
+            // Nothing to expire, so there's no need to visit each of the ticks that have elapsed.
+            currentTick = Math.max(currentTick, nowTick + 1);
+            return new ArrayList<>(0);
+        }
+
+        final List<T> expired = new ArrayList<>(overdue);
+        size -= overdue.size();
+        overdue.clear();
+
+        while (currentTick <= nowTick) {
+            if (rootSize == 0) {
+                // Nothing is held by the root wheel, so there is no need to visit each of the ticks of its rotation.
+                final long rotationEnd = (currentTick | ROOT_MASK) + 1;
+                if (rotationEnd > nowTick + 1) {
+                    currentTick = nowTick + 1;
+                    break;
+                }
+
+                currentTick = rotationEnd;
+                cascade();
+                continue;
+            }
+
+            final ArrayDeque<Node<T>> slot = wheels[0][(int) (currentTick & ROOT_MASK)];
+            currentTick++;
+
+            if (slot != null && !slot.isEmpty()) {
+                final int count = slot.size();
+                rootSize -= count;
+                for (int i = 0; i < count; i++) {
+                    final Node<T> node = slot.poll();
+                    if (node.dueTick < currentTick) {
+                        expired.add(node.item);
+                        size--;
+                    } else {
+                        // held in the last slot of the coarsest wheel because it was due beyond the span of the wheels
+                        place(node);
+                    }
+                }
+            }
+
+            if ((currentTick & ROOT_MASK) == 0) {
+                cascade();
+            }
+        }
+
+        return expired;
+    }
+
+    /**
+     * @return the value of {@link System#nanoTime()} at which {@link #expire(long)} should next be called, or
+     *         <code>Long.MAX_VALUE</code> if the wheel is empty. This is either the time at which the next item in the root
+     *         wheel is due, or the time at which the root wheel completes its rotation, whichever is first.
+     */
+    long getNextExpirationNanos() {
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+
+        if (!overdue.isEmpty()) {
+            return startNanos + currentTick * tickNanos;
+        }
+
+        final long rotationEnd = (currentTick | ROOT_MASK) + 1;
+        for (long tick = currentTick; rootSize > 0 && tick < rotationEnd; tick++) {
+            final ArrayDeque<Node<T>> slot = wheels[0][(int) (tick & ROOT_MASK)];
+            if (slot != null && !slot.isEmpty()) {
+                return startNanos + tick * tickNanos;
+            }
+        }
+
+        return startNanos + rotationEnd * tickNanos;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes all items from the wheel
+     *
+     * @return the items that were held by the wheel
+     */
+    List<T> clear() {
+        final List<T> items = new ArrayList<>(size);
+        for (final ArrayDeque<Node<T>>[] wheel : wheels) {
+            for (final ArrayDeque<Node<T>> slot : wheel) {
+                if (slot != null) {
+                    for (final Node<T> node : slot) {
+                        items.add(node.item);
+                    }
+                    slot.clear();
+                }
+            }
+        }
+
+        items.addAll(overdue);
+        overdue.clear();
+
+        size = 0;
+        rootSize = 0;
+        return items;
+    }
+
+    /**
+     * Redistributes the items of the coarser wheels' slots that cover the rotation of the root wheel that is starting, so
+     * that every item that is due within the rotation is held by the root wheel before any tick of the rotation is expired
+     */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            final int index = (int) ((currentTick >>> (ROOT_BITS + (level - 1) * LEVEL_BITS)) & LEVEL_MASK);
+            final ArrayDeque<Node<T>> slot = wheels[level][index];
+            if (slot != null) {
+                final int count = slot.size();
+                for (int i = 0; i < count; i++) {
+                    place(slot.poll());
+                }
+            }
+
+            // Only when this wheel is itself starting a new rotation does the next coarser wheel need to be cascaded.
+            if (index != 0) {
+                break;
+            }
+        }
+    }
+
+    private void place(final Node<T> node) {
+        final long dueTick = Math.max(node.dueTick, currentTick);
+        long delta = dueTick - currentTick;
+        long tick = dueTick;
+        if (delta > MAX_TICKS) {
+            delta = MAX_TICKS;
+            tick = currentTick + MAX_TICKS;
+        }
+
+        final int level;
+        final int index;
+        if (delta < (1L << ROOT_BITS)) {
+            level = 0;
+            index = (int) (tick & ROOT_MASK);
+            rootSize++;
+        } else {
+            int candidate = 1;
+            while (candidate < LEVELS - 1 && delta >= (1L << (ROOT_BITS + candidate * LEVEL_BITS))) {
+                candidate++;
+            }
+            level = candidate;
+            index = (int) ((tick >>> (ROOT_BITS + (level - 1) * LEVEL_BITS)) & LEVEL_MASK);
+        }
+
+        ArrayDeque<Node<T>> slot = wheels[level][index];
+        if (slot == null) {
+            slot = new ArrayDeque<>();
+            wheels[level][index] = slot;
+        }
+        slot.add(node);
+    }
+
+
+    private static class Node<T> {
+        private final T item;
+        private final long dueTick;
+
+        public Node(final T item, final long dueTick) {
+            this.item = item;
+            this.dueTick = dueTick;
+        }
+    }
+}
@@ -0,0 +1,568 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.nifi.nar.NarThreadContextClassLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * An alternative to the {@link FlowEngine} for running the tasks of many components. The {@link FlowEngine} is a
+ * {@link java.util.concurrent.ScheduledThreadPoolExecutor}, whose threads all take their tasks from a single delay queue
+ * that is guarded by a single lock, so that the queue becomes a point of contention when many components are scheduled.
+ * </p>
+ *
+ * <p>
+ * This engine runs tasks in a work-stealing {@link ForkJoinPool}, in which each thread has its own queue of tasks and
+ * threads that have nothing to do take tasks from the queues of the others. A task that is due to run again within one
+ * tick of the timer once it completes, as is the case for a component that has more work to do, is queued by the thread
+ * that ran it in its own queue, so that consecutive invocations of a component tend to stay on the same thread unless
+ * another thread is idle.
+ * Tasks that are to run after a delay are held by a {@link TimerWheel}, which is maintained by a single timer thread and
+ * takes constant time to add or expire a task, and are handed to the pool when they are due.
+ * </p>
+ *
+ * <p>
+ * For each component whose tasks are {@link ComponentTask}s, the engine keeps {@link TaskStatistics} that record how long
+ * the tasks waited for a thread once they were due and how often they were run by a thread other than the one that
+ * queued them.
+ * </p>
+ *
+ * <p>
+ * When the engine is shut down, tasks that are waiting for their delay to elapse are cancelled and periodic tasks are not
+ * run again, while tasks that were already due are run.
+ * </p>
+ */
+public final class WorkStealingFlowEngine extends AbstractExecutorService implements SchedulingEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkStealingFlowEngine.class);
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    private final String threadNamePrefix;
+    private final AtomicInteger threadIndex = new AtomicInteger(0);
+    private final Object poolLock = new Object();
+    private volatile ForkJoinPool pool;
+
+    private final Queue<ScheduledTask<?>> timerQueue = new ConcurrentLinkedQueue<>();
+    private final Thread timerThread;
+    // the time at which the timer thread will wake, or Long.MIN_VALUE if it is not waiting
+    private volatile long timerWakeNanos = Long.MIN_VALUE;
+    private volatile boolean shutdown = false;
+
+    private final ConcurrentMap<String, TaskStatistics> taskStatistics = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new instance of WorkStealingFlowEngine
+     *
+     * @param corePoolSize the maximum number of threads available to tasks running in the engine.
+     * @param threadNamePrefix for thread naming
+     */
+    public WorkStealingFlowEngine(final int corePoolSize, final String threadNamePrefix) {
+        if (corePoolSize < 1) {
+            throw new IllegalArgumentException("Core pool size must be positive");
+        }
+
+        this.threadNamePrefix = threadNamePrefix;
+        this.pool = createPool(corePoolSize);
+
+        timerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runTimer();
+            }
+        }, threadNamePrefix + " Timer");
+        timerThread.setDaemon(true);
+        timerThread.start();
+    }
+
+    private ForkJoinPool createPool(final int parallelism) {
+        // asynchronous mode, as the tasks are never joined, so each thread takes tasks from its own queue in the order they were queued
+        return new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            @Override
+            public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+                final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName(threadNamePrefix + " Thread-" + threadIndex.incrementAndGet());
+                return thread;
+            }
+        }, null, true);
+    }
+
+    /**
+     * @return the statistics of each component that has tasks scheduled in this engine, keyed by component identifier. The
+     *         statistics of a component are removed once none of its tasks remain scheduled.
+     */
+    public Map<String, TaskStatistics> getTaskStatistics() {
+        return Collections.unmodifiableMap(taskStatistics);
+    }
+
+    private TaskStatistics retainStatistics(final String componentIdentifier) {
+        return taskStatistics.compute(componentIdentifier, (id, statistics) -> {
+            final TaskStatistics retained = statistics == null ? new TaskStatistics() : statistics;
+            retained.scheduledTasks++;
+            return retained;
+        });
+    }
+
+    private void releaseStatistics(final String componentIdentifier, final TaskStatistics released) {
+        taskStatistics.computeIfPresent(componentIdentifier, (id, statistics) -> {
+            if (statistics != released) {
+                return statistics;
+            }
+
+            return --statistics.scheduledTasks == 0 ? null : statistics;
+        });
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+        if (command == null || unit == null) {
+            throw new NullPointerException();
+        }
+
+        final ScheduledTask<Void> task = new ScheduledTask<>(command, null, getDueNanos(delay, unit), 0L);
+        submitTask(task);
+        return task;
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(final Callable<V> callable, final long delay, final TimeUnit unit) {
+        if (callable == null || unit == null) {
+            throw new NullPointerException();
+        }
+
+        final ScheduledTask<V> task = new ScheduledTask<>(callable, getDueNanos(delay, unit));
+        submitTask(task);
+        return task;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(final Runnable command, final long initialDelay, final long period, final TimeUnit unit) {
+        if (command == null || unit == null) {
+            throw new NullPointerException();
+        }
+        if (period <= 0L) {
+            throw new IllegalArgumentException();
+        }
+
+        final ScheduledTask<Void> task = new ScheduledTask<>(command, null, getDueNanos(initialDelay, unit), unit.toNanos(period));
+        submitTask(task);
+        return task;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(final Runnable command, final long initialDelay, final long delay, final TimeUnit unit) {
+        if (command == null || unit == null) {
+            throw new NullPointerException();
+        }
+        if (delay <= 0L) {
+            throw new IllegalArgumentException();
+        }
+
+        final ScheduledTask<Void> task = new ScheduledTask<>(command, null, getDueNanos(initialDelay, unit), -unit.toNanos(delay));
+        submitTask(task);
+        return task;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        schedule(command, 0L, TimeUnit.NANOSECONDS);
+    }
+
+    private static long getDueNanos(final long delay, final TimeUnit unit) {
+        return System.nanoTime() + unit.toNanos(Math.max(0L, delay));
+    }
+
+    private void submitTask(final ScheduledTask<?> task) {
+        if (shutdown) {
+            task.cancel(false);
+            throw new RejectedExecutionException("Engine has been shut down");
+        }
+
+        queueTask(task);
+    }
+
+    /**
+     * Hands the given task to the pool if it is due, or to the timer thread otherwise
+     */
+    private void queueTask(final ScheduledTask<?> task) {
+        final long now = System.nanoTime();
+        if (task.dueNanos - now <= 0L) {
+            dispatch(task, now);
+            return;
+        }
+
+        offerToTimer(task);
+    }
+
+    /**
+     * Hands the given periodic task, which has just run, to the pool if it is due within one tick of the timer, or to the timer
+     * thread otherwise. The timer cannot expire a task any sooner than the next tick, so a task that is to run again
+     * after a shorter delay, such as a component that is scheduled to run continuously and has more work to do, is treated
+     * as due. It is then queued by the thread that ran it rather than being limited to one run per tick.
+     */
+    private void requeueTask(final ScheduledTask<?> task) {
+        final long now = System.nanoTime();
+        if (task.dueNanos - now < TICK_NANOS) {
+            dispatch(task, now);
+            return;
+        }
+
+        offerToTimer(task);
+    }
+
+    private void offerToTimer(final ScheduledTask<?> task) {
+        timerQueue.offer(task);
+        if (task.dueNanos < timerWakeNanos) {
+            LockSupport.unpark(timerThread);
+        }
+    }
+
+    /**
+     * Hands the given task to the pool. If the calling thread is one of the pool's threads, the task is queued in that
+     * thread's own queue, so that it runs on the same thread unless another thread steals it.
+     */
+    private void dispatch(final ScheduledTask<?> task, final long readyNanos) {
+        final Thread currentThread = Thread.currentThread();
+
+        while (true) {
+            final ForkJoinPool currentPool = pool;
+
+            try {
+                if (currentThread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) currentThread).getPool() == currentPool) {
+                    new RunTask(task, readyNanos, currentThread).fork();
+                } else {
+                    currentPool.execute(new RunTask(task, readyNanos, null));
+                }
+                return;
+            } catch (final RejectedExecutionException ree) {
+                if (shutdown) {
+                    task.cancel(false);
+                    return;
+                }
+
+                // The pool is replaced before it is shut down, so if it was shut down because the core pool size was changed,
+                // the new pool is now visible and the task is handed to it instead.
+                if (pool == currentPool) {
+                    logger.error("Failed to run flow controller task '{}' because it was rejected by the thread pool", task, ree);
+                    task.cancel(false);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void runTimer() {
+        final TimerWheel<ScheduledTask<?>> wheel = new TimerWheel<>(System.nanoTime(), TICK_NANOS);
+
+        while (!shutdown) {
+            timerWakeNanos = Long.MIN_VALUE;
+
+            ScheduledTask<?> queued;
+            while ((queued = timerQueue.poll()) != null) {
+                if (!queued.isCancelled()) {
+                    wheel.add(queued, queued.dueNanos);
+                }
+            }
+
+            for (final ScheduledTask<?> task : wheel.expire(System.nanoTime())) {
+                if (!task.isCancelled()) {
+                    // the task has been ready to run since it was due, so the time that the timer took to expire it counts as waiting
+                    dispatch(task, task.dueNanos);
+                }
+            }
+
+            final long wakeNanos = wheel.getNextExpirationNanos();
+            timerWakeNanos = wakeNanos;
+            if (!timerQueue.isEmpty() || shutdown) {
+                continue;
+            }
+
+            if (wakeNanos == Long.MAX_VALUE) {
+                LockSupport.park(this);
+            } else {
+                final long waitNanos = wakeNanos - System.nanoTime();
+                if (waitNanos > 0L) {
+                    LockSupport.parkNanos(this, waitNanos);
+                }
+            }
+        }
+
+        for (final ScheduledTask<?> task : wheel.clear()) {
+            task.cancel(false);
+        }
+
+        ScheduledTask<?> queued;
+        while ((queued = timerQueue.poll()) != null) {
+            queued.cancel(false);
+        }
+    }
+
+    private void runTask(final RunTask runTask) {
+        final Thread currentThread = Thread.currentThread();
+
+        // Ensure classloader is correct
+        currentThread.setContextClassLoader(NarThreadContextClassLoader.getInstance());
+
+        final ScheduledTask<?> task = runTask.task;
+        if (task.statistics != null) {
+            final boolean stolen = runTask.queuingThread != null && runTask.queuingThread != currentThread;
+            final long waitNanos = Math.max(0L, System.nanoTime() - runTask.readyNanos);
+            task.statistics.record(waitNanos, stolen);
+            task.componentTask.recordQueueWait(waitNanos, stolen);
+        }
+
+        task.run();
+
+        if (task.isDone()) {
+            try {
+                if (task.isCancelled()) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("A flow controller execution task '{}' has been cancelled.", task);
+                    }
+                } else {
+                    task.get(); //to raise any exceptions that might have occurred.
+                    logger.debug("A Flow Controller execution task '{}' has completed.", task);
+                }
+            } catch (final CancellationException ce) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("A flow controller execution task '{}' has been cancelled.", task);
+                }
+            } catch (final InterruptedException ie) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("A flow controller execution task has been interrupted.", ie);
+                }
+            } catch (final ExecutionException ee) {
+                logger.error("A flow controller task execution stopped abnormally", ee);
+            }
+        }
+    }
+
+    @Override
+    public int getCorePoolSize() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Sets the number of threads available to tasks. As the parallelism of a {@link ForkJoinPool} is fixed, the pool is
+     * replaced by a new one; tasks that are already queued in the previous pool are run by it before its threads terminate.
+     *
+     * @param corePoolSize the number of threads
+     */
+    @Override
+    public void setCorePoolSize(final int corePoolSize) {
+        if (corePoolSize < 1) {
+            throw new IllegalArgumentException("Core pool size must be positive");
+        }
+
+        synchronized (poolLock) {
+            if (shutdown || corePoolSize == pool.getParallelism()) {
+                return;
+            }
+
+            final ForkJoinPool previousPool = pool;
+            pool = createPool(corePoolSize);
+            previousPool.shutdown();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (poolLock) {
+            shutdown = true;
+            pool.shutdown();
+        }
+
+        LockSupport.unpark(timerThread);
+    }
+
+    /**
+     * Shuts down the engine and attempts to stop the tasks that are running.
+     *
+     * @return an empty list; the tasks that are waiting for their delay to elapse are cancelled rather than returned
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        synchronized (poolLock) {
+            shutdown = true;
+            pool.shutdownNow();
+        }
+
+        LockSupport.unpark(timerThread);
+        return new ArrayList<>(0);
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && pool.isTerminated() && !timerThread.isAlive();
+    }
+
+    @Override
+    public boolean isTerminating() {
+        return shutdown && !isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!pool.awaitTermination(timeout, unit)) {
+            return false;
+        }
+
+        final long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remainingMillis > 0L) {
+            timerThread.join(remainingMillis);
+        }
+
+        return isTerminated();
+    }
+
+
+    /**
+     * The run of a scheduled task in the pool
+     */
+    private final class RunTask extends ForkJoinTask<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final ScheduledTask<?> task;
+        private final long readyNanos;
+        private final Thread queuingThread;
+
+        public RunTask(final ScheduledTask<?> task, final long readyNanos, final Thread queuingThread) {
+            this.task = task;
+            this.readyNanos = readyNanos;
+            this.queuingThread = queuingThread;
+        }
+
+        @Override
+        public Void getRawResult() {
+            return null;
+        }
+
+        @Override
+        protected void setRawResult(final Void value) {
+        }
+
+        @Override
+        protected boolean exec() {
+            runTask(this);
+            return true;
+        }
+    }
+
+
+    private final class ScheduledTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+        // positive for a fixed rate, negative for a fixed delay, zero for a task that runs only once
+        private final long period;
+        private final ComponentTask componentTask;
+        private final String componentIdentifier;
+        private final TaskStatistics statistics;
+        private volatile long dueNanos;
+
+        public ScheduledTask(final Runnable runnable, final V result, final long dueNanos, final long period) {
+            super(runnable, result);
+            this.dueNanos = dueNanos;
+            this.period = period;
+            this.componentTask = runnable instanceof ComponentTask ? (ComponentTask) runnable : null;
+            this.componentIdentifier = componentTask == null ? null : componentTask.getComponentIdentifier();
+            this.statistics = componentIdentifier == null ? null : retainStatistics(componentIdentifier);
+        }
+
+        public ScheduledTask(final Callable<V> callable, final long dueNanos) {
+            super(callable);
+            this.dueNanos = dueNanos;
+            this.period = 0L;
+            this.componentTask = null;
+            this.componentIdentifier = null;
+            this.statistics = null;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0L;
+        }
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(final Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+
+            final long diff = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+            return diff < 0L ? -1 : (diff > 0L ? 1 : 0);
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+                return;
+            }
+
+            if (runAndReset()) {
+                dueNanos = period > 0L ? dueNanos + period : System.nanoTime() - period;
+                if (shutdown) {
+                    cancel(false);
+                } else {
+                    requeueTask(this);
+                }
+            }
+        }
+
+        @Override
+        protected void done() {
+            // the task has completed, failed, or been cancelled, so it no longer counts toward the component's statistics
+            if (statistics != null) {
+                releaseStatistics(componentIdentifier, statistics);
+            }
+        }
+    }
+}
@@ -35,6 +35,15 @@ public class Connectables {
         return false;
     }
 
+    public static long getQueuedCount(final Connectable connectable) {
+        long count = 0L;
+        for (final Connection conn : connectable.getIncomingConnections()) {
+            count += conn.getFlowFileQueue().size().getObjectCount();
+        }
+
+        return count;
+    }
+
     public static boolean anyRelationshipAvailable(final Connectable connectable) {
         for (final Relationship relationship : connectable.getRelationships()) {
             final Collection<Connection> connections = connectable.getConnections(relationship);
@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.nifi.connectable.Connectable;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class TestEventDrivenWorkerQueue {
+
+    private ProcessScheduler scheduler;
+
+    @Before
+    public void setup() {
+        scheduler = mock(ProcessScheduler.class, withSettings().stubOnly());
+    }
+
+    private ProcessorNode createProcessor(final boolean isolated) {
+        final ProcessorNode procNode = mock(ProcessorNode.class, withSettings().stubOnly());
+        when(procNode.getScheduledState()).thenReturn(ScheduledState.RUNNING);
+        when(procNode.isIsolated()).thenReturn(isolated);
+        return procNode;
+    }
+
+    @Test
+    public void testEventsForUnscheduledComponentIgnored() {
+        final EventDrivenWorkerQueue queue = new EventDrivenWorkerQueue(false, false, scheduler);
+        final ProcessorNode procNode = createProcessor(false);
+
+        queue.offer(procNode);
+        assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testWorkerHandedOutOncePerEvent() {
+        final EventDrivenWorkerQueue queue = new EventDrivenWorkerQueue(false, false, scheduler);
+        final ProcessorNode procNode = createProcessor(false);
+        queue.resumeWork(procNode);
+
+        queue.offer(procNode);
+        queue.offer(procNode);
+
+        assertSame(procNode, queue.poll(1, TimeUnit.MILLISECONDS).getConnectable());
+        assertSame(procNode, queue.poll(1, TimeUnit.MILLISECONDS).getConnectable());
+        assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testSuspendedWorkNotHandedOut() {
+        final EventDrivenWorkerQueue queue = new EventDrivenWorkerQueue(false, false, scheduler);
+        final ProcessorNode procNode = createProcessor(false);
+        queue.resumeWork(procNode);
+        queue.offer(procNode);
+
+        queue.suspendWork(procNode);
+        assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+
+        queue.offer(procNode);
+        assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testStoppedComponentDropped() {
+        final EventDrivenWorkerQueue queue = new EventDrivenWorkerQueue(false, false, scheduler);
+        final ProcessorNode procNode = createProcessor(false);
+        when(procNode.getScheduledState()).thenReturn(ScheduledState.STOPPED);
+        queue.resumeWork(procNode);
+        queue.offer(procNode);
+
+        assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+
+        // the worker is no longer queued, so it is not handed out once the component is running, until the next event
+        when(procNode.getScheduledState()).thenReturn(ScheduledState.RUNNING);
+        assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+        queue.offer(procNode);
+        assertSame(procNode, queue.poll(1, TimeUnit.MILLISECONDS).getConnectable());
+    }
+
+    @Test
+    public void testYieldedComponentHandedOutAfterYield() {
+        final EventDrivenWorkerQueue queue = new EventDrivenWorkerQueue(false, false, scheduler);
+        final ProcessorNode procNode = createProcessor(false);
+        when(procNode.getYieldExpiration()).thenReturn(System.currentTimeMillis() + 60000L);
+        queue.resumeWork(procNode);
+        queue.offer(procNode);
+
+        assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+
+        when(procNode.getYieldExpiration()).thenReturn(0L);
+        assertSame(procNode, queue.poll(1, TimeUnit.MILLISECONDS).getConnectable());
+    }
+
+    @Test
+    public void testPrimaryNodeOnlyComponentHeldUntilPrimary() {
+        final EventDrivenWorkerQueue queue = new EventDrivenWorkerQueue(true, false, scheduler);
+        final ProcessorNode isolated = createProcessor(true);
+        final ProcessorNode other = createProcessor(false);
+        queue.resumeWork(isolated);
+        queue.resumeWork(other);
+
+        queue.offer(isolated);
+        queue.offer(other);
+        assertSame(other, queue.poll(1, TimeUnit.MILLISECONDS).getConnectable());
+        assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+
+        // further events do not queue the worker while this node is not primary
+        queue.offer(isolated);
+        assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+
+        queue.setPrimary(true);
+        assertSame(isolated, queue.poll(1, TimeUnit.MILLISECONDS).getConnectable());
+        assertSame(isolated, queue.poll(1, TimeUnit.MILLISECONDS).getConnectable());
+        assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testDisconnectingFromClusterReleasesIsolatedWork() {
+        final EventDrivenWorkerQueue queue = new EventDrivenWorkerQueue(true, false, scheduler);
+        final ProcessorNode isolated = createProcessor(true);
+        queue.resumeWork(isolated);
+        queue.offer(isolated);
+        assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+
+        queue.setClustered(false);
+        assertSame(isolated, queue.poll(1, TimeUnit.MILLISECONDS).getConnectable());
+    }
+
+    @Test
+    public void testLowRateComponentNotStarved() {
+        final EventDrivenWorkerQueue queue = new EventDrivenWorkerQueue(false, false, scheduler);
+        final List<ProcessorNode> busy = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final ProcessorNode procNode = createProcessor(false);
+            queue.resumeWork(procNode);
+            for (int j = 0; j < 1000; j++) {
+                queue.offer(procNode);
+            }
+            busy.add(procNode);
+        }
+
+        final ProcessorNode quiet = createProcessor(false);
+        queue.resumeWork(quiet);
+        queue.offer(quiet);
+
+        // every component that has work is handed out once before any is handed out a second time
+        final Map<Connectable, Integer> counts = new HashMap<>();
+        for (int i = 0; i < busy.size() + 1; i++) {
+            final Connectable connectable = queue.poll(1, TimeUnit.MILLISECONDS).getConnectable();
+            assertNull(counts.put(connectable, 1));
+        }
+        assertTrue(counts.containsKey(quiet));
+    }
+
+    @Test(timeout = 10000)
+    public void testWaitingThreadWokenByEvent() throws InterruptedException {
+        final EventDrivenWorkerQueue queue = new EventDrivenWorkerQueue(false, false, scheduler);
+        final ProcessorNode procNode = createProcessor(false);
+        queue.resumeWork(procNode);
+
+        final AtomicReference<EventBasedWorker> polled = new AtomicReference<>();
+        final CountDownLatch waiting = new CountDownLatch(1);
+        final Thread thread = new Thread(() -> {
+            waiting.countDown();
+            polled.set(queue.poll(30, TimeUnit.SECONDS));
+        });
+        thread.start();
+
+        waiting.await();
+        Thread.sleep(50L);
+        final long start = System.nanoTime();
+        queue.offer(procNode);
+        thread.join();
+
+        assertNotNull(polled.get());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void testPollTimesOut() {
+        final EventDrivenWorkerQueue queue = new EventDrivenWorkerQueue(false, false, scheduler);
+        final long start = System.nanoTime();
+        assertNull(queue.poll(20, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentOffersAllHandedOut() throws InterruptedException {
+        final EventDrivenWorkerQueue queue = new EventDrivenWorkerQueue(false, false, scheduler);
+        final List<ProcessorNode> procNodes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final ProcessorNode procNode = createProcessor(false);
+            queue.resumeWork(procNode);
+            procNodes.add(procNode);
+        }
+
+        final int eventsPerComponent = 100;
+        final AtomicLong handedOut = new AtomicLong(0L);
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final Thread consumer = new Thread(() -> {
+                while (queue.poll(1, TimeUnit.SECONDS) != null) {
+                    handedOut.incrementAndGet();
+                }
+            });
+            threads.add(consumer);
+
+            final int producerIndex = i;
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < eventsPerComponent; j++) {
+                    for (int k = producerIndex; k < procNodes.size(); k += 4) {
+                        queue.offer(procNodes.get(k));
+                    }
+                }
+            }));
+        }
+
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(procNodes.size() * eventsPerComponent, handedOut.get());
+    }
+
+    @Test
+    @Ignore("For local testing of performance only")
+    public void testThroughputWithManyComponents() throws InterruptedException {
+        final int componentCount = 5000;
+        final int threadCount = 8;
+        final long testMillis = 10000L;
+
+        final EventDrivenWorkerQueue queue = new EventDrivenWorkerQueue(true, true, scheduler);
+        final List<ProcessorNode> procNodes = new ArrayList<>();
+        for (int i = 0; i < componentCount; i++) {
+            // some of the components run only on the primary node
+            final ProcessorNode procNode = createProcessor(i % 10 == 0);
+            queue.resumeWork(procNode);
+            procNodes.add(procNode);
+        }
+
+        final AtomicLong handedOut = new AtomicLong(0L);
+        final long stopTime = System.currentTimeMillis() + testMillis;
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            final int threadIndex = i;
+            threads.add(new Thread(() -> {
+                int index = threadIndex;
+                while (System.currentTimeMillis() < stopTime) {
+                    // each Event-Driven thread produces events for other components as a processor would transfer FlowFiles
+                    for (int j = 0; j < 10; j++) {
+                        index = (index + 7919) % componentCount;
+                        queue.offer(procNodes.get(index));
+                    }
+
+                    for (int j = 0; j < 10; j++) {
+                        if (queue.poll(10, TimeUnit.MILLISECONDS) != null) {
+                            handedOut.incrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        System.out.println("Handed out " + handedOut.get() * 1000L / testMillis + " workers/sec for " + componentCount + " Event-Driven components on " + threadCount + " threads");
+    }
+}
@@ -17,6 +17,7 @@
 package org.apache.nifi.controller;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
@@ -26,22 +27,31 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.nifi.controller.queue.FlowFileQueue;
 import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.controller.repository.FlowFileRepository;
 import org.apache.nifi.controller.repository.SwapContents;
+import org.apache.nifi.controller.repository.SwapManagerInitializationContext;
+import org.apache.nifi.controller.repository.SwapSummary;
 import org.apache.nifi.controller.repository.claim.ContentClaim;
 import org.apache.nifi.controller.repository.claim.ResourceClaim;
 import org.apache.nifi.controller.repository.claim.ResourceClaimManager;
+import org.apache.nifi.controller.repository.claim.StandardContentClaim;
+import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
+import org.apache.nifi.events.EventReporter;
 import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.util.NiFiProperties;
 import org.junit.Test;
 import org.mockito.Mockito;
 
@@ -112,6 +122,108 @@ public class TestFileSystemSwapManager {
         }
     }
 
+    @Test
+    public void testCompressedRoundTripWithContentClaims() throws IOException {
+        final ResourceClaimManager claimManager = new StandardResourceClaimManager();
+        final ResourceClaim resourceClaim1 = claimManager.newResourceClaim("container", "section", "1", false, false);
+        final ResourceClaim resourceClaim2 = claimManager.newResourceClaim("container", "section", "2", true, false);
+
+        final List<FlowFileRecord> toSwap = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            final Map<String, String> attrs = new HashMap<>();
+            attrs.put("i", String.valueOf(i));
+            attrs.put("filename", "file-" + (i % 10));
+            attrs.put("path", "./");
+
+            final StandardContentClaim claim = new StandardContentClaim(i % 2 == 0 ? resourceClaim1 : resourceClaim2, i * 10L);
+            claim.setLength(10L);
+            toSwap.add(new TestFlowFile(attrs, 10L, claim));
+        }
+
+        final FlowFileQueue flowFileQueue = Mockito.mock(FlowFileQueue.class);
+        Mockito.when(flowFileQueue.getIdentifier()).thenReturn("87bb99fe-412c-49f6-a441-d1b0af4e20b4");
+
+        final String swapLocation = "target/testCompressedRoundTrip.swap";
+        final File swapFile = new File(swapLocation);
+        Files.deleteIfExists(swapFile.toPath());
+
+        try (final FileOutputStream fos = new FileOutputStream(swapFile)) {
+            FileSystemSwapManager.serializeFlowFiles(toSwap, flowFileQueue, swapLocation, fos, true);
+        }
+
+        final SwapContents swappedIn;
+        try (final FileInputStream fis = new FileInputStream(swapFile);
+                final DataInputStream dis = new DataInputStream(fis)) {
+            swappedIn = FileSystemSwapManager.deserializeFlowFiles(dis, swapLocation, flowFileQueue, claimManager);
+        }
+
+        assertEquals(toSwap.size(), swappedIn.getFlowFiles().size());
+        assertEquals(toSwap.size(), swappedIn.getSummary().getResourceClaims().size());
+        for (int i = 0; i < toSwap.size(); i++) {
+            final FlowFileRecord pre = toSwap.get(i);
+            final FlowFileRecord post = swappedIn.getFlowFiles().get(i);
+
+            assertEquals(pre.getId(), post.getId());
+            assertEquals(pre.getSize(), post.getSize());
+            assertEquals(pre.getAttributes(), post.getAttributes());
+            assertEquals(pre.getContentClaim(), post.getContentClaim());
+            assertEquals(pre.getContentClaim().getLength(), post.getContentClaim().getLength());
+            assertEquals(pre.getContentClaim().getResourceClaim(), post.getContentClaim().getResourceClaim());
+        }
+
+        // FlowFiles that reference the same Resource Claim, or that have the same attribute values, should share instances once swapped in
+        assertSame(swappedIn.getFlowFiles().get(0).getContentClaim().getResourceClaim(), swappedIn.getFlowFiles().get(2).getContentClaim().getResourceClaim());
+        assertSame(swappedIn.getFlowFiles().get(0).getAttribute("filename"), swappedIn.getFlowFiles().get(10).getAttribute("filename"));
+    }
+
+    @Test
+    public void testSwapSummaryReadFromHeader() throws IOException {
+        final ResourceClaimManager claimManager = new StandardResourceClaimManager();
+        final ResourceClaim resourceClaim1 = claimManager.newResourceClaim("container", "section", UUID.randomUUID().toString(), false, false);
+        final ResourceClaim resourceClaim2 = claimManager.newResourceClaim("container", "section", UUID.randomUUID().toString(), false, false);
+
+        final List<FlowFileRecord> toSwap = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) {
+            final StandardContentClaim claim = new StandardContentClaim(i < 75 ? resourceClaim1 : resourceClaim2, 0L);
+            toSwap.add(new TestFlowFile(Collections.singletonMap("i", String.valueOf(i)), 5L, claim));
+        }
+
+        final FlowFileQueue flowFileQueue = Mockito.mock(FlowFileQueue.class);
+        Mockito.when(flowFileQueue.getIdentifier()).thenReturn("87bb99fe-412c-49f6-a441-d1b0af4e20b4");
+
+        final NiFiProperties nifiProperties = Mockito.mock(NiFiProperties.class);
+        Mockito.when(nifiProperties.getFlowFileRepositoryPath()).thenReturn(Paths.get("target/testSwapSummaryReadFromHeader"));
+        Mockito.when(nifiProperties.isSwapCompressionEnabled()).thenReturn(true);
+
+        final SwapManagerInitializationContext initializationContext = Mockito.mock(SwapManagerInitializationContext.class);
+        Mockito.when(initializationContext.getResourceClaimManager()).thenReturn(claimManager);
+        Mockito.when(initializationContext.getEventReporter()).thenReturn(Mockito.mock(EventReporter.class));
+        Mockito.when(initializationContext.getFlowFileRepository()).thenReturn(Mockito.mock(FlowFileRepository.class));
+
+        final FileSystemSwapManager swapManager = new FileSystemSwapManager(nifiProperties);
+        swapManager.initialize(initializationContext);
+
+        final String swapLocation = swapManager.swapOut(toSwap, flowFileQueue);
+        try {
+            final SwapSummary summary = swapManager.getSwapSummary(swapLocation);
+            assertEquals(100, summary.getQueueSize().getObjectCount());
+            assertEquals(500L, summary.getQueueSize().getByteCount());
+            assertEquals(Long.valueOf(toSwap.get(99).getId()), summary.getMaxFlowFileId());
+
+            final List<ResourceClaim> resourceClaims = summary.getResourceClaims();
+            assertEquals(100, resourceClaims.size());
+            assertEquals(75, Collections.frequency(resourceClaims, resourceClaim1));
+            assertEquals(25, Collections.frequency(resourceClaims, resourceClaim2));
+            assertEquals(75, claimManager.getClaimantCount(resourceClaim1));
+            assertEquals(25, claimManager.getClaimantCount(resourceClaim2));
+
+            final SwapContents peeked = swapManager.peek(swapLocation, flowFileQueue);
+            assertEquals(100, peeked.getFlowFiles().size());
+        } finally {
+            Files.deleteIfExists(Paths.get(swapLocation));
+        }
+    }
+
     public class NopResourceClaimManager implements ResourceClaimManager {
 
         @Override
@@ -174,10 +286,16 @@ public class TestFileSystemSwapManager {
         private final long lastQueueDate = System.currentTimeMillis();
         private final Map<String, String> attributes;
         private final long size;
+        private final ContentClaim contentClaim;
 
         public TestFlowFile(final Map<String, String> attributes, final long size) {
+            this(attributes, size, null);
+        }
+
+        public TestFlowFile(final Map<String, String> attributes, final long size, final ContentClaim contentClaim) {
             this.attributes = attributes;
             this.size = size;
+            this.contentClaim = contentClaim;
         }
 
         @Override
@@ -232,7 +350,7 @@ public class TestFileSystemSwapManager {
 
         @Override
         public ContentClaim getContentClaim() {
-            return null;
+            return contentClaim;
         }
 
         @Override
@@ -33,6 +33,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.nifi.connectable.Connectable;
@@ -43,6 +48,7 @@ import org.apache.nifi.controller.queue.FlowFileQueue;
 import org.apache.nifi.controller.queue.ListFlowFileState;
 import org.apache.nifi.controller.queue.ListFlowFileStatus;
 import org.apache.nifi.controller.queue.QueueSize;
+import org.apache.nifi.controller.queue.SwapStatistics;
 import org.apache.nifi.controller.repository.FlowFileRecord;
 import org.apache.nifi.controller.repository.FlowFileRepository;
 import org.apache.nifi.controller.repository.FlowFileSwapManager;
@@ -65,6 +71,7 @@ import org.apache.nifi.provenance.ProvenanceEventType;
 import org.apache.nifi.provenance.StandardProvenanceEventRecord;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
@@ -342,6 +349,101 @@ public class TestStandardFlowFileQueue {
         }
     }
 
+    @Test
+    public void testFifoOrderWithoutPrioritizers() {
+        final List<FlowFileRecord> added = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final FlowFileRecord flowFile = new TestFlowFile(100 - i);
+            added.add(flowFile);
+            queue.put(flowFile);
+        }
+
+        final List<FlowFileRecord> polled = queue.poll(100, new HashSet<FlowFileRecord>());
+        assertEquals(added, polled);
+    }
+
+    @Test
+    public void testPenalizedFlowFilesPolledLastWithoutPrioritizers() {
+        final FlowFileRecord penalized = new PenalizedFlowFile(System.currentTimeMillis() + 60000L);
+        queue.put(penalized);
+
+        final FlowFileRecord first = new TestFlowFile();
+        final FlowFileRecord second = new TestFlowFile();
+        queue.put(first);
+        queue.put(second);
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        assertEquals(first, queue.poll(expired));
+        assertEquals(second, queue.poll(expired));
+
+        // only the penalized FlowFile remains, and it should not be handed out
+        assertNull(queue.poll(expired));
+        assertEquals(1, queue.getActiveQueueSize().getObjectCount());
+    }
+
+    @Test
+    public void testSwitchBetweenPrioritizedAndFifo() {
+        for (int i = 0; i < 100; i++) {
+            queue.put(new TestFlowFile(100 - i));
+        }
+
+        final List<FlowFilePrioritizer> prioritizers = new ArrayList<>();
+        prioritizers.add(new FlowFileSizePrioritizer());
+        queue.setPriorities(prioritizers);
+
+        // switching back to FIFO should retain the order established by the prioritizer
+        queue.setPriorities(Collections.<FlowFilePrioritizer> emptyList());
+        for (int i = 0; i < 10; i++) {
+            queue.put(new TestFlowFile(1000L));
+        }
+
+        assertEquals(110, queue.getActiveQueueSize().getObjectCount());
+        final List<FlowFileRecord> polled = queue.poll(110, new HashSet<FlowFileRecord>());
+        assertEquals(110, polled.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i + 1, polled.get(i).getSize());
+        }
+        for (int i = 100; i < 110; i++) {
+            assertEquals(1000L, polled.get(i).getSize());
+        }
+    }
+
+    @Test
+    @Ignore("For local testing of performance only")
+    public void testEnqueueDequeuePerformance() {
+        final int iterations = 5;
+        final int flowFileCount = 9000; // stay below the swap threshold so that only the active queue is measured
+        final List<FlowFileRecord> flowFiles = new ArrayList<>(flowFileCount);
+        for (int i = 0; i < flowFileCount; i++) {
+            flowFiles.add(new TestFlowFile(i % 1000));
+        }
+
+        final List<FlowFilePrioritizer> prioritizers = new ArrayList<>();
+        prioritizers.add(new FlowFileSizePrioritizer());
+
+        for (final boolean prioritized : new boolean[] {false, true, false, true}) {
+            queue.setPriorities(prioritized ? prioritizers : Collections.<FlowFilePrioritizer> emptyList());
+            final Set<FlowFileRecord> expired = new HashSet<>();
+
+            final long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                for (final FlowFileRecord flowFile : flowFiles) {
+                    queue.put(flowFile);
+                }
+
+                FlowFileRecord polled;
+                while ((polled = queue.poll(expired)) != null) {
+                    queue.acknowledge(polled);
+                }
+            }
+
+            final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            final long operations = 2L * iterations * flowFileCount;
+            System.out.println((prioritized ? "Prioritized" : "FIFO") + ": " + operations + " put/poll operations in " + millis + " millis ("
+                + (operations * 1000L / Math.max(1L, millis)) + " operations/sec)");
+        }
+    }
+
     @Test
     public void testSwapIn() {
         for (int i = 1; i <= 20000; i++) {
@@ -465,6 +567,103 @@ public class TestStandardFlowFileQueue {
     }
 
 
+    @Test(timeout = 30000)
+    public void testBackgroundSwapDoesNotBlockQueue() throws InterruptedException {
+        final ExecutorService swapOutExecutor = Executors.newSingleThreadExecutor();
+        final ExecutorService swapInExecutor = Executors.newSingleThreadExecutor();
+        try {
+            final Connection connection = Mockito.mock(Connection.class);
+            Mockito.when(connection.getSource()).thenReturn(Mockito.mock(Connectable.class));
+            Mockito.when(connection.getDestination()).thenReturn(Mockito.mock(Connectable.class));
+
+            final StandardFlowFileQueue backgroundQueue = new StandardFlowFileQueue("id", connection, Mockito.mock(FlowFileRepository.class), Mockito.mock(ProvenanceEventRepository.class),
+                Mockito.mock(ResourceClaimManager.class), Mockito.mock(ProcessScheduler.class), swapManager, null, 10000, swapOutExecutor, swapInExecutor);
+
+            // Block the swap manager so that the Swap File cannot be written until we allow it.
+            final CountDownLatch allowSwapOut = new CountDownLatch(1);
+            swapManager.swapOutLatch = allowSwapOut;
+
+            for (int i = 0; i < 20000; i++) {
+                backgroundQueue.put(new TestFlowFile());
+            }
+
+            // The queue must remain usable while the Swap File is being written.
+            backgroundQueue.put(new TestFlowFile());
+            assertEquals(20001, backgroundQueue.size().getObjectCount());
+            assertEquals(0, swapManager.swappedOut.size());
+
+            final Set<FlowFileRecord> expired = new HashSet<>();
+            final FlowFileRecord polled = backgroundQueue.poll(expired);
+            assertNotNull(polled);
+            backgroundQueue.acknowledge(polled);
+
+            allowSwapOut.countDown();
+
+            final Set<Long> received = new HashSet<>();
+            received.add(polled.getId());
+            while (received.size() < 20001) {
+                final List<FlowFileRecord> flowFiles = backgroundQueue.poll(1000, expired);
+                for (final FlowFileRecord flowFile : flowFiles) {
+                    assertTrue(received.add(flowFile.getId()));
+                }
+                backgroundQueue.acknowledge(flowFiles);
+
+                if (flowFiles.isEmpty()) {
+                    Thread.sleep(1L);
+                }
+            }
+
+            assertTrue(expired.isEmpty());
+            assertTrue(backgroundQueue.isEmpty());
+            assertEquals(0, backgroundQueue.size().getObjectCount());
+            assertNull(backgroundQueue.poll(expired));
+
+            final SwapStatistics statistics = backgroundQueue.getSwapStatistics();
+            assertEquals(1, statistics.getSwapOutCount());
+            assertEquals(1, statistics.getSwapInCount());
+            assertTrue(swapManager.swappedOut.isEmpty());
+        } finally {
+            swapManager.swapOutLatch = null;
+            swapOutExecutor.shutdownNow();
+            swapInExecutor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testDropWaitsForBackgroundSwapOut() throws InterruptedException {
+        final ExecutorService swapOutExecutor = Executors.newSingleThreadExecutor();
+        try {
+            final Connection connection = Mockito.mock(Connection.class);
+            Mockito.when(connection.getSource()).thenReturn(Mockito.mock(Connectable.class));
+            Mockito.when(connection.getDestination()).thenReturn(Mockito.mock(Connectable.class));
+
+            final ProvenanceEventRepository provRepo = Mockito.mock(ProvenanceEventRepository.class);
+            Mockito.when(provRepo.eventBuilder()).thenReturn(new StandardProvenanceEventRecord.Builder());
+
+            final StandardFlowFileQueue backgroundQueue = new StandardFlowFileQueue("id", connection, Mockito.mock(FlowFileRepository.class), provRepo,
+                Mockito.mock(ResourceClaimManager.class), Mockito.mock(ProcessScheduler.class), swapManager, null, 10000, swapOutExecutor, null);
+
+            final CountDownLatch allowSwapOut = new CountDownLatch(1);
+            swapManager.swapOutLatch = allowSwapOut;
+            for (int i = 0; i < 30000; i++) {
+                backgroundQueue.put(new TestFlowFile());
+            }
+
+            final DropFlowFileStatus status = backgroundQueue.dropFlowFiles("1", "Unit Test");
+            allowSwapOut.countDown();
+            while (status.getState() != DropFlowFileState.COMPLETE) {
+                Thread.sleep(10L);
+            }
+
+            assertEquals(30000, status.getDroppedSize().getObjectCount());
+            assertEquals(0, backgroundQueue.size().getObjectCount());
+            assertTrue(swapManager.swappedOut.isEmpty());
+        } finally {
+            swapManager.swapOutLatch = null;
+            swapOutExecutor.shutdownNow();
+        }
+    }
+
     @Test(timeout = 5000)
     public void testListFlowFilesOnlyActiveQueue() throws InterruptedException {
         for (int i = 0; i < 9999; i++) {
@@ -529,9 +728,10 @@ public class TestStandardFlowFileQueue {
 
 
     private class TestSwapManager implements FlowFileSwapManager {
-        private final Map<String, List<FlowFileRecord>> swappedOut = new HashMap<>();
-        int swapOutCalledCount = 0;
-        int swapInCalledCount = 0;
+        private final Map<String, List<FlowFileRecord>> swappedOut = new ConcurrentHashMap<>();
+        volatile int swapOutCalledCount = 0;
+        volatile int swapInCalledCount = 0;
+        volatile CountDownLatch swapOutLatch = null;
 
         private int incompleteSwapFileRecordsToInclude = -1;
 
@@ -546,6 +746,15 @@ public class TestStandardFlowFileQueue {
 
         @Override
         public String swapOut(List<FlowFileRecord> flowFiles, FlowFileQueue flowFileQueue) throws IOException {
+            final CountDownLatch latch = swapOutLatch;
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (final InterruptedException ie) {
+                    throw new IOException(ie);
+                }
+            }
+
             swapOutCalledCount++;
             final String location = UUID.randomUUID().toString();
             swappedOut.put(location, new ArrayList<>(flowFiles));
@@ -620,7 +829,7 @@ public class TestStandardFlowFileQueue {
     }
 
 
-    private static class TestFlowFile implements FlowFileRecord {
+    static class TestFlowFile implements FlowFileRecord {
         private static final AtomicLong idGenerator = new AtomicLong(0L);
 
         private final long id = idGenerator.getAndIncrement();
@@ -721,7 +930,25 @@ public class TestStandardFlowFileQueue {
         }
     }
 
-    private static class FlowFileSizePrioritizer implements FlowFilePrioritizer {
+    private static class PenalizedFlowFile extends TestFlowFile {
+        private final long penaltyExpiration;
+
+        public PenalizedFlowFile(final long penaltyExpiration) {
+            this.penaltyExpiration = penaltyExpiration;
+        }
+
+        @Override
+        public boolean isPenalized() {
+            return penaltyExpiration > System.currentTimeMillis();
+        }
+
+        @Override
+        public long getPenaltyExpirationMillis() {
+            return penaltyExpiration;
+        }
+    }
+
+    static class FlowFileSizePrioritizer implements FlowFilePrioritizer {
         @Override
         public int compare(final FlowFile o1, final FlowFile o2) {
             return Long.compare(o1.getSize(), o2.getSize());
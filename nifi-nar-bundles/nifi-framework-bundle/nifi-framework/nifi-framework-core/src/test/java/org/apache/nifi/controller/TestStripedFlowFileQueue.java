@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.connectable.Connection;
+import org.apache.nifi.controller.TestStandardFlowFileQueue.FlowFileSizePrioritizer;
+import org.apache.nifi.controller.TestStandardFlowFileQueue.TestFlowFile;
+import org.apache.nifi.controller.queue.DropFlowFileState;
+import org.apache.nifi.controller.queue.DropFlowFileStatus;
+import org.apache.nifi.controller.queue.ListFlowFileState;
+import org.apache.nifi.controller.queue.ListFlowFileStatus;
+import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.controller.repository.FlowFileRepository;
+import org.apache.nifi.controller.repository.FlowFileSwapManager;
+import org.apache.nifi.controller.repository.claim.ResourceClaimManager;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.FlowFilePrioritizer;
+import org.apache.nifi.processor.FlowFileFilter;
+import org.apache.nifi.provenance.ProvenanceEventRepository;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestStripedFlowFileQueue {
+    private StripedFlowFileQueue queue = null;
+
+    @Before
+    public void setup() {
+        final Connection connection = Mockito.mock(Connection.class);
+        Mockito.when(connection.getSource()).thenReturn(Mockito.mock(Connectable.class));
+        Mockito.when(connection.getDestination()).thenReturn(Mockito.mock(Connectable.class));
+
+        final ProcessScheduler scheduler = Mockito.mock(ProcessScheduler.class);
+        final FlowFileSwapManager swapManager = Mockito.mock(FlowFileSwapManager.class);
+        final FlowFileRepository flowFileRepo = Mockito.mock(FlowFileRepository.class);
+        final ProvenanceEventRepository provRepo = Mockito.mock(ProvenanceEventRepository.class);
+        final ResourceClaimManager claimManager = Mockito.mock(ResourceClaimManager.class);
+        Mockito.when(provRepo.eventBuilder()).thenReturn(new StandardProvenanceEventRecord.Builder());
+
+        queue = new StripedFlowFileQueue("id", connection, flowFileRepo, provRepo, claimManager, scheduler, swapManager, null, 100000, 4);
+    }
+
+    @Test
+    public void testBackPressureSpansStripes() {
+        queue.setBackPressureObjectThreshold(10);
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            threads.add(new Thread(() -> queue.put(new TestFlowFile())));
+        }
+        runAll(threads);
+
+        assertEquals(10, queue.size().getObjectCount());
+        assertTrue(queue.isFull());
+
+        final Set<FlowFileRecord> expiredRecords = new HashSet<>();
+        final List<FlowFileRecord> polled = queue.poll(10, expiredRecords);
+        assertEquals(10, polled.size());
+        assertTrue(expiredRecords.isEmpty());
+        assertTrue(queue.isActiveQueueEmpty());
+
+        // queue is still full because FlowFiles have not yet been acknowledged.
+        assertTrue(queue.isFull());
+        assertFalse(queue.isEmpty());
+        assertEquals(10, queue.getUnacknowledgedQueueSize().getObjectCount());
+
+        queue.acknowledge(polled);
+        assertFalse(queue.isFull());
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.getUnacknowledgedQueueSize().getObjectCount());
+    }
+
+    @Test
+    public void testPollStealsFromOtherStripes() throws InterruptedException {
+        final Thread producer = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                queue.put(new TestFlowFile());
+            }
+        });
+        producer.start();
+        producer.join();
+
+        int polledCount = 0;
+        final Set<FlowFileRecord> expiredRecords = new HashSet<>();
+        FlowFileRecord polled;
+        while ((polled = queue.poll(expiredRecords)) != null) {
+            polledCount++;
+            queue.acknowledge(polled);
+        }
+
+        assertEquals(100, polledCount);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentProducersAndConsumers() throws InterruptedException {
+        final int producerCount = 8;
+        final int flowFilesPerProducer = 5000;
+        final int total = producerCount * flowFilesPerProducer;
+
+        final Set<Long> received = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        final AtomicInteger receivedCount = new AtomicInteger(0);
+        final CountDownLatch producersFinished = new CountDownLatch(producerCount);
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < producerCount; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < flowFilesPerProducer; j++) {
+                    queue.put(new TestFlowFile());
+                }
+                producersFinished.countDown();
+            }));
+        }
+
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread(() -> {
+                final Set<FlowFileRecord> expiredRecords = new HashSet<>();
+                while (receivedCount.get() < total) {
+                    final List<FlowFileRecord> polled = queue.poll(100, expiredRecords);
+                    for (final FlowFileRecord flowFile : polled) {
+                        received.add(flowFile.getId());
+                    }
+                    receivedCount.addAndGet(polled.size());
+                    queue.acknowledge(polled);
+                }
+            }));
+        }
+
+        runAll(threads);
+        assertTrue(producersFinished.await(0, TimeUnit.SECONDS));
+
+        assertEquals(total, receivedCount.get());
+        assertEquals(total, received.size());
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size().getObjectCount());
+        assertEquals(0L, queue.size().getByteCount());
+    }
+
+    @Test
+    public void testPrioritizersHonoredAcrossThreads() {
+        final List<FlowFilePrioritizer> prioritizers = new ArrayList<>();
+        prioritizers.add(new FlowFileSizePrioritizer());
+        queue.setPriorities(prioritizers);
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final long size = 20 - i;
+            threads.add(new Thread(() -> queue.put(new TestFlowFile(size))));
+        }
+        runAll(threads);
+
+        final Set<FlowFileRecord> expiredRecords = new HashSet<>();
+        for (int i = 1; i <= 20; i++) {
+            final FlowFileRecord polled = queue.poll(expiredRecords);
+            assertNotNull(polled);
+            assertEquals(i, polled.getSize());
+        }
+
+        assertNull(queue.poll(expiredRecords));
+    }
+
+    @Test
+    public void testPollWithFilterStopsWhenRequested() {
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            threads.add(new Thread(() -> queue.put(new TestFlowFile())));
+        }
+        runAll(threads);
+
+        final FlowFileFilter filter = new FlowFileFilter() {
+            private int count = 0;
+
+            @Override
+            public FlowFileFilterResult filter(final FlowFile flowFile) {
+                return ++count < 5 ? FlowFileFilterResult.ACCEPT_AND_CONTINUE : FlowFileFilterResult.ACCEPT_AND_TERMINATE;
+            }
+        };
+
+        queue.lock();
+        final List<FlowFileRecord> polled;
+        try {
+            polled = queue.poll(filter, new HashSet<>());
+        } finally {
+            queue.unlock();
+        }
+
+        assertEquals(5, polled.size());
+        assertEquals(20, queue.size().getObjectCount());
+        assertEquals(15, queue.getActiveQueueSize().getObjectCount());
+        assertEquals(5, queue.getUnacknowledgedQueueSize().getObjectCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testDropAndListSpanStripes() throws InterruptedException {
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            threads.add(new Thread(() -> queue.put(new TestFlowFile())));
+        }
+        runAll(threads);
+
+        final ListFlowFileStatus listStatus = queue.listFlowFiles(UUID.randomUUID().toString(), 100);
+        while (listStatus.getState() != ListFlowFileState.COMPLETE) {
+            Thread.sleep(10L);
+        }
+        assertEquals(20, listStatus.getFlowFileSummaries().size());
+
+        final DropFlowFileStatus dropStatus = queue.dropFlowFiles(UUID.randomUUID().toString(), "Unit Test");
+        while (dropStatus.getState() != DropFlowFileState.COMPLETE) {
+            Thread.sleep(10L);
+        }
+
+        assertEquals(20, dropStatus.getDroppedSize().getObjectCount());
+        assertTrue(queue.isEmpty());
+    }
+
+    private void runAll(final List<Thread> threads) {
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+
+        for (final Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.nifi.controller.repository.AsyncProvenanceEventRepository.OverloadPolicy;
+import org.apache.nifi.provenance.MockProvenanceRepository;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.apache.nifi.util.file.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAsyncProvenanceEventRepository {
+
+    private final File overflowDirectory = new File("target/provenance-overflow");
+
+    @Before
+    public void clearOverflowDirectory() throws IOException {
+        if (overflowDirectory.exists()) {
+            FileUtils.deleteFile(overflowDirectory, true);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseRegistersQueuedEvents() throws IOException {
+        final CountingProvenanceRepository delegate = new CountingProvenanceRepository(new CountDownLatch(0));
+        final AsyncProvenanceEventRepository repo = new AsyncProvenanceEventRepository(delegate, 1000, OverloadPolicy.BLOCK, null);
+        for (int i = 0; i < 500; i++) {
+            repo.registerEvent(createEvent(i));
+        }
+
+        repo.close();
+        assertEquals(500, delegate.getRegisteredCount());
+        assertEquals(0, repo.getQueueDepth());
+        assertEquals(0L, repo.getDroppedEventCount());
+        assertEquals(0L, repo.getSpilledEventCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testSpilledEventsRegisteredWhenRepositoryCatchesUp() throws IOException, InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final CountingProvenanceRepository delegate = new CountingProvenanceRepository(latch);
+        final AsyncProvenanceEventRepository repo = new AsyncProvenanceEventRepository(delegate, 10, OverloadPolicy.SPILL, overflowDirectory);
+        try {
+            // the repository does not accept any events until the latch is released, so registering must not wait for it
+            for (int i = 0; i < 100; i++) {
+                repo.registerEvent(createEvent(i));
+            }
+
+            assertTrue(repo.getSpilledEventCount() > 0L);
+            assertEquals(0L, repo.getBlockedEventCount());
+
+            latch.countDown();
+            while (delegate.getRegisteredCount() < 100) {
+                Thread.sleep(10L);
+            }
+        } finally {
+            repo.close();
+        }
+
+        assertEquals(100, delegate.getRegisteredCount());
+        final List<ProvenanceEventRecord> events = delegate.getEvents(0L, 100);
+        final List<String> uuids = new ArrayList<>();
+        for (final ProvenanceEventRecord event : events) {
+            uuids.add(event.getFlowFileUuid());
+            assertEquals("Component-" + event.getFlowFileUuid(), event.getComponentId());
+            assertEquals(event.getFlowFileUuid(), event.getAttributes().get("index"));
+            assertEquals(1024L, event.getFileSize());
+        }
+
+        Collections.sort(uuids, (a, b) -> Integer.compare(Integer.parseInt(a), Integer.parseInt(b)));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(String.valueOf(i), uuids.get(i));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testSampleRegistersOneOfEveryTenOverflowingEvents() throws IOException, InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final CountingProvenanceRepository delegate = new CountingProvenanceRepository(latch);
+        final AsyncProvenanceEventRepository repo = new AsyncProvenanceEventRepository(delegate, 10, OverloadPolicy.SAMPLE, null);
+
+        // the repository does not accept any events until the latch is released, so the first sampled event waits for room in the queue
+        final int eventCount = 1000;
+        final Thread registrant = new Thread(() -> {
+            for (int i = 0; i < eventCount; i++) {
+                repo.registerEvent(createEvent(i));
+            }
+        });
+        registrant.start();
+
+        while (repo.getBlockedEventCount() == 0L) {
+            Thread.sleep(10L);
+        }
+        assertTrue(repo.getDroppedEventCount() >= AsyncProvenanceEventRepository.SAMPLE_INTERVAL - 1);
+
+        latch.countDown();
+        registrant.join();
+        repo.close();
+
+        final long dropped = repo.getDroppedEventCount();
+        final long sampled = repo.getBlockedEventCount();
+        final long overflow = dropped + sampled;
+        assertEquals(overflow / AsyncProvenanceEventRepository.SAMPLE_INTERVAL, sampled);
+        assertEquals(eventCount - dropped, delegate.getRegisteredCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseRegistersEventsOfConcurrentRegistrations() throws IOException, InterruptedException {
+        final CountingProvenanceRepository delegate = new CountingProvenanceRepository(new CountDownLatch(0));
+        final AsyncProvenanceEventRepository repo = new AsyncProvenanceEventRepository(delegate, 4, OverloadPolicy.BLOCK, null);
+
+        // threads that are adding events to the queue, or waiting for room in it, while the repository is closed must not lose them
+        final int threadCount = 8;
+        final int eventsPerThread = 2000;
+        final CountDownLatch started = new CountDownLatch(threadCount);
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            final Thread thread = new Thread(() -> {
+                started.countDown();
+                for (int i = 0; i < eventsPerThread; i++) {
+                    repo.registerEvent(createEvent(i));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        started.await();
+        repo.close();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(threadCount * eventsPerThread, delegate.getRegisteredCount());
+        assertEquals(0, repo.getQueueDepth());
+    }
+
+    @Test(timeout = 10000)
+    public void testSpilledEventsReadableBeforeClose() throws IOException {
+        final ProvenanceOverflowJournal journal = new ProvenanceOverflowJournal(overflowDirectory);
+        try {
+            final List<ProvenanceEventRecord> events = new ArrayList<>();
+            for (int i = 0; i < 25; i++) {
+                events.add(createEvent(i));
+            }
+            journal.write(events);
+
+            // the events must be on disk once write returns, as NiFi may be killed before the journal is closed
+            final File[] journalFiles = overflowDirectory.listFiles();
+            assertEquals(1, journalFiles.length);
+            final List<ProvenanceEventRecord> read = new ArrayList<>();
+            assertEquals(25L, ProvenanceOverflowJournal.read(journalFiles[0], 10, read::addAll));
+            assertEquals(25, read.size());
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testOverflowEventsRegisteredAfterRestart() throws IOException {
+        final ProvenanceOverflowJournal journal = new ProvenanceOverflowJournal(overflowDirectory);
+        for (int i = 0; i < 25; i++) {
+            journal.write(createEvent(i));
+        }
+        journal.close();
+
+        final CountingProvenanceRepository delegate = new CountingProvenanceRepository(new CountDownLatch(0));
+        AsyncProvenanceEventRepository.registerOverflowEvents(delegate, overflowDirectory);
+        assertEquals(25, delegate.getRegisteredCount());
+
+        final File[] remaining = overflowDirectory.listFiles();
+        assertEquals(0, remaining == null ? 0 : remaining.length);
+    }
+
+    private ProvenanceEventRecord createEvent(final int index) {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("index", String.valueOf(index));
+
+        return new StandardProvenanceEventRecord.Builder()
+            .setEventType(ProvenanceEventType.ATTRIBUTES_MODIFIED)
+            .setEventTime(System.currentTimeMillis())
+            .setComponentId("Component-" + index)
+            .setComponentType("Unit Test")
+            .setFlowFileUUID(String.valueOf(index))
+            .setAttributes(Collections.<String, String> emptyMap(), attributes)
+            .setCurrentContentClaim("container", "section", "identifier", 0L, 1024L)
+            .build();
+    }
+
+
+    private static class CountingProvenanceRepository extends MockProvenanceRepository {
+        private final CountDownLatch latch;
+        private final AtomicInteger registeredCount = new AtomicInteger(0);
+
+        public CountingProvenanceRepository(final CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public synchronized void registerEvent(final ProvenanceEventRecord event) {
+            try {
+                latch.await();
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+
+            super.registerEvent(event);
+            registeredCount.incrementAndGet();
+        }
+
+        @Override
+        public synchronized List<ProvenanceEventRecord> getEvents(final long firstRecordId, final int maxRecords) throws IOException {
+            return new ArrayList<>(super.getEvents(firstRecordId, maxRecords));
+        }
+
+        public int getRegisteredCount() {
+            return registeredCount.get();
+        }
+    }
+}
@@ -36,10 +36,13 @@ import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.nifi.controller.repository.claim.ContentClaim;
+import org.apache.nifi.controller.repository.claim.ResourceClaim;
 import org.apache.nifi.controller.repository.claim.StandardContentClaim;
 import org.apache.nifi.controller.repository.claim.StandardResourceClaim;
 import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
@@ -251,7 +254,7 @@ public class TestFileSystemRepository {
 
         // Create the file.
         try (final OutputStream out = repository.write(claim)) {
-            out.write(new byte[FileSystemRepository.MAX_APPENDABLE_CLAIM_LENGTH]);
+            out.write(new byte[(int) repository.getClaimPackingStatistics().getAppendableClaimLength()]);
         }
 
         int count = repository.decrementClaimantCount(claim);
@@ -412,6 +415,106 @@ public class TestFileSystemRepository {
         assertTrue(Arrays.equals(data, Files.readAllBytes(path)));
     }
 
+    @Test
+    public void testWriteManyContentClaimsToSameResourceClaim() throws IOException {
+        final List<ContentClaim> claims = new ArrayList<>();
+        final List<byte[]> contents = new ArrayList<>();
+
+        // write content of varying sizes, some of which span several write buffers, using both single-byte and array writes
+        final int[] sizes = new int[] {0, 1, 10, FileSystemRepository.WRITE_BUFFER_SIZE - 1, FileSystemRepository.WRITE_BUFFER_SIZE + 1, 100,
+            FileSystemRepository.WRITE_BUFFER_SIZE * FileSystemRepository.GATHERING_WRITE_BUFFER_COUNT + 7, 5};
+        for (int i = 0; i < sizes.length; i++) {
+            final byte[] data = new byte[sizes[i]];
+            for (int j = 0; j < data.length; j++) {
+                data[j] = (byte) (i + j);
+            }
+
+            final ContentClaim claim = repository.create(false);
+            try (final OutputStream out = repository.write(claim)) {
+                if (i % 2 == 0) {
+                    for (final byte b : data) {
+                        out.write(b);
+                    }
+                } else {
+                    out.write(data, 0, data.length / 2);
+                    out.flush();
+                    out.write(data, data.length / 2, data.length - data.length / 2);
+                }
+            }
+
+            assertEquals(data.length, claim.getLength());
+            claims.add(claim);
+            contents.add(data);
+        }
+
+        // the total length is below the max appendable claim length, so all content is appended to the same Resource Claim
+        for (final ContentClaim claim : claims) {
+            assertEquals(claims.get(0).getResourceClaim(), claim.getResourceClaim());
+        }
+
+        for (int i = 0; i < claims.size(); i++) {
+            try (final InputStream in = repository.read(claims.get(i))) {
+                assertTrue(Arrays.equals(contents.get(i), readFully(in, contents.get(i).length)));
+            }
+        }
+    }
+
+    @Test
+    public void testAppendableClaimLengthAdjustedToWriteRate() throws IOException {
+        final ClaimPackingStatistics initialStats = repository.getClaimPackingStatistics();
+        final long minLength = initialStats.getAppendableClaimLength();
+        final byte[] data = new byte[100 * 1024];
+
+        // write 2 MB of small FlowFiles. With the initial appendable claim length, this requires more than 1 Resource Claim.
+        final Set<ResourceClaim> resourceClaims = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            final ContentClaim claim = repository.create(false);
+            try (final OutputStream out = repository.write(claim)) {
+                out.write(data);
+            }
+            resourceClaims.add(claim.getResourceClaim());
+        }
+        assertTrue(resourceClaims.size() > 1);
+
+        final ClaimPackingStatistics writeStats = repository.getClaimPackingStatistics();
+        assertEquals(resourceClaims.size(), writeStats.getResourceClaimsCreated() - initialStats.getResourceClaimsCreated());
+        assertTrue(writeStats.getResourceClaimsRecycled() > initialStats.getResourceClaimsRecycled());
+
+        // 2 MB in 10 milliseconds is a rate that calls for larger claims
+        repository.adjustClaimPacking(TimeUnit.MILLISECONDS.toNanos(10L));
+        final ClaimPackingStatistics adjustedStats = repository.getClaimPackingStatistics();
+        assertTrue(adjustedStats.getAppendableClaimLength() > minLength);
+        assertTrue(adjustedStats.getResourceClaimsCreatedPerSecond() > 0D);
+
+        resourceClaims.clear();
+        for (int i = 0; i < 20; i++) {
+            final ContentClaim claim = repository.create(false);
+            try (final OutputStream out = repository.write(claim)) {
+                out.write(data);
+            }
+            resourceClaims.add(claim.getResourceClaim());
+        }
+        assertTrue(resourceClaims.size() <= 2);
+
+        // nothing written for a long time means that the length returns to the minimum
+        repository.adjustClaimPacking(TimeUnit.HOURS.toNanos(1L));
+        assertEquals(minLength, repository.getClaimPackingStatistics().getAppendableClaimLength());
+    }
+
+    @Test
+    public void testCloseTwiceDoesNotReuseClaimTwice() throws IOException {
+        final ContentClaim claim = repository.create(false);
+        final OutputStream out = repository.write(claim);
+        out.write("hello".getBytes());
+        out.close();
+        out.close();
+
+        final ContentClaim claim2 = repository.create(false);
+        final ContentClaim claim3 = repository.create(false);
+        assertEquals(claim.getResourceClaim(), claim2.getResourceClaim());
+        assertNotSame(claim2.getResourceClaim(), claim3.getResourceClaim());
+    }
+
     @Test
     public void testRemoveWhileWritingToClaim() throws IOException {
         final ContentClaim claim = repository.create(false);
@@ -419,7 +522,7 @@ public class TestFileSystemRepository {
 
         // write at least 1 MB to the output stream so that when we close the output stream
         // the repo won't keep the stream open.
-        final byte[] buff = new byte[FileSystemRepository.MAX_APPENDABLE_CLAIM_LENGTH];
+        final byte[] buff = new byte[(int) repository.getClaimPackingStatistics().getAppendableClaimLength()];
         out.write(buff);
         out.write(buff);
 
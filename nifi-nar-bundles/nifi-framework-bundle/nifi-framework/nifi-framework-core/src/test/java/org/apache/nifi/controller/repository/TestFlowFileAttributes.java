@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.junit.Test;
+
+public class TestFlowFileAttributes {
+
+    @Test
+    public void testCopyOfMatchesSource() {
+        for (final int size : new int[] {0, 1, FlowFileAttributes.LINEAR_SCAN_THRESHOLD, FlowFileAttributes.LINEAR_SCAN_THRESHOLD + 1, 100}) {
+            final Map<String, String> source = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                source.put("key" + i, "value" + i);
+            }
+
+            final FlowFileAttributes attributes = FlowFileAttributes.copyOf(source);
+            assertEquals(source, attributes);
+            assertEquals(attributes, source);
+            assertEquals(source.hashCode(), attributes.hashCode());
+            assertEquals(size, attributes.size());
+
+            for (int i = 0; i < size; i++) {
+                assertEquals("value" + i, attributes.get("key" + i));
+                assertTrue(attributes.containsKey("key" + i));
+            }
+            assertNull(attributes.get("missing"));
+            assertFalse(attributes.containsKey("missing"));
+            assertNull(attributes.get(null));
+        }
+    }
+
+    @Test
+    public void testUpdateSharesUnchangedMap() {
+        final Map<String, String> source = new HashMap<>();
+        source.put("a", "1");
+        source.put("b", "2");
+        final FlowFileAttributes attributes = FlowFileAttributes.copyOf(source);
+
+        assertSame(attributes, FlowFileAttributes.copyOf(attributes));
+        assertSame(attributes, FlowFileAttributes.update(attributes, Collections.singletonMap("a", "1")));
+        assertSame(attributes, FlowFileAttributes.update(attributes, Collections.<String, String> singletonMap("c", null)));
+
+        final Map<String, String> updates = new HashMap<>();
+        updates.put("a", "one");
+        updates.put("b", null);
+        updates.put("c", "3");
+        final FlowFileAttributes updated = FlowFileAttributes.update(attributes, updates);
+
+        final Map<String, String> expected = new HashMap<>();
+        expected.put("a", "one");
+        expected.put("c", "3");
+        assertEquals(expected, updated);
+
+        // the original must be unchanged
+        assertEquals(source, attributes);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        FlowFileAttributes.copyOf(Collections.singletonMap("a", "1")).put("b", "2");
+    }
+
+    @Test
+    public void testKeysInterned() {
+        final String key = new String("interned.key");
+        final FlowFileAttributes first = FlowFileAttributes.copyOf(Collections.singletonMap(key, "1"));
+        final FlowFileAttributes second = FlowFileAttributes.copyOf(Collections.singletonMap(new String("interned.key"), "2"));
+
+        assertSame(first.keySet().iterator().next(), second.keySet().iterator().next());
+    }
+
+    @Test
+    public void testBuilderSharesAttributesWhenUnchanged() {
+        final FlowFileRecord original = new StandardFlowFileRecord.Builder()
+            .addAttribute(CoreAttributes.UUID.key(), "1234")
+            .addAttribute(CoreAttributes.FILENAME.key(), "file.txt")
+            .build();
+
+        final FlowFileRecord requeued = new StandardFlowFileRecord.Builder().fromFlowFile(original).lastQueued(System.currentTimeMillis(), 1L).build();
+        assertSame(original.getAttributes(), requeued.getAttributes());
+
+        final FlowFileRecord updated = new StandardFlowFileRecord.Builder().fromFlowFile(original).addAttribute("greeting", "hello").build();
+        assertEquals("hello", updated.getAttribute("greeting"));
+        assertEquals("file.txt", updated.getAttribute(CoreAttributes.FILENAME.key()));
+        assertNull(original.getAttribute("greeting"));
+
+        final FlowFileRecord removed = new StandardFlowFileRecord.Builder().fromFlowFile(updated)
+            .removeAttributes(Pattern.compile(".*"))
+            .build();
+        assertEquals(Collections.singletonMap(CoreAttributes.UUID.key(), "1234"), removed.getAttributes());
+
+        final FlowFileRecord addedThenRemoved = new StandardFlowFileRecord.Builder().fromFlowFile(original)
+            .addAttribute("greeting", "hello")
+            .removeAttributes("greeting")
+            .build();
+        assertSame(original.getAttributes(), addedThenRemoved.getAttributes());
+    }
+}
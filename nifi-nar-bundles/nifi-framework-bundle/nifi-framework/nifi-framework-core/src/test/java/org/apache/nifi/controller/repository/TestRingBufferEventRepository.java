@@ -16,6 +16,8 @@
  */
 package org.apache.nifi.controller.repository;
 
+import static org.junit.Assert.assertEquals;
+
 import org.apache.nifi.controller.repository.RingBufferEventRepository;
 import org.apache.nifi.controller.repository.StandardRepositoryStatusReport;
 import org.apache.nifi.controller.repository.FlowFileEvent;
@@ -47,6 +49,24 @@ public class TestRingBufferEventRepository {
         repo.close();
     }
 
+    @Test
+    public void testResourceUsageAggregated() throws IOException {
+        final RingBufferEventRepository repo = new RingBufferEventRepository(5);
+        for (int i = 0; i < 10; i++) {
+            repo.updateRepository(generateEvent());
+        }
+
+        final FlowFileEvent entry = repo.reportTransferEvents(System.currentTimeMillis() - 60000).getReportEntry("ABC");
+        assertEquals(10, entry.getInvocations());
+        assertEquals(2000000L, entry.getCpuNanoseconds());
+        assertEquals(40960L, entry.getBytesAllocated());
+        assertEquals(10000000L, entry.getBlockedNanoseconds());
+        assertEquals(20000000L, entry.getWaitedNanoseconds());
+        assertEquals(30000000L, entry.getQueueWaitNanoseconds());
+        assertEquals(10, entry.getSteals());
+        repo.close();
+    }
+
     private FlowFileEvent generateEvent() {
         return new FlowFileEvent() {
             @Override
@@ -133,6 +153,36 @@ public class TestRingBufferEventRepository {
             public long getBytesSent() {
                 return 0;
             }
+
+            @Override
+            public long getCpuNanoseconds() {
+                return 200000L;
+            }
+
+            @Override
+            public long getBytesAllocated() {
+                return 4096L;
+            }
+
+            @Override
+            public long getBlockedNanoseconds() {
+                return 1000000L;
+            }
+
+            @Override
+            public long getWaitedNanoseconds() {
+                return 2000000L;
+            }
+
+            @Override
+            public long getQueueWaitNanoseconds() {
+                return 3000000L;
+            }
+
+            @Override
+            public int getSteals() {
+                return 1;
+            }
         };
     }
 }
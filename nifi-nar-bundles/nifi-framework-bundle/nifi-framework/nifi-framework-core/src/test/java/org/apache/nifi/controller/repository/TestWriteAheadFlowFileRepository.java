@@ -18,6 +18,7 @@ package org.apache.nifi.controller.repository;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
@@ -230,6 +231,90 @@ public class TestWriteAheadFlowFileRepository {
         repo2.close();
     }
 
+    @Test
+    public void testRestartWithAttributeDeltas() throws IOException {
+        final TestQueueProvider queueProvider = new TestQueueProvider();
+        final List<FlowFileRecord> flowFileCollection = new ArrayList<>();
+
+        final Connection connection = Mockito.mock(Connection.class);
+        when(connection.getIdentifier()).thenReturn("1234");
+
+        final FlowFileQueue queue = Mockito.mock(FlowFileQueue.class);
+        when(queue.getIdentifier()).thenReturn("1234");
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                flowFileCollection.add((FlowFileRecord) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(queue).put(any(FlowFileRecord.class));
+
+        when(connection.getFlowFileQueue()).thenReturn(queue);
+        queueProvider.addConnection(connection);
+
+        final ResourceClaimManager claimManager = new StandardResourceClaimManager();
+        final ResourceClaim resourceClaim = claimManager.newResourceClaim("container", "section", UUID.randomUUID().toString(), false, false);
+
+        final WriteAheadFlowFileRepository repo = new WriteAheadFlowFileRepository(NiFiProperties.createBasicNiFiProperties(null, null));
+        repo.initialize(claimManager);
+        repo.loadFlowFiles(queueProvider, 0L);
+
+        for (long id = 1; id <= 10; id++) {
+            final FlowFileRecord created = new StandardFlowFileRecord.Builder()
+                .id(id)
+                .addAttribute("uuid", UUID.randomUUID().toString())
+                .addAttribute("filename", "file-" + id)
+                .addAttribute("path", "./")
+                .addAttribute("mime.type", "text/plain")
+                .addAttribute("to.remove", "remove me")
+                .contentClaim(new StandardContentClaim(resourceClaim, id * 10L))
+                .size(10L)
+                .build();
+
+            final StandardRepositoryRecord createRecord = new StandardRepositoryRecord(null);
+            createRecord.setWorking(created);
+            createRecord.setDestination(queue);
+            repo.updateRepository(Collections.<RepositoryRecord> singletonList(createRecord));
+
+            // update one attribute, add one, and remove one, using a new Repository Record as a Process Session would
+            final Map<String, String> updatedAttributes = new HashMap<>();
+            updatedAttributes.put("filename", "renamed-" + id);
+            updatedAttributes.put("added", "value-" + id);
+            updatedAttributes.put("to.remove", null);
+
+            final FlowFileRecord updated = new StandardFlowFileRecord.Builder()
+                .fromFlowFile(created)
+                .addAttribute("filename", "renamed-" + id)
+                .addAttribute("added", "value-" + id)
+                .removeAttributes("to.remove")
+                .build();
+
+            final StandardRepositoryRecord updateRecord = new StandardRepositoryRecord(queue, created);
+            updateRecord.setWorking(updated, updatedAttributes);
+            updateRecord.setDestination(queue);
+            repo.updateRepository(Collections.<RepositoryRecord> singletonList(updateRecord));
+        }
+
+        repo.close();
+
+        final WriteAheadFlowFileRepository repo2 = new WriteAheadFlowFileRepository(NiFiProperties.createBasicNiFiProperties(null, null));
+        repo2.initialize(new StandardResourceClaimManager());
+        repo2.loadFlowFiles(queueProvider, 0L);
+        repo2.close();
+
+        assertEquals(10, flowFileCollection.size());
+        for (final FlowFileRecord flowFile : flowFileCollection) {
+            final long id = flowFile.getId();
+            assertEquals("renamed-" + id, flowFile.getAttribute("filename"));
+            assertEquals("value-" + id, flowFile.getAttribute("added"));
+            assertEquals("text/plain", flowFile.getAttribute("mime.type"));
+            assertNull(flowFile.getAttribute("to.remove"));
+            assertEquals(5, flowFile.getAttributes().size());
+            assertEquals(resourceClaim.getId(), flowFile.getContentClaim().getResourceClaim().getId());
+            assertEquals(id * 10L, flowFile.getContentClaim().getOffset());
+        }
+    }
+
     private static class TestQueueProvider implements QueueProvider {
 
         private List<Connection> connectionList = new ArrayList<>();
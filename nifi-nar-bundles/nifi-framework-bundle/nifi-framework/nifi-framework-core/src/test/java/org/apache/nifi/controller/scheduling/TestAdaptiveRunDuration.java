@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestAdaptiveRunDuration {
+
+    private static final long MIN_MICROS = 0L;
+    private static final long MAX_MICROS = 100_000L;
+
+    private AdaptiveRunDuration create(final long initialMicros) {
+        return new AdaptiveRunDuration(MIN_MICROS, MAX_MICROS, initialMicros, TimeUnit.MICROSECONDS);
+    }
+
+    @Test
+    public void testInitialDurationIsBounded() {
+        assertEquals(25L, create(25L).getRunDuration(TimeUnit.MICROSECONDS));
+        assertEquals(MAX_MICROS, create(TimeUnit.SECONDS.toMicros(2L)).getRunDuration(TimeUnit.MICROSECONDS));
+        assertEquals(10L, new AdaptiveRunDuration(10L, 20L, 0L, TimeUnit.MICROSECONDS).getRunDuration(TimeUnit.MICROSECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxLessThanMin() {
+        new AdaptiveRunDuration(20L, 10L, 0L, TimeUnit.MICROSECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeMin() {
+        new AdaptiveRunDuration(-1L, 10L, 0L, TimeUnit.MICROSECONDS);
+    }
+
+    @Test
+    public void testCheapInvocationsAmortizeCommit() {
+        final AdaptiveRunDuration runDuration = create(0L);
+
+        // each invocation takes 10 micros and each commit 1 millisecond, nothing left queued
+        runDuration.update(1, micros(10L), micros(1000L), 0L);
+
+        // long enough that the commit is no more than 10% of the batch
+        assertEquals(9000L, runDuration.getRunDuration(TimeUnit.MICROSECONDS));
+    }
+
+    @Test
+    public void testExpensiveInvocationsAreNotBatched() {
+        final AdaptiveRunDuration runDuration = create(50_000L);
+
+        // each invocation takes 20 millis, which outweighs a 1 millisecond commit by far
+        runDuration.update(3, micros(60_000L), micros(1000L), 1000L);
+        assertEquals(MIN_MICROS, runDuration.getRunDuration(TimeUnit.MICROSECONDS));
+    }
+
+    @Test
+    public void testBacklogExtendsDurationUpToMax() {
+        final AdaptiveRunDuration runDuration = create(0L);
+        runDuration.update(1, micros(10L), micros(100L), 0L);
+        final long withoutBacklog = runDuration.getRunDuration(TimeUnit.MICROSECONDS);
+        assertEquals(900L, withoutBacklog);
+
+        // 500 FlowFiles queued at 10 micros each take 5 millis to process
+        runDuration.update(1, micros(10L), micros(100L), 500L);
+        assertEquals(5000L, runDuration.getRunDuration(TimeUnit.MICROSECONDS));
+
+        // a backlog that would take longer than the max is bounded by the max
+        runDuration.update(1, micros(10L), micros(100L), 1_000_000L);
+        assertEquals(MAX_MICROS, runDuration.getRunDuration(TimeUnit.MICROSECONDS));
+
+        // once the backlog is gone, the duration goes back down
+        runDuration.update(80, micros(800L), micros(100L), 10L);
+        assertEquals(withoutBacklog, runDuration.getRunDuration(TimeUnit.MICROSECONDS));
+    }
+
+    @Test
+    public void testObservationsAreSmoothed() {
+        final AdaptiveRunDuration runDuration = create(0L);
+        runDuration.update(1, micros(10L), micros(1000L), 0L);
+        final long before = runDuration.getRunDuration(TimeUnit.MICROSECONDS);
+
+        // a single unusually slow commit moves the duration, but not all the way
+        runDuration.update(1, micros(10L), micros(11_000L), 0L);
+        final long after = runDuration.getRunDuration(TimeUnit.MICROSECONDS);
+        assertTrue(after > before);
+        assertTrue(after < 99_000L);
+    }
+
+    @Test
+    public void testNoInvocationsIgnored() {
+        final AdaptiveRunDuration runDuration = create(25L);
+        runDuration.update(0, 0L, micros(1000L), 100L);
+        assertEquals(25L, runDuration.getRunDuration(TimeUnit.MICROSECONDS));
+    }
+
+    private static long micros(final long micros) {
+        return TimeUnit.MICROSECONDS.toNanos(micros);
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.nifi.components.state.StateManager;
+import org.apache.nifi.components.state.StateManagerProvider;
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.connectable.ConnectableType;
+import org.apache.nifi.connectable.Connection;
+import org.apache.nifi.controller.FlowController;
+import org.apache.nifi.controller.queue.FlowFileQueue;
+import org.apache.nifi.engine.FlowEngine;
+import org.apache.nifi.processor.ProcessContext;
+import org.apache.nifi.processor.ProcessSessionFactory;
+import org.apache.nifi.util.NiFiProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class TestWorkAwareSchedulingAgent {
+
+    private FlowEngine flowEngine;
+    private FlowController flowController;
+    private ProcessContextFactory contextFactory;
+    private NiFiProperties nifiProperties;
+
+    @Before
+    public void setup() {
+        flowEngine = new FlowEngine(4, "Test Timer-Driven Process", true);
+
+        final StateManagerProvider stateManagerProvider = mock(StateManagerProvider.class);
+        when(stateManagerProvider.getStateManager(any(String.class))).thenReturn(mock(StateManager.class));
+        flowController = mock(FlowController.class);
+        when(flowController.getStateManagerProvider()).thenReturn(stateManagerProvider);
+
+        contextFactory = new ProcessContextFactory(null, null, null, null, null);
+        nifiProperties = NiFiProperties.createBasicNiFiProperties(null, null);
+    }
+
+    @After
+    public void shutdown() {
+        flowEngine.shutdownNow();
+    }
+
+    private WorkAwareSchedulingAgent createAgent() {
+        return new WorkAwareSchedulingAgent(flowController, flowEngine, contextFactory, null, null, nifiProperties);
+    }
+
+    @Test(timeout = 10000)
+    public void testParkedUntilFlowFileQueued() throws InterruptedException {
+        final WorkAwareSchedulingAgent agent = createAgent();
+        final Stage stage = new Stage(agent, "stage", 2);
+        final Stage sink = new Stage(agent, "sink", 1);
+        stage.setNext(sink);
+
+        final ScheduleState scheduleState = new ScheduleState();
+        agent.schedule(stage.connectable, scheduleState);
+        waitForParkedTasks(agent, stage, 2);
+
+        // while parked, the component is not checked for work at all
+        final long checks = stage.checkCount.get();
+        Thread.sleep(100L);
+        assertEquals(checks, stage.checkCount.get());
+        assertEquals(0, stage.triggerCount.get());
+
+        stage.enqueue(1L);
+        while (sink.queue.isEmpty()) {
+            Thread.sleep(1L);
+        }
+
+        assertEquals(1, stage.triggerCount.get());
+        waitForParkedTasks(agent, stage, 2);
+
+        agent.unschedule(stage.connectable, scheduleState);
+        assertEquals(0, agent.getParkedTaskCount(stage.connectable));
+    }
+
+    @Test(timeout = 10000)
+    public void testFlowFilesQueuedBeforeScheduling() throws InterruptedException {
+        final WorkAwareSchedulingAgent agent = createAgent();
+        final Stage stage = new Stage(agent, "stage", 1);
+        final Stage sink = new Stage(agent, "sink", 1);
+        stage.setNext(sink);
+
+        for (long i = 0; i < 5; i++) {
+            stage.queue.offer(i);
+        }
+
+        agent.schedule(stage.connectable, new ScheduleState());
+        while (sink.queue.size() < 5) {
+            Thread.sleep(1L);
+        }
+
+        waitForParkedTasks(agent, stage, 1);
+    }
+
+    @Test(timeout = 10000)
+    public void testComponentNotWaitingForInputIsNotParked() throws InterruptedException {
+        final WorkAwareSchedulingAgent agent = createAgent();
+        final Stage source = new Stage(agent, "source", 1);
+        when(source.connectable.isTriggerWhenEmpty()).thenReturn(true);
+
+        agent.schedule(source.connectable, new ScheduleState());
+        while (source.triggerCount.get() < 10) {
+            Thread.sleep(1L);
+        }
+
+        assertEquals(0, agent.getParkedTaskCount(source.connectable));
+    }
+
+    @Test(timeout = 10000)
+    public void testYieldHonoredWhenResumed() throws InterruptedException {
+        final WorkAwareSchedulingAgent agent = createAgent();
+        final Stage stage = new Stage(agent, "stage", 1);
+        final Stage sink = new Stage(agent, "sink", 1);
+        stage.setNext(sink);
+
+        agent.schedule(stage.connectable, new ScheduleState());
+        waitForParkedTasks(agent, stage, 1);
+
+        final long yieldExpiration = System.currentTimeMillis() + 500L;
+        when(stage.connectable.getYieldExpiration()).thenReturn(yieldExpiration);
+        stage.enqueue(1L);
+
+        while (sink.queue.isEmpty()) {
+            Thread.sleep(1L);
+        }
+
+        assertTrue(System.currentTimeMillis() >= yieldExpiration);
+    }
+
+    @Test(timeout = 10000)
+    public void testEventAfterUnscheduleIgnored() throws InterruptedException {
+        final WorkAwareSchedulingAgent agent = createAgent();
+        final Stage stage = new Stage(agent, "stage", 1);
+        final Stage sink = new Stage(agent, "sink", 1);
+        stage.setNext(sink);
+
+        final ScheduleState scheduleState = new ScheduleState();
+        agent.schedule(stage.connectable, scheduleState);
+        waitForParkedTasks(agent, stage, 1);
+        agent.unschedule(stage.connectable, scheduleState);
+
+        stage.enqueue(1L);
+        Thread.sleep(100L);
+        assertEquals(0, stage.triggerCount.get());
+        assertTrue(sink.queue.isEmpty());
+    }
+
+    @Test
+    @Ignore("For local testing of performance only")
+    public void testDeepLinearFlowLatencyAndCpu() throws InterruptedException {
+        final int depth = 50;
+        final int flowFiles = 20;
+
+        for (final boolean workAware : new boolean[] {false, true, false, true}) {
+            final FlowEngine engine = new FlowEngine(8, "Benchmark Timer-Driven Process", true);
+            final SchedulingAgent agent = workAware ? new WorkAwareSchedulingAgent(flowController, engine, contextFactory, null, null, nifiProperties)
+                : new TimerDrivenSchedulingAgent(flowController, engine, contextFactory, null, null, nifiProperties);
+
+            final List<Stage> stages = new ArrayList<>(depth + 1);
+            for (int i = 0; i <= depth; i++) {
+                stages.add(new Stage(agent, "stage-" + i, 1));
+            }
+            for (int i = 0; i < depth; i++) {
+                stages.get(i).setNext(stages.get(i + 1));
+            }
+
+            final List<ScheduleState> scheduleStates = new ArrayList<>(depth);
+            for (int i = 0; i < depth; i++) {
+                final ScheduleState scheduleState = new ScheduleState();
+                scheduleStates.add(scheduleState);
+                agent.schedule(stages.get(i).connectable, scheduleState);
+            }
+
+            try {
+                Thread.sleep(1000L);
+
+                // CPU used by the flow while it is idle
+                final long idleCpuStart = getTotalCpuNanos();
+                Thread.sleep(2000L);
+                final long idleCpuMillis = TimeUnit.NANOSECONDS.toMillis(getTotalCpuNanos() - idleCpuStart);
+
+                // latency of one FlowFile at a time through the whole flow, and the CPU used to do so
+                final Stage last = stages.get(depth);
+                final long cpuStart = getTotalCpuNanos();
+                long totalLatencyNanos = 0L;
+                for (int i = 0; i < flowFiles; i++) {
+                    final long start = System.nanoTime();
+                    stages.get(0).enqueue(start);
+                    while (last.queue.poll() == null) {
+                        Thread.yield();
+                    }
+                    totalLatencyNanos += System.nanoTime() - start;
+                }
+                final long cpuMillis = TimeUnit.NANOSECONDS.toMillis(getTotalCpuNanos() - cpuStart);
+
+                System.out.println((workAware ? "Work-Aware" : "Timer-Driven") + " with " + depth + " components: mean latency "
+                    + TimeUnit.NANOSECONDS.toMicros(totalLatencyNanos / flowFiles) + " micros; " + idleCpuMillis + " millis of CPU while idle for 2 seconds; "
+                    + cpuMillis + " millis of CPU to process " + flowFiles + " FlowFiles");
+            } finally {
+                for (int i = 0; i < depth; i++) {
+                    agent.unschedule(stages.get(i).connectable, scheduleStates.get(i));
+                }
+                engine.shutdownNow();
+            }
+        }
+    }
+
+    private static long getTotalCpuNanos() {
+        final ThreadMXBean threadMxBean = ManagementFactory.getThreadMXBean();
+        long total = 0L;
+        for (final long threadId : threadMxBean.getAllThreadIds()) {
+            final long cpuNanos = threadMxBean.getThreadCpuTime(threadId);
+            if (cpuNanos > 0L) {
+                total += cpuNanos;
+            }
+        }
+        return total;
+    }
+
+    private static void waitForParkedTasks(final WorkAwareSchedulingAgent agent, final Stage stage, final int count) throws InterruptedException {
+        while (agent.getParkedTaskCount(stage.connectable) != count) {
+            Thread.sleep(1L);
+        }
+    }
+
+
+    /**
+     * A Funnel-like component that moves each FlowFile, represented by a Long, from its single incoming queue to
+     * the incoming queue of the next stage, registering the event with the agent as a FlowFileQueue would.
+     */
+    private static class Stage {
+        private final Connectable connectable;
+        private final Queue<Long> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger triggerCount = new AtomicInteger(0);
+        private final AtomicLong checkCount = new AtomicLong(0L);
+        private final SchedulingAgent agent;
+        private volatile Stage next;
+
+        public Stage(final SchedulingAgent agent, final String identifier, final int maxConcurrentTasks) {
+            this.agent = agent;
+
+            final FlowFileQueue flowFileQueue = mock(FlowFileQueue.class);
+            doAnswer(invocation -> {
+                checkCount.incrementAndGet();
+                return queue.isEmpty();
+            }).when(flowFileQueue).isActiveQueueEmpty();
+
+            final Connection incoming = mock(Connection.class);
+            when(incoming.getFlowFileQueue()).thenReturn(flowFileQueue);
+            when(incoming.getSource()).thenReturn(mock(Connectable.class));
+
+            connectable = mock(Connectable.class);
+            when(connectable.getIdentifier()).thenReturn(identifier);
+            when(connectable.getConnectableType()).thenReturn(ConnectableType.FUNNEL);
+            when(connectable.getMaxConcurrentTasks()).thenReturn(maxConcurrentTasks);
+            when(connectable.getSchedulingPeriod(any(TimeUnit.class))).thenReturn(1L);
+            when(connectable.hasIncomingConnection()).thenReturn(true);
+            when(connectable.getIncomingConnections()).thenReturn(Collections.singletonList(incoming));
+            when(connectable.getConnections()).thenReturn(new HashSet<>(Collections.singleton(mock(Connection.class))));
+            doAnswer(invocation -> {
+                triggerCount.incrementAndGet();
+                final Long flowFile = queue.poll();
+                if (flowFile != null && next != null) {
+                    next.enqueue(flowFile);
+                }
+                return null;
+            }).when(connectable).onTrigger(any(ProcessContext.class), any(ProcessSessionFactory.class));
+        }
+
+        public void setNext(final Stage next) {
+            this.next = next;
+        }
+
+        public void enqueue(final Long flowFile) {
+            queue.offer(flowFile);
+            agent.onEvent(connectable);
+        }
+    }
+}
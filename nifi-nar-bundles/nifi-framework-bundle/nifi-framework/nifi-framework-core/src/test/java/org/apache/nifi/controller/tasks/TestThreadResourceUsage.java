@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.tasks;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.nifi.controller.repository.StandardFlowFileEvent;
+import org.junit.Test;
+
+public class TestThreadResourceUsage {
+
+    private volatile byte[] allocated;
+
+    @Test
+    public void testCpuAndAllocation() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled());
+
+        final StandardFlowFileEvent event = new StandardFlowFileEvent("1234");
+        final ThreadResourceUsage resourceUsage = ThreadResourceUsage.startUnsampled();
+
+        long sum = 0L;
+        final long stopTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50L);
+        while (System.nanoTime() < stopTime) {
+            final byte[] bytes = new byte[1024];
+            sum += bytes.length;
+        }
+
+        resourceUsage.stop(event);
+        assertTrue(event.getCpuNanoseconds() > 0L);
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled()) {
+            assertTrue(event.getBytesAllocated() >= sum);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testBlockedTime() throws InterruptedException {
+        assumeTrue(ThreadResourceUsage.enableContentionMonitoring());
+
+        final Object monitor = new Object();
+        final CountDownLatch locked = new CountDownLatch(1);
+        final Thread holder = new Thread(() -> {
+            synchronized (monitor) {
+                locked.countDown();
+                try {
+                    Thread.sleep(100L);
+                } catch (final InterruptedException ignored) {
+                }
+            }
+        });
+        holder.start();
+        locked.await();
+
+        final StandardFlowFileEvent event = new StandardFlowFileEvent("1234");
+        final ThreadResourceUsage resourceUsage = ThreadResourceUsage.startUnsampled();
+        synchronized (monitor) {
+            resourceUsage.stop(event);
+        }
+        holder.join();
+
+        assertTrue(event.getBlockedNanoseconds() > 0L);
+    }
+
+    @Test
+    public void testAllocationSampled() {
+        assumeAllocationMeasured();
+
+        // Each measurement reads the allocated bytes with a probability of 1 / SAMPLE_INTERVAL
+        final int measurementCount = ThreadResourceUsage.SAMPLE_INTERVAL * 1000;
+        int sampledCount = 0;
+        for (int i = 0; i < measurementCount; i++) {
+            final StandardFlowFileEvent event = new StandardFlowFileEvent("1234");
+            final ThreadResourceUsage resourceUsage = ThreadResourceUsage.start();
+            final byte[] bytes = allocate(1024);
+            resourceUsage.stop(event);
+
+            if (event.getBytesAllocated() > 0L) {
+                sampledCount++;
+                assertTrue(event.getBytesAllocated() >= (long) bytes.length * ThreadResourceUsage.SAMPLE_INTERVAL);
+            }
+        }
+
+        assertTrue("Sampled " + sampledCount + " measurements", sampledCount > 800 && sampledCount < 1200);
+    }
+
+    @Test
+    public void testAllocationOfAlternatingComponentsEstimated() {
+        assumeAllocationMeasured();
+
+        // Two components whose tasks take turns on the same thread must both be sampled, however their turns line up with the sampling
+        final int tasksPerComponent = 8000;
+        final int firstSize = 16 * 1024;
+        final int secondSize = 64 * 1024;
+        final StandardFlowFileEvent firstEvent = new StandardFlowFileEvent("first");
+        final StandardFlowFileEvent secondEvent = new StandardFlowFileEvent("second");
+        for (int i = 0; i < tasksPerComponent; i++) {
+            ThreadResourceUsage resourceUsage = ThreadResourceUsage.start();
+            allocate(firstSize);
+            resourceUsage.stop(firstEvent);
+
+            resourceUsage = ThreadResourceUsage.start();
+            allocate(secondSize);
+            resourceUsage.stop(secondEvent);
+        }
+
+        assertEstimated((long) firstSize * tasksPerComponent, firstEvent.getBytesAllocated());
+        assertEstimated((long) secondSize * tasksPerComponent, secondEvent.getBytesAllocated());
+    }
+
+    private static void assertEstimated(final long expected, final long estimate) {
+        assertTrue("Estimated " + estimate + " bytes allocated rather than " + expected, estimate > expected * 0.8 && estimate < expected * 1.25);
+    }
+
+    private static void assumeAllocationMeasured() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled());
+    }
+
+    private byte[] allocate(final int size) {
+        // keep a reference to the array so that the allocation is not optimized away
+        allocated = new byte[size];
+        return allocated;
+    }
+
+    @Test
+    public void testUsageAddedToEvent() {
+        final StandardFlowFileEvent event = new StandardFlowFileEvent("1234");
+        event.setCpuNanos(5L);
+        event.setBytesAllocated(10L);
+
+        ThreadResourceUsage.start().stop(event);
+        assertTrue(event.getCpuNanoseconds() >= 5L);
+        assertTrue(event.getBytesAllocated() >= 10L);
+        assertTrue(event.getWaitedNanoseconds() >= 0L);
+    }
+}
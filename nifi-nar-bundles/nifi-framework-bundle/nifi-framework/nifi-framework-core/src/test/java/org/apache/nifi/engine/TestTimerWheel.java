@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestTimerWheel {
+
+    @Test
+    public void testItemsExpireInOrderOnceDue() {
+        final TimerWheel<String> wheel = new TimerWheel<>(0L, 10L);
+        wheel.add("c", 35L);
+        wheel.add("a", 5L);
+        wheel.add("b", 20L);
+        assertEquals(3, wheel.size());
+
+        assertTrue(wheel.expire(4L).isEmpty());
+        assertEquals(Collections.singletonList("a"), wheel.expire(10L));
+        assertTrue(wheel.expire(19L).isEmpty());
+        assertEquals(Collections.singletonList("b"), wheel.expire(20L));
+        assertEquals(Collections.singletonList("c"), wheel.expire(1000L));
+        assertEquals(0, wheel.size());
+        assertEquals(Long.MAX_VALUE, wheel.getNextExpirationNanos());
+    }
+
+    @Test
+    public void testItemsThatAreAlreadyDueExpireImmediately() {
+        final TimerWheel<String> wheel = new TimerWheel<>(0L, 10L);
+        wheel.expire(500L);
+        wheel.add("late", 100L);
+        assertEquals(Collections.singletonList("late"), wheel.expire(500L));
+    }
+
+    @Test
+    public void testNextExpiration() {
+        final TimerWheel<String> wheel = new TimerWheel<>(0L, 1L);
+        wheel.add("near", 100L);
+        assertEquals(100L, wheel.getNextExpirationNanos());
+
+        // an item beyond the root wheel is not found until the rotation of the root wheel completes
+        final TimerWheel<String> far = new TimerWheel<>(0L, 1L);
+        far.add("far", 10000L);
+        assertEquals(256L, far.getNextExpirationNanos());
+    }
+
+    @Test
+    public void testCascadingAcrossAllLevels() {
+        final long tick = 1L;
+        final TimerWheel<Long> wheel = new TimerWheel<>(0L, tick);
+        final Random random = new Random(42L);
+
+        final List<Long> dueTimes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            // spread the items across each of the levels of the wheel
+            final int bits = 1 + random.nextInt(28);
+            final long due = 1L + (random.nextLong() >>> (64 - bits));
+            dueTimes.add(due);
+            wheel.add(due, due);
+        }
+
+        Collections.sort(dueTimes);
+
+        // Advance in large steps, always waking no later than the wheel asks to be woken, so that each item is
+        // verified to expire as soon as it is due.
+        final List<Long> expired = new ArrayList<>();
+        long now = 0L;
+        while (wheel.size() > 0) {
+            final long next = wheel.getNextExpirationNanos();
+            assertTrue(next > now);
+            now = next;
+
+            for (final Long due : wheel.expire(now)) {
+                assertTrue(due <= now);
+                assertTrue("Item due at " + due + " expired at " + now, now - due < tick);
+                expired.add(due);
+            }
+        }
+
+        assertEquals(dueTimes, expired);
+    }
+
+    @Test
+    public void testClear() {
+        final TimerWheel<String> wheel = new TimerWheel<>(0L, 1L);
+        wheel.add("a", 10L);
+        wheel.add("b", 100000L);
+        assertEquals(2, wheel.clear().size());
+        assertEquals(0, wheel.size());
+        assertTrue(wheel.expire(1000000L).isEmpty());
+    }
+}
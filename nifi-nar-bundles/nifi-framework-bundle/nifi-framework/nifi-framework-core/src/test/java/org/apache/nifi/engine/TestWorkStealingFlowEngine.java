@@ -0,0 +1,327 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class TestWorkStealingFlowEngine {
+
+    private WorkStealingFlowEngine engine;
+
+    @Before
+    public void setup() {
+        engine = new WorkStealingFlowEngine(2, "Test");
+    }
+
+    @After
+    public void shutdown() throws InterruptedException {
+        engine.shutdownNow();
+        assertTrue(engine.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void testScheduledTaskRunsNoSoonerThanItsDelay() throws Exception {
+        final long start = System.nanoTime();
+        final ScheduledFuture<Long> future = engine.schedule(() -> System.nanoTime(), 50, TimeUnit.MILLISECONDS);
+        final long ranAt = future.get();
+        assertTrue(ranAt - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(future.isDone());
+    }
+
+    @Test(timeout = 10000)
+    public void testTasksWithoutDelayRun() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++) {
+            engine.execute(latch::countDown);
+        }
+        latch.await();
+    }
+
+    @Test(timeout = 10000)
+    public void testFixedDelayRepeatsUntilCancelled() throws InterruptedException {
+        final AtomicInteger count = new AtomicInteger(0);
+        final ScheduledFuture<?> future = engine.scheduleWithFixedDelay(count::incrementAndGet, 0L, 5L, TimeUnit.MILLISECONDS);
+        while (count.get() < 5) {
+            Thread.sleep(1L);
+        }
+
+        assertTrue(future.cancel(false));
+        Thread.sleep(20L);
+        final int countAfterCancel = count.get();
+        Thread.sleep(50L);
+        assertEquals(countAfterCancel, count.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testFixedRate() throws InterruptedException {
+        final List<Long> runTimes = new ArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(5);
+        final long start = System.nanoTime();
+        engine.scheduleAtFixedRate(() -> {
+            synchronized (runTimes) {
+                runTimes.add(System.nanoTime() - start);
+            }
+            latch.countDown();
+        }, 10L, 20L, TimeUnit.MILLISECONDS);
+
+        latch.await();
+        synchronized (runTimes) {
+            for (int i = 0; i < 5; i++) {
+                assertTrue(runTimes.get(i) >= TimeUnit.MILLISECONDS.toNanos(10L + 20L * i));
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testPeriodicTaskStopsWhenItFails() throws InterruptedException {
+        final AtomicInteger count = new AtomicInteger(0);
+        final ScheduledFuture<?> future = engine.scheduleWithFixedDelay(() -> {
+            if (count.incrementAndGet() == 3) {
+                throw new RuntimeException("Intentional Unit Test Exception");
+            }
+        }, 0L, 1L, TimeUnit.MILLISECONDS);
+
+        try {
+            future.get();
+            fail("Expected task to fail");
+        } catch (final ExecutionException ee) {
+            assertEquals("Intentional Unit Test Exception", ee.getCause().getMessage());
+        }
+
+        Thread.sleep(20L);
+        assertEquals(3, count.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testCancelledDelayedTaskDoesNotRun() throws InterruptedException {
+        final AtomicInteger count = new AtomicInteger(0);
+        final ScheduledFuture<?> future = engine.schedule(count::incrementAndGet, 20L, TimeUnit.MILLISECONDS);
+        assertTrue(future.cancel(false));
+        Thread.sleep(50L);
+        assertEquals(0, count.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testStatisticsForComponentTasks() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(50);
+        final ComponentTask task = new ComponentTask() {
+            @Override
+            public String getComponentIdentifier() {
+                return "component-1";
+            }
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+
+        final ScheduledFuture<?> future = engine.scheduleWithFixedDelay(task, 0L, 1L, TimeUnit.NANOSECONDS);
+        final ScheduledFuture<?> otherFuture = engine.scheduleWithFixedDelay(task, 0L, 1L, TimeUnit.HOURS);
+        latch.await();
+
+        final TaskStatistics statistics = engine.getTaskStatistics().get("component-1");
+        assertNotNull(statistics);
+        assertEquals(1, engine.getTaskStatistics().size());
+
+        // the statistics remain as long as any of the component's tasks are scheduled
+        future.cancel(false);
+        assertTrue(statistics.getInvocations() >= 50);
+        assertTrue(statistics.getSteals() <= statistics.getInvocations());
+        assertTrue(statistics.getMaxQueueWaitTime(TimeUnit.NANOSECONDS) <= statistics.getQueueWaitTime(TimeUnit.NANOSECONDS));
+        assertEquals(statistics, engine.getTaskStatistics().get("component-1"));
+
+        otherFuture.cancel(false);
+        assertTrue(engine.getTaskStatistics().isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void testQueueWaitRecordedByComponentTask() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(50);
+        final AtomicInteger recordedCount = new AtomicInteger(0);
+        final AtomicInteger stolenCount = new AtomicInteger(0);
+        final AtomicLong recordedWaitNanos = new AtomicLong(0L);
+        final AtomicInteger mismatchCount = new AtomicInteger(0);
+        final ComponentTask task = new ComponentTask() {
+            private int runCount = 0;
+
+            @Override
+            public String getComponentIdentifier() {
+                return "component-1";
+            }
+
+            @Override
+            public void recordQueueWait(final long queueWaitNanos, final boolean stolen) {
+                recordedCount.incrementAndGet();
+                recordedWaitNanos.addAndGet(queueWaitNanos);
+                if (stolen) {
+                    stolenCount.incrementAndGet();
+                }
+            }
+
+            @Override
+            public void run() {
+                // the engine reports the wait of each run to the task before it runs, as it does to the component's statistics
+                final TaskStatistics statistics = engine.getTaskStatistics().get("component-1");
+                if (recordedCount.get() != ++runCount || statistics.getInvocations() != runCount
+                    || statistics.getQueueWaitTime(TimeUnit.NANOSECONDS) != recordedWaitNanos.get() || statistics.getSteals() != stolenCount.get()) {
+                    mismatchCount.incrementAndGet();
+                }
+                latch.countDown();
+            }
+        };
+
+        final ScheduledFuture<?> future = engine.scheduleWithFixedDelay(task, 0L, 1L, TimeUnit.NANOSECONDS);
+        latch.await();
+        future.cancel(false);
+
+        assertEquals(0, mismatchCount.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testTaskWithDelayShorterThanTickRunsMoreThanOncePerTick() throws InterruptedException {
+        final AtomicLong count = new AtomicLong(0L);
+        final ScheduledFuture<?> future = engine.scheduleWithFixedDelay(count::incrementAndGet, 0L, 30L, TimeUnit.MICROSECONDS);
+
+        Thread.sleep(20L);
+        final long startCount = count.get();
+        final long start = System.nanoTime();
+        Thread.sleep(200L);
+        final long runs = count.get() - startCount;
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        future.cancel(false);
+
+        // A task whose delay is shorter than the 1 millisecond tick of the timer must not be limited to one run per tick
+        assertTrue("Task ran only " + runs + " times in " + elapsedMillis + " millis", runs > 5 * elapsedMillis);
+    }
+
+    @Test(timeout = 10000)
+    public void testCorePoolSizeChange() throws InterruptedException {
+        final AtomicInteger count = new AtomicInteger(0);
+        engine.scheduleWithFixedDelay(count::incrementAndGet, 0L, 1L, TimeUnit.MILLISECONDS);
+        while (count.get() < 5) {
+            Thread.sleep(1L);
+        }
+
+        engine.setCorePoolSize(4);
+        assertEquals(4, engine.getCorePoolSize());
+
+        // the periodic task continues in the new pool
+        final int countAfterChange = count.get();
+        while (count.get() < countAfterChange + 5) {
+            Thread.sleep(1L);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testPeriodicTasksSurviveRepeatedCorePoolSizeChanges() throws InterruptedException {
+        final AtomicLong count = new AtomicLong(0L);
+        final List<ScheduledFuture<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(engine.scheduleWithFixedDelay(count::incrementAndGet, 0L, i % 2 == 0 ? 1L : TimeUnit.MILLISECONDS.toNanos(2L), TimeUnit.NANOSECONDS));
+        }
+
+        // The timer thread or a pool thread may hand a task to a pool that is shut down as it is replaced, which must not cancel the task
+        final long stopNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500L);
+        for (int i = 0; System.nanoTime() < stopNanos; i++) {
+            engine.setCorePoolSize(2 + i % 3);
+        }
+
+        for (final ScheduledFuture<?> future : futures) {
+            assertFalse(future.isDone());
+        }
+
+        final long countAfterChanges = count.get();
+        while (count.get() < countAfterChanges + 100) {
+            Thread.sleep(1L);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testShutdown() throws InterruptedException {
+        final AtomicInteger count = new AtomicInteger(0);
+        final ScheduledFuture<?> periodic = engine.scheduleWithFixedDelay(count::incrementAndGet, 0L, 1L, TimeUnit.MILLISECONDS);
+        final ScheduledFuture<?> delayed = engine.schedule(count::incrementAndGet, 1L, TimeUnit.HOURS);
+        while (count.get() < 2) {
+            Thread.sleep(1L);
+        }
+
+        engine.shutdown();
+        assertTrue(engine.isShutdown());
+        assertTrue(engine.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(engine.isTerminated());
+        assertFalse(engine.isTerminating());
+        assertTrue(periodic.isDone());
+        assertTrue(delayed.isCancelled());
+
+        try {
+            engine.execute(count::incrementAndGet);
+            fail("Expected task to be rejected");
+        } catch (final RejectedExecutionException expected) {
+        }
+    }
+
+    @Test
+    @Ignore("For local testing of performance only")
+    public void testManyPeriodicTasksPerformance() throws InterruptedException {
+        final int taskCount = 2000;
+        final int threads = 8;
+
+        for (final boolean workStealing : new boolean[] {false, true, false, true}) {
+            final ScheduledExecutorService executor = workStealing ? new WorkStealingFlowEngine(threads, "Work-Stealing") : new FlowEngine(threads, "Flow Engine", true);
+            final AtomicLong invocations = new AtomicLong(0L);
+
+            try {
+                for (int i = 0; i < taskCount; i++) {
+                    // half of the tasks always have work to do, and the others back off as bored components do
+                    final long delayNanos = i % 2 == 0 ? 1L : TimeUnit.MILLISECONDS.toNanos(10L);
+                    executor.scheduleWithFixedDelay(invocations::incrementAndGet, 0L, delayNanos, TimeUnit.NANOSECONDS);
+                }
+
+                Thread.sleep(1000L);
+                final long startInvocations = invocations.get();
+                Thread.sleep(5000L);
+                final long runs = invocations.get() - startInvocations;
+
+                System.out.println((workStealing ? "Work-Stealing Engine" : "Flow Engine") + ": " + runs / 5 + " invocations/sec of " + taskCount + " periodic tasks on " + threads + " threads");
+            } finally {
+                executor.shutdownNow();
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+}
@@ -61,6 +61,7 @@ import org.apache.nifi.web.api.dto.action.HistoryQueryDTO;
 import org.apache.nifi.web.api.dto.provenance.ProvenanceDTO;
 import org.apache.nifi.web.api.dto.provenance.ProvenanceEventDTO;
 import org.apache.nifi.web.api.dto.provenance.ProvenanceOptionsDTO;
+import org.apache.nifi.web.api.dto.provenance.ProvenanceRollupsDTO;
 import org.apache.nifi.web.api.dto.provenance.lineage.LineageDTO;
 import org.apache.nifi.web.api.dto.search.SearchResultsDTO;
 import org.apache.nifi.web.api.dto.status.ControllerStatusDTO;
@@ -224,6 +225,16 @@ public interface NiFiServiceFacade {
      */
     ProvenanceOptionsDTO getProvenanceSearchOptions();
 
+    /**
+     * Returns the per component, per event type rollups of the provenance events in the specified time range.
+     *
+     * @param startDate the earliest time to include, or null for the last hour
+     * @param endDate the latest time to include, or null for now
+     * @param componentId the component to include, or null for all components
+     * @return rollups
+     */
+    ProvenanceRollupsDTO getProvenanceRollups(Date startDate, Date endDate, String componentId);
+
     /**
      * Submits a lineage request.
      *
@@ -139,6 +139,7 @@ import org.apache.nifi.web.api.dto.flow.FlowDTO;
 import org.apache.nifi.web.api.dto.provenance.ProvenanceDTO;
 import org.apache.nifi.web.api.dto.provenance.ProvenanceEventDTO;
 import org.apache.nifi.web.api.dto.provenance.ProvenanceOptionsDTO;
+import org.apache.nifi.web.api.dto.provenance.ProvenanceRollupsDTO;
 import org.apache.nifi.web.api.dto.provenance.lineage.LineageDTO;
 import org.apache.nifi.web.api.dto.search.SearchResultsDTO;
 import org.apache.nifi.web.api.dto.status.ConnectionStatusDTO;
@@ -2112,6 +2113,11 @@ public class StandardNiFiServiceFacade implements NiFiServiceFacade {
         return controllerFacade.getProvenanceSearchOptions();
     }
 
+    @Override
+    public ProvenanceRollupsDTO getProvenanceRollups(final Date startDate, final Date endDate, final String componentId) {
+        return controllerFacade.getProvenanceRollups(startDate, endDate, componentId);
+    }
+
     @Override
     public ProvenanceEventDTO getProvenanceEvent(final Long id) {
         return controllerFacade.getProvenanceEvent(id);
@@ -36,12 +36,15 @@ import org.apache.nifi.authorization.user.NiFiUserUtils;
 import org.apache.nifi.web.NiFiServiceFacade;
 import org.apache.nifi.web.api.dto.provenance.ProvenanceDTO;
 import org.apache.nifi.web.api.dto.provenance.ProvenanceOptionsDTO;
+import org.apache.nifi.web.api.dto.provenance.ProvenanceRollupsDTO;
 import org.apache.nifi.web.api.dto.provenance.lineage.LineageDTO;
 import org.apache.nifi.web.api.dto.provenance.lineage.LineageRequestDTO;
 import org.apache.nifi.web.api.entity.ComponentEntity;
 import org.apache.nifi.web.api.entity.LineageEntity;
 import org.apache.nifi.web.api.entity.ProvenanceEntity;
 import org.apache.nifi.web.api.entity.ProvenanceOptionsEntity;
+import org.apache.nifi.web.api.entity.ProvenanceRollupsEntity;
+import org.apache.nifi.web.api.request.DateTimeParameter;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
@@ -160,6 +163,81 @@ public class ProvenanceResource extends ApplicationResource {
         return clusterContext(noCache(Response.ok(entity))).build();
     }
 
+    /**
+     * Gets the number of provenance events and their total size per component, per event type, per minute.
+     *
+     * @param startDate the earliest time to include
+     * @param endDate the latest time to include
+     * @param componentId the component to include
+     * @return A provenanceRollupsEntity
+     */
+    @GET
+    @Consumes(MediaType.WILDCARD)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("rollups")
+    @ApiOperation(
+            value = "Gets the number of provenance events and their total size per component, per event type, per minute",
+            notes = "The rollups are maintained as events are registered, so they are available without querying individual events. "
+                    + "They cover the events that have been registered since each node was started. Rollups for components whose "
+                    + "data the user is not authorized to view are not returned.",
+            response = ProvenanceRollupsEntity.class,
+            authorizations = {
+                    @Authorization(value = "Read - /provenance", type = ""),
+                    @Authorization(value = "Read - /data/{component-type}/{uuid}", type = "")
+            }
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(code = 400, message = "NiFi was unable to complete the request because it was invalid. The request should not be retried without modification."),
+                    @ApiResponse(code = 401, message = "Client could not be authenticated."),
+                    @ApiResponse(code = 403, message = "Client is not authorized to make this request."),
+                    @ApiResponse(code = 409, message = "The request was valid but NiFi was not in the appropriate state to process it. Retrying the same request later may be successful.")
+            }
+    )
+    public Response getRollups(
+            @ApiParam(
+                    value = "Include events after this date. Defaults to one hour before the end date.",
+                    required = false
+            )
+            @QueryParam("startDate") DateTimeParameter startDate,
+            @ApiParam(
+                    value = "Include events before this date. Defaults to now.",
+                    required = false
+            )
+            @QueryParam("endDate") DateTimeParameter endDate,
+            @ApiParam(
+                    value = "Include events from this component only.",
+                    required = false
+            )
+            @QueryParam("componentId") String componentId) {
+
+        authorizeProvenanceRequest();
+
+        // ensure the start and end dates are in order
+        if (endDate != null && startDate != null) {
+            if (endDate.getDateTime().before(startDate.getDateTime())) {
+                throw new IllegalArgumentException("The start date/time must come before the end date/time.");
+            }
+        }
+
+        if (isReplicateRequest()) {
+            return replicate(HttpMethod.GET);
+        }
+
+        // get the provenance rollups
+        final ProvenanceRollupsDTO rollups = serviceFacade.getProvenanceRollups(
+                startDate == null ? null : startDate.getDateTime(),
+                endDate == null ? null : endDate.getDateTime(),
+                StringUtils.isBlank(componentId) ? null : componentId);
+
+        // create the response entity
+        final ProvenanceRollupsEntity entity = new ProvenanceRollupsEntity();
+        entity.setProvenanceRollups(rollups);
+
+        // generate the response
+        return clusterContext(noCache(Response.ok(entity))).build();
+    }
+
     /**
      * Creates provenance using the specified query criteria.
      *
@@ -1061,10 +1061,18 @@ public final class DtoFactory {
         snapshot.setTasksDurationNanos(procStatus.getProcessingNanos());
         snapshot.setTasksDuration(FormatUtils.formatHoursMinutesSeconds(procStatus.getProcessingNanos(), TimeUnit.NANOSECONDS));
 
+        snapshot.setCpuDurationNanos(procStatus.getCpuNanos());
+        snapshot.setBytesAllocated(procStatus.getBytesAllocated());
+        snapshot.setBlockedDurationNanos(procStatus.getBlockedNanos());
+        snapshot.setWaitedDurationNanos(procStatus.getWaitedNanos());
+        snapshot.setQueueWaitDurationNanos(procStatus.getQueueWaitNanos());
+        snapshot.setSteals(procStatus.getSteals());
+
         // determine the run status
         snapshot.setRunStatus(procStatus.getRunStatus().toString());
 
         snapshot.setActiveThreadCount(procStatus.getActiveThreadCount());
+        snapshot.setRunDurationMillis(procStatus.getRunDuration(TimeUnit.MILLISECONDS));
         snapshot.setType(procStatus.getType());
 
         StatusMerger.updatePrettyPrintedFields(snapshot);
@@ -2356,6 +2364,13 @@ public final class DtoFactory {
             garbageCollectionDtos.add(createGarbageCollectionDTO(entry.getKey(), entry.getValue()));
         }
 
+        // provenance handoff
+        snapshot.setProvenanceQueueDepth(sysDiagnostics.getProvenanceQueueDepth());
+        snapshot.setProvenanceEventsBlocked(sysDiagnostics.getProvenanceEventsBlocked());
+        snapshot.setProvenanceEventsSpilled(sysDiagnostics.getProvenanceEventsSpilled());
+        snapshot.setProvenanceEventsDropped(sysDiagnostics.getProvenanceEventsDropped());
+        snapshot.setProvenanceEventsFailed(sysDiagnostics.getProvenanceEventsFailed());
+
         return dto;
     }
 
@@ -68,10 +68,12 @@ import org.apache.nifi.nar.NarCloseable;
 import org.apache.nifi.processor.DataUnit;
 import org.apache.nifi.processor.Processor;
 import org.apache.nifi.processor.Relationship;
+import org.apache.nifi.provenance.EventRollupAggregator;
 import org.apache.nifi.provenance.ProvenanceEventRecord;
 import org.apache.nifi.provenance.ProvenanceRepository;
 import org.apache.nifi.provenance.SearchableFields;
 import org.apache.nifi.provenance.lineage.ComputeLineageSubmission;
+import org.apache.nifi.provenance.rollup.ProvenanceEventRollup;
 import org.apache.nifi.provenance.search.Query;
 import org.apache.nifi.provenance.search.QueryResult;
 import org.apache.nifi.provenance.search.QuerySubmission;
@@ -98,6 +100,8 @@ import org.apache.nifi.web.api.dto.provenance.ProvenanceDTO;
 import org.apache.nifi.web.api.dto.provenance.ProvenanceEventDTO;
 import org.apache.nifi.web.api.dto.provenance.ProvenanceOptionsDTO;
 import org.apache.nifi.web.api.dto.provenance.ProvenanceRequestDTO;
+import org.apache.nifi.web.api.dto.provenance.ProvenanceRollupDTO;
+import org.apache.nifi.web.api.dto.provenance.ProvenanceRollupsDTO;
 import org.apache.nifi.web.api.dto.provenance.ProvenanceResultsDTO;
 import org.apache.nifi.web.api.dto.provenance.ProvenanceSearchableFieldDTO;
 import org.apache.nifi.web.api.dto.provenance.lineage.LineageDTO;
@@ -917,6 +921,39 @@ public class ControllerFacade implements Authorizable {
         return searchOptions;
     }
 
+    /**
+     * Gets the per component, per event type rollups of the provenance events in the specified time range.
+     *
+     * @param startDate the earliest time to include, or null for the last hour
+     * @param endDate the latest time to include, or null for now
+     * @param componentId the component to include, or null for all components
+     * @return the rollups
+     */
+    public ProvenanceRollupsDTO getProvenanceRollups(final Date startDate, final Date endDate, final String componentId) {
+        final ProvenanceRepository provenanceRepository = flowController.getProvenanceRepository();
+
+        final Date end = endDate == null ? new Date() : endDate;
+        final Date start = startDate == null ? new Date(end.getTime() - TimeUnit.HOURS.toMillis(1L)) : startDate;
+
+        final List<ProvenanceRollupDTO> rollupDtos = new ArrayList<>();
+        for (final ProvenanceEventRollup rollup : provenanceRepository.getEventRollups(start.getTime(), end.getTime(), componentId, NiFiUserUtils.getNiFiUser())) {
+            final ProvenanceRollupDTO rollupDto = new ProvenanceRollupDTO();
+            rollupDto.setTimestamp(new Date(rollup.getBucketStartTime()));
+            rollupDto.setComponentId(rollup.getComponentId());
+            rollupDto.setEventType(rollup.getEventType().name());
+            rollupDto.setEventCount(rollup.getEventCount());
+            rollupDto.setByteCount(rollup.getTotalBytes());
+            rollupDtos.add(rollupDto);
+        }
+
+        final ProvenanceRollupsDTO rollups = new ProvenanceRollupsDTO();
+        rollups.setStartDate(start);
+        rollups.setEndDate(end);
+        rollups.setBucketDurationMillis(EventRollupAggregator.BUCKET_MILLIS);
+        rollups.setRollups(rollupDtos);
+        return rollups;
+    }
+
     /**
      * Submits a provenance query.
      *
@@ -0,0 +1,460 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.nifi.provenance.serialization.RecordReader;
+import org.apache.nifi.provenance.toc.TocReader;
+import org.apache.nifi.stream.io.BufferedInputStream;
+import org.apache.nifi.stream.io.ByteCountingInputStream;
+import org.apache.nifi.stream.io.LimitingInputStream;
+import org.apache.nifi.stream.io.StreamUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads Provenance Events that were written by an {@link EncodedRecordWriter}
+ */
+public class EncodedRecordReader implements RecordReader {
+    private static final Logger logger = LoggerFactory.getLogger(EncodedRecordReader.class);
+
+    private final ByteCountingInputStream rawInputStream;
+    private final String filename;
+    private final boolean compressed;
+    private final TocReader tocReader;
+    private final int maxAttributeChars;
+    private final Inflater inflater;
+    private final List<String> dictionary = new ArrayList<>();
+
+    private DataInputStream dis;
+    private ByteCountingInputStream byteCountingIn;
+    private long previousEventId = 0L;
+    private long previousEventTime = 0L;
+
+    public EncodedRecordReader(final InputStream in, final String filename, final int maxAttributeChars) throws IOException {
+        this(in, filename, null, maxAttributeChars);
+    }
+
+    public EncodedRecordReader(final InputStream in, final String filename, final TocReader tocReader, final int maxAttributeChars) throws IOException {
+        logger.trace("Creating RecordReader for {}", filename);
+
+        rawInputStream = new ByteCountingInputStream(in);
+        this.filename = filename;
+        this.tocReader = tocReader;
+        this.maxAttributeChars = maxAttributeChars;
+
+        // the header is not part of any block, and it is never compressed.
+        final DataInputStream headerIn = new DataInputStream(rawInputStream);
+        final String writerClassName = headerIn.readUTF();
+        if (!EncodedRecordWriter.class.getName().equals(writerClassName)) {
+            throw new IOException("Unable to read Provenance Events from " + filename + " because it was not written by " + EncodedRecordWriter.class.getName());
+        }
+
+        final int serializationVersion = headerIn.readInt();
+        if (serializationVersion < 1 || serializationVersion > EncodedRecordWriter.SERIALIZATION_VERSION) {
+            throw new IllegalArgumentException("Unable to deserialize record because the version is " + serializationVersion
+                + " and supported versions are 1-" + EncodedRecordWriter.SERIALIZATION_VERSION);
+        }
+
+        compressed = headerIn.readBoolean();
+        inflater = compressed ? new Inflater() : null;
+
+        resetStreamForNextBlock();
+    }
+
+    /**
+     * Determines whether or not the given header was written by an {@link EncodedRecordWriter}
+     *
+     * @param header the first bytes of a Provenance Event Log File
+     * @param length the number of bytes of the header that are available
+     * @return <code>true</code> if the file was written by an EncodedRecordWriter, <code>false</code> otherwise
+     */
+    public static boolean isEncoded(final byte[] header, final int length) {
+        final byte[] writerClassName = EncodedRecordWriter.class.getName().getBytes(StandardCharsets.UTF_8);
+        if (length < writerClassName.length + 2) {
+            return false;
+        }
+
+        if (((header[0] & 0xFF) << 8 | (header[1] & 0xFF)) != writerClassName.length) {
+            return false;
+        }
+
+        for (int i = 0; i < writerClassName.length; i++) {
+            if (header[i + 2] != writerClassName[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the number of bytes that must be read from the beginning of a file in order to determine whether or not
+     *         it was written by an {@link EncodedRecordWriter}
+     */
+    public static int getHeaderIdentifierLength() {
+        return EncodedRecordWriter.class.getName().getBytes(StandardCharsets.UTF_8).length + 2;
+    }
+
+    @Override
+    public void skipToBlock(final int blockIndex) throws IOException {
+        if (tocReader == null) {
+            throw new IllegalStateException("Cannot skip to block " + blockIndex + " for Provenance Log " + filename + " because no Table-of-Contents file was found for this Log");
+        }
+
+        if (blockIndex < 0) {
+            throw new IllegalArgumentException("Cannot skip to block " + blockIndex + " because the value is negative");
+        }
+
+        if (blockIndex == getBlockIndex()) {
+            return;
+        }
+
+        final long offset = tocReader.getBlockOffset(blockIndex);
+        if (offset < 0) {
+            throw new IOException("Unable to find block " + blockIndex + " in Provenance Log " + filename);
+        }
+
+        final long curOffset = rawInputStream.getBytesConsumed();
+
+        final long bytesToSkip = offset - curOffset;
+        if (bytesToSkip >= 0) {
+            try {
+                StreamUtils.skip(rawInputStream, bytesToSkip);
+                logger.debug("Skipped stream from offset {} to {} ({} bytes skipped)", curOffset, offset, bytesToSkip);
+            } catch (final IOException e) {
+                throw new IOException("Failed to skip to offset " + offset + " for block " + blockIndex + " of Provenance Log " + filename, e);
+            }
+
+            resetStreamForNextBlock();
+        }
+    }
+
+    private void resetStreamForNextBlock() throws IOException {
+        final InputStream limitedStream;
+        if (tocReader == null) {
+            limitedStream = rawInputStream;
+        } else {
+            final long offset = tocReader.getBlockOffset(1 + getBlockIndex());
+            if (offset < 0) {
+                limitedStream = rawInputStream;
+            } else {
+                limitedStream = new LimitingInputStream(rawInputStream, offset - rawInputStream.getBytesConsumed());
+            }
+        }
+
+        final InputStream readableStream;
+        if (compressed) {
+            inflater.reset();
+            readableStream = new BufferedInputStream(new InflaterInputStream(limitedStream, inflater, 65536));
+        } else {
+            readableStream = new BufferedInputStream(limitedStream);
+        }
+
+        byteCountingIn = new ByteCountingInputStream(readableStream, rawInputStream.getBytesConsumed());
+        dis = new DataInputStream(byteCountingIn);
+
+        dictionary.clear();
+        previousEventId = 0L;
+        previousEventTime = 0L;
+    }
+
+    @Override
+    public TocReader getTocReader() {
+        return tocReader;
+    }
+
+    @Override
+    public boolean isBlockIndexAvailable() {
+        return tocReader != null;
+    }
+
+    @Override
+    public int getBlockIndex() {
+        if (tocReader == null) {
+            throw new IllegalStateException("Cannot determine Block Index because no Table-of-Contents could be found for Provenance Log " + filename);
+        }
+
+        return tocReader.getBlockIndex(rawInputStream.getBytesConsumed());
+    }
+
+    @Override
+    public long getBytesConsumed() {
+        return byteCountingIn.getBytesConsumed();
+    }
+
+    @Override
+    public StandardProvenanceEventRecord nextRecord() throws IOException {
+        if (!isData()) {
+            return null;
+        }
+
+        final long startOffset = byteCountingIn.getBytesConsumed();
+        final StandardProvenanceEventRecord.Builder builder = new StandardProvenanceEventRecord.Builder();
+
+        final long eventId = previousEventId + readSignedLong(dis);
+        previousEventId = eventId;
+
+        final ProvenanceEventType eventType = ProvenanceEventType.valueOf(readDictionaryString(dis));
+        builder.setEventType(eventType);
+
+        final long eventTime = previousEventTime + readSignedLong(dis);
+        previousEventTime = eventTime;
+        builder.setEventTime(eventTime);
+        builder.setFlowFileEntryDate(eventTime - readSignedLong(dis));
+        builder.setEventDuration(readSignedLong(dis));
+        builder.setLineageStartDate(eventTime - readSignedLong(dis));
+
+        builder.setComponentId(readDictionaryString(dis));
+        builder.setComponentType(readDictionaryString(dis));
+        builder.setFlowFileUUID(readString(dis));
+        builder.setDetails(readString(dis));
+
+        // Read in the FlowFile Attributes
+        final Map<String, String> previousAttrs = readAttributes(dis);
+        final Map<String, String> attrUpdates = readAttributes(dis);
+        builder.setAttributes(previousAttrs, attrUpdates);
+
+        final boolean hasContentClaim = dis.readBoolean();
+        if (hasContentClaim) {
+            builder.setCurrentContentClaim(readDictionaryString(dis), readDictionaryString(dis), readDictionaryString(dis), readUnsignedLong(dis), readUnsignedLong(dis));
+        } else {
+            builder.setCurrentContentClaim(null, null, null, null, 0L);
+        }
+
+        final boolean hasPreviousClaim = dis.readBoolean();
+        if (hasPreviousClaim) {
+            builder.setPreviousContentClaim(readDictionaryString(dis), readDictionaryString(dis), readDictionaryString(dis), readUnsignedLong(dis), readUnsignedLong(dis));
+        }
+
+        builder.setSourceQueueIdentifier(readDictionaryString(dis));
+
+        // Read Event-Type specific fields.
+        if (eventType == ProvenanceEventType.FORK || eventType == ProvenanceEventType.JOIN || eventType == ProvenanceEventType.CLONE || eventType == ProvenanceEventType.REPLAY) {
+            final int numParents = (int) readUnsignedLong(dis);
+            for (int i = 0; i < numParents; i++) {
+                builder.addParentUuid(readString(dis));
+            }
+
+            final int numChildren = (int) readUnsignedLong(dis);
+            for (int i = 0; i < numChildren; i++) {
+                builder.addChildUuid(readString(dis));
+            }
+        } else if (eventType == ProvenanceEventType.RECEIVE) {
+            builder.setTransitUri(readString(dis));
+            builder.setSourceSystemFlowFileIdentifier(readString(dis));
+        } else if (eventType == ProvenanceEventType.FETCH) {
+            builder.setTransitUri(readString(dis));
+        } else if (eventType == ProvenanceEventType.SEND) {
+            builder.setTransitUri(readString(dis));
+        } else if (eventType == ProvenanceEventType.ADDINFO) {
+            builder.setAlternateIdentifierUri(readString(dis));
+        } else if (eventType == ProvenanceEventType.ROUTE) {
+            builder.setRelationship(readDictionaryString(dis));
+        }
+
+        builder.setStorageLocation(filename, startOffset);
+
+        final StandardProvenanceEventRecord record = builder.build();
+        record.setEventId(eventId);
+        return record;
+    }
+
+    private Map<String, String> readAttributes(final DataInputStream dis) throws IOException {
+        final int numAttributes = (int) readUnsignedLong(dis);
+        final Map<String, String> attrs = new HashMap<>();
+        for (int i = 0; i < numAttributes; i++) {
+            final String key = readDictionaryString(dis);
+            final String value = readString(dis);
+            final String truncatedValue;
+            if (value == null) {
+                truncatedValue = null;
+            } else if (value.length() > maxAttributeChars) {
+                truncatedValue = value.substring(0, maxAttributeChars);
+            } else {
+                truncatedValue = value;
+            }
+
+            attrs.put(key, truncatedValue);
+        }
+
+        return attrs;
+    }
+
+    private String readDictionaryString(final DataInputStream in) throws IOException {
+        final long code = readUnsignedLong(in);
+        if (code == EncodedRecordWriter.NULL_STRING) {
+            return null;
+        }
+
+        if (code == EncodedRecordWriter.NEW_STRING) {
+            final int length = (int) readUnsignedLong(in);
+            final String value = readUTF8(in, length);
+
+            // mirror the writer, which clears its dictionary when it is full
+            if (dictionary.size() >= EncodedRecordWriter.MAX_DICTIONARY_SIZE) {
+                dictionary.clear();
+            }
+            dictionary.add(value);
+            return value;
+        }
+
+        final long index = code - EncodedRecordWriter.DICTIONARY_OFFSET;
+        if (index >= dictionary.size()) {
+            throw new IOException("Failed to parse Provenance Event Record from " + filename + ": referenced string " + index
+                + " but the dictionary contains only " + dictionary.size() + " strings");
+        }
+        return dictionary.get((int) index);
+    }
+
+    private String readString(final DataInputStream in) throws IOException {
+        final long length = readUnsignedLong(in);
+        if (length == 0L) {
+            return null;
+        }
+
+        return readUTF8(in, (int) (length - 1));
+    }
+
+    private String readUTF8(final DataInputStream in, final int length) throws IOException {
+        final byte[] strBytes = new byte[length];
+        StreamUtils.fillBuffer(in, strBytes);
+        return new String(strBytes, StandardCharsets.UTF_8);
+    }
+
+    private long readSignedLong(final DataInputStream in) throws IOException {
+        final long encoded = readUnsignedLong(in);
+        return (encoded >>> 1) ^ -(encoded & 1L);
+    }
+
+    private long readUnsignedLong(final DataInputStream in) throws IOException {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Failed to parse Provenance Event Record from " + filename + ": variable-length integer is too long");
+    }
+
+    private boolean isData() throws IOException {
+        byteCountingIn.mark(1);
+        int nextByte = byteCountingIn.read();
+        byteCountingIn.reset();
+
+        if (nextByte < 0) {
+            try {
+                resetStreamForNextBlock();
+
+                byteCountingIn.mark(1);
+                nextByte = byteCountingIn.read();
+                byteCountingIn.reset();
+            } catch (final EOFException eof) {
+                // a compressed stream throws EOFException, rather than indicating the end of the stream, if there is no data
+                return false;
+            }
+        }
+
+        return nextByte >= 0;
+    }
+
+    @Override
+    public long getMaxEventId() throws IOException {
+        if (tocReader != null) {
+            final long lastBlockOffset = tocReader.getLastBlockOffset();
+            skipToBlock(tocReader.getBlockIndex(lastBlockOffset));
+        }
+
+        ProvenanceEventRecord record;
+        ProvenanceEventRecord lastRecord = null;
+        try {
+            while ((record = nextRecord()) != null) {
+                lastRecord = record;
+            }
+        } catch (final EOFException eof) {
+            // This can happen if we stop NIFi while the record is being written.
+            // This is OK, we just ignore this record. The session will not have been
+            // committed, so we can just process the FlowFile again.
+        }
+
+        return lastRecord == null ? -1L : lastRecord.getEventId();
+    }
+
+    @Override
+    public void close() throws IOException {
+        logger.trace("Closing Record Reader for {}", filename);
+
+        try {
+            dis.close();
+            rawInputStream.close();
+
+            if (tocReader != null) {
+                tocReader.close();
+            }
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Because the strings of an event may refer to strings of earlier events in the same block, the events between the
+     * current position and the given number of bytes must be read rather than skipped.
+     */
+    @Override
+    public void skip(final long bytesToSkip) throws IOException {
+        skipTo(byteCountingIn.getBytesConsumed() + bytesToSkip);
+    }
+
+    /**
+     * Skips to the event that begins at the given offset, which is the storage byte offset of an event that was read from this file.
+     * Because the strings of an event may refer to strings of earlier events in the same block, the events before the given offset
+     * are read rather than skipped.
+     */
+    @Override
+    public void skipTo(final long position) throws IOException {
+        final long currentPosition = byteCountingIn.getBytesConsumed();
+        if (currentPosition > position) {
+            throw new IOException("Cannot skip to byte offset " + position + " in stream because already at byte offset " + currentPosition);
+        }
+
+        while (byteCountingIn.getBytesConsumed() < position) {
+            if (nextRecord() == null) {
+                throw new EOFException("Cannot skip to byte offset " + position + " in stream because the stream ends at byte offset " + byteCountingIn.getBytesConsumed());
+            }
+        }
+    }
+}
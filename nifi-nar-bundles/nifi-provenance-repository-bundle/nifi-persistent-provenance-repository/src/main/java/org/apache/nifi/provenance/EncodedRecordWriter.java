@@ -0,0 +1,458 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.nifi.provenance.serialization.RecordWriter;
+import org.apache.nifi.provenance.toc.TocWriter;
+import org.apache.nifi.stream.io.BufferedOutputStream;
+import org.apache.nifi.stream.io.ByteCountingOutputStream;
+import org.apache.nifi.stream.io.DataOutputStream;
+import org.apache.nifi.stream.io.NonCloseableOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A RecordWriter that writes Provenance Events using a compact, dictionary-encoded format. The file begins with an
+ * uncompressed header that identifies the format, its version, and whether or not the blocks are compressed. Each block
+ * that is recorded in the Table of Contents is then written (and, if compressed, deflated) independently of all other blocks,
+ * so that any block can be read without reading the ones before it.
+ * </p>
+ *
+ * <p>
+ * Within a block, values that are repeated from one event to the next, such as Component ID's, Content Claim identifiers,
+ * and attribute names, are written in full only the first time that they occur. Every later occurrence refers to the
+ * first by its position in the block's dictionary. Numbers are written as variable-length integers, and timestamps are written
+ * relative to the previous event or to the event's time.
+ * </p>
+ */
+public class EncodedRecordWriter implements RecordWriter {
+    private static final Logger logger = LoggerFactory.getLogger(EncodedRecordWriter.class);
+
+    public static final int SERIALIZATION_VERSION = 1;
+
+    /**
+     * The maximum number of distinct strings in the dictionary of a block. When the dictionary is full, it is cleared
+     * before the next string is added. This keeps the dictionary bounded for files that do not have a Table of Contents,
+     * and therefore consist of a single block.
+     */
+    static final int MAX_DICTIONARY_SIZE = 65536;
+
+    // Dictionary strings are written as 0 for null, 1 followed by the string for a new entry, or the index of an existing entry + 2
+    static final int NULL_STRING = 0;
+    static final int NEW_STRING = 1;
+    static final int DICTIONARY_OFFSET = 2;
+
+    private final File file;
+    private final FileOutputStream fos;
+    private final ByteCountingOutputStream rawOutStream;
+    private final TocWriter tocWriter;
+    private final boolean compressed;
+    private final int uncompressedBlockSize;
+    private final Deflater deflater;
+    private final AtomicBoolean dirtyFlag = new AtomicBoolean(false);
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    private DataOutputStream out;
+    private DeflaterOutputStream deflaterOut;
+    private ByteCountingOutputStream byteCountingOut;
+    private long lastBlockOffset = 0L;
+    private long previousEventId = 0L;
+    private long previousEventTime = 0L;
+    private int recordCount = 0;
+    private volatile boolean closed = false;
+
+    private final Lock lock = new ReentrantLock();
+
+
+    public EncodedRecordWriter(final File file, final TocWriter writer, final boolean compressed, final int uncompressedBlockSize) throws IOException {
+        this(file, writer, compressed, uncompressedBlockSize, Deflater.BEST_SPEED);
+    }
+
+    public EncodedRecordWriter(final File file, final TocWriter writer, final boolean compressed, final int uncompressedBlockSize, final int compressionLevel) throws IOException {
+        logger.trace("Creating Record Writer for {}", file.getName());
+
+        this.file = file;
+        this.compressed = compressed;
+        this.fos = new FileOutputStream(file);
+        rawOutStream = new ByteCountingOutputStream(fos);
+        this.uncompressedBlockSize = uncompressedBlockSize;
+        this.deflater = compressed ? new Deflater(compressionLevel) : null;
+
+        this.tocWriter = writer;
+    }
+
+    @Override
+    public synchronized File getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void writeHeader(final long firstEventId) throws IOException {
+        if (isDirty()) {
+            throw new IOException("Cannot update Provenance Repository because this Record Writer has already failed to write to the Repository");
+        }
+
+        try {
+            // The header is never compressed, so that readers are able to determine the format of the file before reading any blocks
+            final DataOutputStream headerOut = new DataOutputStream(new NonCloseableOutputStream(rawOutStream));
+            headerOut.writeUTF(EncodedRecordWriter.class.getName());
+            headerOut.writeInt(SERIALIZATION_VERSION);
+            headerOut.writeBoolean(compressed);
+            headerOut.flush();
+
+            resetWriteStream(firstEventId);
+        } catch (final IOException ioe) {
+            markDirty();
+            throw ioe;
+        }
+    }
+
+    /**
+     * Completes the current block, if there is one, and prepares the streams for a new block
+     *
+     * @param eventId the first id that will be written to the new block
+     * @throws IOException if unable to flush/complete the current block
+     */
+    private void resetWriteStream(final long eventId) throws IOException {
+        try {
+            if (out != null) {
+                out.flush();
+            }
+
+            if (deflaterOut != null) {
+                // finish() writes the remainder of the deflated block without closing the underlying stream
+                deflaterOut.finish();
+                deflater.reset();
+            }
+
+            if (tocWriter != null) {
+                tocWriter.addBlockOffset(rawOutStream.getBytesWritten(), eventId);
+            }
+
+            final OutputStream writableStream;
+            if (compressed) {
+                deflaterOut = new DeflaterOutputStream(new NonCloseableOutputStream(rawOutStream), deflater, 65536);
+                writableStream = new BufferedOutputStream(deflaterOut, 65536);
+            } else {
+                writableStream = new BufferedOutputStream(rawOutStream, 65536);
+            }
+
+            this.byteCountingOut = new ByteCountingOutputStream(writableStream, rawOutStream.getBytesWritten());
+            this.out = new DataOutputStream(byteCountingOut);
+            this.lastBlockOffset = byteCountingOut.getBytesWritten();
+
+            // each block is self-contained, so that it can be read without reading the blocks before it
+            dictionary.clear();
+            previousEventId = 0L;
+            previousEventTime = 0L;
+            dirtyFlag.set(false);
+        } catch (final IOException ioe) {
+            markDirty();
+            throw ioe;
+        }
+    }
+
+    @Override
+    public synchronized long writeRecord(final ProvenanceEventRecord record, final long recordIdentifier) throws IOException {
+        if (isDirty()) {
+            throw new IOException("Cannot update Provenance Repository because this Record Writer has already failed to write to the Repository");
+        }
+
+        try {
+            final ProvenanceEventType recordType = record.getEventType();
+
+            // add a new block to the TOC if needed. Unlike the StandardRecordWriter, we do this whether or not the data is compressed,
+            // because the dictionary is scoped to the block.
+            if (tocWriter != null && byteCountingOut.getBytesWritten() - lastBlockOffset >= uncompressedBlockSize) {
+                resetWriteStream(recordIdentifier);
+            }
+
+            final long startBytes = byteCountingOut.getBytesWritten();
+
+            writeSignedLong(out, recordIdentifier - previousEventId);
+            previousEventId = recordIdentifier;
+
+            writeDictionaryString(out, recordType.name());
+
+            final long eventTime = record.getEventTime();
+            writeSignedLong(out, eventTime - previousEventTime);
+            previousEventTime = eventTime;
+
+            writeSignedLong(out, eventTime - record.getFlowFileEntryDate());
+            writeSignedLong(out, record.getEventDuration());
+            writeSignedLong(out, eventTime - record.getLineageStartDate());
+
+            writeDictionaryString(out, record.getComponentId());
+            writeDictionaryString(out, record.getComponentType());
+            writeString(out, record.getFlowFileUuid());
+            writeString(out, record.getDetails());
+
+            // Write FlowFile attributes
+            final Map<String, String> attrs = record.getPreviousAttributes();
+            writeUnsignedLong(out, attrs.size());
+            for (final Map.Entry<String, String> entry : attrs.entrySet()) {
+                writeDictionaryString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+
+            final Map<String, String> attrUpdates = record.getUpdatedAttributes();
+            writeUnsignedLong(out, attrUpdates.size());
+            for (final Map.Entry<String, String> entry : attrUpdates.entrySet()) {
+                writeDictionaryString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+
+            // If Content Claim Info is present, write out a 'TRUE' followed by claim info. Else, write out 'false'.
+            if (record.getContentClaimSection() != null && record.getContentClaimContainer() != null && record.getContentClaimIdentifier() != null) {
+                out.writeBoolean(true);
+                writeDictionaryString(out, record.getContentClaimContainer());
+                writeDictionaryString(out, record.getContentClaimSection());
+                writeDictionaryString(out, record.getContentClaimIdentifier());
+                writeUnsignedLong(out, record.getContentClaimOffset() == null ? 0L : record.getContentClaimOffset());
+                writeUnsignedLong(out, record.getFileSize());
+            } else {
+                out.writeBoolean(false);
+            }
+
+            // If Previous Content Claim Info is present, write out a 'TRUE' followed by claim info. Else, write out 'false'.
+            if (record.getPreviousContentClaimSection() != null && record.getPreviousContentClaimContainer() != null && record.getPreviousContentClaimIdentifier() != null) {
+                out.writeBoolean(true);
+                writeDictionaryString(out, record.getPreviousContentClaimContainer());
+                writeDictionaryString(out, record.getPreviousContentClaimSection());
+                writeDictionaryString(out, record.getPreviousContentClaimIdentifier());
+                writeUnsignedLong(out, record.getPreviousContentClaimOffset() == null ? 0L : record.getPreviousContentClaimOffset());
+                writeUnsignedLong(out, record.getPreviousFileSize() == null ? 0L : record.getPreviousFileSize());
+            } else {
+                out.writeBoolean(false);
+            }
+
+            // write out the identifier of the destination queue.
+            writeDictionaryString(out, record.getSourceQueueIdentifier());
+
+            // Write type-specific info
+            if (recordType == ProvenanceEventType.FORK || recordType == ProvenanceEventType.JOIN || recordType == ProvenanceEventType.CLONE || recordType == ProvenanceEventType.REPLAY) {
+                writeStrings(out, record.getParentUuids());
+                writeStrings(out, record.getChildUuids());
+            } else if (recordType == ProvenanceEventType.RECEIVE) {
+                writeString(out, record.getTransitUri());
+                writeString(out, record.getSourceSystemFlowFileIdentifier());
+            } else if (recordType == ProvenanceEventType.FETCH) {
+                writeString(out, record.getTransitUri());
+            } else if (recordType == ProvenanceEventType.SEND) {
+                writeString(out, record.getTransitUri());
+            } else if (recordType == ProvenanceEventType.ADDINFO) {
+                writeString(out, record.getAlternateIdentifierUri());
+            } else if (recordType == ProvenanceEventType.ROUTE) {
+                writeDictionaryString(out, record.getRelationship());
+            }
+
+            out.flush();
+            recordCount++;
+            if (tocWriter != null) {
+                tocWriter.getSummary().update(record, recordIdentifier);
+            }
+
+            return byteCountingOut.getBytesWritten() - startBytes;
+        } catch (final IOException ioe) {
+            markDirty();
+            throw ioe;
+        }
+    }
+
+    private void writeDictionaryString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            writeUnsignedLong(out, NULL_STRING);
+            return;
+        }
+
+        final Integer index = dictionary.get(value);
+        if (index != null) {
+            writeUnsignedLong(out, index + DICTIONARY_OFFSET);
+            return;
+        }
+
+        if (dictionary.size() >= MAX_DICTIONARY_SIZE) {
+            dictionary.clear();
+        }
+
+        dictionary.put(value, dictionary.size());
+        writeUnsignedLong(out, NEW_STRING);
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeStrings(final DataOutputStream out, final Collection<String> values) throws IOException {
+        if (values == null) {
+            writeUnsignedLong(out, 0L);
+        } else {
+            writeUnsignedLong(out, values.size());
+            for (final String value : values) {
+                writeString(out, value);
+            }
+        }
+    }
+
+    /**
+     * Writes the given string as its length + 1, followed by its UTF-8 bytes, or a length of 0 if the string is <code>null</code>
+     */
+    private void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            writeUnsignedLong(out, 0L);
+        } else {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeUnsignedLong(out, bytes.length + 1L);
+            out.write(bytes);
+        }
+    }
+
+    private void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException {
+        writeUnsignedLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeSignedLong(final DataOutputStream out, final long value) throws IOException {
+        // zig-zag encoding, so that values close to zero use few bytes, whether they are positive or negative
+        writeUnsignedLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    private void writeUnsignedLong(final DataOutputStream out, final long value) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0L) {
+            out.write((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        out.write((int) remaining);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+
+        logger.trace("Closing Record Writer for {}", file.getName());
+
+        lock();
+        try {
+            try {
+                // We want to finish the current block only if the writer is not 'dirty'.
+                // If the writer is dirty, then there was a failure to write to disk, which means that
+                // we likely have a partial record written to disk. See StandardRecordWriter#close
+                if (out != null && !isDirty()) {
+                    out.flush();
+                    if (deflaterOut != null) {
+                        deflaterOut.finish();
+                    }
+                }
+            } finally {
+                try {
+                    rawOutStream.close();
+                } finally {
+                    if (deflater != null) {
+                        deflater.end();
+                    }
+
+                    if (tocWriter != null) {
+                        tocWriter.close();
+                    }
+                }
+            }
+        } catch (final IOException ioe) {
+            markDirty();
+            throw ioe;
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public synchronized int getRecordsWritten() {
+        return recordCount;
+    }
+
+    @Override
+    public void lock() {
+        lock.lock();
+    }
+
+    @Override
+    public void unlock() {
+        lock.unlock();
+    }
+
+    @Override
+    public boolean tryLock() {
+        final boolean obtainedLock = lock.tryLock();
+        if (obtainedLock && dirtyFlag.get()) {
+            // once we have obtained the lock, we need to check if the writer
+            // has been marked dirty. If so, we cannot write to the underlying
+            // file, so we need to unlock and return false.
+            lock.unlock();
+            return false;
+        }
+        return obtainedLock;
+    }
+
+    @Override
+    public String toString() {
+        return "EncodedRecordWriter[file=" + file + "]";
+    }
+
+    @Override
+    public void sync() throws IOException {
+        try {
+            if (tocWriter != null) {
+                tocWriter.sync();
+            }
+            fos.getFD().sync();
+        } catch (final IOException ioe) {
+            markDirty();
+            throw ioe;
+        }
+    }
+
+    @Override
+    public TocWriter getTocWriter() {
+        return tocWriter;
+    }
+
+    @Override
+    public void markDirty() {
+        dirtyFlag.set(true);
+    }
+
+    public boolean isDirty() {
+        return dirtyFlag.get();
+    }
+}
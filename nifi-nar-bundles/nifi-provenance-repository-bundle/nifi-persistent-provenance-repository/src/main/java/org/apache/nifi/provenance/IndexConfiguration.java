@@ -202,13 +202,9 @@ public class IndexConfiguration {
      * @param endTime the end time of the query for which the indices are
      * desired
      * @return the index directories that are applicable only for the given time
-     * span (times inclusive).
+     * span (times inclusive), newest index first.
      */
     public List<File> getIndexDirectories(final Long startTime, final Long endTime) {
-        if (startTime == null && endTime == null) {
-            return getIndexDirectories();
-        }
-
         final List<File> dirs = new ArrayList<>();
         lock.lock();
         try {
@@ -0,0 +1,942 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.nifi.authorization.Authorizer;
+import org.apache.nifi.authorization.user.NiFiUser;
+import org.apache.nifi.events.EventReporter;
+import org.apache.nifi.provenance.lucene.FieldNames;
+import org.apache.nifi.provenance.lucene.IndexingAction;
+import org.apache.nifi.provenance.lucene.LuceneUtil;
+import org.apache.nifi.provenance.serialization.RecordReader;
+import org.apache.nifi.provenance.serialization.RecordReaders;
+import org.apache.nifi.provenance.serialization.RecordWriter;
+import org.apache.nifi.provenance.serialization.RecordWriters;
+import org.apache.nifi.provenance.toc.EventFileSummary;
+import org.apache.nifi.provenance.toc.TocReader;
+import org.apache.nifi.reporting.Severity;
+import org.apache.nifi.util.NiFiProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A Provenance Repository that does not make use of journals. The {@link PersistentProvenanceRepository}
+ * writes events to journals and, on rollover, merges the journals into a single compressed Provenance
+ * Event Log File, indexing the events as it goes. Because all of the events must pass through the merge,
+ * the rate at which events can be stored is bound by the rate at which a single thread can merge them,
+ * and when the merge falls behind, the repository must throttle the threads that register events.
+ * </p>
+ *
+ * <p>
+ * This repository instead maintains one partition per storage directory. Each partition writes events
+ * directly into its final (optionally compressed) Provenance Event Log File, along with its Table of
+ * Contents. Each time that a block of the file is completed, the events in that block are handed to a
+ * pool of indexing threads, so events are indexed while they are being written and there is no merge step.
+ * The rate at which events can be stored therefore scales with the number of storage directories and
+ * indexing threads. If indexing does fall behind, the threads that register events block only until
+ * there is room for another block in the indexing queue.
+ * </p>
+ *
+ * <p>
+ * The files and indices that are written are the same as those written by the PersistentProvenanceRepository,
+ * so all querying, lineage, and expiration logic is shared. Because partitions write concurrently, however,
+ * the range of Event IDs in one Provenance Event Log File may overlap with the range of Event IDs in a file
+ * in another storage directory.
+ * </p>
+ *
+ * <p>
+ * Each partition also flushes on its own schedule, so an event may become readable before an event with a lower
+ * Event ID that is still buffered by another partition. In order for callers that page through the events by
+ * Event ID to not skip the lower ID, {@link #getMaxEventId()} and {@link #getEvents(long, int, NiFiUser)} expose
+ * only the events below the lowest Event ID that has been reserved but not yet flushed by any partition.
+ * </p>
+ */
+public class PartitionedProvenanceRepository extends PersistentProvenanceRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedProvenanceRepository.class);
+
+    static final String CLEAN_SHUTDOWN_FILENAME = ".indexed";
+    private static final long INDEX_COMMIT_MILLIS = 1000L;
+    private static final int INDEX_QUEUE_BLOCKS_PER_THREAD = 4;
+    private static final int MAX_EVENTS_PER_INDEX_TASK = 1000;
+
+    private final RepositoryConfiguration configuration;
+    private final int rolloverCheckMillis;
+    private final Partition[] partitions;
+    private final AtomicLong partitionIndex = new AtomicLong(0L);
+
+    private final BlockingQueue<IndexTask> indexQueue;
+    private final Set<IndexHandle> activeIndexHandles = Collections.newSetFromMap(new ConcurrentHashMap<IndexHandle, Boolean>());
+    private final AtomicInteger indexTasksInFlight = new AtomicInteger(0);
+    private final AtomicBoolean indexingStopped = new AtomicBoolean(false);
+    private final AtomicBoolean initialized = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private final ExecutorService indexExecutor;
+    private final ScheduledExecutorService maintenanceExecutor;
+    private IndexingAction indexingAction; // effectively final
+
+    /**
+     * default no args constructor for service loading only.
+     */
+    public PartitionedProvenanceRepository() {
+        configuration = null;
+        rolloverCheckMillis = 0;
+        partitions = null;
+        indexQueue = null;
+        indexExecutor = null;
+        maintenanceExecutor = null;
+    }
+
+    public PartitionedProvenanceRepository(final NiFiProperties nifiProperties) throws IOException {
+        super(nifiProperties);
+        this.configuration = getConfiguration();
+        this.rolloverCheckMillis = 10000;
+
+        final int indexThreads = configuration.getIndexThreadPoolSize();
+        this.partitions = createPartitions(configuration);
+        this.indexQueue = new LinkedBlockingQueue<>(indexThreads * INDEX_QUEUE_BLOCKS_PER_THREAD);
+        this.indexExecutor = Executors.newFixedThreadPool(indexThreads, new NamedThreadFactory("Provenance Indexing Thread"));
+        this.maintenanceExecutor = Executors.newScheduledThreadPool(1, new NamedThreadFactory("Provenance Partition Maintenance Thread"));
+    }
+
+    public PartitionedProvenanceRepository(final RepositoryConfiguration configuration, final int rolloverCheckMillis) throws IOException {
+        super(configuration, rolloverCheckMillis);
+        this.configuration = configuration;
+        this.rolloverCheckMillis = rolloverCheckMillis;
+
+        final int indexThreads = configuration.getIndexThreadPoolSize();
+        this.partitions = createPartitions(configuration);
+        this.indexQueue = new LinkedBlockingQueue<>(indexThreads * INDEX_QUEUE_BLOCKS_PER_THREAD);
+        this.indexExecutor = Executors.newFixedThreadPool(indexThreads, new NamedThreadFactory("Provenance Indexing Thread"));
+        this.maintenanceExecutor = Executors.newScheduledThreadPool(1, new NamedThreadFactory("Provenance Partition Maintenance Thread"));
+    }
+
+    private Partition[] createPartitions(final RepositoryConfiguration configuration) {
+        final List<File> storageDirectories = configuration.getStorageDirectories();
+        final Partition[] partitions = new Partition[storageDirectories.size()];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition(storageDirectories.get(i));
+        }
+        return partitions;
+    }
+
+    @Override
+    public void initialize(final EventReporter eventReporter, final Authorizer authorizer, final ProvenanceAuthorizableFactory resourceFactory) throws IOException {
+        super.initialize(eventReporter, authorizer, resourceFactory);
+
+        if (initialized.getAndSet(true) || !configuration.isAllowRollover()) {
+            return;
+        }
+
+        indexingAction = createIndexingAction();
+        for (int i = 0; i < configuration.getIndexThreadPoolSize(); i++) {
+            indexExecutor.submit(new IndexEvents());
+        }
+
+        reindexIncompleteEventFiles();
+
+        maintenanceExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (final Partition partition : partitions) {
+                    try {
+                        partition.rolloverIfExpired();
+                    } catch (final Exception e) {
+                        logger.error("Failed to roll over Provenance Event Log File for {} due to {}", partition, e.toString());
+                        logger.error("", e);
+                        getEventReporter().reportEvent(Severity.ERROR, EVENT_CATEGORY, "Failed to roll over Provenance Event Log due to " + e.toString());
+                    }
+                }
+            }
+        }, rolloverCheckMillis, rolloverCheckMillis, TimeUnit.MILLISECONDS);
+
+        maintenanceExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                for (final IndexHandle handle : activeIndexHandles) {
+                    handle.commit();
+                }
+            }
+        }, INDEX_COMMIT_MILLIS, INDEX_COMMIT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Events are written directly to the Provenance Event Log Files of each partition, so no journals are created.
+     */
+    @Override
+    protected RecordWriter[] createWriters(final RepositoryConfiguration config, final long initialRecordId) throws IOException {
+        return new RecordWriter[0];
+    }
+
+    @Override
+    protected int getEventFileBlockBytes() {
+        return configuration.getCompressionBlockBytes();
+    }
+
+    @Override
+    public void registerEvent(final ProvenanceEventRecord event) {
+        persistRecords(Collections.singletonList(event));
+    }
+
+    @Override
+    public void registerEvents(final Iterable<ProvenanceEventRecord> events) {
+        final List<ProvenanceEventRecord> eventList = new ArrayList<>();
+        for (final ProvenanceEventRecord event : events) {
+            eventList.add(event);
+        }
+
+        persistRecords(eventList);
+    }
+
+    private void persistRecords(final List<ProvenanceEventRecord> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        // Attempt to obtain the lock of each partition once, so that threads spread themselves across
+        // the partitions. If all partitions are busy, wait for the next one in line.
+        Partition partition = null;
+        for (int i = 0; i < partitions.length && partition == null; i++) {
+            final Partition candidate = partitions[(int) (partitionIndex.getAndIncrement() % partitions.length)];
+            if (candidate.tryLock()) {
+                partition = candidate;
+            }
+        }
+
+        if (partition == null) {
+            partition = partitions[(int) (partitionIndex.getAndIncrement() % partitions.length)];
+            partition.lock();
+        }
+
+        try {
+            partition.write(events);
+            updateEventRollups(events);
+        } catch (final IOException ioe) {
+            logger.error("Failed to persist Provenance Event due to {}.", ioe.toString());
+            logger.error("", ioe);
+            getEventReporter().reportEvent(Severity.ERROR, EVENT_CATEGORY, "Failed to persist Provenance Event due to " + ioe.toString());
+
+            // The file that we were writing to may now contain a partial record, so we roll over to a new file.
+            try {
+                partition.rollover();
+            } catch (final IOException e) {
+                logger.error("Failed to roll over Provenance Event Log File for {} due to {}", partition, e.toString());
+                logger.error("", e);
+            }
+        } finally {
+            partition.unlock();
+        }
+    }
+
+    /**
+     * @return the lowest Event ID that has been reserved but has not yet been flushed to its Provenance Event Log File, or the
+     *         next Event ID to be reserved if all events have been flushed. All events with a lower Event ID can be read.
+     */
+    long getFlushedEventIdLimit() {
+        // The next ID must be obtained before the partitions are checked. A partition marks the ID that it is about to reserve
+        // before reserving it, so any ID below the next ID that is still being written is accounted for by its partition.
+        long limit = getNextEventId();
+        if (partitions != null) {
+            for (final Partition partition : partitions) {
+                limit = Math.min(limit, partition.getLowestUnflushedEventId());
+            }
+        }
+
+        return limit;
+    }
+
+    @Override
+    public Long getMaxEventId() {
+        final Long maxIndexedId = super.getMaxEventId();
+        if (maxIndexedId == null) {
+            return null;
+        }
+
+        final long maxFlushedId = getFlushedEventIdLimit() - 1;
+        return maxFlushedId < 0 ? null : Math.min(maxIndexedId, maxFlushedId);
+    }
+
+    @Override
+    public List<ProvenanceEventRecord> getEvents(final long firstRecordId, final int maxRecords, final NiFiUser user) throws IOException {
+        // Only the contiguous range of events that have been flushed is returned. Otherwise, a caller that continues from the
+        // largest Event ID returned would never see an event with a lower ID that is still being written by another partition.
+        final long eventIdLimit = getFlushedEventIdLimit();
+
+        // The files in a single storage directory contain increasing Event ID's, but files in different storage directories
+        // may overlap. So we find the events in each storage directory and then combine them.
+        final Map<File, List<Path>> pathsByDirectory = new HashMap<>();
+        for (final Path path : getAllLogFiles()) {
+            final File directory = path.toFile().getParentFile();
+            List<Path> paths = pathsByDirectory.get(directory);
+            if (paths == null) {
+                paths = new ArrayList<>();
+                pathsByDirectory.put(directory, paths);
+            }
+            paths.add(path);
+        }
+
+        final List<ProvenanceEventRecord> records = new ArrayList<>();
+        for (final List<Path> paths : pathsByDirectory.values()) {
+            Collections.sort(paths, new Comparator<Path>() {
+                @Override
+                public int compare(final Path o1, final Path o2) {
+                    return Long.compare(getFirstEventId(o1), getFirstEventId(o2));
+                }
+            });
+
+            // Start with the last file whose first Event ID is not greater than the ID requested
+            int startIndex = 0;
+            for (int i = 0; i < paths.size(); i++) {
+                if (getFirstEventId(paths.get(i)) <= firstRecordId) {
+                    startIndex = i;
+                }
+            }
+
+            records.addAll(getEvents(paths.subList(startIndex, paths.size()), firstRecordId, eventIdLimit, maxRecords, user));
+        }
+
+        Collections.sort(records, new Comparator<ProvenanceEventRecord>() {
+            @Override
+            public int compare(final ProvenanceEventRecord o1, final ProvenanceEventRecord o2) {
+                return Long.compare(o1.getEventId(), o2.getEventId());
+            }
+        });
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Retrieving up to {} records starting at Event ID {}; returning {} events", maxRecords, firstRecordId, Math.min(maxRecords, records.size()));
+        }
+
+        return records.size() > maxRecords ? new ArrayList<>(records.subList(0, maxRecords)) : records;
+    }
+
+    private List<ProvenanceEventRecord> getEvents(final List<Path> paths, final long firstRecordId, final long eventIdLimit, final int maxRecords, final NiFiUser user) {
+        final List<ProvenanceEventRecord> records = new ArrayList<>();
+        for (final Path path : paths) {
+            try (final RecordReader reader = RecordReaders.newRecordReader(path.toFile(), getAllLogFiles(), getMaxAttributeCharacters())) {
+                if (records.isEmpty()) {
+                    final TocReader tocReader = reader.getTocReader();
+                    if (tocReader != null) {
+                        final Integer blockIndex = tocReader.getBlockIndexForEventId(firstRecordId);
+                        if (blockIndex != null) {
+                            reader.skipToBlock(blockIndex);
+                        }
+                    }
+                }
+
+                StandardProvenanceEventRecord record;
+                while (records.size() < maxRecords && (record = reader.nextRecord()) != null) {
+                    if (record.getEventId() >= eventIdLimit) {
+                        // Event ID's increase within a storage directory, so no later event can be returned either.
+                        return records;
+                    }
+
+                    if (record.getEventId() >= firstRecordId && isAuthorized(record, user)) {
+                        records.add(record);
+                    }
+                }
+            } catch (final EOFException | FileNotFoundException fnfe) {
+                // assume file aged off, or that we have reached the block that is currently being written. All events in
+                // that block are at or above the Event ID limit, as they have not been flushed.
+            } catch (final IOException ioe) {
+                logger.error("Failed to read Provenance Event File {} due to {}", path.toFile(), ioe.toString());
+                logger.error("", ioe);
+                getEventReporter().reportEvent(Severity.ERROR, EVENT_CATEGORY, "Failed to read Provenance Event File " + path.toFile() + " due to " + ioe.toString());
+            }
+
+            if (records.size() >= maxRecords) {
+                break;
+            }
+        }
+
+        return records;
+    }
+
+    private static long getFirstEventId(final Path path) {
+        return Long.parseLong(LuceneUtil.substringBefore(path.toFile().getName(), "."));
+    }
+
+    /**
+     * The last Provenance Event Log File of each partition may not have been completely indexed if the repository
+     * was not shut down cleanly. For each storage directory that does not indicate a clean shutdown, we remove the
+     * last file's events from the index and index the file again.
+     */
+    private void reindexIncompleteEventFiles() {
+        for (final Partition partition : partitions) {
+            final File cleanShutdownFile = new File(partition.directory, CLEAN_SHUTDOWN_FILENAME);
+            if (cleanShutdownFile.exists()) {
+                if (!cleanShutdownFile.delete()) {
+                    logger.warn("Failed to delete {}; if NiFi is not shut down cleanly, Provenance Events may not be re-indexed upon restart", cleanShutdownFile);
+                }
+                continue;
+            }
+
+            File lastFile = null;
+            for (final Path path : getAllLogFiles()) {
+                final File file = path.toFile();
+                if (partition.directory.equals(file.getParentFile()) && (lastFile == null || getFirstEventId(path) > getFirstEventId(lastFile.toPath()))) {
+                    lastFile = file;
+                }
+            }
+
+            if (lastFile != null) {
+                try {
+                    reindex(lastFile);
+                } catch (final IOException ioe) {
+                    logger.error("Failed to re-index Provenance Event Log File {} due to {}", lastFile, ioe.toString());
+                    logger.error("", ioe);
+                    getEventReporter().reportEvent(Severity.ERROR, EVENT_CATEGORY, "Failed to re-index Provenance Event Log File " + lastFile + " due to " + ioe.toString());
+                }
+            }
+        }
+    }
+
+    private void reindex(final File eventFile) throws IOException {
+        logger.info("Provenance Repository was not shut down cleanly; re-indexing {}", eventFile);
+
+        final Term term = new Term(FieldNames.STORAGE_FILENAME, LuceneUtil.substringBefore(eventFile.getName(), "."));
+        for (final File indexDirectory : getIndexConfiguration().getIndexDirectories(eventFile)) {
+            final IndexWriter indexWriter = getIndexManager().borrowIndexWriter(indexDirectory);
+            try {
+                indexWriter.deleteDocuments(term);
+            } finally {
+                getIndexManager().returnIndexWriter(indexDirectory, indexWriter);
+            }
+        }
+
+        IndexHandle handle = null;
+        final EventFileSummary summary = new EventFileSummary();
+        final AtomicInteger failureCount = new AtomicInteger(0);
+        List<StandardProvenanceEventRecord> events = new ArrayList<>();
+        Integer blockIndex = null;
+        int recordCount = 0;
+
+        try (final RecordReader reader = RecordReaders.newRecordReader(eventFile, null, Integer.MAX_VALUE)) {
+            final TocReader tocReader = reader.getTocReader();
+
+            StandardProvenanceEventRecord record;
+            while ((record = nextRecord(reader)) != null) {
+                if (handle == null) {
+                    handle = new IndexHandle(getIndexConfiguration().getWritableIndexDirectory(eventFile, record.getEventTime()));
+                    getEventFileSummaries().beginIndexing(eventFile, handle.indexDirectory);
+                }
+
+                summary.update(record, record.getEventId());
+
+                final Integer recordBlockIndex = tocReader == null ? null : tocReader.getBlockIndexForEventId(record.getEventId());
+                if (!events.isEmpty() && (events.size() >= MAX_EVENTS_PER_INDEX_TASK || !isSameBlock(blockIndex, recordBlockIndex))) {
+                    submitIndexTask(new IndexTask(handle, eventFile, events, blockIndex, failureCount));
+                    events = new ArrayList<>();
+                }
+
+                blockIndex = recordBlockIndex;
+                events.add(record);
+                recordCount++;
+            }
+
+            if (!events.isEmpty()) {
+                submitIndexTask(new IndexTask(handle, eventFile, events, blockIndex, failureCount));
+            }
+
+            // The file was not closed cleanly, so it may have no summary yet.
+            getEventFileSummaries().add(eventFile, summary);
+        } finally {
+            if (handle != null) {
+                handle.release();
+            }
+        }
+
+        logger.info("Submitted {} Provenance Events from {} to be re-indexed", recordCount, eventFile);
+    }
+
+    private static StandardProvenanceEventRecord nextRecord(final RecordReader reader) throws IOException {
+        try {
+            return reader.nextRecord();
+        } catch (final EOFException eof) {
+            // This can happen if NiFi was stopped while a block was being written. The events in that block were never
+            // made available, so there is nothing to index.
+            return null;
+        }
+    }
+
+    private static boolean isSameBlock(final Integer blockIndex, final Integer otherBlockIndex) {
+        return blockIndex == null ? otherBlockIndex == null : blockIndex.equals(otherBlockIndex);
+    }
+
+    private void submitIndexTask(final IndexTask task) {
+        task.handle.retain();
+        indexTasksInFlight.incrementAndGet();
+
+        try {
+            indexQueue.put(task);
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            indexTasksInFlight.decrementAndGet();
+            task.handle.release();
+            logger.warn("Interrupted while waiting to index {} Provenance Events from {}; these events will not be searchable", task.events.size(), task.eventFile);
+        }
+    }
+
+    /**
+     * Method is exposed for unit testing. Rolls over the Provenance Event Log File of each partition, so that all events
+     * are handed to the indexing threads, and waits until all of them have been indexed and committed.
+     *
+     * @throws IOException if unable to roll over a partition
+     */
+    void waitForIndexing() throws IOException {
+        for (final Partition partition : partitions) {
+            partition.lock();
+            try {
+                partition.rollover();
+            } finally {
+                partition.unlock();
+            }
+        }
+
+        while (indexTasksInFlight.get() > 0) {
+            try {
+                Thread.sleep(10L);
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        for (final IndexHandle handle : activeIndexHandles) {
+            handle.commit();
+        }
+    }
+
+    @Override
+    protected boolean isIndexDirectoryInUse(final File indexDirectory) {
+        for (final IndexHandle handle : activeIndexHandles) {
+            if (handle.indexDirectory.getAbsoluteFile().equals(indexDirectory.getAbsoluteFile())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (partitions == null || closed.getAndSet(true)) {
+            super.close();
+            return;
+        }
+
+        maintenanceExecutor.shutdownNow();
+
+        // Close the file of each partition, which hands its remaining events to the indexing threads.
+        for (final Partition partition : partitions) {
+            partition.lock();
+            try {
+                partition.rollover();
+            } catch (final IOException ioe) {
+                logger.warn("Failed to close Provenance Event Log File for {} due to {}", partition, ioe.toString());
+            } finally {
+                partition.releaseIndexHandle();
+                partition.unlock();
+            }
+        }
+
+        // Wait for the indexing threads to finish indexing all of the events that they have been given.
+        indexingStopped.set(true);
+        indexExecutor.shutdown();
+        boolean indexingComplete = false;
+        try {
+            indexingComplete = indexExecutor.awaitTermination(5, TimeUnit.MINUTES) && indexTasksInFlight.get() == 0;
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (indexingComplete) {
+            for (final Partition partition : partitions) {
+                final File cleanShutdownFile = new File(partition.directory, CLEAN_SHUTDOWN_FILENAME);
+                if (!cleanShutdownFile.exists() && !cleanShutdownFile.createNewFile()) {
+                    logger.warn("Failed to create {}; the last Provenance Event Log File in {} will be re-indexed upon restart", cleanShutdownFile, partition.directory);
+                }
+            }
+        } else {
+            logger.warn("Timed out waiting for Provenance Events to be indexed; the remaining events will be indexed upon restart");
+            indexExecutor.shutdownNow();
+        }
+
+        super.close();
+    }
+
+    /**
+     * The Provenance Event Log File that is being written to a single storage directory. All methods
+     * other than lock, tryLock, and unlock must be called while holding the lock.
+     */
+    private class Partition {
+        private final File directory;
+        private final Lock lock = new ReentrantLock();
+
+        private RecordWriter writer;
+        private IndexHandle indexHandle;
+        private File indexedFile;
+        private AtomicInteger indexingFailureCount;
+        private long fileCreationTime;
+        private long bytesWritten;
+        private List<StandardProvenanceEventRecord> pendingEvents = new ArrayList<>();
+        private int pendingBlockIndex = -1;
+
+        // the lowest Event ID that this partition has reserved but not yet flushed, or Long.MAX_VALUE if there is none
+        private volatile long lowestUnflushedEventId = Long.MAX_VALUE;
+
+        public Partition(final File directory) {
+            this.directory = directory;
+        }
+
+        public void lock() {
+            lock.lock();
+        }
+
+        public boolean tryLock() {
+            return lock.tryLock();
+        }
+
+        public void unlock() {
+            lock.unlock();
+        }
+
+        public long getLowestUnflushedEventId() {
+            return lowestUnflushedEventId;
+        }
+
+        public void write(final List<ProvenanceEventRecord> events) throws IOException {
+            // If no events are unflushed, mark the next Event ID before reserving, so that there is no moment at which
+            // the reserved ID's are neither flushed nor accounted for. See getFlushedEventIdLimit.
+            final boolean unflushed = lowestUnflushedEventId != Long.MAX_VALUE;
+            if (!unflushed) {
+                lowestUnflushedEventId = getNextEventId();
+            }
+
+            // Event ID's are reserved while holding the lock so that they are increasing within each file.
+            final long firstEventId = reserveEventIds(events.size());
+            if (!unflushed) {
+                lowestUnflushedEventId = firstEventId;
+            }
+
+            long eventId = firstEventId;
+            try {
+                if (writer == null) {
+                    createWriter(firstEventId);
+                }
+
+                final File file = writer.getFile();
+                for (final ProvenanceEventRecord event : events) {
+                    bytesWritten += writer.writeRecord(event, eventId);
+
+                    // Once the writer has started a new block, the previous block is complete and can be read,
+                    // so its events can be indexed. Uncompressed files consist of a single block whose events
+                    // can be read as soon as they are written, so we hand them off in batches.
+                    final int blockIndex = writer.getTocWriter().getCurrentBlockIndex();
+                    if (blockIndex != pendingBlockIndex || (!configuration.isCompressOnRollover() && pendingEvents.size() >= MAX_EVENTS_PER_INDEX_TASK)) {
+                        handOffPendingEvents(file);
+                        pendingBlockIndex = blockIndex;
+                        lowestUnflushedEventId = eventId;
+                    }
+
+                    final StandardProvenanceEventRecord indexableEvent = new StandardProvenanceEventRecord.Builder()
+                        .fromEvent(event)
+                        .setStorageLocation(file.getName(), 0L)
+                        .build();
+                    indexableEvent.setEventId(eventId);
+                    pendingEvents.add(indexableEvent);
+                    eventId++;
+                }
+
+                if (configuration.isAlwaysSync()) {
+                    writer.sync();
+                }
+
+                // Uncompressed records are flushed to the file as they are written, so they can be read right away.
+                if (!configuration.isCompressOnRollover()) {
+                    lowestUnflushedEventId = Long.MAX_VALUE;
+                }
+            } catch (final IOException ioe) {
+                // The block that was being written now contains a partial record and cannot be read, so its events cannot be indexed.
+                // Those events will never be flushed, so they must no longer hold back the events that follow them.
+                pendingEvents = new ArrayList<>();
+                lowestUnflushedEventId = Long.MAX_VALUE;
+                throw ioe;
+            }
+
+            if (bytesWritten >= configuration.getMaxEventFileCapacity()) {
+                rollover();
+            }
+        }
+
+        private void createWriter(final long firstEventId) throws IOException {
+            final String filename = firstEventId + ".prov" + (configuration.isCompressOnRollover() ? ".gz" : "");
+            final File file = new File(directory, filename);
+
+            writer = RecordWriters.newRecordWriter(file, configuration.isCompressOnRollover(), true, getEventFileBlockBytes(), configuration.isDictionaryEncoded());
+            writer.writeHeader(firstEventId);
+
+            fileCreationTime = System.currentTimeMillis();
+            bytesWritten = 0L;
+            pendingBlockIndex = writer.getTocWriter().getCurrentBlockIndex();
+
+            addLogFile(firstEventId, file);
+            logger.debug("Created new Provenance Event Log File {}", file);
+        }
+
+        private void handOffPendingEvents(final File file) {
+            if (pendingEvents.isEmpty()) {
+                return;
+            }
+
+            // The first time that events from a file are handed off, determine which index they belong to. The Index Writer
+            // is kept across files for as long as the index is used, so that rolling over a file does not require closing it.
+            if (!file.equals(indexedFile)) {
+                long earliestEventTime = Long.MAX_VALUE;
+                for (final StandardProvenanceEventRecord event : pendingEvents) {
+                    earliestEventTime = Math.min(earliestEventTime, event.getEventTime());
+                }
+
+                try {
+                    final File indexDirectory = getIndexConfiguration().getWritableIndexDirectory(file, earliestEventTime);
+                    getEventFileSummaries().beginIndexing(file, indexDirectory);
+                    if (indexHandle == null || !indexHandle.indexDirectory.equals(indexDirectory)) {
+                        releaseIndexHandle();
+                        indexHandle = new IndexHandle(indexDirectory);
+                    }
+
+                    indexedFile = file;
+                    indexingFailureCount = new AtomicInteger(0);
+                } catch (final IOException ioe) {
+                    logger.error("Failed to obtain Index Writer for {} due to {}; {} Provenance Events will not be searchable", file, ioe.toString(), pendingEvents.size());
+                    logger.error("", ioe);
+                    getEventReporter().reportEvent(Severity.ERROR, EVENT_CATEGORY, "Failed to obtain Index Writer for " + file + " due to " + ioe.toString());
+                    pendingEvents = new ArrayList<>();
+                    return;
+                }
+            }
+
+            submitIndexTask(new IndexTask(indexHandle, file, pendingEvents, pendingBlockIndex, indexingFailureCount));
+            pendingEvents = new ArrayList<>();
+        }
+
+        public void releaseIndexHandle() {
+            if (indexHandle != null) {
+                indexHandle.release();
+                indexHandle = null;
+                indexedFile = null;
+            }
+        }
+
+        public void rolloverIfExpired() throws IOException {
+            if (!tryLock()) {
+                // the partition is actively being written to, so its size will trigger a rollover if necessary
+                return;
+            }
+
+            try {
+                if (writer != null && System.currentTimeMillis() - fileCreationTime >= configuration.getMaxEventFileLife(TimeUnit.MILLISECONDS)) {
+                    rollover();
+                }
+            } finally {
+                unlock();
+            }
+        }
+
+        public void rollover() throws IOException {
+            if (writer == null) {
+                return;
+            }
+
+            final RecordWriter closing = writer;
+            writer = null;
+
+            try {
+                closing.close();
+
+                // Closing the writer completes the last block, so the remaining events can now be indexed.
+                handOffPendingEvents(closing.getFile());
+                getEventFileSummaries().add(closing.getFile(), closing.getTocWriter().getSummary());
+            } finally {
+                pendingEvents = new ArrayList<>();
+                lowestUnflushedEventId = Long.MAX_VALUE;
+            }
+
+            logger.debug("Rolled over Provenance Event Log File {} containing {} events", closing.getFile(), closing.getRecordsWritten());
+        }
+
+        @Override
+        public String toString() {
+            return "Partition[directory=" + directory + "]";
+        }
+    }
+
+    /**
+     * Holds the Index Writer that is used to index events into a single index directory. The writer is returned
+     * to the Index Manager once a Partition no longer writes to the index and all of its events have been indexed.
+     */
+    private class IndexHandle {
+        private final File indexDirectory;
+        private final IndexWriter indexWriter;
+        private final AtomicInteger references = new AtomicInteger(1);
+        private boolean returned = false;
+
+        public IndexHandle(final File indexDirectory) throws IOException {
+            this.indexDirectory = indexDirectory;
+            this.indexWriter = getIndexManager().borrowIndexWriter(indexDirectory);
+            activeIndexHandles.add(this);
+        }
+
+        public void retain() {
+            references.incrementAndGet();
+        }
+
+        public void release() {
+            if (references.decrementAndGet() == 0) {
+                activeIndexHandles.remove(this);
+
+                synchronized (this) {
+                    returned = true;
+                    getIndexManager().returnIndexWriter(indexDirectory, indexWriter);
+                }
+            }
+        }
+
+        public synchronized void commit() {
+            if (returned || !indexWriter.hasUncommittedChanges()) {
+                return;
+            }
+
+            try {
+                indexWriter.commit();
+            } catch (final IOException ioe) {
+                logger.warn("Failed to commit Provenance Index {} due to {}", indexDirectory, ioe.toString());
+                if (logger.isDebugEnabled()) {
+                    logger.warn("", ioe);
+                }
+            }
+        }
+    }
+
+    private static class IndexTask {
+        private final IndexHandle handle;
+        private final File eventFile;
+        private final List<StandardProvenanceEventRecord> events;
+        private final Integer blockIndex;
+        private final AtomicInteger failureCount;
+
+        public IndexTask(final IndexHandle handle, final File eventFile, final List<StandardProvenanceEventRecord> events,
+            final Integer blockIndex, final AtomicInteger failureCount) {
+            this.handle = handle;
+            this.eventFile = eventFile;
+            this.events = events;
+            this.blockIndex = blockIndex;
+            this.failureCount = failureCount;
+        }
+    }
+
+    private class IndexEvents implements Runnable {
+        @Override
+        public void run() {
+            while (true) {
+                final IndexTask task;
+                try {
+                    task = indexQueue.poll(100L, TimeUnit.MILLISECONDS);
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                if (task == null) {
+                    if (indexingStopped.get()) {
+                        return;
+                    }
+
+                    continue;
+                }
+
+                try {
+                    index(task);
+                } finally {
+                    task.handle.release();
+                    indexTasksInFlight.decrementAndGet();
+                }
+            }
+        }
+
+        private void index(final IndexTask task) {
+            final IndexHandle handle = task.handle;
+            long maxEventId = -1L;
+
+            for (final StandardProvenanceEventRecord event : task.events) {
+                if (task.failureCount.get() >= MAX_INDEXING_FAILURE_COUNT) {
+                    break;
+                }
+
+                try {
+                    indexingAction.index(event, handle.indexWriter, task.blockIndex);
+                } catch (final Throwable t) {
+                    logger.error("Failed to index Provenance Event for " + task.eventFile + " to " + handle.indexDirectory, t);
+                    if (task.failureCount.incrementAndGet() >= MAX_INDEXING_FAILURE_COUNT) {
+                        final String warning = String.format("Indexing Provenance Events for %s has failed %s times. This exceeds the maximum threshold of %s failures, "
+                            + "so no more Provenance Events will be indexed for this Provenance file.", task.eventFile, task.failureCount.get(), MAX_INDEXING_FAILURE_COUNT);
+                        logger.warn(warning);
+                        getEventReporter().reportEvent(Severity.WARNING, EVENT_CATEGORY, warning);
+                    }
+                }
+
+                maxEventId = Math.max(maxEventId, event.getEventId());
+            }
+
+            if (maxEventId > -1L) {
+                getIndexConfiguration().setMaxIdIndexed(maxEventId);
+            }
+
+            for (final StandardProvenanceEventRecord event : task.events) {
+                addToLatestRecords(event);
+            }
+        }
+    }
+}
@@ -78,6 +78,7 @@ import org.apache.nifi.authorization.resource.Authorizable;
 import org.apache.nifi.authorization.user.NiFiUser;
 import org.apache.nifi.events.EventReporter;
 import org.apache.nifi.processor.DataUnit;
+import org.apache.nifi.provenance.expiration.ColdStorageMigrationAction;
 import org.apache.nifi.provenance.expiration.ExpirationAction;
 import org.apache.nifi.provenance.expiration.FileRemovalAction;
 import org.apache.nifi.provenance.lineage.ComputeLineageSubmission;
@@ -89,10 +90,13 @@ import org.apache.nifi.provenance.lucene.FieldNames;
 import org.apache.nifi.provenance.lucene.IndexManager;
 import org.apache.nifi.provenance.lucene.IndexSearch;
 import org.apache.nifi.provenance.lucene.IndexingAction;
+import org.apache.nifi.provenance.lucene.LineageCache;
 import org.apache.nifi.provenance.lucene.LineageQuery;
 import org.apache.nifi.provenance.lucene.LuceneUtil;
+import org.apache.nifi.provenance.lucene.NewestEventIds;
 import org.apache.nifi.provenance.lucene.SimpleIndexManager;
 import org.apache.nifi.provenance.lucene.UpdateMinimumEventId;
+import org.apache.nifi.provenance.rollup.ProvenanceEventRollup;
 import org.apache.nifi.provenance.search.Query;
 import org.apache.nifi.provenance.search.QueryResult;
 import org.apache.nifi.provenance.search.QuerySubmission;
@@ -101,6 +105,8 @@ import org.apache.nifi.provenance.serialization.RecordReader;
 import org.apache.nifi.provenance.serialization.RecordReaders;
 import org.apache.nifi.provenance.serialization.RecordWriter;
 import org.apache.nifi.provenance.serialization.RecordWriters;
+import org.apache.nifi.provenance.toc.EventFileSummaries;
+import org.apache.nifi.provenance.toc.EventFileSummary;
 import org.apache.nifi.provenance.toc.TocReader;
 import org.apache.nifi.provenance.toc.TocUtil;
 import org.apache.nifi.reporting.Severity;
@@ -158,8 +164,14 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
     private final ScheduledExecutorService scheduledExecService;
     private final ScheduledExecutorService rolloverExecutor;
     private final ExecutorService queryExecService;
+    private final ExecutorService indexSearchExecService;
 
     private final List<ExpirationAction> expirationActions = new ArrayList<>();
+    private final Map<File, File> coldStorageDirectories = new HashMap<>();
+    private volatile ColdStorageMigrationAction coldStorageMigrationAction;
+    private final EventFileSummaries eventFileSummaries = new EventFileSummaries();
+    private final LineageCache lineageCache = new LineageCache();
+    private final EventRollupAggregator eventRollups;
 
     private final ConcurrentMap<String, AsyncQuerySubmission> querySubmissionMap = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, AsyncLineageSubmission> lineageSubmissionMap = new ConcurrentHashMap<>();
@@ -196,9 +208,11 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
         scheduledExecService = null;
         rolloverExecutor = null;
         queryExecService = null;
+        indexSearchExecService = null;
         eventReporter = null;
         authorizer = null;
         resourceFactory = null;
+        eventRollups = null;
     }
 
     public PersistentProvenanceRepository(final NiFiProperties nifiProperties) throws IOException {
@@ -230,9 +244,29 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
         this.indexManager = new SimpleIndexManager();
         this.alwaysSync = configuration.isAlwaysSync();
         this.rolloverCheckMillis = rolloverCheckMillis;
+        this.eventRollups = new EventRollupAggregator(Math.min(configuration.getMaxRecordLife(TimeUnit.MILLISECONDS), configuration.getRollupRetention(TimeUnit.MILLISECONDS)));
+
+        // Each storage directory has its own directory in cold storage, so that the files that are migrated remain associated
+        // with the storage directory that holds their indices
+        final File coldStorageDirectory = configuration.getColdStorageDirectory();
+        if (coldStorageDirectory != null) {
+            for (final File storageDirectory : configuration.getStorageDirectories()) {
+                final File coldDirectory = new File(coldStorageDirectory, storageDirectory.getName());
+                if (coldStorageDirectories.containsValue(coldDirectory)) {
+                    throw new IllegalArgumentException("Cannot migrate Provenance Event files to cold storage because more than one storage directory is named "
+                        + storageDirectory.getName());
+                }
 
-        scheduledExecService = Executors.newScheduledThreadPool(3, new NamedThreadFactory("Provenance Maintenance Thread"));
+                coldStorageDirectories.put(storageDirectory.getAbsoluteFile(), coldDirectory);
+                eventFileSummaries.addStorageDirectoryAlias(coldDirectory, storageDirectory);
+            }
+        }
+
+        scheduledExecService = Executors.newScheduledThreadPool(4, new NamedThreadFactory("Provenance Maintenance Thread"));
         queryExecService = Executors.newFixedThreadPool(configuration.getQueryThreadPoolSize(), new NamedThreadFactory("Provenance Query Thread"));
+        // Each index shard of a query is searched by a separate task, so these threads are kept separate from the query threads,
+        // and sized separately, so that a query over many shards is not limited to the few threads that the other queries need.
+        indexSearchExecService = Executors.newFixedThreadPool(configuration.getIndexSearchThreadPoolSize(), new NamedThreadFactory("Provenance Index Search Thread"));
 
         // The number of rollover threads is a little bit arbitrary but comes from the idea that multiple storage directories generally
         // live on separate physical partitions. As a result, we want to use at least one thread per partition in order to utilize the
@@ -246,6 +280,20 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
         return indexManager;
     }
 
+    /**
+     * @return the summaries of the Provenance Event Log Files, which allow searches to skip indices that cannot contain a match
+     */
+    public EventFileSummaries getEventFileSummaries() {
+        return eventFileSummaries;
+    }
+
+    /**
+     * @return the cache of the events that lineage computations have retrieved for each FlowFile
+     */
+    public LineageCache getLineageCache() {
+        return lineageCache;
+    }
+
     @Override
     public void initialize(final EventReporter eventReporter, final Authorizer authorizer, final ProvenanceAuthorizableFactory resourceFactory) throws IOException {
         writeLock.lock();
@@ -310,6 +358,24 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
                         }
                     }
                 }, PURGE_EVENT_MILLISECONDS, PURGE_EVENT_MILLISECONDS, TimeUnit.MILLISECONDS);
+
+                if (!coldStorageDirectories.isEmpty()) {
+                    coldStorageMigrationAction = new ColdStorageMigrationAction(coldStorageDirectories, getEventFileBlockBytes());
+                    scheduledExecService.scheduleWithFixedDelay(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                migrateToColdStorage();
+                            } catch (final Exception e) {
+                                logger.error("Failed to migrate Provenance Event files to cold storage due to {}", e.toString());
+                                if (logger.isDebugEnabled()) {
+                                    logger.error("", e);
+                                }
+                                eventReporter.reportEvent(Severity.ERROR, EVENT_CATEGORY, "Failed to migrate Provenance Event files to cold storage due to " + e.toString());
+                            }
+                        }
+                    }, PURGE_EVENT_MILLISECONDS, PURGE_EVENT_MILLISECONDS, TimeUnit.MILLISECONDS);
+                }
             }
 
             firstEventTimestamp = determineFirstEventTimestamp();
@@ -330,6 +396,8 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
         final String shardSize = nifiProperties.getProperty(NiFiProperties.PROVENANCE_INDEX_SHARD_SIZE, "500 MB");
         final int queryThreads = nifiProperties.getIntegerProperty(NiFiProperties.PROVENANCE_QUERY_THREAD_POOL_SIZE, 2);
         final int indexThreads = nifiProperties.getIntegerProperty(NiFiProperties.PROVENANCE_INDEX_THREAD_POOL_SIZE, 1);
+        final int indexSearchThreads = nifiProperties.getIntegerProperty(NiFiProperties.PROVENANCE_INDEX_SEARCH_THREAD_POOL_SIZE,
+            RepositoryConfiguration.getDefaultIndexSearchThreadPoolSize());
         final int journalCount = nifiProperties.getIntegerProperty(NiFiProperties.PROVENANCE_JOURNAL_COUNT, 16);
 
         final long storageMillis = FormatUtils.getTimeDuration(storageTime, TimeUnit.MILLISECONDS);
@@ -342,6 +410,7 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
         final String indexedAttrString = nifiProperties.getProperty(NiFiProperties.PROVENANCE_INDEXED_ATTRIBUTES);
 
         final Boolean alwaysSync = Boolean.parseBoolean(nifiProperties.getProperty("nifi.provenance.repository.always.sync", "false"));
+        final boolean dictionaryEncoded = Boolean.parseBoolean(nifiProperties.getProperty(NiFiProperties.PROVENANCE_DICTIONARY_ENCODING, "false"));
 
         final int defaultMaxAttrChars = 65536;
         final String maxAttrLength = nifiProperties.getProperty("nifi.provenance.repository.max.attribute.length", String.valueOf(defaultMaxAttrChars));
@@ -371,6 +440,7 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
             config.addStorageDirectory(path.toFile());
         }
         config.setCompressOnRollover(compressOnRollover);
+        config.setDictionaryEncoded(dictionaryEncoded);
         config.setSearchableFields(searchableFields);
         config.setSearchableAttributes(searchableAttributes);
         config.setMaxEventFileCapacity(rolloverBytes);
@@ -379,6 +449,7 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
         config.setMaxStorageCapacity(maxStorageBytes);
         config.setQueryThreadPoolSize(queryThreads);
         config.setIndexThreadPoolSize(indexThreads);
+        config.setIndexSearchThreadPoolSize(indexSearchThreads);
         config.setJournalCount(journalCount);
         config.setMaxAttributeChars(maxAttrChars);
 
@@ -388,6 +459,16 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
 
         config.setAlwaysSync(alwaysSync);
 
+        final String rollupRetention = nifiProperties.getProperty(NiFiProperties.PROVENANCE_ROLLUP_RETENTION, NiFiProperties.DEFAULT_PROVENANCE_ROLLUP_RETENTION);
+        config.setRollupRetention(FormatUtils.getTimeDuration(rollupRetention.trim(), TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+
+        final String coldStorageDirectory = nifiProperties.getProperty(NiFiProperties.PROVENANCE_COLD_STORAGE_DIRECTORY);
+        if (coldStorageDirectory != null && !coldStorageDirectory.trim().isEmpty()) {
+            final String coldStorageAge = nifiProperties.getProperty(NiFiProperties.PROVENANCE_COLD_STORAGE_AGE, "24 hours");
+            config.setColdStorageDirectory(new File(coldStorageDirectory.trim()));
+            config.setColdStorageAge(FormatUtils.getTimeDuration(coldStorageAge, TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+        }
+
         return config;
     }
 
@@ -401,7 +482,7 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
             final File journalDirectory = new File(storageDirectory, "journals");
             final File journalFile = new File(journalDirectory, String.valueOf(initialRecordId) + ".journal." + i);
 
-            writers[i] = RecordWriters.newRecordWriter(journalFile, false, false);
+            writers[i] = RecordWriters.newRecordWriter(journalFile, false, false, RecordWriters.DEFAULT_COMPRESSION_BLOCK_SIZE, config.isDictionaryEncoded());
             writers[i].writeHeader(initialRecordId);
         }
 
@@ -433,6 +514,34 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
         persistRecord(events);
     }
 
+    /**
+     * Adds the given events, which have been written to the repository, to the per-component rollups
+     *
+     * @param events the events that were written
+     */
+    protected void updateEventRollups(final Iterable<ProvenanceEventRecord> events) {
+        for (final ProvenanceEventRecord event : events) {
+            eventRollups.update(event);
+        }
+    }
+
+    @Override
+    public List<ProvenanceEventRollup> getEventRollups(final long startTime, final long endTime, final String componentId, final NiFiUser user) {
+        return eventRollups.getRollups(startTime, endTime, componentId, id -> isAuthorized(id, user));
+    }
+
+    private boolean isAuthorized(final String componentId, final NiFiUser user) {
+        if (authorizer == null || user == null) {
+            return true;
+        }
+
+        try {
+            return resourceFactory.createDataAuthorizable(componentId).isAuthorized(authorizer, RequestAction.READ, user);
+        } catch (final ResourceNotFoundException rnfe) {
+            return false;
+        }
+    }
+
     public boolean isAuthorized(final ProvenanceEventRecord event, final NiFiUser user) {
         if (authorizer == null || user == null) {
             return true;
@@ -577,8 +686,12 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
         long maxIndexedId = -1L;
         long minIndexedId = Long.MAX_VALUE;
 
+        // Event files that have been migrated to cold storage are recovered along with those in the storage directories
+        final List<File> eventFileDirectories = new ArrayList<>(configuration.getStorageDirectories());
+        eventFileDirectories.addAll(coldStorageDirectories.values());
+
         final List<File> filesToRecover = new ArrayList<>();
-        for (final File file : configuration.getStorageDirectories()) {
+        for (final File file : eventFileDirectories) {
             final File[] matchingFiles = file.listFiles(new FileFilter() {
                 @Override
                 public boolean accept(final File pathname) {
@@ -591,6 +704,10 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
                     return NUMBER_PATTERN.matcher(baseFilename).matches();
                 }
             });
+            if (matchingFiles == null) {
+                continue;
+            }
+
             for (final File matchingFile : matchingFiles) {
                 filesToRecover.add(matchingFile);
             }
@@ -603,7 +720,10 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
             }
         });
 
-        File maxIdFile = null;
+        // Keep track of the file with the greatest first ID in each storage directory. Event files in different
+        // storage directories may have been written concurrently, so the greatest Event ID is not necessarily
+        // in the file whose first ID is the greatest.
+        final Map<File, File> maxIdFiles = new HashMap<>();
         for (final File file : filesToRecover) {
             final String filename = file.getName();
             final String baseName = filename.substring(0, filename.indexOf("."));
@@ -612,7 +732,11 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
 
             if (firstId > maxId) {
                 maxId = firstId;
-                maxIdFile = file;
+            }
+
+            final File maxIdFile = maxIdFiles.get(file.getParentFile());
+            if (maxIdFile == null || firstId > getFirstEventId(maxIdFile)) {
+                maxIdFiles.put(file.getParentFile(), file);
             }
 
             if (firstId > maxIndexedId) {
@@ -624,7 +748,7 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
             }
         }
 
-        if (maxIdFile != null) {
+        for (final File maxIdFile : maxIdFiles.values()) {
             // Determine the max ID in the last file.
             try (final RecordReader reader = RecordReaders.newRecordReader(maxIdFile, getAllLogFiles(), maxAttributeChars)) {
                 final long eventId = reader.getMaxEventId();
@@ -695,6 +819,12 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
             logger.error("", ioe);
         }
 
+        final List<File> recoveredFiles = new ArrayList<>();
+        for (final Path path : sortedPathMap.values()) {
+            recoveredFiles.add(path.toFile());
+        }
+        eventFileSummaries.recover(recoveredFiles);
+
         idToPathMap.set(Collections.unmodifiableSortedMap(sortedPathMap));
         logger.trace("In recovery, path map: {}", sortedPathMap);
 
@@ -719,6 +849,7 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
             scheduledExecService.shutdownNow();
             rolloverExecutor.shutdownNow();
             queryExecService.shutdownNow();
+            indexSearchExecService.shutdownNow();
 
             getIndexManager().close();
 
@@ -772,6 +903,7 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
                         writer.sync();
                     }
 
+                    updateEventRollups(records);
                     totalJournalSize = bytesWrittenSinceRollover.addAndGet(bytesWritten);
                     recordsWrittenSinceRollover.getAndIncrement();
                 } catch (final Throwable t) {
@@ -979,6 +1111,7 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
         // Age off the data.
         final Set<String> removed = new LinkedHashSet<>();
         for (File file : uniqueFilesToPurge) {
+            final File eventFile = file;
             final String baseName = LuceneUtil.substringBefore(file.getName(), ".");
             ExpirationAction currentAction = null;
             try {
@@ -994,6 +1127,7 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
                 }
 
                 removed.add(baseName);
+                eventFileSummaries.remove(eventFile);
             } catch (final FileNotFoundException fnf) {
                 logger.warn("Failed to perform Expiration Action {} on Provenance Event file {} because the file no longer exists; will not "
                         + "perform additional Expiration Actions on this file", currentAction, file);
@@ -1036,6 +1170,80 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
         purgeExpiredIndexes();
     }
 
+    /**
+     * Migrates the Provenance Event Log Files that are older than the configured cold storage age to the cold storage directory.
+     * The newest file of each storage directory is never migrated, as it may still be written to.
+     */
+    void migrateToColdStorage() {
+        final ColdStorageMigrationAction migrationAction = coldStorageMigrationAction;
+        if (migrationAction == null) {
+            return;
+        }
+
+        final long timeCutoff = System.currentTimeMillis() - configuration.getColdStorageAge(TimeUnit.MILLISECONDS);
+        final Map<File, File> newestFiles = new HashMap<>();
+        final List<File> toMigrate = new ArrayList<>();
+        for (final File file : getSortedLogFiles()) {
+            final File directory = file.getAbsoluteFile().getParentFile();
+            if (!coldStorageDirectories.containsKey(directory)) {
+                continue;
+            }
+
+            final File previousNewest = newestFiles.put(directory, file);
+            if (previousNewest != null && previousNewest.lastModified() < timeCutoff) {
+                toMigrate.add(previousNewest);
+            }
+        }
+
+        for (final File file : toMigrate) {
+            if (isShutdownComplete()) {
+                return;
+            }
+
+            migrateToColdStorage(migrationAction, file);
+        }
+    }
+
+    // synchronized with purgeOldEvents so that a file is never migrated and purged at the same time
+    private synchronized void migrateToColdStorage(final ColdStorageMigrationAction migrationAction, final File eventFile) {
+        if (!eventFile.exists()) {
+            // the file was purged since it was selected
+            return;
+        }
+
+        final File migratedFile;
+        try {
+            final StopWatch stopWatch = new StopWatch(true);
+            migratedFile = migrationAction.execute(eventFile);
+            stopWatch.stop();
+            logger.debug("Migrated Provenance Event file {} to cold storage in {}", eventFile, stopWatch.getDuration());
+        } catch (final Throwable t) {
+            logger.warn("Failed to migrate Provenance Event file {} to cold storage due to {}; will try again later", eventFile, t.toString());
+            logger.warn("", t);
+            eventReporter.reportEvent(Severity.WARNING, EVENT_CATEGORY, "Failed to migrate Provenance Event file " + eventFile + " to cold storage due to " + t.toString());
+            return;
+        }
+
+        eventFileSummaries.relocate(eventFile, migratedFile);
+
+        boolean updated = false;
+        while (!updated) {
+            final SortedMap<Long, Path> existingPathMap = idToPathMap.get();
+            final SortedMap<Long, Path> newPathMap = new TreeMap<>(new PathMapComparator());
+            newPathMap.putAll(existingPathMap);
+            newPathMap.put(getFirstEventId(migratedFile), migratedFile.toPath());
+
+            updated = idToPathMap.compareAndSet(existingPathMap, newPathMap);
+        }
+    }
+
+    /**
+     * @return the number of uncompressed bytes after which a new block is started in the Provenance Event Log Files
+     */
+    protected int getEventFileBlockBytes() {
+        return RecordWriters.DEFAULT_COMPRESSION_BLOCK_SIZE;
+    }
+
     private void purgeExpiredIndexes() throws IOException {
         // Now that we have potentially removed expired Provenance Event Log Files, we can look at
         // whether or not we can delete any of the indexes. An index can be deleted if all of the
@@ -1057,8 +1265,23 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
         // Therefore, an efficient way to determine the latest timestamp of one index is to look at the
         // timestamp of the next index (these could potentially overlap for one millisecond). This is
         // efficient because we can determine the earliest timestamp of an index simply by looking at
-        // the name of the Index's directory.
-        final long latestTimestampOfFirstIndex = getIndexTimestamp(indexDirs.get(1));
+        // the name of the Index's directory. Each storage directory rolls over its own indexes, so the next index
+        // must be taken from the same storage directory; if there is none, the first index is still being written to.
+        final File indexingDirectory = indexDirs.get(0);
+        File nextIndexDirectory = null;
+        for (final File indexDir : indexDirs.subList(1, indexDirs.size())) {
+            if (indexDir.getParentFile().equals(indexingDirectory.getParentFile())) {
+                nextIndexDirectory = indexDir;
+                break;
+            }
+        }
+
+        if (nextIndexDirectory == null) {
+            this.firstEventTimestamp = determineFirstEventTimestamp();
+            return;
+        }
+
+        final long latestTimestampOfFirstIndex = getIndexTimestamp(nextIndexDirectory);
 
         // Get the timestamp of the first event in the first Provenance Event Log File and the ID of the last event
         // in the event file.
@@ -1081,11 +1304,11 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
         }
 
         // check if we can delete the index safely.
-        if (latestTimestampOfFirstIndex <= earliestEventTime) {
+        if (latestTimestampOfFirstIndex <= earliestEventTime && !isIndexDirectoryInUse(indexingDirectory)) {
             // we can safely delete the first index because the latest event in the index is an event
             // that has already been expired from the repository.
-            final File indexingDirectory = indexDirs.get(0);
             getIndexManager().removeIndex(indexingDirectory);
+            lineageCache.invalidate(indexingDirectory);
             indexConfig.removeIndexDirectory(indexingDirectory);
             deleteDirectory(indexingDirectory);
 
@@ -1315,21 +1538,8 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
                             }
 
                             if (fileRolledOver != null) {
-
-                                final File file = fileRolledOver;
-
-                                // update our map of id to Path
-                                // We need to make sure that another thread doesn't also update the map at the same time. We cannot
-                                // use the write lock when purging old events, and we want to use the same approach here.
-                                boolean updated = false;
                                 final Long fileFirstEventId = Long.valueOf(LuceneUtil.substringBefore(fileRolledOver.getName(), "."));
-                                while (!updated) {
-                                    final SortedMap<Long, Path> existingPathMap = idToPathMap.get();
-                                    final SortedMap<Long, Path> newIdToPathMap = new TreeMap<>(new PathMapComparator());
-                                    newIdToPathMap.putAll(existingPathMap);
-                                    newIdToPathMap.put(fileFirstEventId, file.toPath());
-                                    updated = idToPathMap.compareAndSet(existingPathMap, newIdToPathMap);
-                                }
+                                addLogFile(fileFirstEventId, fileRolledOver);
 
                                 logger.info("Successfully Rolled over Provenance Event file containing {} records", recordsWritten);
                             }
@@ -1440,6 +1650,72 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
         }
     }
 
+    /**
+     * Adds the given Provenance Event Log File to the map of Event ID to Path, making the events
+     * in the file available for retrieval
+     *
+     * @param firstEventId the ID of the first event in the file
+     * @param file the Provenance Event Log File
+     */
+    protected void addLogFile(final long firstEventId, final File file) {
+        // We need to make sure that another thread doesn't also update the map at the same time. We cannot
+        // use the write lock when purging old events, and we want to use the same approach here.
+        boolean updated = false;
+        while (!updated) {
+            final SortedMap<Long, Path> existingPathMap = idToPathMap.get();
+            final SortedMap<Long, Path> newIdToPathMap = new TreeMap<>(new PathMapComparator());
+            newIdToPathMap.putAll(existingPathMap);
+            newIdToPathMap.put(firstEventId, file.toPath());
+            updated = idToPathMap.compareAndSet(existingPathMap, newIdToPathMap);
+        }
+    }
+
+    /**
+     * Reserves a contiguous range of Event IDs
+     *
+     * @param count the number of IDs to reserve
+     * @return the first of the reserved IDs
+     */
+    protected long reserveEventIds(final int count) {
+        return idGenerator.getAndAdd(count);
+    }
+
+    /**
+     * @return the Event ID that will be reserved next
+     */
+    protected long getNextEventId() {
+        return idGenerator.get();
+    }
+
+    /**
+     * Adds the given event, which has been indexed, to the events that are kept on hand in order
+     * to quickly answer queries for the most recent events
+     *
+     * @param record the event that was indexed
+     */
+    protected void addToLatestRecords(final StandardProvenanceEventRecord record) {
+        latestRecords.add(truncateAttributes(record));
+    }
+
+    /**
+     * Indicates whether or not events are still being added to the given index directory. An index that is in use
+     * will not be deleted when purging expired indexes, even if its events appear to have expired.
+     *
+     * @param indexDirectory the index directory
+     * @return <code>true</code> if events are still being added to the index, <code>false</code> otherwise
+     */
+    protected boolean isIndexDirectoryInUse(final File indexDirectory) {
+        return false;
+    }
+
+    protected IndexConfiguration getIndexConfiguration() {
+        return indexConfig;
+    }
+
+    protected EventReporter getEventReporter() {
+        return eventReporter;
+    }
+
     // protected for use in unit tests
     protected Set<File> recoverJournalFiles() throws IOException {
         if (!configuration.isAllowRollover()) {
@@ -1618,6 +1894,7 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
 
         final boolean isCompress = configuration.isCompressOnRollover();
         final File writerFile = isCompress ? new File(suggestedMergeFile.getParentFile(), suggestedMergeFile.getName() + ".gz") : suggestedMergeFile;
+        EventFileSummary summary = null;
 
         try {
             for (final File journalFile : availableFiles) {
@@ -1696,12 +1973,15 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
 
             // loop over each entry in the map, persisting the records to the merged file in order, and populating the map
             // with the next entry from the journal file from which the previous record was written.
-            try (final RecordWriter writer = RecordWriters.newRecordWriter(writerFile, configuration.isCompressOnRollover(), true)) {
+            try (final RecordWriter writer = RecordWriters.newRecordWriter(writerFile, configuration.isCompressOnRollover(), true,
+                getEventFileBlockBytes(), configuration.isDictionaryEncoded())) {
                 writer.writeHeader(minEventId);
 
                 final IndexingAction indexingAction = createIndexingAction();
 
                 final File indexingDirectory = indexConfig.getWritableIndexDirectory(writerFile, earliestTimestamp);
+                eventFileSummaries.beginIndexing(writerFile, indexingDirectory);
+                summary = writer.getTocWriter().getSummary();
                 long maxId = 0L;
 
                 final BlockingQueue<Tuple<StandardProvenanceEventRecord, Integer>> eventQueue = new LinkedBlockingQueue<>(100);
@@ -1879,9 +2159,12 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
 
         if (records == 0) {
             writerFile.delete();
+            eventFileSummaries.remove(writerFile);
             logger.debug("Couldn't merge journals: No Records to merge");
             return null;
         } else {
+            eventFileSummaries.add(writerFile, summary);
+
             final long nanos = System.nanoTime() - startNanos;
             final long millis = TimeUnit.MILLISECONDS.convert(nanos, TimeUnit.NANOSECONDS);
             logger.info("Successfully merged {} journal files ({} records) into single Provenance Log File {} in {} milliseconds", numAvailableFiles, records, suggestedMergeFile, millis);
@@ -2010,7 +2293,7 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
             return result;
         }
 
-        final AtomicInteger retrievalCount = new AtomicInteger(0);
+        final NewestEventIds newestEventIds = new NewestEventIds(query.getMaxResults());
         final List<File> indexDirectories = indexConfig.getIndexDirectories(
                 query.getStartDate() == null ? null : query.getStartDate().getTime(),
                 query.getEndDate() == null ? null : query.getEndDate().getTime());
@@ -2020,8 +2303,10 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
         if (indexDirectories.isEmpty()) {
             result.getResult().update(Collections.<ProvenanceEventRecord>emptyList(), 0L);
         } else {
+            // Index directories are ordered newest first, so the shards that are searched first are those most likely
+            // to hold the newest matches. Older shards then only need to read the events that are newer than those.
             for (final File indexDir : indexDirectories) {
-                queryExecService.submit(new QueryRunnable(query, result, user, indexDir, retrievalCount));
+                indexSearchExecService.submit(new QueryRunnable(query, result, user, indexDir, newestEventIds));
             }
         }
 
@@ -2070,7 +2355,7 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
                 }
             };
 
-            final Future<List<Document>> future = queryExecService.submit(callable);
+            final Future<List<Document>> future = indexSearchExecService.submit(callable);
             futures.add(future);
         }
 
@@ -2533,21 +2818,21 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
         private final AsyncQuerySubmission submission;
         private final NiFiUser user;
         private final File indexDir;
-        private final AtomicInteger retrievalCount;
+        private final NewestEventIds newestEventIds;
 
-        public QueryRunnable(final Query query, final AsyncQuerySubmission submission, final NiFiUser user, final File indexDir, final AtomicInteger retrievalCount) {
+        public QueryRunnable(final Query query, final AsyncQuerySubmission submission, final NiFiUser user, final File indexDir, final NewestEventIds newestEventIds) {
             this.query = query;
             this.submission = submission;
             this.user = user;
             this.indexDir = indexDir;
-            this.retrievalCount = retrievalCount;
+            this.newestEventIds = newestEventIds;
         }
 
         @Override
         public void run() {
             try {
                 final IndexSearch search = new IndexSearch(PersistentProvenanceRepository.this, indexDir, getIndexManager(), maxAttributeChars);
-                final StandardQueryResult queryResult = search.search(query, user, retrievalCount, firstEventTimestamp);
+                final StandardQueryResult queryResult = search.search(query, user, newestEventIds, firstEventTimestamp);
                 submission.getResult().update(queryResult.getMatchingEvents(), queryResult.getTotalHitCount());
             } catch (final Throwable t) {
                 logger.error("Failed to query Provenance Repository Index {} due to {}", indexDir, t.toString());
@@ -2591,8 +2876,8 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
                 final StandardLineageResult result = submission.getResult();
                 result.update(replaceUnauthorizedWithPlaceholders(matchingRecords, user));
 
-                logger.info("Successfully created Lineage for FlowFiles with UUIDs {} in {} milliseconds; Lineage contains {} nodes and {} edges",
-                        flowFileUuids, result.getComputationTime(TimeUnit.MILLISECONDS), result.getNodes().size(), result.getEdges().size());
+                logger.info("Successfully created Lineage for FlowFiles with UUIDs {} in {} milliseconds; Lineage contains {} nodes and {} edges; {}",
+                        flowFileUuids, result.getComputationTime(TimeUnit.MILLISECONDS), result.getNodes().size(), result.getEdges().size(), lineageCache);
             } catch (final Throwable t) {
                 logger.error("Failed to query provenance repository due to {}", t.toString());
                 if (logger.isDebugEnabled()) {
@@ -2641,7 +2926,7 @@ public class PersistentProvenanceRepository implements ProvenanceRepository {
         }
     }
 
-    private static class NamedThreadFactory implements ThreadFactory {
+    static class NamedThreadFactory implements ThreadFactory {
 
         private final AtomicInteger counter = new AtomicInteger(0);
         private final ThreadFactory defaultThreadFactory = Executors.defaultThreadFactory();
@@ -39,10 +39,15 @@ public class RepositoryConfiguration {
     private List<SearchableField> searchableFields = new ArrayList<>();
     private List<SearchableField> searchableAttributes = new ArrayList<>();
     private boolean compress = true;
+    private boolean dictionaryEncoded = false;
     private boolean alwaysSync = false;
     private int queryThreadPoolSize = 2;
     private int indexThreadPoolSize = 1;
+    private int indexSearchThreadPoolSize = getDefaultIndexSearchThreadPoolSize();
     private boolean allowRollover = true;
+    private File coldStorageDirectory = null;
+    private long coldStorageMillis = TimeUnit.MILLISECONDS.convert(24, TimeUnit.HOURS);
+    private long rollupRetentionMillis = EventRollupAggregator.DEFAULT_RETENTION_MILLIS;
 
     public void setAllowRollover(final boolean allow) {
         this.allowRollover = allow;
@@ -190,6 +195,26 @@ public class RepositoryConfiguration {
         this.compress = compress;
     }
 
+    /**
+     * @return whether or not events will be written using the dictionary-encoded
+     * format of the {@link EncodedRecordWriter}, rather than the format of the
+     * {@link StandardRecordWriter}
+     */
+    public boolean isDictionaryEncoded() {
+        return dictionaryEncoded;
+    }
+
+    /**
+     * Specifies whether or not events are to be written using the dictionary-encoded
+     * format. Event files that were written in either format can always be read, so this
+     * value may be changed without affecting events that have already been written.
+     *
+     * @param dictionaryEncoded if true, events will be written using the dictionary-encoded format
+     */
+    public void setDictionaryEncoded(final boolean dictionaryEncoded) {
+        this.dictionaryEncoded = dictionaryEncoded;
+    }
+
     /**
      * @return the number of threads to use to query the repo
      */
@@ -204,6 +229,28 @@ public class RepositoryConfiguration {
         this.queryThreadPoolSize = queryThreadPoolSize;
     }
 
+    /**
+     * @return the default number of threads to use to search index shards, which is the number of available
+     * processors, but no fewer than the 2 query threads that previously performed these searches
+     */
+    public static int getDefaultIndexSearchThreadPoolSize() {
+        return Math.max(2, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return the number of threads to use to search the index shards of queries in parallel
+     */
+    public int getIndexSearchThreadPoolSize() {
+        return indexSearchThreadPoolSize;
+    }
+
+    public void setIndexSearchThreadPoolSize(final int indexSearchThreadPoolSize) {
+        if (indexSearchThreadPoolSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.indexSearchThreadPoolSize = indexSearchThreadPoolSize;
+    }
+
     /**
      * @return the number of threads to use to index provenance events
      */
@@ -310,4 +357,59 @@ public class RepositoryConfiguration {
         this.maxAttributeChars = maxAttributeChars;
     }
 
+    /**
+     * @return the directory to which Provenance Event Log Files are migrated once they are older than the
+     *         cold storage age, or <code>null</code> if all files remain in the storage directories
+     */
+    public File getColdStorageDirectory() {
+        return coldStorageDirectory;
+    }
+
+    /**
+     * Specifies a directory, typically on slower and cheaper storage, to which Provenance Event Log Files are
+     * migrated once they are older than the cold storage age. The files are re-compressed at a higher level as
+     * they are migrated. The indices are not migrated, so searches continue to span the files in both locations.
+     *
+     * @param coldStorageDirectory the cold storage directory, or <code>null</code> to keep all files in the storage directories
+     */
+    public void setColdStorageDirectory(final File coldStorageDirectory) {
+        this.coldStorageDirectory = coldStorageDirectory;
+    }
+
+    /**
+     * @param timeUnit the desired time unit
+     * @return the age at which a Provenance Event Log File is migrated to the cold storage directory
+     */
+    public long getColdStorageAge(final TimeUnit timeUnit) {
+        return timeUnit.convert(coldStorageMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Specifies the age at which a Provenance Event Log File is migrated to the cold storage directory
+     *
+     * @param coldStorageAge the age at which to migrate a file
+     * @param timeUnit the period of time used by coldStorageAge
+     */
+    public void setColdStorageAge(final long coldStorageAge, final TimeUnit timeUnit) {
+        this.coldStorageMillis = TimeUnit.MILLISECONDS.convert(coldStorageAge, timeUnit);
+    }
+
+    /**
+     * @param timeUnit the desired time unit
+     * @return how long the per-minute event rollups are kept
+     */
+    public long getRollupRetention(final TimeUnit timeUnit) {
+        return timeUnit.convert(rollupRetentionMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Specifies how long the per-minute event rollups are kept. They are never kept for longer than the max record life
+     *
+     * @param rollupRetention how long to keep the rollups
+     * @param timeUnit the unit of the retention
+     */
+    public void setRollupRetention(final long rollupRetention, final TimeUnit timeUnit) {
+        this.rollupRetentionMillis = TimeUnit.MILLISECONDS.convert(rollupRetention, timeUnit);
+    }
+
 }
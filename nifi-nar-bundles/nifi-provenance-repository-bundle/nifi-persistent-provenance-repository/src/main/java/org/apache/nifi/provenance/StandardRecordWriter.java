@@ -25,6 +25,7 @@ import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.Deflater;
 
 import org.apache.nifi.provenance.serialization.RecordWriter;
 import org.apache.nifi.provenance.toc.TocWriter;
@@ -45,6 +46,7 @@ public class StandardRecordWriter implements RecordWriter {
     private final TocWriter tocWriter;
     private final boolean compressed;
     private final int uncompressedBlockSize;
+    private final int compressionLevel;
     private final AtomicBoolean dirtyFlag = new AtomicBoolean(false);
 
     private DataOutputStream out;
@@ -57,6 +59,10 @@ public class StandardRecordWriter implements RecordWriter {
 
 
     public StandardRecordWriter(final File file, final TocWriter writer, final boolean compressed, final int uncompressedBlockSize) throws IOException {
+        this(file, writer, compressed, uncompressedBlockSize, Deflater.BEST_SPEED);
+    }
+
+    public StandardRecordWriter(final File file, final TocWriter writer, final boolean compressed, final int uncompressedBlockSize, final int compressionLevel) throws IOException {
         logger.trace("Creating Record Writer for {}", file.getName());
 
         this.file = file;
@@ -64,6 +70,7 @@ public class StandardRecordWriter implements RecordWriter {
         this.fos = new FileOutputStream(file);
         rawOutStream = new ByteCountingOutputStream(fos);
         this.uncompressedBlockSize = uncompressedBlockSize;
+        this.compressionLevel = compressionLevel;
 
         this.tocWriter = writer;
     }
@@ -120,7 +127,7 @@ public class StandardRecordWriter implements RecordWriter {
                     tocWriter.addBlockOffset(rawOutStream.getBytesWritten(), eventId);
                 }
 
-                writableStream = new BufferedOutputStream(new GZIPOutputStream(new NonCloseableOutputStream(rawOutStream), 1), 65536);
+                writableStream = new BufferedOutputStream(new GZIPOutputStream(new NonCloseableOutputStream(rawOutStream), compressionLevel), 65536);
             } else {
                 if ( tocWriter != null ) {
                     tocWriter.addBlockOffset(rawOutStream.getBytesWritten(), eventId);
@@ -246,6 +253,10 @@ public class StandardRecordWriter implements RecordWriter {
 
             out.flush();
             recordCount++;
+            if (tocWriter != null) {
+                tocWriter.getSummary().update(record, recordIdentifier);
+            }
+
             return byteCountingOut.getBytesWritten() - startBytes;
         } catch (final IOException ioe) {
             markDirty();
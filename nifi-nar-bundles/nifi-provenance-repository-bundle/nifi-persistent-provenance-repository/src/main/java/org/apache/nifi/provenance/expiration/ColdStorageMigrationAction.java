@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.expiration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.apache.nifi.provenance.EncodedRecordReader;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.apache.nifi.provenance.lucene.LuceneUtil;
+import org.apache.nifi.provenance.serialization.RecordReader;
+import org.apache.nifi.provenance.serialization.RecordReaders;
+import org.apache.nifi.provenance.serialization.RecordWriter;
+import org.apache.nifi.provenance.serialization.RecordWriters;
+import org.apache.nifi.provenance.toc.StandardTocReader;
+import org.apache.nifi.provenance.toc.TocReader;
+import org.apache.nifi.provenance.toc.TocUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Migrates a Provenance Event Log File from its storage directory to the corresponding cold storage directory,
+ * re-compressing the events at the highest compression level. The events are written to the same blocks as
+ * before, so that the indices, which refer to events by their block, remain valid for the migrated file.
+ * Files that cannot be re-written in this way are moved without being re-compressed.
+ */
+public class ColdStorageMigrationAction implements ExpirationAction {
+    private static final Logger logger = LoggerFactory.getLogger(ColdStorageMigrationAction.class);
+
+    private static final String TEMP_FILE_EXTENSION = ".prov.part";
+
+    private final Map<File, File> coldDirectories = new HashMap<>();
+    private final int compressionBlockBytes;
+
+    /**
+     * @param coldDirectories the cold storage directory to migrate the files of each storage directory to
+     * @param compressionBlockBytes the number of uncompressed bytes after which the event files were written to a new block
+     */
+    public ColdStorageMigrationAction(final Map<File, File> coldDirectories, final int compressionBlockBytes) {
+        for (final Map.Entry<File, File> entry : coldDirectories.entrySet()) {
+            this.coldDirectories.put(entry.getKey().getAbsoluteFile(), entry.getValue());
+        }
+        this.compressionBlockBytes = compressionBlockBytes;
+    }
+
+    @Override
+    public File execute(final File expiredFile) throws IOException {
+        final File coldDirectory = coldDirectories.get(expiredFile.getAbsoluteFile().getParentFile());
+        if (coldDirectory == null) {
+            return expiredFile;
+        }
+
+        Files.createDirectories(coldDirectory.toPath());
+
+        final long lastModified = expiredFile.lastModified();
+        final long originalSize = expiredFile.length();
+        final File tocFile = TocUtil.getTocFile(expiredFile);
+        final File summaryFile = TocUtil.getSummaryFile(expiredFile);
+
+        File migratedFile = null;
+        if (tocFile.exists()) {
+            final String filename = expiredFile.getName().endsWith(".gz") ? expiredFile.getName() : expiredFile.getName() + ".gz";
+            final File recompressedFile = new File(coldDirectory, filename);
+            if (recompress(expiredFile, recompressedFile)) {
+                migratedFile = recompressedFile;
+            }
+        }
+
+        if (migratedFile == null) {
+            // Without a Table of Contents that maps each event to its block, the indices refer to events by their byte offset,
+            // so the file must be moved as it is
+            migratedFile = new File(coldDirectory, expiredFile.getName());
+            Files.move(expiredFile.toPath(), migratedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            if (tocFile.exists()) {
+                Files.move(tocFile.toPath(), TocUtil.getTocFile(migratedFile).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } else {
+            delete(expiredFile);
+            delete(tocFile);
+        }
+
+        if (summaryFile.exists()) {
+            Files.move(summaryFile.toPath(), TocUtil.getSummaryFile(migratedFile).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // the age of the file still determines when it expires
+        if (!migratedFile.setLastModified(lastModified)) {
+            logger.warn("Failed to retain the last modified time of {}; it may be retained longer than the configured time", migratedFile);
+        }
+
+        logger.info("Migrated Provenance Event file {} to cold storage as {} ({} bytes, previously {} bytes)",
+            expiredFile, migratedFile, migratedFile.length(), originalSize);
+        return migratedFile;
+    }
+
+    /**
+     * Writes the events of the given file to the given file at the highest compression level, verifying that each
+     * event is written to the same block as in the original file
+     *
+     * @return <code>true</code> if the file was re-written, <code>false</code> if the blocks differ, in which case the new file is removed
+     */
+    private boolean recompress(final File eventFile, final File recompressedFile) throws IOException {
+        final String basename = LuceneUtil.substringBefore(eventFile.getName(), ".");
+        final File tempFile = new File(recompressedFile.getParentFile(), basename + TEMP_FILE_EXTENSION);
+
+        // The event ID that each block of the original file starts with
+        final List<Long> blockFirstEventIds = new ArrayList<>();
+        try (final RecordReader reader = RecordReaders.newRecordReader(eventFile, null, Integer.MAX_VALUE)) {
+            final TocReader tocReader = reader.getTocReader();
+            StandardProvenanceEventRecord record = reader.nextRecord();
+            if (tocReader == null || record == null || tocReader.getBlockIndexForEventId(record.getEventId()) == null) {
+                return false;
+            }
+
+            // Use MAX_VALUE for number of chars because we don't want to truncate the values as we re-write them
+            try (final RecordWriter writer = RecordWriters.newRecordWriter(tempFile, true, true, compressionBlockBytes,
+                reader instanceof EncodedRecordReader, Deflater.BEST_COMPRESSION)) {
+                writer.writeHeader(record.getEventId());
+
+                while (record != null) {
+                    final Integer blockIndex = tocReader.getBlockIndexForEventId(record.getEventId());
+                    if (blockIndex != null && blockIndex == blockFirstEventIds.size()) {
+                        blockFirstEventIds.add(record.getEventId());
+                    }
+
+                    writer.writeRecord(record, record.getEventId());
+                    record = reader.nextRecord();
+                }
+            }
+        }
+
+        boolean sameBlocks;
+        try (final TocReader tocReader = new StandardTocReader(TocUtil.getTocFile(tempFile))) {
+            sameBlocks = tocReader.getBlockOffset(blockFirstEventIds.size()) < 0;
+            for (int i = 0; i < blockFirstEventIds.size() && sameBlocks; i++) {
+                final Integer blockIndex = tocReader.getBlockIndexForEventId(blockFirstEventIds.get(i));
+                sameBlocks = blockIndex != null && blockIndex == i;
+            }
+        }
+
+        if (!sameBlocks) {
+            logger.warn("Re-compressing Provenance Event file {} resulted in different blocks; it will be moved to cold storage without being re-compressed", eventFile);
+            delete(tempFile);
+            delete(TocUtil.getTocFile(tempFile));
+            return false;
+        }
+
+        Files.move(tempFile.toPath(), recompressedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    private void delete(final File file) {
+        if (file.exists() && !file.delete()) {
+            logger.warn("Failed to remove {} after migrating it to cold storage; this file should be cleaned up manually", file);
+        }
+    }
+
+    @Override
+    public boolean hasBeenPerformed(final File expiredFile) throws IOException {
+        return !coldDirectories.containsKey(expiredFile.getAbsoluteFile().getParentFile());
+    }
+}
@@ -44,6 +44,11 @@ public class FileRemovalAction implements ExpirationAction {
             logger.warn("Failed to remove old Provenance Table-of-Contents file {}; this file should be cleaned up manually", expiredFile);
         }
 
+        final File summaryFile = TocUtil.getSummaryFile(expiredFile);
+        if (summaryFile.exists() && !remove(summaryFile)) {
+            logger.warn("Failed to remove old Provenance Event File Summary {}; this file should be cleaned up manually", summaryFile);
+        }
+
         return removed ? null : expiredFile;
     }
 
@@ -74,6 +74,7 @@ public class DeleteIndexAction implements ExpirationAction {
             // we've confirmed that all documents have been removed. Delete the index directory.
             if (deleteDir) {
                 indexManager.removeIndex(indexingDirectory);
+                repository.getLineageCache().invalidate(indexingDirectory);
                 indexConfiguration.removeIndexDirectory(indexingDirectory);
 
                 deleteDirectory(indexingDirectory);
@@ -19,24 +19,36 @@ package org.apache.nifi.provenance.lucene;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TopDocs;
 import org.apache.nifi.authorization.user.NiFiUser;
 import org.apache.nifi.provenance.PersistentProvenanceRepository;
 import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.SearchableFields;
 import org.apache.nifi.provenance.StandardQueryResult;
 import org.apache.nifi.provenance.authorization.AuthorizationCheck;
+import org.apache.nifi.provenance.search.SearchTerm;
+import org.apache.nifi.provenance.search.SearchableField;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class IndexSearch {
+    private static final Sort NEWEST_FIRST = new Sort(new SortField(SearchableFields.Identifier.getSearchableFieldName(), FieldCache.NUMERIC_UTILS_LONG_PARSER, true));
+
     private final Logger logger = LoggerFactory.getLogger(IndexSearch.class);
     private final PersistentProvenanceRepository repository;
     private final File indexDirectory;
@@ -50,18 +62,8 @@ public class IndexSearch {
         this.maxAttributeChars = maxAttributeChars;
     }
 
-    public StandardQueryResult search(final org.apache.nifi.provenance.search.Query provenanceQuery, final NiFiUser user, final AtomicInteger retrievedCount,
+    public StandardQueryResult search(final org.apache.nifi.provenance.search.Query provenanceQuery, final NiFiUser user, final NewestEventIds newestEventIds,
         final long firstEventTimestamp) throws IOException {
-        if (retrievedCount.get() >= provenanceQuery.getMaxResults()) {
-            final StandardQueryResult sqr = new StandardQueryResult(provenanceQuery, 1);
-            sqr.update(Collections.<ProvenanceEventRecord> emptyList(), 0L);
-
-            logger.info("Skipping search of Provenance Index {} for {} because the max number of results ({}) has already been retrieved",
-                indexDirectory, provenanceQuery, provenanceQuery.getMaxResults());
-
-            return sqr;
-        }
-
         final long startNanos = System.nanoTime();
 
         if (!indexDirectory.exists() && !indexDirectory.mkdirs()) {
@@ -85,6 +87,14 @@ public class IndexSearch {
         }
         final Query luceneQuery = LuceneUtil.convertQuery(provenanceQuery);
 
+        // If the summaries of the event files that were indexed into this directory rule out a match, there's no need to open the index.
+        if (!repository.getEventFileSummaries().isSearchable(indexDirectory, provenanceQuery.getStartDate().getTime(), provenanceQuery.getEndDate().getTime(),
+            getExactValues(provenanceQuery, SearchableFields.ComponentID), getExactValues(provenanceQuery, SearchableFields.FlowFileUUID))) {
+            logger.debug("Skipping search of Provenance Index {} for {} because no event file indexed into it can contain a match", indexDirectory, provenanceQuery);
+            sqr.update(Collections.<ProvenanceEventRecord>emptyList(), 0L);
+            return sqr;
+        }
+
         final long start = System.nanoTime();
         IndexSearcher searcher = null;
         try {
@@ -93,7 +103,7 @@ public class IndexSearch {
             final long openSearcherNanos = searchStartNanos - start;
 
             logger.debug("Searching {} for {}", this, provenanceQuery);
-            final TopDocs topDocs = searcher.search(luceneQuery, provenanceQuery.getMaxResults());
+            final TopDocs topDocs = searcher.search(luceneQuery, provenanceQuery.getMaxResults(), NEWEST_FIRST);
             final long finishSearch = System.nanoTime();
             final long searchNanos = finishSearch - searchStartNanos;
 
@@ -105,13 +115,28 @@ public class IndexSearch {
                 return sqr;
             }
 
+            // Only read the events that can still make it into the newest N events of the query. Other
+            // shards may already have retrieved enough newer events, in which case we read nothing at all.
+            final TopDocs newerDocs = getDocsNewerThan(topDocs, newestEventIds.getCutoff());
+            if (newerDocs.scoreDocs.length == 0) {
+                logger.info("Skipping retrieval of events from Provenance Index {} for {} because {} newer events have already been retrieved",
+                    indexDirectory, provenanceQuery, provenanceQuery.getMaxResults());
+
+                sqr.update(Collections.<ProvenanceEventRecord>emptyList(), topDocs.totalHits);
+                return sqr;
+            }
+
             final DocsReader docsReader = new DocsReader();
 
             final AuthorizationCheck authCheck = event -> repository.isAuthorized(event, user);
 
-            matchingRecords = docsReader.read(topDocs, authCheck, searcher.getIndexReader(), repository.getAllLogFiles(), retrievedCount,
+            matchingRecords = docsReader.read(newerDocs, authCheck, searcher.getIndexReader(), repository.getAllLogFiles(), new AtomicInteger(0),
                 provenanceQuery.getMaxResults(), maxAttributeChars);
 
+            for (final ProvenanceEventRecord record : matchingRecords) {
+                newestEventIds.add(record.getEventId());
+            }
+
             final long readRecordsNanos = System.nanoTime() - finishSearch;
             logger.debug("Reading {} records took {} millis for {}", matchingRecords.size(), TimeUnit.NANOSECONDS.toMillis(readRecordsNanos), this);
 
@@ -138,6 +163,34 @@ public class IndexSearch {
         }
     }
 
+    private static Set<String> getExactValues(final org.apache.nifi.provenance.search.Query provenanceQuery, final SearchableField field) {
+        final Set<String> values = new HashSet<>();
+        for (final SearchTerm searchTerm : provenanceQuery.getSearchTerms()) {
+            final String value = searchTerm.getValue();
+            if (field.equals(searchTerm.getSearchableField()) && value != null && !value.contains("*") && !value.contains("?")) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    private TopDocs getDocsNewerThan(final TopDocs topDocs, final long cutoffEventId) {
+        if (cutoffEventId < 0) {
+            return topDocs;
+        }
+
+        // Documents are sorted newest first, so we can stop at the first one that is not newer than the cutoff.
+        int count = 0;
+        for (final ScoreDoc scoreDoc : topDocs.scoreDocs) {
+            final Object[] sortValues = ((FieldDoc) scoreDoc).fields;
+            if (((Long) sortValues[0]) <= cutoffEventId) {
+                break;
+            }
+            count++;
+        }
+
+        return new TopDocs(topDocs.totalHits, Arrays.copyOf(topDocs.scoreDocs, count), topDocs.getMaxScore());
+    }
 
     @Override
     public String toString() {
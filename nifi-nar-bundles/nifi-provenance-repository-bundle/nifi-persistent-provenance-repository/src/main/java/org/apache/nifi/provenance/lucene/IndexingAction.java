@@ -26,6 +26,7 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.IntField;
 import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.nifi.flowfile.attributes.CoreAttributes;
@@ -91,6 +92,8 @@ public class IndexingAction {
             } else {
                 doc.add(new IntField(FieldNames.BLOCK_INDEX, blockIndex, Store.YES));
                 doc.add(new LongField(SearchableFields.Identifier.getSearchableFieldName(), record.getEventId(), Store.YES));
+                // doc values allow query results to be sorted newest-first without un-inverting the field onto the heap
+                doc.add(new NumericDocValuesField(SearchableFields.Identifier.getSearchableFieldName(), record.getEventId()));
             }
 
             // If it's event is a FORK, or JOIN, add the FlowFileUUID for all child/parent UUIDs.
@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.lucene;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+
+/**
+ * An LRU cache of the Provenance Events that a lineage query found in a given index for a given FlowFile UUID.
+ * Lineage computations and the expansion of parents and children frequently ask for the same FlowFiles again,
+ * so caching the events per UUID allows a subsequent computation to query the index only for those UUIDs that
+ * have not been seen before.
+ *
+ * Each entry is associated with the version of the index that it was computed from. Any change to the index,
+ * such as newly indexed events or events that have aged off, changes the version and so invalidates the entries
+ * for that index. The events are cached without regard to authorization, which is applied to the result of each
+ * computation.
+ */
+public class LineageCache {
+    public static final int DEFAULT_MAX_CACHED_EVENTS = 10000;
+
+    private final int maxCachedEvents;
+    private final Map<CacheKey, CacheEntry> entries = new LinkedHashMap<>(64, 0.75F, true);
+    private int cachedEventCount = 0;
+
+    private final AtomicLong hits = new AtomicLong(0L);
+    private final AtomicLong misses = new AtomicLong(0L);
+    private final AtomicLong evictions = new AtomicLong(0L);
+
+    public LineageCache() {
+        this(DEFAULT_MAX_CACHED_EVENTS);
+    }
+
+    public LineageCache(final int maxCachedEvents) {
+        this.maxCachedEvents = maxCachedEvents;
+    }
+
+    /**
+     * @param searcher the searcher for an index
+     * @return the version of the index that the searcher reads, or <code>-1</code> if it cannot be determined, in which case nothing is cached
+     */
+    public static long getIndexVersion(final IndexSearcher searcher) {
+        final IndexReader reader = searcher.getIndexReader();
+        return reader instanceof DirectoryReader ? ((DirectoryReader) reader).getVersion() : -1L;
+    }
+
+    /**
+     * @param indexDirectory the index directory
+     * @param indexVersion the current version of the index
+     * @param flowFileUuid the FlowFile UUID
+     * @return the events in the given version of the index that refer to the given FlowFile, or <code>null</code> if they are not cached
+     */
+    public synchronized Set<ProvenanceEventRecord> get(final File indexDirectory, final long indexVersion, final String flowFileUuid) {
+        final CacheKey key = new CacheKey(indexDirectory, flowFileUuid);
+        final CacheEntry entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        if (entry.indexVersion != indexVersion) {
+            remove(key);
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return entry.events;
+    }
+
+    /**
+     * Caches the events that a query for the given FlowFile UUIDs returned. The query must have returned all of
+     * the matching events in the index, as the events are attributed to each UUID in order to be cached individually.
+     *
+     * @param indexDirectory the index directory that was queried
+     * @param indexVersion the version of the index that was queried
+     * @param flowFileUuids the FlowFile UUIDs that were queried
+     * @param events all of the events that the query returned
+     */
+    public synchronized void cache(final File indexDirectory, final long indexVersion, final Collection<String> flowFileUuids, final Collection<ProvenanceEventRecord> events) {
+        if (indexVersion < 0 || events.size() > maxCachedEvents) {
+            return;
+        }
+
+        final Map<String, Set<ProvenanceEventRecord>> eventsByUuid = new HashMap<>();
+        for (final String flowFileUuid : flowFileUuids) {
+            eventsByUuid.put(flowFileUuid.toLowerCase(), new HashSet<ProvenanceEventRecord>());
+        }
+
+        for (final ProvenanceEventRecord event : events) {
+            boolean attributed = false;
+            for (final String uuid : getIndexedUuids(event)) {
+                final Set<ProvenanceEventRecord> uuidEvents = eventsByUuid.get(uuid.toLowerCase());
+                if (uuidEvents != null) {
+                    uuidEvents.add(event);
+                    attributed = true;
+                }
+            }
+
+            if (!attributed) {
+                // we cannot tell which of the UUIDs the event was found for, so we cannot cache the results individually
+                return;
+            }
+        }
+
+        for (final String flowFileUuid : flowFileUuids) {
+            final CacheKey key = new CacheKey(indexDirectory, flowFileUuid);
+            remove(key);
+
+            final Set<ProvenanceEventRecord> uuidEvents = Collections.unmodifiableSet(eventsByUuid.get(flowFileUuid.toLowerCase()));
+            entries.put(key, new CacheEntry(indexVersion, uuidEvents));
+            cachedEventCount += uuidEvents.size();
+        }
+
+        // evict the least recently used entries. Entries without events still count toward the bound
+        // so that the number of entries is bounded as well.
+        final Iterator<CacheEntry> itr = entries.values().iterator();
+        while (cachedEventCount + entries.size() > maxCachedEvents && itr.hasNext()) {
+            final CacheEntry entry = itr.next();
+            itr.remove();
+            cachedEventCount -= entry.events.size();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes all entries for the given index directory
+     *
+     * @param indexDirectory the index directory
+     */
+    public synchronized void invalidate(final File indexDirectory) {
+        final Iterator<Map.Entry<CacheKey, CacheEntry>> itr = entries.entrySet().iterator();
+        while (itr.hasNext()) {
+            final Map.Entry<CacheKey, CacheEntry> entry = itr.next();
+            if (entry.getKey().indexDirectory.equals(indexDirectory)) {
+                itr.remove();
+                cachedEventCount -= entry.getValue().events.size();
+            }
+        }
+    }
+
+    private void remove(final CacheKey key) {
+        final CacheEntry removed = entries.remove(key);
+        if (removed != null) {
+            cachedEventCount -= removed.events.size();
+        }
+    }
+
+    /**
+     * @return the UUIDs under which {@link IndexingAction} indexes the given event
+     */
+    private static Set<String> getIndexedUuids(final ProvenanceEventRecord event) {
+        final Set<String> uuids = new HashSet<>();
+        uuids.add(event.getFlowFileUuid());
+
+        final ProvenanceEventType eventType = event.getEventType();
+        if (eventType == ProvenanceEventType.FORK || eventType == ProvenanceEventType.CLONE || eventType == ProvenanceEventType.REPLAY) {
+            uuids.addAll(event.getChildUuids());
+        } else if (eventType == ProvenanceEventType.JOIN) {
+            uuids.addAll(event.getParentUuids());
+        } else if (eventType == ProvenanceEventType.RECEIVE && event.getSourceSystemFlowFileIdentifier() != null) {
+            final String sourceIdentifier = event.getSourceSystemFlowFileIdentifier();
+            final int lastColon = sourceIdentifier.lastIndexOf(":");
+            if (lastColon > -1 && lastColon < sourceIdentifier.length() - 2) {
+                uuids.add(sourceIdentifier.substring(lastColon + 1));
+            }
+        }
+
+        return uuids;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public synchronized int getCachedEventCount() {
+        return cachedEventCount;
+    }
+
+    @Override
+    public String toString() {
+        return "LineageCache[hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + ", events=" + getCachedEventCount() + "]";
+    }
+
+
+    private static class CacheKey {
+        private final File indexDirectory;
+        private final String flowFileUuid;
+
+        public CacheKey(final File indexDirectory, final String flowFileUuid) {
+            this.indexDirectory = indexDirectory;
+            this.flowFileUuid = flowFileUuid;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * indexDirectory.hashCode() + flowFileUuid.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+
+            final CacheKey other = (CacheKey) obj;
+            return indexDirectory.equals(other.indexDirectory) && flowFileUuid.equals(other.flowFileUuid);
+        }
+    }
+
+    private static class CacheEntry {
+        private final long indexVersion;
+        private final Set<ProvenanceEventRecord> events;
+
+        public CacheEntry(final long indexVersion, final Set<ProvenanceEventRecord> events) {
+            this.indexVersion = indexVersion;
+            this.events = events;
+        }
+    }
+}
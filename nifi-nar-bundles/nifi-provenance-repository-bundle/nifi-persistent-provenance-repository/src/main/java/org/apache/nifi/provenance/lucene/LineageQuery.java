@@ -21,8 +21,11 @@ import static java.util.Objects.requireNonNull;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -56,10 +59,39 @@ public class LineageQuery {
             throw new IllegalArgumentException("Must specify either Lineage Identifier or FlowFile UUIDs to compute lineage");
         }
 
+        // If the summaries of the event files that were indexed into this directory rule out all of the FlowFiles, there's no need to open the index.
+        if (flowFileUuids != null && !flowFileUuids.isEmpty()
+            && !repo.getEventFileSummaries().isSearchable(indexDirectory, null, null, Collections.<String>emptySet(), flowFileUuids)) {
+            logger.debug("Skipping Lineage Query against {} because no event file indexed into it refers to any of {}", indexDirectory, flowFileUuids);
+            return Collections.emptySet();
+        }
+
         final IndexSearcher searcher;
         try {
             searcher = indexManager.borrowIndexSearcher(indexDirectory);
             try {
+                // Use the events that have already been retrieved from this version of the index for any of the FlowFiles,
+                // so that only the FlowFiles that have not been seen before need to be queried.
+                final LineageCache lineageCache = repo.getLineageCache();
+                final long indexVersion = LineageCache.getIndexVersion(searcher);
+                final Set<ProvenanceEventRecord> cachedRecords = new HashSet<>();
+                final List<String> uncachedUuids = new ArrayList<>();
+                if (flowFileUuids != null) {
+                    for (final String flowFileUuid : flowFileUuids) {
+                        final Set<ProvenanceEventRecord> cached = indexVersion < 0 ? null : lineageCache.get(indexDirectory, indexVersion, flowFileUuid);
+                        if (cached == null) {
+                            uncachedUuids.add(flowFileUuid);
+                        } else {
+                            cachedRecords.addAll(cached);
+                        }
+                    }
+
+                    if (uncachedUuids.isEmpty()) {
+                        logger.debug("Lineage Query against {} for {} was answered entirely from cache", indexDirectory, flowFileUuids);
+                        return cachedRecords;
+                    }
+                }
+
                 // Create a query for all Events related to the FlowFiles of interest. We do this by adding all ID's as
                 // "SHOULD" clauses and then setting the minimum required to 1.
                 final BooleanQuery flowFileIdQuery;
@@ -67,7 +99,7 @@ public class LineageQuery {
                     flowFileIdQuery = null;
                 } else {
                     flowFileIdQuery = new BooleanQuery();
-                    for (final String flowFileUuid : flowFileUuids) {
+                    for (final String flowFileUuid : uncachedUuids) {
                         flowFileIdQuery.add(new TermQuery(new Term(SearchableFields.FlowFileUUID.getSearchableFieldName(), flowFileUuid)), Occur.SHOULD);
                     }
                     flowFileIdQuery.setMinimumNumberShouldMatch(1);
@@ -87,10 +119,21 @@ public class LineageQuery {
                         new AtomicInteger(0), Integer.MAX_VALUE, maxAttributeChars);
 
                 final long readDocsEnd = System.nanoTime();
-                logger.debug("Finished Lineage Query against {}; Lucene search took {} millis, reading records took {} millis",
-                        indexDirectory, TimeUnit.NANOSECONDS.toMillis(searchEnd - searchStart), TimeUnit.NANOSECONDS.toMillis(readDocsEnd - searchEnd));
+                logger.debug("Finished Lineage Query against {}; Lucene search took {} millis, reading records took {} millis; {} of {} FlowFiles were cached",
+                        indexDirectory, TimeUnit.NANOSECONDS.toMillis(searchEnd - searchStart), TimeUnit.NANOSECONDS.toMillis(readDocsEnd - searchEnd),
+                        flowFileUuids.size() - uncachedUuids.size(), flowFileUuids.size());
+
+                // Only a complete result can be attributed to each of the FlowFiles
+                if (indexVersion >= 0 && uuidQueryTopDocs.totalHits <= uuidQueryTopDocs.scoreDocs.length) {
+                    lineageCache.cache(indexDirectory, indexVersion, uncachedUuids, recs);
+                }
+
+                if (cachedRecords.isEmpty()) {
+                    return recs;
+                }
 
-                return recs;
+                cachedRecords.addAll(recs);
+                return cachedRecords;
             } finally {
                 indexManager.returnIndexSearcher(indexDirectory, searcher);
             }
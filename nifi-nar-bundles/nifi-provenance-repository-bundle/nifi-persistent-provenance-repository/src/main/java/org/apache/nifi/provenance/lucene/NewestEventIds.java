@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.lucene;
+
+import java.util.PriorityQueue;
+
+/**
+ * Keeps track of the newest N event ids that have been retrieved by a query that is
+ * spread across several index directories. Each {@link IndexSearch} consults this before
+ * reading events from disk so that a shard whose matches are all older than the N newest
+ * events already found does not have to read any events at all.
+ */
+public class NewestEventIds {
+    private final int maxResults;
+    private final PriorityQueue<Long> eventIds; // min-heap: the head is the oldest of the retained ids
+
+    public NewestEventIds(final int maxResults) {
+        this.maxResults = maxResults;
+        this.eventIds = new PriorityQueue<>(Math.max(1, Math.min(maxResults, 1024)));
+    }
+
+    public synchronized void add(final long eventId) {
+        if (maxResults < 1) {
+            return;
+        }
+
+        if (eventIds.size() < maxResults) {
+            eventIds.add(eventId);
+        } else if (eventId > eventIds.peek()) {
+            eventIds.poll();
+            eventIds.add(eventId);
+        }
+    }
+
+    /**
+     * @return the id that an event must exceed in order to be among the newest N events, or -1 if
+     *         fewer than N events have been retrieved so far
+     */
+    public synchronized long getCutoff() {
+        if (maxResults < 1) {
+            return Long.MAX_VALUE;
+        }
+
+        return eventIds.size() < maxResults ? -1L : eventIds.peek();
+    }
+}
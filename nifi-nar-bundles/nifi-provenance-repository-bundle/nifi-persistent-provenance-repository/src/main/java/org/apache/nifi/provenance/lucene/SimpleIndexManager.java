@@ -40,46 +40,92 @@ import org.slf4j.LoggerFactory;
 
 public class SimpleIndexManager implements IndexManager {
     private static final Logger logger = LoggerFactory.getLogger(SimpleIndexManager.class);
+    private static final int DEFAULT_MAX_CACHED_SEARCHERS = 64;
 
-    private final ConcurrentMap<Object, List<Closeable>> closeables = new ConcurrentHashMap<>();
+    // Searchers are cached per index directory. Each directory has its own monitor, so queries against
+    // different directories never contend with one another, and refreshing the searcher of a directory
+    // that is being written to only re-opens the segments that have changed.
+    private final ConcurrentMap<File, CachedSearcher> searchers = new ConcurrentHashMap<>();
     private final Map<File, IndexWriterCount> writerCounts = new HashMap<>();
+    private final int maxCachedSearchers;
+
+    public SimpleIndexManager() {
+        this(DEFAULT_MAX_CACHED_SEARCHERS);
+    }
+
+    public SimpleIndexManager(final int maxCachedSearchers) {
+        this.maxCachedSearchers = maxCachedSearchers;
+    }
 
     @Override
     public void close() throws IOException {
+        for (final File indexDirectory : searchers.keySet()) {
+            removeCachedSearcher(indexDirectory);
+        }
     }
 
     @Override
     public IndexSearcher borrowIndexSearcher(final File indexDir) throws IOException {
-        logger.debug("Creating index searcher for {}", indexDir);
-        final Directory directory = FSDirectory.open(indexDir);
-        final DirectoryReader directoryReader = DirectoryReader.open(directory);
-        final IndexSearcher searcher = new IndexSearcher(directoryReader);
-
-        final List<Closeable> closeableList = new ArrayList<>(2);
-        closeableList.add(directoryReader);
-        closeableList.add(directory);
-        closeables.put(searcher, closeableList);
-        logger.debug("Created index searcher {} for {}", searcher, indexDir);
-
-        return searcher;
+        final File absoluteFile = indexDir.getAbsoluteFile();
+
+        while (true) {
+            CachedSearcher cached = searchers.get(absoluteFile);
+            if (cached == null) {
+                evictIfNecessary();
+                cached = searchers.computeIfAbsent(absoluteFile, CachedSearcher::new);
+            }
+
+            // If the cached searcher was evicted after we obtained it, try again with a new one.
+            final IndexSearcher searcher = cached.borrow();
+            if (searcher != null) {
+                logger.debug("Providing index searcher {} for {}", searcher, indexDir);
+                return searcher;
+            }
+        }
     }
 
     @Override
     public void returnIndexSearcher(final File indexDirectory, final IndexSearcher searcher) {
-        logger.debug("Closing index searcher {} for {}", searcher, indexDirectory);
+        logger.debug("Returning index searcher {} for {}", searcher, indexDirectory);
 
-        final List<Closeable> closeableList = closeables.get(searcher);
-        if (closeableList != null) {
-            for (final Closeable closeable : closeableList) {
-                closeQuietly(closeable);
-            }
+        try {
+            // the reader is closed once it has been returned by all borrowers and is no longer the cached reader
+            searcher.getIndexReader().decRef();
+        } catch (final IOException ioe) {
+            logger.warn("Failed to close index searcher {} for {} due to {}", searcher, indexDirectory, ioe);
         }
-
-        logger.debug("Closed index searcher {}", searcher);
     }
 
     @Override
     public void removeIndex(final File indexDirectory) {
+        removeCachedSearcher(indexDirectory.getAbsoluteFile());
+    }
+
+    private void removeCachedSearcher(final File absoluteFile) {
+        final CachedSearcher cached = searchers.remove(absoluteFile);
+        if (cached != null) {
+            cached.close();
+        }
+    }
+
+    private void evictIfNecessary() {
+        while (searchers.size() >= maxCachedSearchers) {
+            CachedSearcher leastRecentlyUsed = null;
+            for (final CachedSearcher cached : searchers.values()) {
+                if (leastRecentlyUsed == null || cached.getLastUsed() < leastRecentlyUsed.getLastUsed()) {
+                    leastRecentlyUsed = cached;
+                }
+            }
+
+            if (leastRecentlyUsed == null) {
+                return;
+            }
+
+            logger.debug("Evicting cached index searcher for {}", leastRecentlyUsed.getIndexDirectory());
+            if (searchers.remove(leastRecentlyUsed.getIndexDirectory(), leastRecentlyUsed)) {
+                leastRecentlyUsed.close();
+            }
+        }
     }
 
 
@@ -172,6 +218,86 @@ public class SimpleIndexManager implements IndexManager {
     }
 
 
+    private static class CachedSearcher {
+        private final File indexDirectory;
+        private Directory directory;
+        private DirectoryReader directoryReader;
+        private IndexSearcher searcher;
+        private boolean closed = false;
+        private volatile long lastUsed = System.nanoTime();
+
+        public CachedSearcher(final File indexDirectory) {
+            this.indexDirectory = indexDirectory;
+        }
+
+        public File getIndexDirectory() {
+            return indexDirectory;
+        }
+
+        public long getLastUsed() {
+            return lastUsed;
+        }
+
+        /**
+         * @return a searcher over the latest committed state of the index, whose reader has had its reference
+         *         count incremented on behalf of the caller, or <code>null</code> if this cache entry has been closed
+         * @throws IOException if unable to open the index
+         */
+        public synchronized IndexSearcher borrow() throws IOException {
+            if (closed) {
+                return null;
+            }
+
+            lastUsed = System.nanoTime();
+            if (directoryReader == null) {
+                final Directory dir = FSDirectory.open(indexDirectory);
+                try {
+                    directoryReader = DirectoryReader.open(dir);
+                } catch (final IOException ioe) {
+                    closeQuietly(dir);
+                    throw ioe;
+                }
+
+                directory = dir;
+                searcher = new IndexSearcher(directoryReader);
+                logger.debug("Created index searcher {} for {}", searcher, indexDirectory);
+            } else {
+                final DirectoryReader newReader = DirectoryReader.openIfChanged(directoryReader);
+                if (newReader != null) {
+                    // release the cache's reference to the old reader; borrowers still using it keep it open
+                    directoryReader.decRef();
+                    directoryReader = newReader;
+                    searcher = new IndexSearcher(newReader);
+                    logger.debug("Refreshed index searcher {} for {}", searcher, indexDirectory);
+                }
+            }
+
+            directoryReader.incRef();
+            return searcher;
+        }
+
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            if (directoryReader != null) {
+                try {
+                    directoryReader.decRef();
+                } catch (final IOException ioe) {
+                    logger.warn("Failed to close index reader for {} due to {}", indexDirectory, ioe);
+                }
+            }
+
+            closeQuietly(directory);
+            directoryReader = null;
+            searcher = null;
+            directory = null;
+        }
+    }
+
+
     private static class IndexWriterCount implements Closeable {
         private final IndexWriter writer;
         private final Analyzer analyzer;
@@ -20,15 +20,16 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.Collection;
 
+import org.apache.nifi.provenance.EncodedRecordReader;
 import org.apache.nifi.provenance.StandardRecordReader;
 import org.apache.nifi.provenance.lucene.LuceneUtil;
 import org.apache.nifi.provenance.toc.StandardTocReader;
 import org.apache.nifi.provenance.toc.TocReader;
 import org.apache.nifi.provenance.toc.TocUtil;
+import org.apache.nifi.stream.io.StreamUtils;
 
 public class RecordReaders {
 
@@ -45,7 +46,7 @@ public class RecordReaders {
      */
     public static RecordReader newRecordReader(File file, final Collection<Path> provenanceLogFiles, final int maxAttributeChars) throws IOException {
         final File originalFile = file;
-        InputStream fis = null;
+        FileInputStream fis = null;
 
         try {
             if (!file.exists()) {
@@ -100,12 +101,14 @@ public class RecordReaders {
                 throw new FileNotFoundException("Unable to locate file " + originalFile);
             }
 
+            final boolean encoded = isEncoded(fis);
+
             final File tocFile = TocUtil.getTocFile(file);
-            if ( tocFile.exists() ) {
-                final TocReader tocReader = new StandardTocReader(tocFile);
-                return new StandardRecordReader(fis, filename, tocReader, maxAttributeChars);
+            final TocReader tocReader = tocFile.exists() ? new StandardTocReader(tocFile) : null;
+            if (encoded) {
+                return new EncodedRecordReader(fis, filename, tocReader, maxAttributeChars);
             } else {
-                return new StandardRecordReader(fis, filename, maxAttributeChars);
+                return new StandardRecordReader(fis, filename, tocReader, maxAttributeChars);
             }
         } catch (final IOException ioe) {
             if ( fis != null ) {
@@ -120,4 +123,14 @@ public class RecordReaders {
         }
     }
 
+    /**
+     * Determines whether or not the file was written by an {@link org.apache.nifi.provenance.EncodedRecordWriter}
+     * by reading the beginning of the file. The stream is then positioned at the beginning of the file again.
+     */
+    private static boolean isEncoded(final FileInputStream fis) throws IOException {
+        final byte[] header = new byte[EncodedRecordReader.getHeaderIdentifierLength()];
+        final int length = StreamUtils.fillBuffer(fis, header, false);
+        fis.getChannel().position(0L);
+        return EncodedRecordReader.isEncoded(header, length);
+    }
 }
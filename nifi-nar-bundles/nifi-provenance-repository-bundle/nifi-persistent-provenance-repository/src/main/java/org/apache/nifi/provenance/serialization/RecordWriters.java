@@ -18,22 +18,47 @@ package org.apache.nifi.provenance.serialization;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.zip.Deflater;
 
+import org.apache.nifi.provenance.EncodedRecordWriter;
 import org.apache.nifi.provenance.StandardRecordWriter;
 import org.apache.nifi.provenance.toc.StandardTocWriter;
 import org.apache.nifi.provenance.toc.TocUtil;
 import org.apache.nifi.provenance.toc.TocWriter;
 
 public class RecordWriters {
-    private static final int DEFAULT_COMPRESSION_BLOCK_SIZE = 1024 * 1024; // 1 MB
+    public static final int DEFAULT_COMPRESSION_BLOCK_SIZE = 1024 * 1024; // 1 MB
 
     public static RecordWriter newRecordWriter(final File file, final boolean compressed, final boolean createToc) throws IOException {
         return newRecordWriter(file, compressed, createToc, DEFAULT_COMPRESSION_BLOCK_SIZE);
     }
 
     public static RecordWriter newRecordWriter(final File file, final boolean compressed, final boolean createToc, final int compressionBlockBytes) throws IOException {
+        return newRecordWriter(file, compressed, createToc, compressionBlockBytes, false);
+    }
+
+    public static RecordWriter newRecordWriter(final File file, final boolean compressed, final boolean createToc, final int compressionBlockBytes,
+        final boolean dictionaryEncoded) throws IOException {
+        return newRecordWriter(file, compressed, createToc, compressionBlockBytes, dictionaryEncoded, Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @param file the file to write to
+     * @param compressed whether or not the events should be compressed
+     * @param createToc whether or not a Table of Contents should be created for the file
+     * @param compressionBlockBytes the number of uncompressed bytes after which a new block is started
+     * @param dictionaryEncoded whether or not the events should be written by an {@link EncodedRecordWriter}
+     * @param compressionLevel the level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}, at which to compress the events
+     * @return a Record Writer for the given file
+     * @throws IOException if unable to create the file
+     */
+    public static RecordWriter newRecordWriter(final File file, final boolean compressed, final boolean createToc, final int compressionBlockBytes,
+        final boolean dictionaryEncoded, final int compressionLevel) throws IOException {
         final TocWriter tocWriter = createToc ? new StandardTocWriter(TocUtil.getTocFile(file), false, false) : null;
-        return new StandardRecordWriter(file, tocWriter, compressed, compressionBlockBytes);
+        if (dictionaryEncoded) {
+            return new EncodedRecordWriter(file, tocWriter, compressed, compressionBlockBytes, compressionLevel);
+        }
+        return new StandardRecordWriter(file, tocWriter, compressed, compressionBlockBytes, compressionLevel);
     }
 
 }
@@ -0,0 +1,339 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.toc;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of the {@link EventFileSummary} of each Provenance Event Log File in the repository, and which index
+ * directories each file was indexed into, so that searches can skip index directories that cannot contain a match.
+ *
+ * An index directory is only ever skipped if the summary of every event file that was indexed into it rules out a match.
+ * If any event file in the same storage directory has no summary (for instance because it was written by an older version
+ * of NiFi), or an event file is still being indexed into the directory, the directory is always searched.
+ *
+ * The time range of each summary is held in memory. The bloom filters are held by soft references and are read from disk
+ * again if they have been reclaimed.
+ */
+public class EventFileSummaries {
+    private static final Logger logger = LoggerFactory.getLogger(EventFileSummaries.class);
+
+    private final Map<File, SummaryEntry> entries = new HashMap<>();
+    private final Map<File, Set<File>> filesByIndexDirectory = new HashMap<>();
+    private final Map<File, Set<File>> pendingFilesByIndexDirectory = new HashMap<>();
+    private final Map<File, Set<File>> unsummarizedFilesByStorageDirectory = new HashMap<>();
+    private final Map<File, File> storageDirectoryAliases = new HashMap<>();
+
+    /**
+     * Indicates that the event files in the given directory were written to the given storage directory and moved
+     * from there, so that the index directories named by their summaries are to be found in the storage directory.
+     *
+     * @param directory the directory that the event files were moved to
+     * @param storageDirectory the storage directory that the event files were written to and whose indices they are in
+     */
+    public synchronized void addStorageDirectoryAlias(final File directory, final File storageDirectory) {
+        storageDirectoryAliases.put(directory.getAbsoluteFile(), storageDirectory.getAbsoluteFile());
+    }
+
+    /**
+     * Loads the summaries of the given event files. Event files that have no summary prevent the index directories
+     * of their storage directory from being skipped.
+     *
+     * @param eventFiles the Provenance Event Log Files in the repository
+     */
+    public synchronized void recover(final Collection<File> eventFiles) {
+        for (final File file : eventFiles) {
+            final File eventFile = file.getAbsoluteFile();
+            if (entries.containsKey(eventFile)) {
+                continue;
+            }
+
+            final File summaryFile = TocUtil.getSummaryFile(eventFile);
+            if (summaryFile.exists()) {
+                try {
+                    addEntry(eventFile, EventFileSummary.read(summaryFile));
+                    continue;
+                } catch (final IOException ioe) {
+                    logger.warn("Failed to read Event File Summary {} due to {}; all indices in the same directory will be searched", summaryFile, ioe.toString());
+                }
+            }
+
+            getOrCreate(unsummarizedFilesByStorageDirectory, getStorageDirectory(eventFile)).add(eventFile);
+        }
+    }
+
+    /**
+     * Indicates that the given event file has been moved, along with its summary, to a new location
+     *
+     * @param eventFile the previous location of the Provenance Event Log File
+     * @param newEventFile the new location of the Provenance Event Log File
+     */
+    public synchronized void relocate(final File eventFile, final File newEventFile) {
+        forget(eventFile.getAbsoluteFile());
+        recover(Collections.singleton(newEventFile));
+    }
+
+    /**
+     * Indicates that events of the given event file are being indexed into the given index directory
+     *
+     * @param eventFile the Provenance Event Log File
+     * @param indexDirectory the index directory that the events are written to
+     */
+    public synchronized void beginIndexing(final File eventFile, final File indexDirectory) {
+        final File absoluteEventFile = eventFile.getAbsoluteFile();
+        final File absoluteIndexDirectory = indexDirectory.getAbsoluteFile();
+
+        final SummaryEntry entry = entries.get(absoluteEventFile);
+        if (entry == null) {
+            getOrCreate(pendingFilesByIndexDirectory, absoluteIndexDirectory).add(absoluteEventFile);
+            return;
+        }
+
+        if (entry.indexDirectories.contains(absoluteIndexDirectory)) {
+            return;
+        }
+
+        // The file was already summarized but is now indexed into another directory, so the summary must record that.
+        final EventFileSummary summary = entry.getSummary();
+        if (summary == null) {
+            getOrCreate(unsummarizedFilesByStorageDirectory, getStorageDirectory(absoluteEventFile)).add(absoluteEventFile);
+            return;
+        }
+
+        summary.addIndexDirectory(absoluteIndexDirectory);
+        add(absoluteEventFile, summary);
+    }
+
+    /**
+     * Persists the summary of the given event file and makes it available to searches. This is to be called once
+     * the event file has been completely written.
+     *
+     * @param eventFile the Provenance Event Log File
+     * @param summary the summary of the file's events
+     */
+    public synchronized void add(final File eventFile, final EventFileSummary summary) {
+        final File absoluteEventFile = eventFile.getAbsoluteFile();
+        for (final Map.Entry<File, Set<File>> pending : pendingFilesByIndexDirectory.entrySet()) {
+            if (pending.getValue().contains(absoluteEventFile)) {
+                summary.addIndexDirectory(pending.getKey());
+            }
+        }
+
+        final File summaryFile = TocUtil.getSummaryFile(absoluteEventFile);
+        try {
+            summary.write(summaryFile);
+        } catch (final IOException ioe) {
+            // the summary is still used until restart, after which the file is treated as having no summary
+            logger.warn("Failed to write Event File Summary {} due to {}", summaryFile, ioe.toString());
+        }
+
+        forget(absoluteEventFile);
+        addEntry(absoluteEventFile, summary);
+    }
+
+    /**
+     * Removes the summary of the given event file, because the file has been removed from the repository
+     *
+     * @param eventFile the Provenance Event Log File
+     */
+    public synchronized void remove(final File eventFile) {
+        forget(eventFile.getAbsoluteFile());
+    }
+
+    /**
+     * Determines whether or not the given index directory may contain events that match the given criteria.
+     *
+     * @param indexDirectory the index directory
+     * @param startTime the earliest event time of interest, or <code>null</code> if not bounded
+     * @param endTime the latest event time of interest, or <code>null</code> if not bounded
+     * @param componentIds the Component IDs of which at least one must match, or an empty collection if not restricted
+     * @param flowFileUuids the FlowFile UUIDs of which at least one must match, or an empty collection if not restricted
+     * @return <code>false</code> if the index directory cannot contain any matching event, <code>true</code> otherwise
+     */
+    public boolean isSearchable(final File indexDirectory, final Long startTime, final Long endTime, final Collection<String> componentIds,
+        final Collection<String> flowFileUuids) {
+        final File absoluteIndexDirectory = indexDirectory.getAbsoluteFile();
+
+        final List<SummaryEntry> candidates = new ArrayList<>();
+        synchronized (this) {
+            final Set<File> unsummarized = unsummarizedFilesByStorageDirectory.get(absoluteIndexDirectory.getParentFile());
+            if (unsummarized != null && !unsummarized.isEmpty()) {
+                return true;
+            }
+
+            final Set<File> pending = pendingFilesByIndexDirectory.get(absoluteIndexDirectory);
+            if (pending != null && !pending.isEmpty()) {
+                return true;
+            }
+
+            final Set<File> eventFiles = filesByIndexDirectory.get(absoluteIndexDirectory);
+            if (eventFiles == null || eventFiles.isEmpty()) {
+                // we know nothing about the contents of this index
+                return true;
+            }
+
+            for (final File eventFile : eventFiles) {
+                candidates.add(entries.get(eventFile));
+            }
+        }
+
+        for (final SummaryEntry entry : candidates) {
+            if (entry.mayMatch(startTime, endTime, componentIds, flowFileUuids)) {
+                return true;
+            }
+        }
+
+        logger.debug("Summaries of the {} event files indexed into {} rule out any match", candidates.size(), indexDirectory);
+        return false;
+    }
+
+    private void addEntry(final File eventFile, final EventFileSummary summary) {
+        final Set<File> indexDirectories = new HashSet<>();
+        for (final String indexDirectoryName : summary.getIndexDirectoryNames()) {
+            final File indexDirectory = new File(getStorageDirectory(eventFile), indexDirectoryName);
+            indexDirectories.add(indexDirectory);
+            getOrCreate(filesByIndexDirectory, indexDirectory).add(eventFile);
+        }
+
+        entries.put(eventFile, new SummaryEntry(eventFile, summary, indexDirectories));
+    }
+
+    private void forget(final File eventFile) {
+        final SummaryEntry entry = entries.remove(eventFile);
+        if (entry != null) {
+            for (final File indexDirectory : entry.indexDirectories) {
+                removeValue(filesByIndexDirectory, indexDirectory, eventFile);
+            }
+        }
+
+        for (final File indexDirectory : new ArrayList<>(pendingFilesByIndexDirectory.keySet())) {
+            removeValue(pendingFilesByIndexDirectory, indexDirectory, eventFile);
+        }
+
+        removeValue(unsummarizedFilesByStorageDirectory, getStorageDirectory(eventFile), eventFile);
+    }
+
+    private File getStorageDirectory(final File eventFile) {
+        final File directory = eventFile.getParentFile();
+        final File storageDirectory = storageDirectoryAliases.get(directory);
+        return storageDirectory == null ? directory : storageDirectory;
+    }
+
+    private static Set<File> getOrCreate(final Map<File, Set<File>> map, final File key) {
+        Set<File> set = map.get(key);
+        if (set == null) {
+            set = new HashSet<>();
+            map.put(key, set);
+        }
+        return set;
+    }
+
+    private static void removeValue(final Map<File, Set<File>> map, final File key, final File value) {
+        final Set<File> set = map.get(key);
+        if (set != null && set.remove(value) && set.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+
+    private static class SummaryEntry {
+        private final File eventFile;
+        private final long minEventTime;
+        private final long maxEventTime;
+        private final boolean empty;
+        private final Set<File> indexDirectories;
+        private volatile SoftReference<EventFileSummary> summaryReference;
+
+        public SummaryEntry(final File eventFile, final EventFileSummary summary, final Set<File> indexDirectories) {
+            this.eventFile = eventFile;
+            this.minEventTime = summary.getMinEventTime();
+            this.maxEventTime = summary.getMaxEventTime();
+            this.empty = summary.getEventCount() == 0;
+            this.indexDirectories = indexDirectories;
+            this.summaryReference = new SoftReference<>(summary);
+        }
+
+        /**
+         * @return the summary, or <code>null</code> if it is no longer in memory and could not be read
+         */
+        public EventFileSummary getSummary() {
+            EventFileSummary summary = summaryReference.get();
+            if (summary != null) {
+                return summary;
+            }
+
+            final File summaryFile = TocUtil.getSummaryFile(eventFile);
+            try {
+                summary = EventFileSummary.read(summaryFile);
+                summaryReference = new SoftReference<>(summary);
+                return summary;
+            } catch (final IOException ioe) {
+                logger.warn("Failed to read Event File Summary {} due to {}", summaryFile, ioe.toString());
+                return null;
+            }
+        }
+
+        public boolean mayMatch(final Long startTime, final Long endTime, final Collection<String> componentIds, final Collection<String> flowFileUuids) {
+            if (empty) {
+                return false;
+            }
+            if (startTime != null && maxEventTime < startTime) {
+                return false;
+            }
+            if (endTime != null && minEventTime > endTime) {
+                return false;
+            }
+            if (componentIds.isEmpty() && flowFileUuids.isEmpty()) {
+                return true;
+            }
+
+            final EventFileSummary summary = getSummary();
+            if (summary == null) {
+                return true;
+            }
+
+            return mightContainAny(summary, componentIds, true) && mightContainAny(summary, flowFileUuids, false);
+        }
+
+        private static boolean mightContainAny(final EventFileSummary summary, final Collection<String> values, final boolean componentIds) {
+            if (values.isEmpty()) {
+                return true;
+            }
+
+            for (final String value : values) {
+                if (componentIds ? summary.mightContainComponentId(value) : summary.mightContainFlowFileUuid(value)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+}
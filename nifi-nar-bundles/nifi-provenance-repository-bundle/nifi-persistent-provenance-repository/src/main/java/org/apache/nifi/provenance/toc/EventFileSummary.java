@@ -0,0 +1,327 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.toc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+
+/**
+ * A small summary of the events in a Provenance Event Log File: the range of event times and event ids, the names of the
+ * index directories that the events were indexed into, and a bloom filter over the Component IDs and FlowFile UUIDs of the
+ * events. The summary is kept alongside the Table of Contents so that queries can rule out event files, and the index
+ * directories that they were indexed into, without opening them.
+ *
+ * Format of .summary file:
+ * int: version
+ * long: min event time, long: max event time, long: min event id, long: max event id, long: event count
+ * int: number of index directories, followed by the name of each index directory
+ * int: number of hash functions, int: number of longs in the bloom filter, followed by the longs of the bloom filter
+ */
+public class EventFileSummary {
+    public static final int VERSION = 1;
+
+    private static final int BITS_PER_KEY = 10;
+    private static final int NUM_HASH_FUNCTIONS = 7;
+    private static final char COMPONENT_ID_PREFIX = 'c';
+    private static final char FLOWFILE_UUID_PREFIX = 'u';
+
+    private long minEventTime = Long.MAX_VALUE;
+    private long maxEventTime = Long.MIN_VALUE;
+    private long minEventId = Long.MAX_VALUE;
+    private long maxEventId = Long.MIN_VALUE;
+    private long eventCount = 0L;
+    private final Set<String> indexDirectoryNames = new HashSet<>();
+
+    // While events are being added, the hashes of their keys are collected so that the bloom filter
+    // can be sized according to the number of keys once the file is complete.
+    private long[] keyHashes = new long[64];
+    private int keyHashCount = 0;
+    private long[] bloomBits;
+    private int numHashFunctions = NUM_HASH_FUNCTIONS;
+
+    public synchronized void update(final ProvenanceEventRecord event, final long eventId) {
+        minEventTime = Math.min(minEventTime, event.getEventTime());
+        maxEventTime = Math.max(maxEventTime, event.getEventTime());
+        minEventId = Math.min(minEventId, eventId);
+        maxEventId = Math.max(maxEventId, eventId);
+        eventCount++;
+
+        addKey(COMPONENT_ID_PREFIX, event.getComponentId());
+        addKey(FLOWFILE_UUID_PREFIX, event.getFlowFileUuid());
+
+        final ProvenanceEventType eventType = event.getEventType();
+        if (eventType == ProvenanceEventType.FORK || eventType == ProvenanceEventType.CLONE || eventType == ProvenanceEventType.REPLAY
+            || eventType == ProvenanceEventType.JOIN) {
+            for (final String uuid : event.getChildUuids()) {
+                addKey(FLOWFILE_UUID_PREFIX, uuid);
+            }
+            for (final String uuid : event.getParentUuids()) {
+                addKey(FLOWFILE_UUID_PREFIX, uuid);
+            }
+        } else if (eventType == ProvenanceEventType.RECEIVE && event.getSourceSystemFlowFileIdentifier() != null) {
+            // RECEIVE events are also indexed by the UUID that the source system uses to refer to the data
+            final String sourceIdentifier = event.getSourceSystemFlowFileIdentifier();
+            final int lastColon = sourceIdentifier.lastIndexOf(":");
+            if (lastColon > -1 && lastColon < sourceIdentifier.length() - 2) {
+                addKey(FLOWFILE_UUID_PREFIX, sourceIdentifier.substring(lastColon + 1));
+            }
+        }
+    }
+
+    public synchronized void addIndexDirectory(final File indexDirectory) {
+        indexDirectoryNames.add(indexDirectory.getName());
+    }
+
+    public synchronized Set<String> getIndexDirectoryNames() {
+        return Collections.unmodifiableSet(new HashSet<>(indexDirectoryNames));
+    }
+
+    public synchronized long getMinEventTime() {
+        return minEventTime;
+    }
+
+    public synchronized long getMaxEventTime() {
+        return maxEventTime;
+    }
+
+    public synchronized long getMinEventId() {
+        return minEventId;
+    }
+
+    public synchronized long getMaxEventId() {
+        return maxEventId;
+    }
+
+    public synchronized long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @param startTime the earliest event time of interest, or <code>null</code> if not bounded
+     * @param endTime the latest event time of interest, or <code>null</code> if not bounded
+     * @return <code>true</code> if any event in the file may have an event time within the given range (inclusive)
+     */
+    public synchronized boolean overlaps(final Long startTime, final Long endTime) {
+        if (eventCount == 0) {
+            return false;
+        }
+
+        return (startTime == null || maxEventTime >= startTime) && (endTime == null || minEventTime <= endTime);
+    }
+
+    /**
+     * @param componentId the Component ID
+     * @return <code>false</code> if no event in the file was generated by the given component, <code>true</code> if one may have been
+     */
+    public boolean mightContainComponentId(final String componentId) {
+        return mightContain(COMPONENT_ID_PREFIX, componentId);
+    }
+
+    /**
+     * @param flowFileUuid the UUID of a FlowFile
+     * @return <code>false</code> if no event in the file refers to the given FlowFile, <code>true</code> if one may
+     */
+    public boolean mightContainFlowFileUuid(final String flowFileUuid) {
+        return mightContain(FLOWFILE_UUID_PREFIX, flowFileUuid);
+    }
+
+    private synchronized boolean mightContain(final char prefix, final String value) {
+        if (value == null) {
+            return false;
+        }
+
+        buildBloomFilter();
+        return isSet(hash(prefix, value));
+    }
+
+    private void addKey(final char prefix, final String value) {
+        if (value == null) {
+            return;
+        }
+
+        final long hash = hash(prefix, value);
+        if (bloomBits != null) {
+            // the filter has already been built; setting the bits keeps it free of false negatives
+            setBits(hash);
+            return;
+        }
+
+        if (keyHashCount == keyHashes.length) {
+            keyHashes = Arrays.copyOf(keyHashes, keyHashes.length * 2);
+        }
+        keyHashes[keyHashCount++] = hash;
+    }
+
+    private void buildBloomFilter() {
+        if (bloomBits != null) {
+            return;
+        }
+
+        final long numBits = Math.max(64L, (long) keyHashCount * BITS_PER_KEY);
+        bloomBits = new long[(int) Math.min(Integer.MAX_VALUE, (numBits + 63) / 64)];
+        for (int i = 0; i < keyHashCount; i++) {
+            setBits(keyHashes[i]);
+        }
+
+        keyHashes = null;
+        keyHashCount = 0;
+    }
+
+    private void setBits(final long hash) {
+        final long numBits = (long) bloomBits.length * 64;
+        final int hash1 = (int) hash;
+        final int hash2 = (int) (hash >>> 32);
+        for (int i = 0; i < numHashFunctions; i++) {
+            final long bit = ((hash1 + (long) i * hash2) & Long.MAX_VALUE) % numBits;
+            bloomBits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private boolean isSet(final long hash) {
+        final long numBits = (long) bloomBits.length * 64;
+        final int hash1 = (int) hash;
+        final int hash2 = (int) (hash >>> 32);
+        for (int i = 0; i < numHashFunctions; i++) {
+            final long bit = ((hash1 + (long) i * hash2) & Long.MAX_VALUE) % numBits;
+            if ((bloomBits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the prefix and the lower-cased value, as values are lower-cased when they are indexed,
+     * followed by the MurmurHash3 finalizer so that both halves of the hash are well distributed.
+     */
+    private static long hash(final char prefix, final String value) {
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ prefix) * 0x100000001b3L;
+
+        final String lowerCase = value.toLowerCase();
+        for (int i = 0; i < lowerCase.length(); i++) {
+            hash = (hash ^ lowerCase.charAt(i)) * 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Writes the summary to the given file. The summary is written to a temporary file first so that a summary
+     * file is never left partially written.
+     *
+     * @param summaryFile the file to write to
+     * @throws IOException if unable to write the summary
+     */
+    public synchronized void write(final File summaryFile) throws IOException {
+        buildBloomFilter();
+
+        final File dir = summaryFile.getParentFile();
+        if (!dir.exists()) {
+            Files.createDirectories(dir.toPath());
+        }
+
+        final File tempFile = new File(dir, summaryFile.getName() + ".tmp");
+        try (final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            dos.writeInt(VERSION);
+            dos.writeLong(minEventTime);
+            dos.writeLong(maxEventTime);
+            dos.writeLong(minEventId);
+            dos.writeLong(maxEventId);
+            dos.writeLong(eventCount);
+
+            dos.writeInt(indexDirectoryNames.size());
+            for (final String indexDirectoryName : indexDirectoryNames) {
+                dos.writeUTF(indexDirectoryName);
+            }
+
+            dos.writeInt(numHashFunctions);
+            dos.writeInt(bloomBits.length);
+            for (final long bits : bloomBits) {
+                dos.writeLong(bits);
+            }
+        }
+
+        Files.move(tempFile.toPath(), summaryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads a summary that was written by {@link #write(File)}
+     *
+     * @param summaryFile the file to read
+     * @return the summary
+     * @throws IOException if unable to read the summary
+     */
+    public static EventFileSummary read(final File summaryFile) throws IOException {
+        try (final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(summaryFile)))) {
+            final int version = dis.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Cannot read Event File Summary " + summaryFile + " because it was written with version " + version
+                    + " and this version of NiFi supports only up to version " + VERSION);
+            }
+
+            final EventFileSummary summary = new EventFileSummary();
+            summary.minEventTime = dis.readLong();
+            summary.maxEventTime = dis.readLong();
+            summary.minEventId = dis.readLong();
+            summary.maxEventId = dis.readLong();
+            summary.eventCount = dis.readLong();
+
+            final int numIndexDirectories = dis.readInt();
+            for (int i = 0; i < numIndexDirectories; i++) {
+                summary.indexDirectoryNames.add(dis.readUTF());
+            }
+
+            summary.numHashFunctions = dis.readInt();
+            final long[] bloomBits = new long[dis.readInt()];
+            for (int i = 0; i < bloomBits.length; i++) {
+                bloomBits[i] = dis.readLong();
+            }
+            summary.bloomBits = bloomBits;
+            summary.keyHashes = null;
+
+            return summary;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "EventFileSummary[events=" + eventCount + ", ids=" + minEventId + "-" + maxEventId + ", times=" + minEventTime + "-" + maxEventTime
+            + ", indexes=" + indexDirectoryNames + "]";
+    }
+}
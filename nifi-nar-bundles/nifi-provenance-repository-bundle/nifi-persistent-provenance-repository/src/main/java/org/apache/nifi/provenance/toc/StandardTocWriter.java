@@ -45,6 +45,7 @@ public class StandardTocWriter implements TocWriter {
     private final File file;
     private final FileOutputStream fos;
     private final boolean alwaysSync;
+    private final EventFileSummary summary = new EventFileSummary();
     private int index = -1;
 
     /**
@@ -108,6 +109,11 @@ public class StandardTocWriter implements TocWriter {
         fos.close();
     }
 
+    @Override
+    public EventFileSummary getSummary() {
+        return summary;
+    }
+
     @Override
     public File getFile() {
         return file;
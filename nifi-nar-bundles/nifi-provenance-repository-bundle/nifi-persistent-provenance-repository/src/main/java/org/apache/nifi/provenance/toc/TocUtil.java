@@ -37,4 +37,17 @@ public class TocUtil {
         return tocFile;
     }
 
+    /**
+     * Returns the file that holds the {@link EventFileSummary} of the given Journal File. The summary is kept in the
+     * same directory as the Table of Contents. Note, if no summary exists for the given Journal File, a File will still
+     * be returned but the file will not actually exist.
+     *
+     * @param journalFile the journal file for which to get the summary
+     * @return the file that holds the summary of the specified journal file.
+     */
+    public static File getSummaryFile(final File journalFile) {
+        final File tocDir = new File(journalFile.getParentFile(), "toc");
+        final String basename = LuceneUtil.substringBefore(journalFile.getName(), ".");
+        return new File(tocDir, basename + ".summary");
+    }
 }
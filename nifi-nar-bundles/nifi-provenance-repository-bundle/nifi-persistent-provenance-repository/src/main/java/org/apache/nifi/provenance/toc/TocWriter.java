@@ -40,6 +40,11 @@ public interface TocWriter extends Closeable {
      */
     int getCurrentBlockIndex();
 
+    /**
+     * @return the summary of the events that have been written to the journal so far
+     */
+    EventFileSummary getSummary();
+
     /**
      * @return the file that is currently being written to
      */
@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import static org.apache.nifi.provenance.TestUtil.createFlowFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.nifi.provenance.serialization.RecordReader;
+import org.apache.nifi.provenance.serialization.RecordReaders;
+import org.apache.nifi.provenance.serialization.RecordWriter;
+import org.apache.nifi.provenance.serialization.RecordWriters;
+import org.apache.nifi.provenance.toc.StandardTocReader;
+import org.apache.nifi.provenance.toc.StandardTocWriter;
+import org.apache.nifi.provenance.toc.TocReader;
+import org.apache.nifi.provenance.toc.TocUtil;
+import org.apache.nifi.provenance.toc.TocWriter;
+import org.apache.nifi.util.file.FileUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestEncodedRecordReaderWriter {
+    @BeforeClass
+    public static void setLogLevel() {
+        System.setProperty("org.slf4j.simpleLogger.log.org.apache.nifi.provenance", "DEBUG");
+    }
+
+    private ProvenanceEventRecord createEvent() {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("filename", "1.txt");
+        attributes.put("uuid", UUID.randomUUID().toString());
+
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.fromFlowFile(createFlowFile(3L, 3000L, attributes));
+        builder.setComponentId("1234");
+        builder.setComponentType("dummy processor");
+        builder.setCurrentContentClaim("container", "section", "claim-1", 10L, 3000L);
+        final ProvenanceEventRecord record = builder.build();
+
+        return record;
+    }
+
+    @Test
+    public void testSimpleWriteWithToc() throws IOException {
+        final File journalFile = new File("target/storage/" + UUID.randomUUID().toString() + "/testSimpleWrite");
+        final File tocFile = TocUtil.getTocFile(journalFile);
+        final TocWriter tocWriter = new StandardTocWriter(tocFile, false, false);
+        final EncodedRecordWriter writer = new EncodedRecordWriter(journalFile, tocWriter, false, 1024 * 1024);
+
+        writer.writeHeader(1L);
+        writer.writeRecord(createEvent(), 1L);
+        writer.close();
+
+        final TocReader tocReader = new StandardTocReader(tocFile);
+
+        try (final FileInputStream fis = new FileInputStream(journalFile);
+            final EncodedRecordReader reader = new EncodedRecordReader(fis, journalFile.getName(), tocReader, 2048)) {
+            assertEquals(0, reader.getBlockIndex());
+            reader.skipToBlock(0);
+            final StandardProvenanceEventRecord recovered = reader.nextRecord();
+            assertNotNull(recovered);
+
+            assertEquals(1L, recovered.getEventId());
+            assertEquals("nifi://unit-test", recovered.getTransitUri());
+            assertEquals("claim-1", recovered.getContentClaimIdentifier());
+            assertEquals(Long.valueOf(10L), recovered.getContentClaimOffset());
+            assertEquals("1.txt", recovered.getAttributes().get("filename"));
+            assertNull(reader.nextRecord());
+        }
+
+        FileUtils.deleteFile(journalFile.getParentFile(), true);
+    }
+
+    @Test
+    public void testSingleRecordCompressed() throws IOException {
+        final File journalFile = new File("target/storage/" + UUID.randomUUID().toString() + "/testSimpleWrite.gz");
+        final File tocFile = TocUtil.getTocFile(journalFile);
+        final TocWriter tocWriter = new StandardTocWriter(tocFile, false, false);
+        final EncodedRecordWriter writer = new EncodedRecordWriter(journalFile, tocWriter, true, 100);
+
+        writer.writeHeader(1L);
+        writer.writeRecord(createEvent(), 1L);
+        writer.close();
+
+        final TocReader tocReader = new StandardTocReader(tocFile);
+
+        try (final FileInputStream fis = new FileInputStream(journalFile);
+            final EncodedRecordReader reader = new EncodedRecordReader(fis, journalFile.getName(), tocReader, 2048)) {
+            assertEquals(0, reader.getBlockIndex());
+            reader.skipToBlock(0);
+            final StandardProvenanceEventRecord recovered = reader.nextRecord();
+            assertNotNull(recovered);
+
+            assertEquals("nifi://unit-test", recovered.getTransitUri());
+            assertNull(reader.nextRecord());
+        }
+
+        FileUtils.deleteFile(journalFile.getParentFile(), true);
+    }
+
+    @Test
+    public void testMultipleRecordsMultipleBlocksCompressed() throws IOException {
+        final File journalFile = new File("target/storage/" + UUID.randomUUID().toString() + "/testSimpleWrite.gz");
+        final File tocFile = TocUtil.getTocFile(journalFile);
+        final TocWriter tocWriter = new StandardTocWriter(tocFile, false, false);
+        // new block each 100 bytes
+        final EncodedRecordWriter writer = new EncodedRecordWriter(journalFile, tocWriter, true, 100);
+
+        writer.writeHeader(1L);
+        for (int i = 0; i < 10; i++) {
+            writer.writeRecord(createEvent(), i);
+        }
+        writer.close();
+
+        final TocReader tocReader = new StandardTocReader(tocFile);
+
+        try (final FileInputStream fis = new FileInputStream(journalFile);
+            final EncodedRecordReader reader = new EncodedRecordReader(fis, journalFile.getName(), tocReader, 2048)) {
+            for (int i = 0; i < 10; i++) {
+                final StandardProvenanceEventRecord recovered = reader.nextRecord();
+                assertNotNull(recovered);
+                assertEquals(i, recovered.getEventId());
+                assertEquals("nifi://unit-test", recovered.getTransitUri());
+                assertEquals("1234", recovered.getComponentId());
+            }
+
+            assertNull(reader.nextRecord());
+        }
+
+        // Each block must be readable on its own, without the dictionary of the blocks before it.
+        try (final FileInputStream fis = new FileInputStream(journalFile);
+            final EncodedRecordReader reader = new EncodedRecordReader(fis, journalFile.getName(), new StandardTocReader(tocFile), 2048)) {
+            final Integer blockIndex = tocReader.getBlockIndexForEventId(7L);
+            assertNotNull(blockIndex);
+            assertTrue(blockIndex > 0);
+
+            reader.skipToBlock(blockIndex);
+            final StandardProvenanceEventRecord recovered = reader.nextRecord();
+            assertEquals(7L, recovered.getEventId());
+            assertEquals("1234", recovered.getComponentId());
+            assertEquals("claim-1", recovered.getContentClaimIdentifier());
+        }
+
+        FileUtils.deleteFile(journalFile.getParentFile(), true);
+    }
+
+    @Test
+    public void testMultipleRecordsMultipleBlocksUncompressed() throws IOException {
+        final File journalFile = new File("target/storage/" + UUID.randomUUID().toString() + "/testSimpleWrite");
+        final File tocFile = TocUtil.getTocFile(journalFile);
+        final TocWriter tocWriter = new StandardTocWriter(tocFile, false, false);
+        final EncodedRecordWriter writer = new EncodedRecordWriter(journalFile, tocWriter, false, 100);
+
+        writer.writeHeader(1L);
+        for (int i = 0; i < 10; i++) {
+            writer.writeRecord(createEvent(), i);
+        }
+        writer.close();
+
+        final TocReader tocReader = new StandardTocReader(tocFile);
+        final Integer blockIndex = tocReader.getBlockIndexForEventId(8L);
+        assertNotNull(blockIndex);
+        assertTrue(blockIndex > 0);
+
+        try (final FileInputStream fis = new FileInputStream(journalFile);
+            final EncodedRecordReader reader = new EncodedRecordReader(fis, journalFile.getName(), tocReader, 2048)) {
+            reader.skipToBlock(blockIndex);
+
+            StandardProvenanceEventRecord recovered;
+            while ((recovered = reader.nextRecord()) != null && recovered.getEventId() < 8L) {
+            }
+
+            assertNotNull(recovered);
+            assertEquals(8L, recovered.getEventId());
+            assertEquals("dummy processor", recovered.getComponentType());
+        }
+
+        FileUtils.deleteFile(journalFile.getParentFile(), true);
+    }
+
+    @Test
+    public void testAllFieldsRoundTrip() throws IOException {
+        final File journalFile = new File("target/storage/" + UUID.randomUUID().toString() + "/testAllFields.gz");
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("filename", "1.txt");
+        attributes.put("uuid", UUID.randomUUID().toString());
+        attributes.put("unicode", "é中");
+
+        final StandardProvenanceEventRecord.Builder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setEventType(ProvenanceEventType.FORK);
+        builder.fromFlowFile(createFlowFile(3L, 3000L, attributes));
+        builder.setAttributes(attributes, Collections.singletonMap("removed", null));
+        builder.setComponentId("1234");
+        builder.setComponentType("dummy processor");
+        builder.setDetails("some details");
+        builder.setEventDuration(-1L);
+        builder.setSourceQueueIdentifier("queue-1");
+        builder.setCurrentContentClaim("container", "section", "claim-2", 20L, 100L);
+        builder.setPreviousContentClaim("container", "section", "claim-1", 10L, 3000L);
+        builder.addParentUuid("parent-1");
+        builder.addChildUuid("child-1");
+        builder.addChildUuid("child-2");
+        final ProvenanceEventRecord event = builder.build();
+
+        try (final RecordWriter writer = RecordWriters.newRecordWriter(journalFile, true, true, 1024 * 1024, true)) {
+            writer.writeHeader(5L);
+            writer.writeRecord(event, 5L);
+            writer.writeRecord(event, 6L);
+        }
+
+        // RecordReaders must recognize the format of the file
+        try (final RecordReader reader = RecordReaders.newRecordReader(journalFile, null, 2048)) {
+            for (long id = 5L; id <= 6L; id++) {
+                final StandardProvenanceEventRecord recovered = reader.nextRecord();
+                assertNotNull(recovered);
+                assertEquals(id, recovered.getEventId());
+                assertEquals(ProvenanceEventType.FORK, recovered.getEventType());
+                assertEquals(event.getEventTime(), recovered.getEventTime());
+                assertEquals(event.getFlowFileEntryDate(), recovered.getFlowFileEntryDate());
+                assertEquals(event.getLineageStartDate(), recovered.getLineageStartDate());
+                assertEquals(-1L, recovered.getEventDuration());
+                assertEquals(event.getFlowFileUuid(), recovered.getFlowFileUuid());
+                assertEquals("some details", recovered.getDetails());
+                assertEquals("queue-1", recovered.getSourceQueueIdentifier());
+                assertEquals(event.getPreviousAttributes(), recovered.getPreviousAttributes());
+                assertEquals(event.getUpdatedAttributes(), recovered.getUpdatedAttributes());
+                assertEquals("claim-2", recovered.getContentClaimIdentifier());
+                assertEquals(Long.valueOf(20L), recovered.getContentClaimOffset());
+                assertEquals(100L, recovered.getFileSize());
+                assertEquals("claim-1", recovered.getPreviousContentClaimIdentifier());
+                assertEquals(Long.valueOf(10L), recovered.getPreviousContentClaimOffset());
+                assertEquals(Long.valueOf(3000L), recovered.getPreviousFileSize());
+                assertEquals(Arrays.asList("parent-1"), recovered.getParentUuids());
+                assertEquals(Arrays.asList("child-1", "child-2"), recovered.getChildUuids());
+            }
+
+            assertNull(reader.nextRecord());
+        }
+
+        FileUtils.deleteFile(journalFile.getParentFile(), true);
+    }
+
+    @Test
+    public void testSmallerThanStandardFormat() throws IOException {
+        final File directory = new File("target/storage/" + UUID.randomUUID().toString());
+        final File standardFile = new File(directory, "standard.prov.gz");
+        final File encodedFile = new File(directory, "encoded.prov.gz");
+
+        try (final RecordWriter standardWriter = RecordWriters.newRecordWriter(standardFile, true, true, 1024 * 1024, false);
+            final RecordWriter encodedWriter = RecordWriters.newRecordWriter(encodedFile, true, true, 1024 * 1024, true)) {
+            standardWriter.writeHeader(0L);
+            encodedWriter.writeHeader(0L);
+
+            for (int i = 0; i < 1000; i++) {
+                final ProvenanceEventRecord event = createEvent();
+                standardWriter.writeRecord(event, i);
+                encodedWriter.writeRecord(event, i);
+            }
+        }
+
+        assertTrue(encodedFile.length() < standardFile.length());
+
+        // RecordReaders must continue to recognize files that are written in the standard format
+        try (final RecordReader reader = RecordReaders.newRecordReader(standardFile, null, 2048)) {
+            assertTrue(reader instanceof StandardRecordReader);
+            assertEquals(999L, reader.getMaxEventId());
+        }
+
+        try (final RecordReader reader = RecordReaders.newRecordReader(encodedFile, null, 2048)) {
+            assertTrue(reader instanceof EncodedRecordReader);
+            assertEquals(999L, reader.getMaxEventId());
+        }
+
+        FileUtils.deleteFile(directory, true);
+    }
+}
@@ -0,0 +1,505 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import static org.apache.nifi.provenance.TestUtil.createFlowFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.nifi.authorization.user.NiFiUser;
+import org.apache.nifi.events.EventReporter;
+import org.apache.nifi.provenance.search.Query;
+import org.apache.nifi.provenance.search.QueryResult;
+import org.apache.nifi.provenance.search.SearchTerms;
+import org.apache.nifi.reporting.Severity;
+import org.apache.nifi.util.file.FileUtils;
+import org.junit.After;
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class TestPartitionedProvenanceRepository {
+
+    private static final int DEFAULT_ROLLOVER_MILLIS = 2000;
+
+    private PersistentProvenanceRepository repo;
+    private RepositoryConfiguration config;
+
+    private final EventReporter eventReporter = new EventReporter() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void reportEvent(Severity severity, String category, String message) {
+            System.out.println(severity + " : " + category + " : " + message);
+        }
+    };
+
+    private RepositoryConfiguration createConfiguration(final int storageDirectories) {
+        config = new RepositoryConfiguration();
+        for (int i = 0; i < storageDirectories; i++) {
+            config.addStorageDirectory(new File("target/storage/" + UUID.randomUUID().toString()));
+        }
+        config.setCompressOnRollover(true);
+        config.setMaxEventFileLife(2000L, TimeUnit.SECONDS);
+        config.setCompressionBlockBytes(100);
+        config.setSearchableFields(new ArrayList<>(SearchableFields.getStandardFields()));
+        return config;
+    }
+
+    @After
+    public void closeRepo() throws IOException {
+        if (repo != null) {
+            try {
+                repo.close();
+            } catch (final IOException ioe) {
+            }
+        }
+
+        for (final File storageDir : config.getStorageDirectories()) {
+            for (int i = 0; i < 3 && storageDir.exists(); i++) {
+                try {
+                    FileUtils.deleteFile(storageDir, true);
+                    break;
+                } catch (final IOException ioe) {
+                    // if there is a virus scanner, etc. running in the background we may not be able to
+                    // delete the file. Wait a sec and try again.
+                    if (i == 2) {
+                        throw ioe;
+                    } else {
+                        try {
+                            Thread.sleep(1000L);
+                        } catch (final InterruptedException ie) {
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private ProvenanceEventRecord createEvent(final String uuid, final String componentId) {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("abc", "xyz");
+        attributes.put("filename", "file-" + uuid);
+        attributes.put("uuid", uuid);
+
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.fromFlowFile(createFlowFile(3L, 3000L, attributes));
+        builder.setComponentId(componentId);
+        builder.setComponentType("dummy processor");
+        return builder.build();
+    }
+
+    @Test
+    public void testEventsWrittenToEachStorageDirectoryAndRetrievedInOrder() throws IOException {
+        final PartitionedProvenanceRepository repo = new PartitionedProvenanceRepository(createConfiguration(2), DEFAULT_ROLLOVER_MILLIS);
+        this.repo = repo;
+        repo.initialize(eventReporter, null, null);
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 250; i++) {
+                        final List<ProvenanceEventRecord> events = new ArrayList<>();
+                        events.add(createEvent(UUID.randomUUID().toString(), "1234"));
+                        events.add(createEvent(UUID.randomUUID().toString(), "1234"));
+                        repo.registerEvents(events);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (final Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        repo.waitForIndexing();
+
+        // No journals should be used, and each storage directory should contain event files.
+        assertEquals(0, repo.getJournalCount());
+        final Set<File> directories = new HashSet<>();
+        for (final Path path : repo.getAllLogFiles()) {
+            directories.add(path.toFile().getParentFile());
+        }
+        assertEquals(2, directories.size());
+
+        final List<ProvenanceEventRecord> events = repo.getEvents(0L, 3000);
+        assertEquals(2000, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(i, events.get(i).getEventId());
+        }
+
+        final List<ProvenanceEventRecord> lastEvents = repo.getEvents(1990L, 100);
+        assertEquals(10, lastEvents.size());
+        assertEquals(1990L, lastEvents.get(0).getEventId());
+        assertEquals(1999L, repo.getMaxEventId().longValue());
+    }
+
+    @Test
+    public void testEventsBelowUnflushedEventOfOtherPartitionNotExposed() throws IOException {
+        final PartitionedProvenanceRepository repo = new PartitionedProvenanceRepository(createConfiguration(2), DEFAULT_ROLLOVER_MILLIS);
+        this.repo = repo;
+        repo.initialize(eventReporter, null, null);
+
+        // Each event is larger than the compression block, so writing an event completes the block of the previous one.
+        // Event 0 goes to the first partition and event 1 to the second. Events 2 through 4 then go to the first partition,
+        // which flushes events 0, 2 and 3 while event 1 is still buffered by the second partition.
+        repo.registerEvent(createEvent(UUID.randomUUID().toString(), "1234"));
+        repo.registerEvent(createEvent(UUID.randomUUID().toString(), "1234"));
+        repo.registerEvents(createEvents(3));
+
+        final List<ProvenanceEventRecord> firstEvents = repo.getEvents(0L, 100);
+        assertEquals(1, firstEvents.size());
+        assertEquals(0L, firstEvents.get(0).getEventId());
+        assertEquals(1L, repo.getFlushedEventIdLimit());
+
+        // A cursor that continues from the last event returned must now see event 1 along with events 2 and 3
+        repo.registerEvent(createEvent(UUID.randomUUID().toString(), "1234"));
+        assertEquals(4L, repo.getFlushedEventIdLimit());
+
+        final List<ProvenanceEventRecord> nextEvents = repo.getEvents(1L, 100);
+        assertEquals(3, nextEvents.size());
+        for (int i = 0; i < nextEvents.size(); i++) {
+            assertEquals(i + 1, nextEvents.get(i).getEventId());
+        }
+
+        repo.waitForIndexing();
+        assertEquals(6L, repo.getFlushedEventIdLimit());
+        assertEquals(5L, repo.getMaxEventId().longValue());
+        assertEquals(6, repo.getEvents(0L, 100).size());
+    }
+
+    @Test
+    public void testCursorSeesEveryEventWhilePartitionsWriteConcurrently() throws Exception {
+        final PartitionedProvenanceRepository repo = new PartitionedProvenanceRepository(createConfiguration(3), DEFAULT_ROLLOVER_MILLIS);
+        this.repo = repo;
+        repo.initialize(eventReporter, null, null);
+
+        final int threadCount = 4;
+        final int batchesPerThread = 250;
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            final int batchSize = t + 1;
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < batchesPerThread; i++) {
+                        repo.registerEvents(createEvents(batchSize));
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        // Read the events the way that a reporting task does: up to the max Event ID, continuing from the last ID seen.
+        long nextEventId = 0L;
+        while (isAlive(threads)) {
+            nextEventId = readWithCursor(repo, nextEventId);
+        }
+
+        repo.waitForIndexing();
+        nextEventId = readWithCursor(repo, nextEventId);
+
+        assertEquals(batchesPerThread * (1 + 2 + 3 + 4), nextEventId);
+    }
+
+    private long readWithCursor(final PersistentProvenanceRepository repo, final long firstEventId) throws IOException {
+        final Long maxEventId = repo.getMaxEventId();
+        if (maxEventId == null) {
+            return firstEventId;
+        }
+
+        long nextEventId = firstEventId;
+        while (nextEventId <= maxEventId) {
+            final List<ProvenanceEventRecord> events = repo.getEvents(nextEventId, 100);
+            assertFalse(events.isEmpty());
+            for (final ProvenanceEventRecord event : events) {
+                if (event.getEventId() > maxEventId) {
+                    return nextEventId;
+                }
+
+                // no Event ID may be skipped
+                assertEquals(nextEventId, event.getEventId());
+                nextEventId++;
+            }
+        }
+
+        return nextEventId;
+    }
+
+    private static boolean isAlive(final List<Thread> threads) {
+        for (final Thread thread : threads) {
+            if (thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<ProvenanceEventRecord> createEvents(final int count) {
+        final List<ProvenanceEventRecord> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(createEvent(UUID.randomUUID().toString(), "1234"));
+        }
+        return events;
+    }
+
+    @Test
+    public void testEventsIndexedWithoutMerge() throws IOException {
+        final PartitionedProvenanceRepository repo = new PartitionedProvenanceRepository(createConfiguration(2), DEFAULT_ROLLOVER_MILLIS);
+        this.repo = repo;
+        repo.initialize(eventReporter, null, null);
+
+        for (int i = 0; i < 10; i++) {
+            repo.registerEvent(createEvent("00000000-0000-0000-0000-00000000000" + i, "1234"));
+            repo.registerEvent(createEvent("10000000-0000-0000-0000-00000000000" + i, "5678"));
+        }
+
+        repo.waitForIndexing();
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "12?4"));
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.Filename, "file-*"));
+        query.setMaxResults(100);
+
+        final QueryResult result = repo.queryEvents(query, createUser());
+        assertEquals(10, result.getMatchingEvents().size());
+        for (final ProvenanceEventRecord event : result.getMatchingEvents()) {
+            assertEquals("1234", event.getComponentId());
+        }
+    }
+
+    @Test
+    public void testRecoverAfterRestart() throws IOException {
+        final RepositoryConfiguration config = createConfiguration(2);
+        PartitionedProvenanceRepository repo = new PartitionedProvenanceRepository(config, DEFAULT_ROLLOVER_MILLIS);
+        this.repo = repo;
+        repo.initialize(eventReporter, null, null);
+
+        for (int i = 0; i < 100; i++) {
+            repo.registerEvent(createEvent(UUID.randomUUID().toString(), "1234"));
+        }
+
+        repo.close();
+        for (final File storageDir : config.getStorageDirectories()) {
+            assertTrue(new File(storageDir, PartitionedProvenanceRepository.CLEAN_SHUTDOWN_FILENAME).exists());
+        }
+
+        repo = new PartitionedProvenanceRepository(config, DEFAULT_ROLLOVER_MILLIS);
+        this.repo = repo;
+        repo.initialize(eventReporter, null, null);
+
+        // the clean shutdown marker must be removed so that a subsequent failure results in re-indexing
+        for (final File storageDir : config.getStorageDirectories()) {
+            assertFalse(new File(storageDir, PartitionedProvenanceRepository.CLEAN_SHUTDOWN_FILENAME).exists());
+        }
+
+        for (int i = 0; i < 100; i++) {
+            repo.registerEvent(createEvent(UUID.randomUUID().toString(), "5678"));
+        }
+
+        repo.waitForIndexing();
+
+        final List<ProvenanceEventRecord> events = repo.getEvents(0L, 1000);
+        assertEquals(200, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(i, events.get(i).getEventId());
+            assertEquals(i < 100 ? "1234" : "5678", events.get(i).getComponentId());
+        }
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "1234"));
+        query.setMaxResults(1000);
+        assertEquals(100, repo.queryEvents(query, createUser()).getMatchingEvents().size());
+    }
+
+    @Test
+    public void testReindexAfterUncleanShutdown() throws IOException {
+        final RepositoryConfiguration config = createConfiguration(2);
+        PartitionedProvenanceRepository repo = new PartitionedProvenanceRepository(config, DEFAULT_ROLLOVER_MILLIS);
+        this.repo = repo;
+        repo.initialize(eventReporter, null, null);
+
+        for (int i = 0; i < 100; i++) {
+            repo.registerEvent(createEvent(UUID.randomUUID().toString(), "1234"));
+        }
+
+        repo.close();
+
+        // Simulate a failure before the events were indexed by removing the indices and the clean shutdown markers
+        for (final File storageDir : config.getStorageDirectories()) {
+            assertTrue(new File(storageDir, PartitionedProvenanceRepository.CLEAN_SHUTDOWN_FILENAME).delete());
+            for (final File file : storageDir.listFiles()) {
+                if (file.getName().startsWith("index-")) {
+                    FileUtils.deleteFile(file, true);
+                }
+            }
+        }
+
+        repo = new PartitionedProvenanceRepository(config, DEFAULT_ROLLOVER_MILLIS);
+        this.repo = repo;
+        repo.initialize(eventReporter, null, null);
+        repo.waitForIndexing();
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "1234"));
+        query.setMaxResults(1000);
+        assertEquals(100, repo.queryEvents(query, createUser()).getMatchingEvents().size());
+    }
+
+    @Test
+    @Ignore("For local testing of performance only")
+    public void testPerformanceComparedToPersistentProvenanceRepository() throws Exception {
+        final int eventsPerSecond = 50000;
+        final int seconds = 20;
+        final int threadCount = 8;
+
+        for (final boolean partitioned : new boolean[] {false, true}) {
+            final RepositoryConfiguration config = createConfiguration(2);
+            config.setCompressionBlockBytes(1024 * 1024);
+            config.setMaxEventFileCapacity(100L * 1024 * 1024);
+            config.setMaxEventFileLife(30, TimeUnit.SECONDS);
+            config.setMaxStorageCapacity(10L * 1024 * 1024 * 1024);
+            config.setIndexThreadPoolSize(4);
+
+            repo = partitioned ? new PartitionedProvenanceRepository(config, DEFAULT_ROLLOVER_MILLIS) : new PersistentProvenanceRepository(config, DEFAULT_ROLLOVER_MILLIS);
+            repo.initialize(eventReporter, null, null);
+
+            final int batchSize = 10;
+
+            // Each thread attempts to register its share of the target rate, in batches of 10 events as a session commit would
+            final AtomicLong eventsRegistered = new AtomicLong(0L);
+            final AtomicLong maxBatchNanos = new AtomicLong(0L);
+            final long eventsPerThread = (long) eventsPerSecond * seconds / threadCount;
+            final long nanosPerBatch = TimeUnit.SECONDS.toNanos(1) * batchSize * threadCount / eventsPerSecond;
+
+            final List<Thread> threads = new ArrayList<>();
+            final long start = System.nanoTime();
+            for (int t = 0; t < threadCount; t++) {
+                final Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        long nextBatchTime = System.nanoTime();
+                        for (long registered = 0; registered < eventsPerThread; registered += batchSize) {
+                            final long sleepNanos = nextBatchTime - System.nanoTime();
+                            if (sleepNanos > 0) {
+                                try {
+                                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                                } catch (final InterruptedException ie) {
+                                    return;
+                                }
+                            }
+                            nextBatchTime += nanosPerBatch;
+
+                            final List<ProvenanceEventRecord> batch = new ArrayList<>(batchSize);
+                            for (int i = 0; i < batchSize; i++) {
+                                batch.add(createEvent(UUID.randomUUID().toString(), "1234"));
+                            }
+
+                            final long batchStart = System.nanoTime();
+                            repo.registerEvents(batch);
+                            final long batchNanos = System.nanoTime() - batchStart;
+
+                            long max;
+                            while ((max = maxBatchNanos.get()) < batchNanos && !maxBatchNanos.compareAndSet(max, batchNanos)) {
+                            }
+
+                            eventsRegistered.addAndGet(batchSize);
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+            final long registerNanos = System.nanoTime() - start;
+
+            if (repo instanceof PartitionedProvenanceRepository) {
+                ((PartitionedProvenanceRepository) repo).waitForIndexing();
+            } else {
+                repo.rolloverWithLock(true);
+                repo.waitForRollover();
+            }
+
+            // the journals that were rolled over may still be in the process of being merged and indexed
+            while (repo.getJournalCount() > (partitioned ? 0 : config.getJournalCount())) {
+                Thread.sleep(10L);
+            }
+            final long indexedNanos = System.nanoTime() - start;
+
+            final long registerMillis = TimeUnit.NANOSECONDS.toMillis(registerNanos);
+            System.out.println(repo.getClass().getSimpleName() + ": registered " + eventsRegistered.get() + " events in " + registerMillis + " millis ("
+                + (eventsRegistered.get() * 1000L / registerMillis) + " events/sec, target " + eventsPerSecond + " events/sec); longest registration of a batch took "
+                + TimeUnit.NANOSECONDS.toMillis(maxBatchNanos.get()) + " millis; all events indexed after " + TimeUnit.NANOSECONDS.toMillis(indexedNanos) + " millis");
+
+            closeRepo();
+            repo = null;
+        }
+    }
+
+    private NiFiUser createUser() {
+        return new NiFiUser() {
+            @Override
+            public String getIdentity() {
+                return "unit-test";
+            }
+
+            @Override
+            public NiFiUser getChain() {
+                return null;
+            }
+
+            @Override
+            public boolean isAnonymous() {
+                return false;
+            }
+
+            @Override
+            public String getClientAddress() {
+                return null;
+            }
+
+        };
+    }
+}
@@ -18,6 +18,7 @@ package org.apache.nifi.provenance;
 
 import static org.apache.nifi.provenance.TestUtil.createFlowFile;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -27,7 +28,9 @@ import java.io.File;
 import java.io.FileFilter;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -67,6 +70,8 @@ import org.apache.nifi.provenance.lineage.LineageNodeType;
 import org.apache.nifi.provenance.lucene.CachingIndexManager;
 import org.apache.nifi.provenance.lucene.IndexManager;
 import org.apache.nifi.provenance.lucene.IndexingAction;
+import org.apache.nifi.provenance.lucene.LineageCache;
+import org.apache.nifi.provenance.rollup.ProvenanceEventRollup;
 import org.apache.nifi.provenance.search.Query;
 import org.apache.nifi.provenance.search.QueryResult;
 import org.apache.nifi.provenance.search.QuerySubmission;
@@ -75,6 +80,8 @@ import org.apache.nifi.provenance.search.SearchableField;
 import org.apache.nifi.provenance.serialization.RecordReader;
 import org.apache.nifi.provenance.serialization.RecordReaders;
 import org.apache.nifi.provenance.serialization.RecordWriter;
+import org.apache.nifi.provenance.toc.EventFileSummaries;
+import org.apache.nifi.provenance.toc.TocUtil;
 import org.apache.nifi.reporting.Severity;
 import org.apache.nifi.stream.io.DataOutputStream;
 import org.apache.nifi.util.file.FileUtils;
@@ -531,6 +538,59 @@ public class TestPersistentProvenanceRepository {
         assertTrue(newRecordSet.getMatchingEvents().isEmpty());
     }
 
+    @Test
+    public void testDictionaryEncodedIndexAndCompressOnRolloverAndSubsequentSearch() throws IOException, InterruptedException, ParseException {
+        final RepositoryConfiguration config = createConfiguration();
+        config.setMaxEventFileLife(500, TimeUnit.MILLISECONDS);
+        config.setSearchableFields(new ArrayList<>(SearchableFields.getStandardFields()));
+        config.setDictionaryEncoded(true);
+
+        repo = new PersistentProvenanceRepository(config, DEFAULT_ROLLOVER_MILLIS);
+        repo.initialize(getEventReporter(), null, null);
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("abc", "xyz");
+
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.setComponentId("1234");
+        builder.setComponentType("dummy processor");
+        builder.setCurrentContentClaim("container", "section", "claim-1", 0L, 3000L);
+
+        for (int i = 0; i < 10; i++) {
+            final String uuid = "00000000-0000-0000-0000-00000000000" + i;
+            attributes.put("uuid", uuid);
+            attributes.put("filename", "file-" + uuid);
+            builder.fromFlowFile(createFlowFile(i, 3000L, attributes));
+            builder.setCurrentContentClaim("container", "section", "claim-1", i * 3000L, 3000L);
+            repo.registerEvent(builder.build());
+        }
+
+        repo.waitForRollover();
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.Filename, "file-*"));
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "12?4"));
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.TransitURI, "nifi://*"));
+        query.setMaxResults(100);
+
+        final QueryResult result = repo.queryEvents(query, createUser());
+        assertEquals(10, result.getMatchingEvents().size());
+
+        final List<ProvenanceEventRecord> events = repo.getEvents(0L, 100);
+        assertEquals(10, events.size());
+        for (int i = 0; i < 10; i++) {
+            final ProvenanceEventRecord event = events.get(i);
+            assertEquals(i, event.getEventId());
+            assertEquals("1234", event.getComponentId());
+            assertEquals("claim-1", event.getContentClaimIdentifier());
+            assertEquals(Long.valueOf(i * 3000L), event.getContentClaimOffset());
+            assertEquals("file-00000000-0000-0000-0000-00000000000" + i, event.getAttributes().get("filename"));
+        }
+    }
+
     @Test(timeout = 10000)
     public void testModifyIndexWhileSearching() throws IOException, InterruptedException, ParseException {
         final RepositoryConfiguration config = createConfiguration();
@@ -777,6 +837,273 @@ public class TestPersistentProvenanceRepository {
         assertEquals(0, noResultSubmission.getResult().getTotalHitCount());
     }
 
+    @Test
+    public void testQueryReturnsNewestEventsAcrossMultipleStorageDirs() throws IOException, InterruptedException, ParseException {
+        final RepositoryConfiguration config = createConfiguration();
+        config.addStorageDirectory(new File("target/storage/" + UUID.randomUUID().toString()));
+        config.setMaxEventFileLife(1, TimeUnit.SECONDS);
+        config.setSearchableFields(new ArrayList<>(SearchableFields.getStandardFields()));
+
+        repo = new PersistentProvenanceRepository(config, DEFAULT_ROLLOVER_MILLIS);
+        repo.initialize(getEventReporter(), null, null);
+
+        final Map<String, String> attributes = new HashMap<>();
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.setComponentId("1234");
+        builder.setComponentType("dummy processor");
+
+        for (int j = 0; j < 3; j++) {
+            for (int i = 0; i < 10; i++) {
+                attributes.put("uuid", UUID.randomUUID().toString());
+                builder.setEventTime(System.currentTimeMillis());
+                builder.fromFlowFile(createFlowFile(i + j * 10, 3000L, attributes));
+                repo.registerEvent(builder.build());
+            }
+
+            repo.waitForRollover();
+        }
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "1234"));
+        query.setMaxResults(5);
+
+        final QuerySubmission submission = repo.submitQuery(query, createUser());
+        while (!submission.getResult().isFinished()) {
+            Thread.sleep(100L);
+        }
+
+        final List<ProvenanceEventRecord> matches = submission.getResult().getMatchingEvents();
+        assertEquals(5, matches.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(29L - i, matches.get(i).getEventId());
+        }
+    }
+
+    @Test
+    public void testEventFileSummaryRulesOutIndex() throws IOException, InterruptedException {
+        final RepositoryConfiguration config = createConfiguration();
+        config.setMaxEventFileLife(500, TimeUnit.MILLISECONDS);
+        config.setSearchableFields(new ArrayList<>(SearchableFields.getStandardFields()));
+
+        repo = new PersistentProvenanceRepository(config, DEFAULT_ROLLOVER_MILLIS);
+        repo.initialize(getEventReporter(), null, null);
+
+        final Map<String, String> attributes = new HashMap<>();
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.setComponentId("1234");
+        builder.setComponentType("dummy processor");
+
+        for (int i = 0; i < 10; i++) {
+            attributes.put("uuid", "00000000-0000-0000-0000-00000000000" + i);
+            builder.setEventTime(System.currentTimeMillis());
+            builder.fromFlowFile(createFlowFile(i, 3000L, attributes));
+            repo.registerEvent(builder.build());
+        }
+
+        repo.waitForRollover();
+
+        final Collection<Path> eventFiles = repo.getAllLogFiles();
+        assertEquals(1, eventFiles.size());
+        assertTrue(TocUtil.getSummaryFile(eventFiles.iterator().next().toFile()).exists());
+
+        final List<File> indexDirs = repo.getIndexConfiguration().getIndexDirectories();
+        assertEquals(1, indexDirs.size());
+
+        final Set<String> none = Collections.emptySet();
+        final EventFileSummaries summaries = repo.getEventFileSummaries();
+        assertTrue(summaries.isSearchable(indexDirs.get(0), null, null, Collections.singleton("1234"), none));
+        assertFalse(summaries.isSearchable(indexDirs.get(0), null, null, Collections.singleton("5678"), none));
+        assertTrue(summaries.isSearchable(indexDirs.get(0), null, null, none, Collections.singleton("00000000-0000-0000-0000-000000000003")));
+        assertFalse(summaries.isSearchable(indexDirs.get(0), null, null, none, Collections.singleton("00000000-0000-0000-0000-000000000010")));
+
+        final Lineage lineage = repo.computeLineage("00000000-0000-0000-0000-000000000003", createUser());
+        assertEquals(1, lineage.getNodes().stream().filter(node -> node.getNodeType() == LineageNodeType.PROVENANCE_EVENT_NODE).count());
+    }
+
+    @Test
+    public void testEventFilesMigratedToColdStorageRemainSearchable() throws IOException, InterruptedException {
+        final RepositoryConfiguration config = createConfiguration();
+        config.setMaxEventFileLife(500, TimeUnit.MILLISECONDS);
+        config.setSearchableFields(new ArrayList<>(SearchableFields.getStandardFields()));
+
+        final File coldStorageDirectory = new File("target/storage/" + UUID.randomUUID().toString() + "-cold");
+        config.setColdStorageDirectory(coldStorageDirectory);
+        config.setColdStorageAge(1, TimeUnit.HOURS);
+        config.setMaxAttributeChars(Integer.MAX_VALUE);
+
+        try {
+            repo = new PersistentProvenanceRepository(config, DEFAULT_ROLLOVER_MILLIS);
+            repo.initialize(getEventReporter(), null, null);
+
+            // use large attributes so that the first event file consists of several blocks
+            final StringBuilder largeBldr = new StringBuilder(300000);
+            for (int i = 0; i < 30000; i++) {
+                largeBldr.append("0123456789");
+            }
+            final Map<String, String> attributes = new HashMap<>();
+            attributes.put("large", largeBldr.toString());
+            final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+            builder.setEventType(ProvenanceEventType.RECEIVE);
+            builder.setTransitUri("nifi://unit-test");
+            builder.setComponentId("1234");
+            builder.setComponentType("dummy processor");
+
+            for (int i = 0; i < 20; i++) {
+                attributes.put("uuid", "00000000-0000-0000-0000-0000000000" + (10 + i));
+                builder.setEventTime(System.currentTimeMillis());
+                builder.fromFlowFile(createFlowFile(i, 3000L, attributes));
+                repo.registerEvent(builder.build());
+
+                // roll over after the first 10 events so that there are two event files
+                if (i == 9) {
+                    repo.waitForRollover();
+                }
+            }
+            repo.waitForRollover();
+
+            final List<File> hotFiles = new ArrayList<>();
+            for (final Path path : repo.getAllLogFiles()) {
+                hotFiles.add(path.toFile());
+            }
+            assertEquals(2, hotFiles.size());
+
+            // the newest file is never migrated, as it may still be written to
+            config.setColdStorageAge(0, TimeUnit.MILLISECONDS);
+            Thread.sleep(10L);
+            repo.migrateToColdStorage();
+
+            final List<File> coldFiles = new ArrayList<>();
+            for (final Path path : repo.getAllLogFiles()) {
+                if (path.toFile().getAbsolutePath().startsWith(coldStorageDirectory.getAbsolutePath())) {
+                    coldFiles.add(path.toFile());
+                }
+            }
+            assertEquals(1, coldFiles.size());
+            assertTrue(coldFiles.get(0).exists());
+            assertTrue(coldFiles.get(0).getName().endsWith(".gz"));
+            assertTrue(TocUtil.getSummaryFile(coldFiles.get(0)).exists());
+            assertEquals(1, hotFiles.stream().filter(File::exists).count());
+
+            // the events of both tiers are found by the same index, and attributes are not truncated by the migration
+            final Query query = new Query(UUID.randomUUID().toString());
+            query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "1234"));
+            query.setMaxResults(100);
+            assertEquals(20, repo.queryEvents(query, createUser()).getMatchingEvents().size());
+            assertEquals(20, repo.getEvents(0L, 100).size());
+            assertEquals(300000, repo.getEvent(3L).getAttributes().get("large").length());
+
+            final Lineage lineage = repo.computeLineage("00000000-0000-0000-0000-000000000013", createUser());
+            assertEquals(1, lineage.getNodes().stream().filter(node -> node.getNodeType() == LineageNodeType.PROVENANCE_EVENT_NODE).count());
+
+            // after restart, the migrated file is recovered and its summary still refers to the index in the storage directory
+            repo.close();
+            repo = new PersistentProvenanceRepository(config, DEFAULT_ROLLOVER_MILLIS);
+            repo.initialize(getEventReporter(), null, null);
+
+            assertEquals(20, repo.getEvents(0L, 100).size());
+            final List<File> indexDirs = repo.getIndexConfiguration().getIndexDirectories();
+            assertEquals(1, indexDirs.size());
+
+            final Set<String> none = Collections.emptySet();
+            final EventFileSummaries summaries = repo.getEventFileSummaries();
+            assertTrue(summaries.isSearchable(indexDirs.get(0), null, null, none, Collections.singleton("00000000-0000-0000-0000-000000000013")));
+            assertFalse(summaries.isSearchable(indexDirs.get(0), null, null, Collections.singleton("5678"), none));
+        } finally {
+            repo.close();
+            FileUtils.deleteFile(coldStorageDirectory, true);
+        }
+    }
+
+    @Test
+    public void testLineageCachedUntilIndexChanges() throws IOException, InterruptedException {
+        final RepositoryConfiguration config = createConfiguration();
+        config.setMaxEventFileLife(500, TimeUnit.MILLISECONDS);
+        config.setSearchableFields(new ArrayList<>(SearchableFields.getStandardFields()));
+
+        repo = new PersistentProvenanceRepository(config, DEFAULT_ROLLOVER_MILLIS);
+        repo.initialize(getEventReporter(), null, null);
+
+        final String uuid = "00000000-0000-0000-0000-000000000001";
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("uuid", uuid);
+
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.fromFlowFile(createFlowFile(1L, 3000L, attributes));
+        builder.setComponentId("1234");
+        builder.setComponentType("dummy processor");
+        repo.registerEvent(builder.build());
+        repo.waitForRollover();
+
+        final LineageCache lineageCache = repo.getLineageCache();
+        final Lineage first = repo.computeLineage(uuid, createUser());
+        assertEquals(0L, lineageCache.getHitCount());
+        assertEquals(1, lineageCache.getCachedEventCount());
+
+        final Lineage second = repo.computeLineage(uuid, createUser());
+        assertEquals(1L, lineageCache.getHitCount());
+        assertEquals(first.getNodes().size(), second.getNodes().size());
+
+        // indexing another event for the FlowFile changes the index, so the cached events must not be used
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setEventType(ProvenanceEventType.DROP);
+        builder.setTransitUri(null);
+        repo.registerEvent(builder.build());
+        repo.waitForRollover();
+
+        final Lineage third = repo.computeLineage(uuid, createUser());
+        assertEquals(2, third.getNodes().stream().filter(node -> node.getNodeType() == LineageNodeType.PROVENANCE_EVENT_NODE).count());
+    }
+
+    @Test
+    public void testEventRollupsMaintainedAsEventsRegistered() throws IOException {
+        final RepositoryConfiguration config = createConfiguration();
+        config.setMaxRecordLife(10, TimeUnit.MINUTES);
+
+        repo = new PersistentProvenanceRepository(config, DEFAULT_ROLLOVER_MILLIS);
+        repo.initialize(getEventReporter(), null, null);
+
+        final long now = System.currentTimeMillis();
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("uuid", "00000000-0000-0000-0000-000000000001");
+
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(now);
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.fromFlowFile(createFlowFile(1L, 3000L, attributes));
+        builder.setComponentId("1234");
+        builder.setComponentType("dummy processor");
+
+        final List<ProvenanceEventRecord> events = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            events.add(builder.build());
+        }
+        repo.registerEvents(events);
+
+        // events older than the repository retains are not rolled up
+        builder.setEventTime(now - TimeUnit.MINUTES.toMillis(30L));
+        repo.registerEvent(builder.build());
+
+        final List<ProvenanceEventRollup> rollups = repo.getEventRollups(now - TimeUnit.HOURS.toMillis(1L), now, null, createUser());
+        assertEquals(1, rollups.size());
+
+        final ProvenanceEventRollup rollup = rollups.get(0);
+        assertEquals("1234", rollup.getComponentId());
+        assertEquals(ProvenanceEventType.RECEIVE, rollup.getEventType());
+        assertEquals(10L, rollup.getEventCount());
+        assertEquals(30000L, rollup.getTotalBytes());
+        assertTrue(rollup.getBucketStartTime() <= now && now < rollup.getBucketStartTime() + rollup.getBucketDurationMillis());
+
+        assertTrue(repo.getEventRollups(now - TimeUnit.HOURS.toMillis(1L), now, "5678", createUser()).isEmpty());
+    }
+
     @Test
     public void testIndexAndCompressOnRolloverAndSubsequentEmptySearch() throws IOException, InterruptedException, ParseException {
         final RepositoryConfiguration config = createConfiguration();
@@ -18,6 +18,8 @@
 package org.apache.nifi.provenance.lucene;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import java.io.File;
 import java.io.IOException;
@@ -69,4 +71,40 @@ public class TestSimpleIndexManager {
         }
     }
 
+    @Test
+    public void testSearcherCachedUntilIndexChanges() throws IOException {
+        final SimpleIndexManager mgr = new SimpleIndexManager();
+        final File dir = new File("target/" + UUID.randomUUID().toString());
+        try {
+            final IndexWriter writer = mgr.borrowIndexWriter(dir);
+            final Document doc1 = new Document();
+            doc1.add(new StringField("id", "1", Store.YES));
+            writer.addDocument(doc1);
+            writer.commit();
+
+            final IndexSearcher searcher1 = mgr.borrowIndexSearcher(dir);
+            mgr.returnIndexSearcher(dir, searcher1);
+
+            final IndexSearcher searcher2 = mgr.borrowIndexSearcher(dir);
+            assertSame(searcher1, searcher2);
+
+            final Document doc2 = new Document();
+            doc2.add(new StringField("id", "2", Store.YES));
+            writer.addDocument(doc2);
+            writer.commit();
+
+            // the refreshed searcher sees the new document while the one still borrowed remains usable
+            final IndexSearcher searcher3 = mgr.borrowIndexSearcher(dir);
+            assertNotSame(searcher2, searcher3);
+            assertEquals(2, searcher3.search(new MatchAllDocsQuery(), 10).totalHits);
+            assertEquals(1, searcher2.search(new MatchAllDocsQuery(), 10).totalHits);
+
+            mgr.returnIndexSearcher(dir, searcher2);
+            mgr.returnIndexSearcher(dir, searcher3);
+            mgr.returnIndexWriter(dir, writer);
+        } finally {
+            mgr.close();
+            FileUtils.deleteFile(dir, true);
+        }
+    }
 }
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.toc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.apache.nifi.provenance.TestUtil;
+import org.apache.nifi.util.file.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestEventFileSummaries {
+    private static final Set<String> NONE = Collections.emptySet();
+
+    private File storageDir;
+    private File indexDir;
+
+    @Before
+    public void setup() {
+        storageDir = new File("target/storage/" + UUID.randomUUID().toString());
+        indexDir = new File(storageDir, "index-1000");
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        FileUtils.deleteFile(storageDir, true);
+    }
+
+    private ProvenanceEventRecord createEvent(final String componentId, final String uuid, final long eventTime) {
+        final HashMap<String, String> attributes = new HashMap<>();
+        attributes.put("uuid", uuid);
+
+        return new StandardProvenanceEventRecord.Builder()
+            .setEventTime(eventTime)
+            .setEventType(ProvenanceEventType.RECEIVE)
+            .setTransitUri("nifi://unit-test")
+            .fromFlowFile(TestUtil.createFlowFile(1L, 3000L, attributes))
+            .setComponentId(componentId)
+            .setComponentType("dummy processor")
+            .build();
+    }
+
+    private EventFileSummary createSummary(final int numEvents) {
+        final EventFileSummary summary = new EventFileSummary();
+        for (int i = 0; i < numEvents; i++) {
+            summary.update(createEvent("component-" + (i % 10), "00000000-0000-0000-0000-" + String.format("%012d", i), 1000L + i), i);
+        }
+        return summary;
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        final EventFileSummary summary = createSummary(1000);
+        summary.addIndexDirectory(indexDir);
+
+        final File summaryFile = TocUtil.getSummaryFile(new File(storageDir, "0.prov"));
+        summary.write(summaryFile);
+
+        final EventFileSummary recovered = EventFileSummary.read(summaryFile);
+        assertEquals(1000L, recovered.getMinEventTime());
+        assertEquals(1999L, recovered.getMaxEventTime());
+        assertEquals(0L, recovered.getMinEventId());
+        assertEquals(999L, recovered.getMaxEventId());
+        assertEquals(1000L, recovered.getEventCount());
+        assertEquals(Collections.singleton("index-1000"), recovered.getIndexDirectoryNames());
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(recovered.mightContainFlowFileUuid("00000000-0000-0000-0000-" + String.format("%012d", i)));
+        }
+        assertTrue(recovered.mightContainComponentId("COMPONENT-3"));
+
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (recovered.mightContainFlowFileUuid(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+        assertTrue("Too many false positives: " + falsePositives, falsePositives < 50);
+    }
+
+    @Test
+    public void testIndexDirectorySkippedOnlyWhenAllFilesRuleOutMatch() {
+        final EventFileSummaries summaries = new EventFileSummaries();
+        final File eventFile = new File(storageDir, "0.prov");
+
+        // while the file is being indexed, the index must be searched
+        summaries.beginIndexing(eventFile, indexDir);
+        assertTrue(summaries.isSearchable(indexDir, null, null, Collections.singleton("unknown-component"), NONE));
+
+        summaries.add(eventFile, createSummary(100));
+        assertTrue(TocUtil.getSummaryFile(eventFile).exists());
+
+        assertTrue(summaries.isSearchable(indexDir, null, null, NONE, NONE));
+        assertTrue(summaries.isSearchable(indexDir, null, null, Collections.singleton("component-1"), NONE));
+        assertFalse(summaries.isSearchable(indexDir, null, null, Collections.singleton("unknown-component"), NONE));
+        assertFalse(summaries.isSearchable(indexDir, null, null, NONE, Collections.singleton(UUID.randomUUID().toString())));
+        assertTrue(summaries.isSearchable(indexDir, 1050L, 5000L, NONE, NONE));
+        assertFalse(summaries.isSearchable(indexDir, 5000L, null, NONE, NONE));
+        assertFalse(summaries.isSearchable(indexDir, null, 999L, NONE, NONE));
+
+        // an index directory that no summary refers to is always searched
+        assertTrue(summaries.isSearchable(new File(storageDir, "index-2000"), null, null, Collections.singleton("unknown-component"), NONE));
+
+        // an event file without a summary in the same storage directory could have been indexed into any of its indices
+        summaries.recover(Collections.singleton(new File(storageDir, "200.prov")));
+        assertTrue(summaries.isSearchable(indexDir, null, null, Collections.singleton("unknown-component"), NONE));
+
+        summaries.remove(new File(storageDir, "200.prov"));
+        assertFalse(summaries.isSearchable(indexDir, null, null, Collections.singleton("unknown-component"), NONE));
+    }
+
+    @Test
+    public void testRecoverFromSummaryFiles() {
+        final File eventFile = new File(storageDir, "0.prov");
+
+        final EventFileSummaries summaries = new EventFileSummaries();
+        summaries.beginIndexing(eventFile, indexDir);
+        summaries.add(eventFile, createSummary(100));
+
+        final EventFileSummaries recovered = new EventFileSummaries();
+        recovered.recover(Collections.singleton(eventFile));
+        assertTrue(recovered.isSearchable(indexDir, null, null, Collections.singleton("component-1"), NONE));
+        assertFalse(recovered.isSearchable(indexDir, null, null, Collections.singleton("unknown-component"), NONE));
+
+        // re-indexing the file into another index directory must be reflected in its summary
+        final File otherIndexDir = new File(storageDir, "index-2000");
+        recovered.beginIndexing(eventFile, otherIndexDir);
+
+        final EventFileSummaries recoveredAgain = new EventFileSummaries();
+        recoveredAgain.recover(Collections.singleton(eventFile));
+        assertFalse(recoveredAgain.isSearchable(otherIndexDir, null, null, Collections.singleton("unknown-component"), NONE));
+        assertTrue(recoveredAgain.isSearchable(otherIndexDir, null, null, Collections.singleton("component-1"), NONE));
+    }
+
+    @Test
+    public void testRelocatedFileRefersToIndexInStorageDirectory() throws IOException {
+        final File eventFile = new File(storageDir, "0.prov");
+        final File coldDir = new File(storageDir, "cold");
+        final File coldEventFile = new File(coldDir, "0.prov.gz");
+
+        final EventFileSummaries summaries = new EventFileSummaries();
+        summaries.addStorageDirectoryAlias(coldDir, storageDir);
+        summaries.beginIndexing(eventFile, indexDir);
+        summaries.add(eventFile, createSummary(100));
+
+        TocUtil.getSummaryFile(coldEventFile).getParentFile().mkdirs();
+        Files.move(TocUtil.getSummaryFile(eventFile).toPath(), TocUtil.getSummaryFile(coldEventFile).toPath());
+        summaries.relocate(eventFile, coldEventFile);
+        assertTrue(summaries.isSearchable(indexDir, null, null, Collections.singleton("component-1"), NONE));
+        assertFalse(summaries.isSearchable(indexDir, null, null, Collections.singleton("unknown-component"), NONE));
+
+        final EventFileSummaries recovered = new EventFileSummaries();
+        recovered.addStorageDirectoryAlias(coldDir, storageDir);
+        recovered.recover(Collections.singleton(coldEventFile));
+        assertFalse(recovered.isSearchable(indexDir, null, null, Collections.singleton("unknown-component"), NONE));
+
+        // a relocated file without a summary could have been indexed into any index of the storage directory
+        recovered.recover(Collections.singleton(new File(coldDir, "200.prov.gz")));
+        assertTrue(recovered.isSearchable(indexDir, null, null, Collections.singleton("unknown-component"), NONE));
+    }
+}
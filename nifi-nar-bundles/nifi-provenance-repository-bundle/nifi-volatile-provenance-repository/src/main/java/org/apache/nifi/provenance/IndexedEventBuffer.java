@@ -0,0 +1,524 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongFunction;
+
+import org.apache.nifi.util.RingBuffer.Filter;
+
+/**
+ * Thread-safe, bounded buffer of Provenance Events that are held in the order of their Event IDs. In addition to the
+ * events themselves, the buffer maintains indices from FlowFile UUID and from Component ID to the IDs of the events
+ * that refer to them, so that events can be looked up without scanning the entire buffer. The indices are updated
+ * as events are added and as the oldest events are evicted to make room for new ones.
+ *
+ * The buffer is bounded by both a maximum number of events and the estimated number of bytes of heap that the
+ * events occupy. Whichever bound is reached first causes the oldest events to be evicted.
+ */
+class IndexedEventBuffer {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int maxEvents;
+    private final long maxBytes;
+
+    private ProvenanceEventRecord[] events;
+    private int[] eventSizes;
+    private int head = 0;
+    private int count = 0;
+    private long oldestEventId = 0L;
+    private long nextEventId = 0L;
+    private long totalBytes = 0L;
+
+    private final Map<String, EventIdList> eventIdsByFlowFileUuid = new HashMap<>();
+    private final Map<String, EventIdList> eventIdsByComponentId = new HashMap<>();
+
+    private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+    private final Lock readLock = rwLock.readLock();
+    private final Lock writeLock = rwLock.writeLock();
+
+    /**
+     * @param maxEvents the maximum number of events to hold
+     * @param maxBytes the maximum estimated number of bytes that the events may occupy
+     */
+    public IndexedEventBuffer(final int maxEvents, final long maxBytes) {
+        if (maxEvents < 1) {
+            throw new IllegalArgumentException("Maximum number of events must be positive");
+        }
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("Maximum number of bytes must be positive");
+        }
+
+        this.maxEvents = maxEvents;
+        this.maxBytes = maxBytes;
+
+        final int initialCapacity = Math.min(maxEvents, INITIAL_CAPACITY);
+        this.events = new ProvenanceEventRecord[initialCapacity];
+        this.eventSizes = new int[initialCapacity];
+    }
+
+    /**
+     * Assigns the next Event ID and adds the event that the given factory creates for it, evicting the oldest events as
+     * necessary in order to stay within the bounds of the buffer.
+     *
+     * @param eventFactory creates the event to add, given the Event ID that has been assigned to it
+     * @return the event that was added
+     */
+    public ProvenanceEventRecord add(final LongFunction<ProvenanceEventRecord> eventFactory) {
+        writeLock.lock();
+        try {
+            final long eventId = nextEventId++;
+            final ProvenanceEventRecord event = eventFactory.apply(eventId);
+            final int size = estimateSize(event);
+
+            while (count > 0 && (count >= maxEvents || totalBytes + size > maxBytes)) {
+                evictOldest();
+            }
+
+            if (count == 0) {
+                oldestEventId = eventId;
+            }
+            if (count == events.length) {
+                grow();
+            }
+
+            final int slot = (head + count) % events.length;
+            events[slot] = event;
+            eventSizes[slot] = size;
+            count++;
+            totalBytes += size;
+
+            addToIndex(eventIdsByComponentId, toComponentKey(event.getComponentId()), eventId);
+            for (final String uuid : getFlowFileUuids(event)) {
+                addToIndex(eventIdsByFlowFileUuid, uuid, eventId);
+            }
+
+            return event;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int getSize() {
+        readLock.lock();
+        try {
+            return count;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @return the estimated number of bytes occupied by the events in the buffer
+     */
+    public long getBytesUsed() {
+        readLock.lock();
+        try {
+            return totalBytes;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @param eventId the Event ID
+     * @return the event with the given ID, or <code>null</code> if it is not (or no longer) in the buffer
+     */
+    public ProvenanceEventRecord getEvent(final long eventId) {
+        readLock.lock();
+        try {
+            return getEventById(eventId);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public ProvenanceEventRecord getNewestEvent() {
+        readLock.lock();
+        try {
+            return count == 0 ? null : events[(head + count - 1) % events.length];
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @param flowFileUuid the UUID of a FlowFile
+     * @return the oldest event in the buffer whose FlowFile UUID is the given UUID, or <code>null</code> if there is none
+     */
+    public ProvenanceEventRecord getOldestEventForFlowFile(final String flowFileUuid) {
+        readLock.lock();
+        try {
+            final EventIdList eventIds = eventIdsByFlowFileUuid.get(flowFileUuid);
+            if (eventIds == null) {
+                return null;
+            }
+
+            for (int i = 0; i < eventIds.size(); i++) {
+                final ProvenanceEventRecord event = getEventById(eventIds.get(i));
+                if (event != null && flowFileUuid.equals(event.getFlowFileUuid())) {
+                    return event;
+                }
+            }
+
+            return null;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Returns up to <code>maxResults</code> events, in the order of their IDs, starting with the given Event ID
+     *
+     * @param firstEventId the ID of the first event of interest
+     * @param maxResults the maximum number of events to return
+     * @param filter the filter that the events must pass
+     * @return the events
+     */
+    public List<ProvenanceEventRecord> getEvents(final long firstEventId, final int maxResults, final Filter<ProvenanceEventRecord> filter) {
+        final List<ProvenanceEventRecord> selected = new ArrayList<>(Math.min(maxResults, 1000));
+
+        readLock.lock();
+        try {
+            final long startId = Math.max(firstEventId, oldestEventId);
+            for (long eventId = startId; eventId < oldestEventId + count && selected.size() < maxResults; eventId++) {
+                final ProvenanceEventRecord event = getEventById(eventId);
+                if (filter.select(event)) {
+                    selected.add(event);
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+
+        return selected;
+    }
+
+    /**
+     * Returns the events that refer to any of the given FlowFile UUIDs, as the FlowFile UUID or as a parent or child UUID,
+     * in the order of their IDs
+     *
+     * @param flowFileUuids the UUIDs of the FlowFiles
+     * @param filter the filter that the events must pass
+     * @return the events
+     */
+    public List<ProvenanceEventRecord> getEventsForFlowFiles(final Collection<String> flowFileUuids, final Filter<ProvenanceEventRecord> filter) {
+        readLock.lock();
+        try {
+            final long[] eventIds = getEventIds(eventIdsByFlowFileUuid, flowFileUuids);
+            final List<ProvenanceEventRecord> selected = new ArrayList<>(eventIds.length);
+            for (final long eventId : eventIds) {
+                final ProvenanceEventRecord event = getEventById(eventId);
+                if (event != null && filter.select(event)) {
+                    selected.add(event);
+                }
+            }
+
+            return selected;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Finds the newest events that pass the given filter. If FlowFile UUIDs or Component IDs are given, only the events that
+     * refer to at least one of them are considered, which allows the indices to be used rather than examining every event.
+     *
+     * @param flowFileUuids the FlowFile UUIDs of which an event must refer to at least one, or <code>null</code> if not restricted
+     * @param componentIds the Component IDs of which an event must have been generated by at least one, or <code>null</code> if not restricted
+     * @param filter the filter that the events must pass
+     * @param maxResults the maximum number of events to return
+     * @param matches the events that pass the filter, newest first, up to <code>maxResults</code> of them, are added to this list
+     * @return the total number of events that pass the filter
+     */
+    public int findNewest(final Collection<String> flowFileUuids, final Collection<String> componentIds, final Filter<ProvenanceEventRecord> filter,
+        final int maxResults, final List<ProvenanceEventRecord> matches) {
+
+        readLock.lock();
+        try {
+            final long[] candidateIds = getCandidateIds(flowFileUuids, componentIds);
+
+            int matchCount = 0;
+            if (candidateIds == null) {
+                for (int i = count - 1; i >= 0; i--) {
+                    final ProvenanceEventRecord event = events[(head + i) % events.length];
+                    if (filter.select(event) && ++matchCount <= maxResults) {
+                        matches.add(event);
+                    }
+                }
+            } else {
+                for (int i = candidateIds.length - 1; i >= 0; i--) {
+                    final ProvenanceEventRecord event = getEventById(candidateIds[i]);
+                    if (event != null && filter.select(event) && ++matchCount <= maxResults) {
+                        matches.add(event);
+                    }
+                }
+            }
+
+            return matchCount;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private long[] getCandidateIds(final Collection<String> flowFileUuids, final Collection<String> componentIds) {
+        // Every event must satisfy both restrictions, so the smaller set of candidates is sufficient
+        long[] candidates = null;
+        if (flowFileUuids != null) {
+            candidates = getEventIds(eventIdsByFlowFileUuid, flowFileUuids);
+        }
+
+        if (componentIds != null) {
+            final List<String> keys = new ArrayList<>(componentIds.size());
+            for (final String componentId : componentIds) {
+                keys.add(toComponentKey(componentId));
+            }
+
+            final long[] componentCandidates = getEventIds(eventIdsByComponentId, keys);
+            if (candidates == null || componentCandidates.length < candidates.length) {
+                candidates = componentCandidates;
+            }
+        }
+
+        return candidates;
+    }
+
+    private static long[] getEventIds(final Map<String, EventIdList> index, final Collection<String> keys) {
+        if (keys.size() == 1) {
+            final EventIdList eventIds = index.get(keys.iterator().next());
+            return eventIds == null ? new long[0] : eventIds.toArray();
+        }
+
+        int total = 0;
+        final List<EventIdList> lists = new ArrayList<>(keys.size());
+        for (final String key : keys) {
+            final EventIdList eventIds = index.get(key);
+            if (eventIds != null) {
+                lists.add(eventIds);
+                total += eventIds.size();
+            }
+        }
+
+        final long[] merged = new long[total];
+        int mergedCount = 0;
+        for (final EventIdList eventIds : lists) {
+            for (int i = 0; i < eventIds.size(); i++) {
+                merged[mergedCount++] = eventIds.get(i);
+            }
+        }
+
+        // sort and remove the IDs of events that refer to more than one of the keys
+        Arrays.sort(merged);
+        int distinct = 0;
+        for (int i = 0; i < merged.length; i++) {
+            if (distinct == 0 || merged[distinct - 1] != merged[i]) {
+                merged[distinct++] = merged[i];
+            }
+        }
+
+        return distinct == merged.length ? merged : Arrays.copyOf(merged, distinct);
+    }
+
+    private ProvenanceEventRecord getEventById(final long eventId) {
+        final long offset = eventId - oldestEventId;
+        if (offset < 0 || offset >= count) {
+            return null;
+        }
+
+        return events[(int) ((head + offset) % events.length)];
+    }
+
+    private void evictOldest() {
+        final ProvenanceEventRecord event = events[head];
+        final long eventId = oldestEventId;
+
+        removeFromIndex(eventIdsByComponentId, toComponentKey(event.getComponentId()), eventId);
+        for (final String uuid : getFlowFileUuids(event)) {
+            removeFromIndex(eventIdsByFlowFileUuid, uuid, eventId);
+        }
+
+        totalBytes -= eventSizes[head];
+        events[head] = null;
+        head = (head + 1) % events.length;
+        count--;
+        oldestEventId++;
+    }
+
+    private void grow() {
+        final int newCapacity = (int) Math.min(maxEvents, Math.max(INITIAL_CAPACITY, (long) events.length * 2));
+        final ProvenanceEventRecord[] newEvents = new ProvenanceEventRecord[newCapacity];
+        final int[] newSizes = new int[newCapacity];
+        for (int i = 0; i < count; i++) {
+            newEvents[i] = events[(head + i) % events.length];
+            newSizes[i] = eventSizes[(head + i) % events.length];
+        }
+
+        events = newEvents;
+        eventSizes = newSizes;
+        head = 0;
+    }
+
+    private static String toComponentKey(final String componentId) {
+        // Component IDs are matched without regard to case
+        return componentId == null ? null : componentId.toLowerCase();
+    }
+
+    private static List<String> getFlowFileUuids(final ProvenanceEventRecord event) {
+        final List<String> parentUuids = event.getParentUuids();
+        final List<String> childUuids = event.getChildUuids();
+        final List<String> uuids = new ArrayList<>(1 + parentUuids.size() + childUuids.size());
+        uuids.add(event.getFlowFileUuid());
+        uuids.addAll(parentUuids);
+        uuids.addAll(childUuids);
+        return uuids;
+    }
+
+    private static void addToIndex(final Map<String, EventIdList> index, final String key, final long eventId) {
+        if (key == null) {
+            return;
+        }
+
+        EventIdList eventIds = index.get(key);
+        if (eventIds == null) {
+            eventIds = new EventIdList();
+            index.put(key, eventIds);
+        }
+
+        eventIds.add(eventId);
+    }
+
+    private static void removeFromIndex(final Map<String, EventIdList> index, final String key, final long eventId) {
+        if (key == null) {
+            return;
+        }
+
+        final EventIdList eventIds = index.get(key);
+        if (eventIds != null && eventIds.removeOldest(eventId) && eventIds.size() == 0) {
+            index.remove(key);
+        }
+    }
+
+    /**
+     * Provides a rough estimate of the number of bytes of heap that the given event occupies, counting the object headers
+     * and references of the event and two bytes for each character of its Strings.
+     */
+    static int estimateSize(final ProvenanceEventRecord event) {
+        long size = 256L;
+        size += estimateSize(event.getFlowFileUuid());
+        size += estimateSize(event.getComponentId());
+        size += estimateSize(event.getComponentType());
+        size += estimateSize(event.getTransitUri());
+        size += estimateSize(event.getSourceSystemFlowFileIdentifier());
+        size += estimateSize(event.getAlternateIdentifierUri());
+        size += estimateSize(event.getDetails());
+        size += estimateSize(event.getRelationship());
+        size += estimateSize(event.getSourceQueueIdentifier());
+        size += estimateSize(event.getContentClaimContainer());
+        size += estimateSize(event.getContentClaimSection());
+        size += estimateSize(event.getContentClaimIdentifier());
+        size += estimateSize(event.getPreviousContentClaimContainer());
+        size += estimateSize(event.getPreviousContentClaimSection());
+        size += estimateSize(event.getPreviousContentClaimIdentifier());
+
+        for (final String uuid : event.getParentUuids()) {
+            size += estimateSize(uuid) + 8;
+        }
+        for (final String uuid : event.getChildUuids()) {
+            size += estimateSize(uuid) + 8;
+        }
+
+        size += estimateSize(event.getPreviousAttributes());
+        size += estimateSize(event.getUpdatedAttributes());
+
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    private static long estimateSize(final Map<String, String> attributes) {
+        if (attributes == null || attributes.isEmpty()) {
+            return 0L;
+        }
+
+        long size = 64L;
+        for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+            // map entry plus the key and value
+            size += 32L + estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+        }
+        return size;
+    }
+
+    private static long estimateSize(final String value) {
+        return value == null ? 0L : 40L + 2L * value.length();
+    }
+
+
+    /**
+     * The IDs of the events that refer to a particular key, in ascending order. Because events are added in the order of
+     * their IDs and the oldest event is always evicted first, IDs are only ever appended to the end and removed from the front.
+     */
+    private static class EventIdList {
+        private long[] ids = new long[4];
+        private int start = 0;
+        private int end = 0;
+
+        public void add(final long eventId) {
+            if (end > start && ids[end - 1] == eventId) {
+                // the event refers to the same key more than once
+                return;
+            }
+
+            if (end == ids.length) {
+                if (start > ids.length / 2) {
+                    System.arraycopy(ids, start, ids, 0, end - start);
+                    end -= start;
+                    start = 0;
+                } else {
+                    ids = Arrays.copyOf(ids, ids.length * 2);
+                }
+            }
+
+            ids[end++] = eventId;
+        }
+
+        public boolean removeOldest(final long eventId) {
+            if (end > start && ids[start] == eventId) {
+                start++;
+                return true;
+            }
+            return false;
+        }
+
+        public int size() {
+            return end - start;
+        }
+
+        public long get(final int index) {
+            return ids[start + index];
+        }
+
+        public long[] toArray() {
+            return Arrays.copyOfRange(ids, start, end);
+        }
+    }
+}
@@ -30,16 +30,15 @@ import org.apache.nifi.provenance.lineage.ComputeLineageSubmission;
 import org.apache.nifi.provenance.lineage.FlowFileLineage;
 import org.apache.nifi.provenance.lineage.Lineage;
 import org.apache.nifi.provenance.lineage.LineageComputationType;
+import org.apache.nifi.provenance.rollup.ProvenanceEventRollup;
 import org.apache.nifi.provenance.search.Query;
 import org.apache.nifi.provenance.search.QueryResult;
 import org.apache.nifi.provenance.search.QuerySubmission;
 import org.apache.nifi.provenance.search.SearchTerm;
 import org.apache.nifi.provenance.search.SearchableField;
+import org.apache.nifi.util.FormatUtils;
 import org.apache.nifi.util.NiFiProperties;
-import org.apache.nifi.util.RingBuffer;
 import org.apache.nifi.util.RingBuffer.Filter;
-import org.apache.nifi.util.RingBuffer.ForEachEvaluator;
-import org.apache.nifi.util.RingBuffer.IterationDirection;
 import org.apache.nifi.web.ResourceNotFoundException;
 
 import java.io.IOException;
@@ -47,9 +46,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
@@ -59,18 +60,19 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 public class VolatileProvenanceRepository implements ProvenanceRepository {
 
     // properties
     public static final String BUFFER_SIZE = "nifi.provenance.repository.buffer.size";
+    public static final String BUFFER_MAX_SIZE = "nifi.provenance.repository.buffer.max.size";
 
     // default property values
     public static final int DEFAULT_BUFFER_SIZE = 10000;
 
-    private final RingBuffer<ProvenanceEventRecord> ringBuffer;
+    private final IndexedEventBuffer eventBuffer;
+    private final EventRollupAggregator eventRollups;
     private final List<SearchableField> searchableFields;
     private final List<SearchableField> searchableAttributes;
     private final ExecutorService queryExecService;
@@ -78,7 +80,6 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
 
     private final ConcurrentMap<String, AsyncQuerySubmission> querySubmissionMap = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, AsyncLineageSubmission> lineageSubmissionMap = new ConcurrentHashMap<>();
-    private final AtomicLong idGenerator = new AtomicLong(0L);
     private final AtomicBoolean initialized = new AtomicBoolean(false);
 
     private Authorizer authorizer;  // effectively final
@@ -88,7 +89,8 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
      * Default no args constructor for service loading only
      */
     public VolatileProvenanceRepository() {
-        ringBuffer = null;
+        eventBuffer = null;
+        eventRollups = null;
         searchableFields = null;
         searchableAttributes = null;
         queryExecService = null;
@@ -99,8 +101,17 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
 
     public VolatileProvenanceRepository(final NiFiProperties nifiProperties) {
 
-        final int bufferSize = nifiProperties.getIntegerProperty(BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
-        ringBuffer = new RingBuffer<>(bufferSize);
+        // If a maximum amount of memory is configured, it bounds the buffer rather than the number of events
+        final String maxBufferSize = nifiProperties.getProperty(BUFFER_MAX_SIZE);
+        if (maxBufferSize == null || maxBufferSize.trim().isEmpty()) {
+            final int bufferSize = nifiProperties.getIntegerProperty(BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
+            eventBuffer = new IndexedEventBuffer(bufferSize, Long.MAX_VALUE);
+        } else {
+            final long maxBytes = DataUnit.parseDataSize(maxBufferSize.trim(), DataUnit.B).longValue();
+            eventBuffer = new IndexedEventBuffer(Integer.MAX_VALUE, maxBytes);
+        }
+        final String rollupRetention = nifiProperties.getProperty(NiFiProperties.PROVENANCE_ROLLUP_RETENTION, NiFiProperties.DEFAULT_PROVENANCE_ROLLUP_RETENTION);
+        eventRollups = new EventRollupAggregator(FormatUtils.getTimeDuration(rollupRetention.trim(), TimeUnit.MILLISECONDS));
 
         final String indexedFieldString = nifiProperties.getProperty(NiFiProperties.PROVENANCE_INDEXED_FIELDS);
         final String indexedAttrString = nifiProperties.getProperty(NiFiProperties.PROVENANCE_INDEXED_ATTRIBUTES);
@@ -147,8 +158,8 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
 
     @Override
     public void registerEvent(final ProvenanceEventRecord event) {
-        final long id = idGenerator.getAndIncrement();
-        ringBuffer.add(new IdEnrichedProvEvent(event, id));
+        eventBuffer.add(id -> new IdEnrichedProvEvent(event, id));
+        eventRollups.update(event);
     }
 
     @Override
@@ -165,44 +176,27 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
 
     @Override
     public List<ProvenanceEventRecord> getEvents(final long firstRecordId, final int maxRecords, final NiFiUser user) throws IOException {
-        return ringBuffer.getSelectedElements(new Filter<ProvenanceEventRecord>() {
+        return eventBuffer.getEvents(firstRecordId, maxRecords, new Filter<ProvenanceEventRecord>() {
             @Override
             public boolean select(final ProvenanceEventRecord value) {
-                if (user != null && !isAuthorized(value, user)) {
-                    return false;
-                }
-
-                return value.getEventId() >= firstRecordId;
+                return user == null || isAuthorized(value, user);
             }
-        }, maxRecords);
+        });
     }
 
     @Override
     public Long getMaxEventId() {
-        final ProvenanceEventRecord newest = ringBuffer.getNewestElement();
+        final ProvenanceEventRecord newest = eventBuffer.getNewestEvent();
         return (newest == null) ? null : newest.getEventId();
     }
 
     public ProvenanceEventRecord getEvent(final String identifier) throws IOException {
-        final List<ProvenanceEventRecord> records = ringBuffer.getSelectedElements(new Filter<ProvenanceEventRecord>() {
-            @Override
-            public boolean select(final ProvenanceEventRecord event) {
-                return identifier.equals(event.getFlowFileUuid());
-            }
-        }, 1);
-        return records.isEmpty() ? null : records.get(0);
+        return eventBuffer.getOldestEventForFlowFile(identifier);
     }
 
     @Override
     public ProvenanceEventRecord getEvent(final long id) {
-        final List<ProvenanceEventRecord> records = ringBuffer.getSelectedElements(new Filter<ProvenanceEventRecord>() {
-            @Override
-            public boolean select(final ProvenanceEventRecord event) {
-                return event.getEventId() == id;
-            }
-        }, 1);
-
-        return records.isEmpty() ? null : records.get(0);
+        return eventBuffer.getEvent(id);
     }
 
     @Override
@@ -249,6 +243,23 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
         return result;
     }
 
+    @Override
+    public List<ProvenanceEventRollup> getEventRollups(final long startTime, final long endTime, final String componentId, final NiFiUser user) {
+        return eventRollups.getRollups(startTime, endTime, componentId, id -> user == null || isAuthorized(id, user));
+    }
+
+    private boolean isAuthorized(final String componentId, final NiFiUser user) {
+        if (authorizer == null) {
+            return true;
+        }
+
+        try {
+            return resourceFactory.createDataAuthorizable(componentId).isAuthorized(authorizer, RequestAction.READ, user);
+        } catch (final ResourceNotFoundException rnfe) {
+            return false;
+        }
+    }
+
     public boolean isAuthorized(final ProvenanceEventRecord event, final NiFiUser user) {
         if (authorizer == null) {
             return true;
@@ -427,20 +438,32 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
             throw new IllegalArgumentException("Query End Time cannot be before Query Start Time");
         }
 
-        if (query.getSearchTerms().isEmpty() && query.getStartDate() == null && query.getEndDate() == null) {
-            final AsyncQuerySubmission result = new AsyncQuerySubmission(query, 1, user.getIdentity());
-            queryExecService.submit(new QueryRunnable(ringBuffer, createFilter(query, user), query.getMaxResults(), result));
-            querySubmissionMap.put(query.getIdentifier(), result);
-            return result;
-        }
-
         final AsyncQuerySubmission result = new AsyncQuerySubmission(query, 1, user.getIdentity());
         querySubmissionMap.put(query.getIdentifier(), result);
-        queryExecService.submit(new QueryRunnable(ringBuffer, createFilter(query, user), query.getMaxResults(), result));
+        queryExecService.submit(new QueryRunnable(eventBuffer, getExactValues(query, SearchableFields.FlowFileUUID), getExactValues(query, SearchableFields.ComponentID),
+            createFilter(query, user), query.getMaxResults(), result));
 
         return result;
     }
 
+    /**
+     * @return the values of the search terms for the given field that contain no wildcards, or <code>null</code> if there are none
+     */
+    private static Set<String> getExactValues(final Query query, final SearchableField field) {
+        Set<String> values = null;
+        for (final SearchTerm searchTerm : query.getSearchTerms()) {
+            final String value = searchTerm.getValue();
+            if (field.equals(searchTerm.getSearchableField()) && value != null && !value.contains("?") && !value.contains("*")) {
+                if (values == null) {
+                    values = new HashSet<>();
+                }
+                values.add(value);
+            }
+        }
+
+        return values;
+    }
+
     @Override
     public QuerySubmission retrieveQuerySubmission(final String queryIdentifier, final NiFiUser user) {
         final QuerySubmission submission = querySubmissionMap.get(queryIdentifier);
@@ -591,44 +614,30 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
         final Filter<ProvenanceEventRecord> filter = new Filter<ProvenanceEventRecord>() {
             @Override
             public boolean select(final ProvenanceEventRecord event) {
-                if (user != null && !isAuthorized(event, user)) {
-                    return false;
-                }
-
-                if (flowFileUuids.contains(event.getFlowFileUuid())) {
-                    return true;
-                }
-
-                for (final String parentId : event.getParentUuids()) {
-                    if (flowFileUuids.contains(parentId)) {
-                        return true;
-                    }
-                }
-
-                for (final String childId : event.getChildUuids()) {
-                    if (flowFileUuids.contains(childId)) {
-                        return true;
-                    }
-                }
-
-                return false;
+                // the buffer only provides the events that refer to one of the FlowFile UUIDs, so only authorization remains to be checked
+                return user == null || isAuthorized(event, user);
             }
         };
 
-        queryExecService.submit(new ComputeLineageRunnable(ringBuffer, filter, result));
+        queryExecService.submit(new ComputeLineageRunnable(eventBuffer, flowFileUuids, filter, result));
 
         return result;
     }
 
     private static class QueryRunnable implements Runnable {
 
-        private final RingBuffer<ProvenanceEventRecord> ringBuffer;
+        private final IndexedEventBuffer eventBuffer;
+        private final Set<String> flowFileUuids;
+        private final Set<String> componentIds;
         private final Filter<ProvenanceEventRecord> filter;
         private final AsyncQuerySubmission submission;
         private final int maxRecords;
 
-        public QueryRunnable(final RingBuffer<ProvenanceEventRecord> ringBuffer, final Filter<ProvenanceEventRecord> filter, final int maxRecords, final AsyncQuerySubmission submission) {
-            this.ringBuffer = ringBuffer;
+        public QueryRunnable(final IndexedEventBuffer eventBuffer, final Set<String> flowFileUuids, final Set<String> componentIds,
+            final Filter<ProvenanceEventRecord> filter, final int maxRecords, final AsyncQuerySubmission submission) {
+            this.eventBuffer = eventBuffer;
+            this.flowFileUuids = flowFileUuids;
+            this.componentIds = componentIds;
             this.filter = filter;
             this.submission = submission;
             this.maxRecords = maxRecords;
@@ -637,41 +646,30 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
         @Override
         public void run() {
             // Retrieve the most recent results and count the total number of matches
-            final AtomicInteger matchingCount = new AtomicInteger(0);
-            final List<ProvenanceEventRecord> matchingRecords = new ArrayList<>(maxRecords);
-            ringBuffer.forEach(new ForEachEvaluator<ProvenanceEventRecord>() {
-                @Override
-                public boolean evaluate(final ProvenanceEventRecord record) {
-                    if (filter.select(record)) {
-                        if (matchingCount.incrementAndGet() <= maxRecords) {
-                            matchingRecords.add(record);
-                        }
-                    }
-
-                    return true;
-                }
-
-            }, IterationDirection.BACKWARD);
-
-            submission.getResult().update(matchingRecords, matchingCount.get());
+            final List<ProvenanceEventRecord> matchingRecords = new ArrayList<>(Math.min(maxRecords, 1000));
+            final int matchingCount = eventBuffer.findNewest(flowFileUuids, componentIds, filter, maxRecords, matchingRecords);
+            submission.getResult().update(matchingRecords, matchingCount);
         }
     }
 
     private static class ComputeLineageRunnable implements Runnable {
 
-        private final RingBuffer<ProvenanceEventRecord> ringBuffer;
+        private final IndexedEventBuffer eventBuffer;
+        private final Collection<String> flowFileUuids;
         private final Filter<ProvenanceEventRecord> filter;
         private final AsyncLineageSubmission submission;
 
-        public ComputeLineageRunnable(final RingBuffer<ProvenanceEventRecord> ringBuffer, final Filter<ProvenanceEventRecord> filter, final AsyncLineageSubmission submission) {
-            this.ringBuffer = ringBuffer;
+        public ComputeLineageRunnable(final IndexedEventBuffer eventBuffer, final Collection<String> flowFileUuids, final Filter<ProvenanceEventRecord> filter,
+            final AsyncLineageSubmission submission) {
+            this.eventBuffer = eventBuffer;
+            this.flowFileUuids = flowFileUuids;
             this.filter = filter;
             this.submission = submission;
         }
 
         @Override
         public void run() {
-            final List<ProvenanceEventRecord> records = ringBuffer.getSelectedElements(filter);
+            final List<ProvenanceEventRecord> records = eventBuffer.getEventsForFlowFiles(flowFileUuids, filter);
             submission.getResult().update(records);
         }
     }
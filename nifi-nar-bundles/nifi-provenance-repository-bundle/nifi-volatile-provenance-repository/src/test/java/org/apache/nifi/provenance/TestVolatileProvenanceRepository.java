@@ -18,6 +18,10 @@ package org.apache.nifi.provenance;
 
 import org.apache.nifi.authorization.user.NiFiUser;
 import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.provenance.lineage.Lineage;
+import org.apache.nifi.provenance.lineage.LineageNode;
+import org.apache.nifi.provenance.lineage.LineageNodeType;
+import org.apache.nifi.provenance.rollup.ProvenanceEventRollup;
 import org.apache.nifi.provenance.search.Query;
 import org.apache.nifi.provenance.search.QuerySubmission;
 import org.apache.nifi.provenance.search.SearchTerms;
@@ -32,6 +36,9 @@ import java.util.Map;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class TestVolatileProvenanceRepository {
 
@@ -117,6 +124,164 @@ public class TestVolatileProvenanceRepository {
         }
     }
 
+    @Test
+    public void testLookupByFlowFileUuidAndComponentId() throws IOException, InterruptedException {
+        repo = new VolatileProvenanceRepository(NiFiProperties.createBasicNiFiProperties(null, null));
+
+        final Map<String, String> attributes = new HashMap<>();
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.setComponentType("dummy processor");
+
+        for (int i = 0; i < 100; i++) {
+            attributes.put("uuid", "00000000-0000-0000-0000-" + String.format("%012d", i % 10));
+            builder.fromFlowFile(createFlowFile(i, 3000L, attributes));
+            builder.setComponentId(i % 2 == 0 ? "Even" : "Odd");
+            repo.registerEvent(builder.build());
+        }
+
+        assertEquals(42L, repo.getEvent(42L).getEventId());
+        assertEquals(3L, repo.getEvent("00000000-0000-0000-0000-000000000003").getEventId());
+        assertNull(repo.getEvent("00000000-0000-0000-0000-000000000010"));
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.FlowFileUUID, "00000000-0000-0000-0000-000000000003"));
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "odd"));
+        query.setMaxResults(4);
+
+        final QuerySubmission submission = repo.submitQuery(query, createUser());
+        while (!submission.getResult().isFinished()) {
+            Thread.sleep(100L);
+        }
+
+        // only the newest of the 10 matching events are returned
+        final List<ProvenanceEventRecord> matches = submission.getResult().getMatchingEvents();
+        assertEquals(4, matches.size());
+        assertEquals(93L, matches.get(0).getEventId());
+        assertEquals(63L, matches.get(3).getEventId());
+
+        // lineage is found through the parent and child UUIDs of the FORK event
+        final String parentUuid = UUID.randomUUID().toString();
+        final String childUuid = UUID.randomUUID().toString();
+        attributes.put("uuid", parentUuid);
+        final FlowFile parent = createFlowFile(100L, 3000L, attributes);
+        builder.fromFlowFile(parent);
+        repo.registerEvent(builder.build());
+
+        attributes.put("uuid", childUuid);
+        final ProvenanceEventBuilder forkBuilder = new StandardProvenanceEventRecord.Builder();
+        forkBuilder.setEventTime(System.currentTimeMillis());
+        forkBuilder.setEventType(ProvenanceEventType.FORK);
+        forkBuilder.fromFlowFile(parent);
+        forkBuilder.addParentFlowFile(parent);
+        forkBuilder.addChildFlowFile(createFlowFile(101L, 3000L, attributes));
+        forkBuilder.setComponentId("Odd");
+        forkBuilder.setComponentType("dummy processor");
+        repo.registerEvent(forkBuilder.build());
+
+        final Lineage lineage = repo.computeLineage(parentUuid, createUser());
+        int eventNodes = 0;
+        for (final LineageNode node : lineage.getNodes()) {
+            if (node.getNodeType() == LineageNodeType.PROVENANCE_EVENT_NODE) {
+                eventNodes++;
+            }
+        }
+        assertEquals(2, eventNodes);
+    }
+
+    @Test
+    public void testOldestEventsEvictedWhenMemoryBoundReached() throws IOException, InterruptedException {
+        final Map<String, String> additionalProperties = new HashMap<>();
+        additionalProperties.put(VolatileProvenanceRepository.BUFFER_MAX_SIZE, "64 KB");
+        repo = new VolatileProvenanceRepository(NiFiProperties.createBasicNiFiProperties(null, additionalProperties));
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("abc", "xyz");
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setEventType(ProvenanceEventType.RECEIVE);
+        builder.setTransitUri("nifi://unit-test");
+        builder.setComponentId("1234");
+        builder.setComponentType("dummy processor");
+
+        final int numEvents = 1000;
+        for (int i = 0; i < numEvents; i++) {
+            attributes.put("uuid", "00000000-0000-0000-0000-" + String.format("%012d", i));
+            builder.fromFlowFile(createFlowFile(i, 3000L, attributes));
+            repo.registerEvent(builder.build());
+        }
+
+        // the newest events are retained and the oldest ones evicted, along with their index entries
+        assertEquals(Long.valueOf(numEvents - 1), repo.getMaxEventId());
+        assertNotNull(repo.getEvent(numEvents - 1));
+        assertNull(repo.getEvent(0L));
+        assertNull(repo.getEvent("00000000-0000-0000-0000-000000000000"));
+        assertNotNull(repo.getEvent("00000000-0000-0000-0000-" + String.format("%012d", numEvents - 1)));
+
+        final List<ProvenanceEventRecord> retained = repo.getEvents(0L, numEvents);
+        assertTrue(retained.size() > 10);
+        assertTrue(retained.size() < numEvents);
+        assertEquals(numEvents - retained.size(), retained.get(0).getEventId());
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "1234"));
+        query.setMaxResults(numEvents);
+
+        final QuerySubmission submission = repo.submitQuery(query, createUser());
+        while (!submission.getResult().isFinished()) {
+            Thread.sleep(100L);
+        }
+        assertEquals(retained.size(), submission.getResult().getTotalHitCount());
+    }
+
+    @Test
+    public void testEventRollupsIncludeEvictedEvents() {
+        final Map<String, String> additionalProperties = new HashMap<>();
+        additionalProperties.put(VolatileProvenanceRepository.BUFFER_SIZE, "10");
+        repo = new VolatileProvenanceRepository(NiFiProperties.createBasicNiFiProperties(null, additionalProperties));
+
+        final long now = System.currentTimeMillis();
+        final long previousMinute = now - now % 60000L - 60000L;
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("uuid", UUID.randomUUID().toString());
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setTransitUri("nifi://unit-test");
+        builder.fromFlowFile(createFlowFile(1L, 100L, attributes));
+        builder.setComponentType("dummy processor");
+
+        for (int i = 0; i < 100; i++) {
+            builder.setEventTime(previousMinute + (i % 2 == 0 ? 1000L : 61000L));
+            builder.setComponentId(i < 90 ? "1234" : "5678");
+            builder.setEventType(i % 3 == 0 ? ProvenanceEventType.SEND : ProvenanceEventType.RECEIVE);
+            repo.registerEvent(builder.build());
+        }
+
+        final List<ProvenanceEventRollup> rollups = repo.getEventRollups(previousMinute, now, null, createUser());
+        long totalCount = 0L;
+        for (final ProvenanceEventRollup rollup : rollups) {
+            assertEquals(rollup.getEventCount() * 100L, rollup.getTotalBytes());
+            totalCount += rollup.getEventCount();
+        }
+        assertEquals(100L, totalCount);
+
+        // ordered by bucket, then component, then event type
+        final ProvenanceEventRollup first = rollups.get(0);
+        assertEquals(previousMinute, first.getBucketStartTime());
+        assertEquals("1234", first.getComponentId());
+        assertEquals(ProvenanceEventType.RECEIVE, first.getEventType());
+        assertEquals(30L, first.getEventCount());
+        assertEquals(previousMinute + 60000L, rollups.get(rollups.size() - 1).getBucketStartTime());
+
+        final List<ProvenanceEventRollup> componentRollups = repo.getEventRollups(previousMinute, previousMinute, "5678", createUser());
+        assertEquals(2, componentRollups.size());
+        assertEquals(5L, componentRollups.get(0).getEventCount() + componentRollups.get(1).getEventCount());
+
+        assertTrue(repo.getEventRollups(previousMinute - 120000L, previousMinute - 1L, null, createUser()).isEmpty());
+    }
+
     private FlowFile createFlowFile(final long id, final long fileSize, final Map<String, String> attributes) {
         final Map<String, String> attrCopy = new HashMap<>(attributes);
 
@@ -18,6 +18,8 @@
 package org.apache.nifi.reporting;
 
 import org.apache.nifi.annotation.behavior.Stateful;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
 import org.apache.nifi.components.PropertyDescriptor;
@@ -34,11 +36,13 @@ import org.apache.nifi.remote.Transaction;
 import org.apache.nifi.remote.TransferDirection;
 
 import javax.json.Json;
-import javax.json.JsonArray;
 import javax.json.JsonArrayBuilder;
 import javax.json.JsonBuilderFactory;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -53,6 +57,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 @Tags({"provenance", "lineage", "tracking", "site", "site to site"})
@@ -73,6 +83,7 @@ public class SiteToSiteProvenanceReportingTask extends AbstractSiteToSiteReporti
         .build();
 
     private volatile long firstEventId = -1L;
+    private volatile ExecutorService prefetchExecutor;
 
     @Override
     protected List<PropertyDescriptor> getSupportedPropertyDescriptors() {
@@ -81,6 +92,24 @@ public class SiteToSiteProvenanceReportingTask extends AbstractSiteToSiteReporti
         return properties;
     }
 
+    @OnScheduled
+    public void startPrefetching() {
+        prefetchExecutor = Executors.newSingleThreadExecutor(r -> {
+            final Thread thread = new Thread(r, "Prefetch Provenance Events for " + getIdentifier());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @OnStopped
+    public void stopPrefetching() {
+        final ExecutorService executor = prefetchExecutor;
+        prefetchExecutor = null;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
     private Map<String,String> createComponentMap(final ProcessGroupStatus status) {
         final Map<String,String> componentMap = new HashMap<>();
 
@@ -183,26 +212,38 @@ public class SiteToSiteProvenanceReportingTask extends AbstractSiteToSiteReporti
 
         final Map<String, ?> config = Collections.emptyMap();
         final JsonBuilderFactory factory = Json.createBuilderFactory(config);
+        final JsonGeneratorFactory generatorFactory = Json.createGeneratorFactory(config);
         final JsonObjectBuilder builder = factory.createObjectBuilder();
 
         final DateFormat df = new SimpleDateFormat(TIMESTAMP_FORMAT);
         df.setTimeZone(TimeZone.getTimeZone("Z"));
 
+        final int batchSize = context.getProperty(BATCH_SIZE).asInteger();
+        final StateManager stateManager = context.getStateManager();
+
         while (events != null && !events.isEmpty()) {
             final long start = System.nanoTime();
+            final ProvenanceEventRecord lastEvent = events.get(events.size() - 1);
+
+            // Retrieve the next batch from the repository while the current one is serialized and sent
+            final Future<List<ProvenanceEventRecord>> nextBatch = fetchEvents(context, lastEvent.getEventId() + 1, batchSize);
 
-            // Create a JSON array of all the events in the current batch
-            final JsonArrayBuilder arrayBuilder = factory.createArrayBuilder();
-            for (final ProvenanceEventRecord event : events) {
-                final String componentName = componentMap.get(event.getComponentId());
-                arrayBuilder.add(serialize(factory, builder, event, df, componentName, hostname, url, rootGroupName, platform, nodeId));
+            // Write each event of the current batch directly to the JSON document rather than building the whole array in memory first
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(events.size() * 1024);
+            try (final JsonGenerator generator = generatorFactory.createGenerator(out, StandardCharsets.UTF_8)) {
+                generator.writeStartArray();
+                for (final ProvenanceEventRecord event : events) {
+                    final String componentName = componentMap.get(event.getComponentId());
+                    generator.write(serialize(factory, builder, event, df, componentName, hostname, url, rootGroupName, platform, nodeId));
+                }
+                generator.writeEnd();
             }
-            final JsonArray jsonArray = arrayBuilder.build();
 
             // Send the JSON document for the current batch
             try {
                 final Transaction transaction = getClient().createTransaction(TransferDirection.SEND);
                 if (transaction == null) {
+                    nextBatch.cancel(true);
                     getLogger().debug("All destination nodes are penalized; will attempt to send data later");
                     return;
                 }
@@ -211,8 +252,7 @@ public class SiteToSiteProvenanceReportingTask extends AbstractSiteToSiteReporti
                 final String transactionId = UUID.randomUUID().toString();
                 attributes.put("reporting.task.transaction.id", transactionId);
 
-                final byte[] data = jsonArray.toString().getBytes(StandardCharsets.UTF_8);
-                transaction.send(data, attributes);
+                transaction.send(out.toByteArray(), attributes);
                 transaction.confirm();
                 transaction.complete();
 
@@ -220,14 +260,14 @@ public class SiteToSiteProvenanceReportingTask extends AbstractSiteToSiteReporti
                 getLogger().info("Successfully sent {} Provenance Events to destination in {} ms; Transaction ID = {}; First Event ID = {}",
                         new Object[]{events.size(), transferMillis, transactionId, events.get(0).getEventId()});
             } catch (final IOException e) {
+                nextBatch.cancel(true);
                 throw new ProcessException("Failed to send Provenance Events to destination due to IOException:" + e.getMessage(), e);
             }
 
-            // Store the id of the last event so we know where we left off
-            final ProvenanceEventRecord lastEvent = events.get(events.size() - 1);
+            // Store the id of the last event so we know where we left off. This happens only once the destination
+            // has confirmed the transaction, so that no events are lost if NiFi is restarted.
             final String lastEventId = String.valueOf(lastEvent.getEventId());
             try {
-                StateManager stateManager = context.getStateManager();
                 Map<String, String> newMapOfState = new HashMap<>();
                 newMapOfState.put(LAST_EVENT_ID_KEY, lastEventId);
                 stateManager.setState(newMapOfState, Scope.LOCAL);
@@ -238,17 +278,43 @@ public class SiteToSiteProvenanceReportingTask extends AbstractSiteToSiteReporti
 
             firstEventId = lastEvent.getEventId() + 1;
 
-            // Retrieve the next batch
+            // Wait for the next batch
             try {
-                events = context.getEventAccess().getProvenanceEvents(firstEventId, context.getProperty(BATCH_SIZE).asInteger());
-            } catch (final IOException ioe) {
-                getLogger().error("Failed to retrieve Provenance Events from repository due to: " + ioe.getMessage(), ioe);
+                events = nextBatch.get();
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                getLogger().debug("Interrupted while retrieving Provenance Events from repository; will continue on next trigger");
+                return;
+            } catch (final ExecutionException ee) {
+                final Throwable cause = ee.getCause();
+                getLogger().error("Failed to retrieve Provenance Events from repository due to: " + cause.getMessage(), cause);
                 return;
             }
         }
 
     }
 
+    /**
+     * Retrieves the given range of events on the prefetch thread, or on the current thread if the task is not scheduled
+     */
+    private Future<List<ProvenanceEventRecord>> fetchEvents(final ReportingContext context, final long firstId, final int maxRecords) {
+        final FutureTask<List<ProvenanceEventRecord>> task = new FutureTask<>(() -> context.getEventAccess().getProvenanceEvents(firstId, maxRecords));
+
+        final ExecutorService executor = prefetchExecutor;
+        if (executor == null || executor.isShutdown()) {
+            task.run();
+        } else {
+            try {
+                executor.execute(task);
+            } catch (final RejectedExecutionException ree) {
+                // the task is being stopped
+                task.run();
+            }
+        }
+
+        return task;
+    }
+
     static JsonObject serialize(final JsonBuilderFactory factory, final JsonObjectBuilder builder, final ProvenanceEventRecord event, final DateFormat df,
         final String componentName, final String hostname, final URL nifiUrl, final String applicationName, final String platform, final String nodeIdentifier) {
         addField(builder, "eventId", UUID.randomUUID().toString());
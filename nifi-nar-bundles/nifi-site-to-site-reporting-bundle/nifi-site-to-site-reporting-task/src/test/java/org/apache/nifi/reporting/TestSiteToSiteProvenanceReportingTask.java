@@ -23,6 +23,7 @@ import org.apache.nifi.components.PropertyValue;
 import org.apache.nifi.components.state.Scope;
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.processor.exception.ProcessException;
 import org.apache.nifi.provenance.ProvenanceEventBuilder;
 import org.apache.nifi.provenance.ProvenanceEventRecord;
 import org.apache.nifi.provenance.ProvenanceEventRepository;
@@ -54,6 +55,7 @@ import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class TestSiteToSiteProvenanceReportingTask {
 
@@ -188,6 +190,93 @@ public class TestSiteToSiteProvenanceReportingTask {
         assertEquals(0, task.dataSent.size());
     }
 
+    @Test
+    public void testStateOnlyUpdatedForConfirmedTransactions() throws IOException, InitializationException {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("uuid", "10000000-0000-0000-0000-000000000000");
+
+        final MockSiteToSiteProvenanceReportingTask task = new MockSiteToSiteProvenanceReportingTask();
+        task.failOnTransaction = 2;
+
+        final Map<PropertyDescriptor, String> properties = new HashMap<>();
+        for (final PropertyDescriptor descriptor : task.getSupportedPropertyDescriptors()) {
+            properties.put(descriptor, descriptor.getDefaultValue());
+        }
+        properties.put(SiteToSiteProvenanceReportingTask.BATCH_SIZE, "100");
+
+        final MockStateManager stateManager = new MockStateManager(task);
+        final ReportingContext context = Mockito.mock(ReportingContext.class);
+        Mockito.when(context.getStateManager()).thenReturn(stateManager);
+        Mockito.doAnswer(new Answer<PropertyValue>() {
+            @Override
+            public PropertyValue answer(final InvocationOnMock invocation) throws Throwable {
+                final PropertyDescriptor descriptor = invocation.getArgumentAt(0, PropertyDescriptor.class);
+                return new MockPropertyValue(properties.get(descriptor));
+            }
+        }).when(context).getProperty(Mockito.any(PropertyDescriptor.class));
+
+        final long maxEventId = 999;
+        final List<ProvenanceEventRecord> allEvents = new ArrayList<>();
+        for (long id = 0; id <= maxEventId; id++) {
+            final ProvenanceEventRecord event = Mockito.mock(ProvenanceEventRecord.class);
+            Mockito.when(event.getEventId()).thenReturn(id);
+            Mockito.when(event.getEventType()).thenReturn(ProvenanceEventType.RECEIVE);
+            Mockito.when(event.getEventTime()).thenReturn(System.currentTimeMillis());
+            Mockito.when(event.getComponentId()).thenReturn("1234");
+            Mockito.when(event.getFlowFileUuid()).thenReturn(attributes.get("uuid"));
+            Mockito.when(event.getUpdatedAttributes()).thenReturn(attributes);
+            allEvents.add(event);
+        }
+
+        final EventAccess eventAccess = Mockito.mock(EventAccess.class);
+        Mockito.doAnswer(new Answer<List<ProvenanceEventRecord>>() {
+            @Override
+            public List<ProvenanceEventRecord> answer(final InvocationOnMock invocation) throws Throwable {
+                final int startId = (int) Math.max(0, invocation.getArgumentAt(0, long.class));
+                final int maxRecords = invocation.getArgumentAt(1, int.class);
+                if (startId >= allEvents.size()) {
+                    return new ArrayList<>();
+                }
+                return new ArrayList<>(allEvents.subList(startId, Math.min(allEvents.size(), startId + maxRecords)));
+            }
+        }).when(eventAccess).getProvenanceEvents(Mockito.anyLong(), Mockito.anyInt());
+
+        final ProvenanceEventRepository provenanceRepository = Mockito.mock(ProvenanceEventRepository.class);
+        Mockito.when(provenanceRepository.getMaxEventId()).thenReturn(maxEventId);
+        Mockito.when(context.getEventAccess()).thenReturn(eventAccess);
+        Mockito.when(eventAccess.getProvenanceRepository()).thenReturn(provenanceRepository);
+
+        final ComponentLog logger = Mockito.mock(ComponentLog.class);
+        final ReportingInitializationContext initContext = Mockito.mock(ReportingInitializationContext.class);
+        Mockito.when(initContext.getIdentifier()).thenReturn(UUID.randomUUID().toString());
+        Mockito.when(initContext.getLogger()).thenReturn(logger);
+
+        task.initialize(initContext);
+        task.startPrefetching();
+        try {
+            try {
+                task.onTrigger(context);
+                fail("Expected the second transaction to fail");
+            } catch (final ProcessException expected) {
+            }
+
+            // only the first batch was confirmed, so the second batch must be sent again
+            assertEquals(2, task.dataSent.size());
+            assertEquals("99", stateManager.getState(Scope.LOCAL).get(SiteToSiteProvenanceReportingTask.LAST_EVENT_ID_KEY));
+
+            task.dataSent.clear();
+            task.onTrigger(context);
+            assertEquals(9, task.dataSent.size());
+            assertEquals("999", stateManager.getState(Scope.LOCAL).get(SiteToSiteProvenanceReportingTask.LAST_EVENT_ID_KEY));
+
+            final String msg = new String(task.dataSent.get(0), StandardCharsets.UTF_8);
+            final JsonReader jsonReader = Json.createReader(new ByteArrayInputStream(msg.getBytes()));
+            assertEquals(100, jsonReader.readArray().getJsonObject(0).getInt("eventOrdinal"));
+        } finally {
+            task.stopPrefetching();
+        }
+    }
+
     public static FlowFile createFlowFile(final long id, final Map<String, String> attributes) {
         MockFlowFile mockFlowFile = new MockFlowFile(id);
         mockFlowFile.putAttributes(attributes);
@@ -197,6 +286,8 @@ public class TestSiteToSiteProvenanceReportingTask {
     private static final class MockSiteToSiteProvenanceReportingTask extends SiteToSiteProvenanceReportingTask {
 
         final List<byte[]> dataSent = new ArrayList<>();
+        int failOnTransaction = -1;
+        private int transactionCount = 0;
 
         @Override
         protected SiteToSiteClient getClient() {
@@ -213,6 +304,10 @@ public class TestSiteToSiteProvenanceReportingTask {
                     }
                 }).when(transaction).send(Mockito.any(byte[].class), Mockito.any(Map.class));
 
+                if (++transactionCount == failOnTransaction) {
+                    Mockito.doThrow(new IOException("Intentional unit test failure")).when(transaction).confirm();
+                }
+
                 Mockito.when(client.createTransaction(Mockito.any(TransferDirection.class))).thenReturn(transaction);
             } catch (final Exception e) {
                 e.printStackTrace();